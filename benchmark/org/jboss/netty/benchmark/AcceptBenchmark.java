@@ -0,0 +1,103 @@
+/*
+ * Copyright 2014 The Netty Project
+ *
+ * The Netty Project licenses this file to you under the Apache License,
+ * version 2.0 (the "License"); you may not use this file except in compliance
+ * with the License. You may obtain a copy of the License at:
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS, WITHOUT
+ * WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied. See the
+ * License for the specific language governing permissions and limitations
+ * under the License.
+ */
+package org.jboss.netty.benchmark;
+
+import java.net.InetSocketAddress;
+import java.util.concurrent.Semaphore;
+
+import org.jboss.netty.bootstrap.ClientBootstrap;
+import org.jboss.netty.bootstrap.ServerBootstrap;
+import org.jboss.netty.channel.Channel;
+import org.jboss.netty.channel.ChannelHandlerContext;
+import org.jboss.netty.channel.ChannelPipeline;
+import org.jboss.netty.channel.ChannelPipelineFactory;
+import org.jboss.netty.channel.ChannelStateEvent;
+import org.jboss.netty.channel.Channels;
+import org.jboss.netty.channel.ExceptionEvent;
+import org.jboss.netty.channel.SimpleChannelUpstreamHandler;
+import org.jboss.netty.channel.socket.nio.NioClientSocketChannelFactory;
+import org.jboss.netty.channel.socket.nio.NioServerSocketChannelFactory;
+
+/**
+ * Measures the connections per second a server accepts over the loopback
+ * interface with the NIO socket transport.  One operation connects a client,
+ * waits until the server has accepted the connection, and closes it.  This
+ * covers the creation of two channels, including the allocation of their IDs.
+ */
+final class AcceptBenchmark extends Benchmark {
+
+    private final Semaphore accepted = new Semaphore(0);
+    private ServerBootstrap sb;
+    private ClientBootstrap cb;
+    private Channel serverChannel;
+
+    AcceptBenchmark() {
+        super("transport.nio.accept");
+    }
+
+    @Override
+    protected void setUp() throws Exception {
+        sb = new ServerBootstrap(new NioServerSocketChannelFactory());
+        sb.setOption("backlog", 1024);
+        sb.setPipelineFactory(new ChannelPipelineFactory() {
+            public ChannelPipeline getPipeline() {
+                return Channels.pipeline(new SimpleChannelUpstreamHandler() {
+                    @Override
+                    public void channelConnected(ChannelHandlerContext ctx, ChannelStateEvent e) {
+                        accepted.release();
+                    }
+
+                    @Override
+                    public void exceptionCaught(ChannelHandlerContext ctx, ExceptionEvent e) {
+                        // The client resets the connection - ignore.
+                        e.getChannel().close();
+                    }
+                });
+            }
+        });
+        serverChannel = sb.bind(new InetSocketAddress("127.0.0.1", 0));
+
+        cb = new ClientBootstrap(new NioClientSocketChannelFactory());
+        // Reset instead of a graceful close so that the client ports are not
+        // left in TIME_WAIT, which would exhaust them during a long run.
+        cb.setOption("soLinger", 0);
+        cb.setPipelineFactory(new ChannelPipelineFactory() {
+            public ChannelPipeline getPipeline() {
+                return Channels.pipeline(new SimpleChannelUpstreamHandler() {
+                    @Override
+                    public void exceptionCaught(ChannelHandlerContext ctx, ExceptionEvent e) {
+                        e.getChannel().close();
+                    }
+                });
+            }
+        });
+    }
+
+    @Override
+    protected void tearDown() {
+        serverChannel.close().awaitUninterruptibly();
+        cb.releaseExternalResources();
+        sb.releaseExternalResources();
+    }
+
+    @Override
+    protected long operation() throws Exception {
+        Channel ch = cb.connect(serverChannel.getLocalAddress()).sync().getChannel();
+        accepted.acquire();
+        ch.close().sync();
+        return ch.getId();
+    }
+}
@@ -0,0 +1,101 @@
+/*
+ * Copyright 2014 The Netty Project
+ *
+ * The Netty Project licenses this file to you under the Apache License,
+ * version 2.0 (the "License"); you may not use this file except in compliance
+ * with the License. You may obtain a copy of the License at:
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS, WITHOUT
+ * WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied. See the
+ * License for the specific language governing permissions and limitations
+ * under the License.
+ */
+package org.jboss.netty.benchmark;
+
+/**
+ * A microbenchmark run by {@link BenchmarkRunner}.  The runner calls
+ * {@link #setUp()}, then {@link #operation()} repeatedly for a number of
+ * warm-up and measurement iterations of a fixed duration, and finally
+ * {@link #tearDown()}.  The throughput of each measurement iteration is
+ * reported in operations per second.
+ */
+public abstract class Benchmark {
+
+    private final String name;
+
+    /**
+     * Sum of the values returned by {@link #operation()}, which keeps the
+     * JIT compiler from eliminating the benchmarked code as dead code.
+     */
+    private long sink;
+
+    /**
+     * Creates a new benchmark with the specified name.
+     */
+    protected Benchmark(String name) {
+        if (name == null) {
+            throw new NullPointerException("name");
+        }
+        this.name = name;
+    }
+
+    /**
+     * Returns the name of this benchmark.
+     */
+    public String getName() {
+        return name;
+    }
+
+    /**
+     * Prepares the state used by {@link #operation()}.
+     */
+    protected void setUp() throws Exception {
+        // NOOP
+    }
+
+    /**
+     * Releases the state used by {@link #operation()}.
+     */
+    protected void tearDown() throws Exception {
+        // NOOP
+    }
+
+    /**
+     * Performs the benchmarked operation once.
+     *
+     * @return any value derived from the result of the operation
+     */
+    protected abstract long operation() throws Exception;
+
+    /**
+     * Runs the operation repeatedly for the specified duration.
+     *
+     * @return the throughput in operations per second
+     */
+    final double iterate(long durationNanos) throws Exception {
+        long sink = 0;
+        long operations = 0;
+        long startTime = System.nanoTime();
+        long endTime = startTime + durationNanos;
+        long currentTime;
+        do {
+            // Check the time only every 256 operations to keep its cost out of the result.
+            for (int i = 0; i < 256; i ++) {
+                sink += operation();
+            }
+            operations += 256;
+            currentTime = System.nanoTime();
+        } while (currentTime - endTime < 0);
+
+        this.sink += sink;
+        return operations * 1000000000.0 / (currentTime - startTime);
+    }
+
+    @Override
+    public String toString() {
+        return name + "(sink: " + sink + ')';
+    }
+}
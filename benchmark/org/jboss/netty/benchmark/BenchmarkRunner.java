@@ -0,0 +1,98 @@
+/*
+ * Copyright 2014 The Netty Project
+ *
+ * The Netty Project licenses this file to you under the Apache License,
+ * version 2.0 (the "License"); you may not use this file except in compliance
+ * with the License. You may obtain a copy of the License at:
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS, WITHOUT
+ * WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied. See the
+ * License for the specific language governing permissions and limitations
+ * under the License.
+ */
+package org.jboss.netty.benchmark;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Runs the benchmarks in this package.  The command line arguments are
+ * optional name prefixes which select the benchmarks to run:
+ * <pre>
+ * java -cp &lt;netty classes&gt;:&lt;benchmark classes&gt; org.jboss.netty.benchmark.BenchmarkRunner buffer. http.
+ * </pre>
+ * The number and duration of the iterations are configured with the
+ * following system properties:
+ * <ul>
+ * <li>{@code org.jboss.netty.benchmark.warmupIterations} (default: 5)</li>
+ * <li>{@code org.jboss.netty.benchmark.measurementIterations} (default: 10)</li>
+ * <li>{@code org.jboss.netty.benchmark.iterationMillis} (default: 1000)</li>
+ * </ul>
+ */
+public final class BenchmarkRunner {
+
+    private static List<Benchmark> benchmarks() {
+        List<Benchmark> benchmarks = new ArrayList<Benchmark>();
+        benchmarks.addAll(ChannelBufferBenchmarks.benchmarks());
+        benchmarks.addAll(CodecBenchmarks.benchmarks());
+        benchmarks.add(new LoopbackEchoBenchmark());
+        benchmarks.add(new AcceptBenchmark());
+        return benchmarks;
+    }
+
+    public static void main(String[] args) throws Exception {
+        int warmupIterations = Integer.getInteger("org.jboss.netty.benchmark.warmupIterations", 5);
+        int measurementIterations = Integer.getInteger("org.jboss.netty.benchmark.measurementIterations", 10);
+        long iterationNanos = TimeUnit.MILLISECONDS.toNanos(
+                Integer.getInteger("org.jboss.netty.benchmark.iterationMillis", 1000));
+
+        System.out.printf("%-40s %14s %14s %14s%n", "Benchmark", "ops/s", "min", "max");
+        for (Benchmark b: benchmarks()) {
+            if (!isSelected(b, args)) {
+                continue;
+            }
+
+            b.setUp();
+            try {
+                for (int i = 0; i < warmupIterations; i ++) {
+                    b.iterate(iterationNanos);
+                }
+
+                double sum = 0;
+                double min = Double.MAX_VALUE;
+                double max = 0;
+                for (int i = 0; i < measurementIterations; i ++) {
+                    double throughput = b.iterate(iterationNanos);
+                    sum += throughput;
+                    min = Math.min(min, throughput);
+                    max = Math.max(max, throughput);
+                }
+                System.out.printf(
+                        "%-40s %14.0f %14.0f %14.0f%n",
+                        b.getName(), sum / measurementIterations, min, max);
+            } finally {
+                b.tearDown();
+            }
+        }
+    }
+
+    private static boolean isSelected(Benchmark b, String[] prefixes) {
+        if (prefixes.length == 0) {
+            return true;
+        }
+        for (String p: prefixes) {
+            if (b.getName().startsWith(p)) {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    private BenchmarkRunner() {
+        // Unused
+    }
+}
@@ -0,0 +1,130 @@
+/*
+ * Copyright 2014 The Netty Project
+ *
+ * The Netty Project licenses this file to you under the Apache License,
+ * version 2.0 (the "License"); you may not use this file except in compliance
+ * with the License. You may obtain a copy of the License at:
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS, WITHOUT
+ * WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied. See the
+ * License for the specific language governing permissions and limitations
+ * under the License.
+ */
+package org.jboss.netty.benchmark;
+
+import java.util.ArrayList;
+import java.util.List;
+
+import org.jboss.netty.buffer.ChannelBuffer;
+import org.jboss.netty.buffer.ChannelBuffers;
+
+/**
+ * Benchmarks of the get, set and search operations of heap, direct and
+ * composite {@link ChannelBuffer}s.
+ */
+final class ChannelBufferBenchmarks {
+
+    private static final int SIZE = 4096;
+
+    static List<Benchmark> benchmarks() {
+        List<Benchmark> benchmarks = new ArrayList<Benchmark>();
+        for (String type: new String[] { "heap", "direct", "composite" }) {
+            benchmarks.add(new GetBytes(type));
+            benchmarks.add(new SetInts(type));
+            benchmarks.add(new IndexOf(type));
+        }
+        return benchmarks;
+    }
+
+    static ChannelBuffer newBuffer(String type) {
+        if ("heap".equals(type)) {
+            return ChannelBuffers.buffer(SIZE);
+        }
+        if ("direct".equals(type)) {
+            return ChannelBuffers.directBuffer(SIZE);
+        }
+        if ("composite".equals(type)) {
+            ChannelBuffer[] components = new ChannelBuffer[16];
+            for (int i = 0; i < components.length; i ++) {
+                components[i] = ChannelBuffers.buffer(SIZE / components.length);
+                components[i].writerIndex(components[i].capacity());
+            }
+            ChannelBuffer buffer = ChannelBuffers.wrappedBuffer(components);
+            buffer.clear();
+            return buffer;
+        }
+        throw new IllegalArgumentException("type: " + type);
+    }
+
+    private abstract static class BufferBenchmark extends Benchmark {
+        private final String type;
+        ChannelBuffer buffer;
+
+        BufferBenchmark(String operation, String type) {
+            super("buffer." + type + '.' + operation);
+            this.type = type;
+        }
+
+        @Override
+        protected void setUp() {
+            buffer = newBuffer(type);
+            buffer.writerIndex(buffer.capacity());
+        }
+    }
+
+    private static final class GetBytes extends BufferBenchmark {
+        GetBytes(String type) {
+            super("getByte", type);
+        }
+
+        @Override
+        protected long operation() {
+            ChannelBuffer buffer = this.buffer;
+            long sum = 0;
+            for (int i = 0; i < SIZE; i ++) {
+                sum += buffer.getByte(i);
+            }
+            return sum;
+        }
+    }
+
+    private static final class SetInts extends BufferBenchmark {
+        SetInts(String type) {
+            super("setInt", type);
+        }
+
+        @Override
+        protected long operation() {
+            ChannelBuffer buffer = this.buffer;
+            for (int i = 0; i < SIZE; i += 4) {
+                buffer.setInt(i, i);
+            }
+            return buffer.getInt(SIZE - 4);
+        }
+    }
+
+    private static final class IndexOf extends BufferBenchmark {
+        IndexOf(String type) {
+            super("indexOf", type);
+        }
+
+        @Override
+        protected void setUp() {
+            super.setUp();
+            buffer.setZero(0, SIZE);
+            buffer.setByte(SIZE - 1, '\n');
+        }
+
+        @Override
+        protected long operation() {
+            return buffer.indexOf(0, SIZE, (byte) '\n');
+        }
+    }
+
+    private ChannelBufferBenchmarks() {
+        // Unused
+    }
+}
@@ -0,0 +1,178 @@
+/*
+ * Copyright 2014 The Netty Project
+ *
+ * The Netty Project licenses this file to you under the Apache License,
+ * version 2.0 (the "License"); you may not use this file except in compliance
+ * with the License. You may obtain a copy of the License at:
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS, WITHOUT
+ * WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied. See the
+ * License for the specific language governing permissions and limitations
+ * under the License.
+ */
+package org.jboss.netty.benchmark;
+
+import java.util.ArrayList;
+import java.util.List;
+
+import org.jboss.netty.buffer.ChannelBuffer;
+import org.jboss.netty.buffer.ChannelBuffers;
+import org.jboss.netty.handler.codec.embedder.DecoderEmbedder;
+import org.jboss.netty.handler.codec.embedder.EncoderEmbedder;
+import org.jboss.netty.handler.codec.frame.LengthFieldBasedFrameDecoder;
+import org.jboss.netty.handler.codec.http.DefaultHttpResponse;
+import org.jboss.netty.handler.codec.http.HttpHeaders;
+import org.jboss.netty.handler.codec.http.HttpRequestDecoder;
+import org.jboss.netty.handler.codec.http.HttpResponse;
+import org.jboss.netty.handler.codec.http.HttpResponseEncoder;
+import org.jboss.netty.handler.codec.http.HttpResponseStatus;
+import org.jboss.netty.handler.codec.http.HttpVersion;
+import org.jboss.netty.handler.codec.http.websocketx.BinaryWebSocketFrame;
+import org.jboss.netty.handler.codec.http.websocketx.WebSocket08FrameDecoder;
+import org.jboss.netty.handler.codec.http.websocketx.WebSocket08FrameEncoder;
+import org.jboss.netty.util.CharsetUtil;
+
+/**
+ * Benchmarks of the frame, HTTP and WebSocket codecs, driven through
+ * {@link DecoderEmbedder} and {@link EncoderEmbedder}.  One operation
+ * encodes or decodes one batch of messages.
+ */
+final class CodecBenchmarks {
+
+    static List<Benchmark> benchmarks() {
+        List<Benchmark> benchmarks = new ArrayList<Benchmark>();
+        benchmarks.add(new LengthFieldDecode());
+        benchmarks.add(new HttpRequestDecode());
+        benchmarks.add(new HttpResponseEncode());
+        benchmarks.add(new WebSocketDecode());
+        benchmarks.add(new WebSocketEncode());
+        return benchmarks;
+    }
+
+    /**
+     * Decodes 64 length-prefixed frames of 128 bytes each, split into
+     * chunks of 1000 bytes to exercise the cumulation of {@code FrameDecoder}.
+     */
+    private static final class LengthFieldDecode extends Benchmark {
+        private final DecoderEmbedder<ChannelBuffer> decoder =
+                new DecoderEmbedder<ChannelBuffer>(new LengthFieldBasedFrameDecoder(65536, 0, 4, 0, 4));
+        private ChannelBuffer input;
+
+        LengthFieldDecode() {
+            super("codec.frame.lengthField.decode");
+        }
+
+        @Override
+        protected void setUp() {
+            input = ChannelBuffers.buffer(64 * 132);
+            for (int i = 0; i < 64; i ++) {
+                input.writeInt(128);
+                input.writeZero(128);
+            }
+        }
+
+        @Override
+        protected long operation() {
+            long frames = 0;
+            for (int i = 0; i < input.readableBytes(); i += 1000) {
+                decoder.offer(input.slice(i, Math.min(1000, input.readableBytes() - i)));
+                while (decoder.poll() != null) {
+                    frames ++;
+                }
+            }
+            return frames;
+        }
+    }
+
+    private static final class HttpRequestDecode extends Benchmark {
+        private static final byte[] REQUEST = (
+                "GET /index.html?q=netty HTTP/1.1\r\n" +
+                "Host: www.example.com\r\n" +
+                "User-Agent: Mozilla/5.0 (X11; Linux x86_64; rv:31.0) Gecko/20100101 Firefox/31.0\r\n" +
+                "Accept: text/html,application/xhtml+xml,application/xml;q=0.9,*/*;q=0.8\r\n" +
+                "Accept-Language: en-US,en;q=0.5\r\n" +
+                "Accept-Encoding: gzip, deflate\r\n" +
+                "Connection: keep-alive\r\n" +
+                "\r\n").getBytes(CharsetUtil.US_ASCII);
+
+        private final DecoderEmbedder<Object> decoder = new DecoderEmbedder<Object>(new HttpRequestDecoder());
+
+        HttpRequestDecode() {
+            super("codec.http.request.decode");
+        }
+
+        @Override
+        protected long operation() {
+            decoder.offer(ChannelBuffers.wrappedBuffer(REQUEST));
+            return decoder.poll().hashCode();
+        }
+    }
+
+    private static final class HttpResponseEncode extends Benchmark {
+        private final EncoderEmbedder<ChannelBuffer> encoder =
+                new EncoderEmbedder<ChannelBuffer>(new HttpResponseEncoder());
+        private final ChannelBuffer content = ChannelBuffers.copiedBuffer("Hello, World!", CharsetUtil.US_ASCII);
+
+        HttpResponseEncode() {
+            super("codec.http.response.encode");
+        }
+
+        @Override
+        protected long operation() {
+            HttpResponse response = new DefaultHttpResponse(HttpVersion.HTTP_1_1, HttpResponseStatus.OK);
+            response.headers().set(HttpHeaders.Names.CONTENT_TYPE, "text/plain");
+            response.headers().set(HttpHeaders.Names.CONTENT_LENGTH, content.readableBytes());
+            response.headers().set(HttpHeaders.Names.SERVER, "Netty");
+            response.setContent(content.duplicate());
+            encoder.offer(response);
+            return encoder.poll().readableBytes();
+        }
+    }
+
+    private static final class WebSocketDecode extends Benchmark {
+        private final DecoderEmbedder<Object> decoder =
+                new DecoderEmbedder<Object>(new WebSocket08FrameDecoder(true, false));
+        private ChannelBuffer input;
+
+        WebSocketDecode() {
+            super("codec.websocket.decode");
+        }
+
+        @Override
+        protected void setUp() {
+            EncoderEmbedder<ChannelBuffer> encoder =
+                    new EncoderEmbedder<ChannelBuffer>(new WebSocket08FrameEncoder(true));
+            encoder.offer(new BinaryWebSocketFrame(ChannelBuffers.wrappedBuffer(new byte[1024])));
+            input = encoder.poll();
+        }
+
+        @Override
+        protected long operation() {
+            decoder.offer(input.duplicate());
+            return decoder.poll().hashCode();
+        }
+    }
+
+    private static final class WebSocketEncode extends Benchmark {
+        private final EncoderEmbedder<ChannelBuffer> encoder =
+                new EncoderEmbedder<ChannelBuffer>(new WebSocket08FrameEncoder(true));
+        private final ChannelBuffer payload = ChannelBuffers.wrappedBuffer(new byte[1024]);
+
+        WebSocketEncode() {
+            super("codec.websocket.encode");
+        }
+
+        @Override
+        protected long operation() {
+            encoder.offer(new BinaryWebSocketFrame(payload.duplicate()));
+            return encoder.poll().readableBytes();
+        }
+    }
+
+    private CodecBenchmarks() {
+        // Unused
+    }
+}
@@ -0,0 +1,124 @@
+/*
+ * Copyright 2014 The Netty Project
+ *
+ * The Netty Project licenses this file to you under the Apache License,
+ * version 2.0 (the "License"); you may not use this file except in compliance
+ * with the License. You may obtain a copy of the License at:
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS, WITHOUT
+ * WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied. See the
+ * License for the specific language governing permissions and limitations
+ * under the License.
+ */
+package org.jboss.netty.benchmark;
+
+import java.net.InetSocketAddress;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.LinkedBlockingQueue;
+
+import org.jboss.netty.bootstrap.ClientBootstrap;
+import org.jboss.netty.bootstrap.ServerBootstrap;
+import org.jboss.netty.buffer.ChannelBuffer;
+import org.jboss.netty.buffer.ChannelBuffers;
+import org.jboss.netty.channel.Channel;
+import org.jboss.netty.channel.ChannelHandlerContext;
+import org.jboss.netty.channel.ChannelPipeline;
+import org.jboss.netty.channel.ChannelPipelineFactory;
+import org.jboss.netty.channel.Channels;
+import org.jboss.netty.channel.ExceptionEvent;
+import org.jboss.netty.channel.MessageEvent;
+import org.jboss.netty.channel.SimpleChannelUpstreamHandler;
+import org.jboss.netty.channel.socket.nio.NioClientSocketChannelFactory;
+import org.jboss.netty.channel.socket.nio.NioServerSocketChannelFactory;
+
+/**
+ * Measures the round trips per second of a 256-byte message echoed by a
+ * server over the loopback interface, with both ends using the NIO
+ * socket transport.
+ */
+final class LoopbackEchoBenchmark extends Benchmark {
+
+    private static final int MESSAGE_SIZE = 256;
+
+    private final BlockingQueue<Object> responses = new LinkedBlockingQueue<Object>();
+    private ServerBootstrap sb;
+    private ClientBootstrap cb;
+    private Channel serverChannel;
+    private Channel clientChannel;
+    private ChannelBuffer message;
+    private int received;
+
+    LoopbackEchoBenchmark() {
+        super("transport.nio.echo");
+    }
+
+    @Override
+    protected void setUp() throws Exception {
+        sb = new ServerBootstrap(new NioServerSocketChannelFactory());
+        sb.setOption("child.tcpNoDelay", true);
+        sb.setPipelineFactory(new ChannelPipelineFactory() {
+            public ChannelPipeline getPipeline() {
+                return Channels.pipeline(new SimpleChannelUpstreamHandler() {
+                    @Override
+                    public void messageReceived(ChannelHandlerContext ctx, MessageEvent e) {
+                        e.getChannel().write(e.getMessage());
+                    }
+
+                    @Override
+                    public void exceptionCaught(ChannelHandlerContext ctx, ExceptionEvent e) {
+                        e.getChannel().close();
+                    }
+                });
+            }
+        });
+        serverChannel = sb.bind(new InetSocketAddress("127.0.0.1", 0));
+
+        cb = new ClientBootstrap(new NioClientSocketChannelFactory());
+        cb.setOption("tcpNoDelay", true);
+        cb.setPipelineFactory(new ChannelPipelineFactory() {
+            public ChannelPipeline getPipeline() {
+                return Channels.pipeline(new SimpleChannelUpstreamHandler() {
+                    @Override
+                    public void messageReceived(ChannelHandlerContext ctx, MessageEvent e) {
+                        responses.add(e.getMessage());
+                    }
+
+                    @Override
+                    public void exceptionCaught(ChannelHandlerContext ctx, ExceptionEvent e) {
+                        responses.add(e.getCause());
+                    }
+                });
+            }
+        });
+        clientChannel = cb.connect(serverChannel.getLocalAddress()).sync().getChannel();
+        message = ChannelBuffers.wrappedBuffer(new byte[MESSAGE_SIZE]);
+    }
+
+    @Override
+    protected void tearDown() {
+        clientChannel.close().awaitUninterruptibly();
+        serverChannel.close().awaitUninterruptibly();
+        cb.releaseExternalResources();
+        sb.releaseExternalResources();
+    }
+
+    @Override
+    protected long operation() throws Exception {
+        clientChannel.write(message.duplicate());
+
+        // The echoed message may arrive in more than one read.
+        int received = this.received;
+        while (received < MESSAGE_SIZE) {
+            Object response = responses.take();
+            if (response instanceof Throwable) {
+                throw new Exception((Throwable) response);
+            }
+            received += ((ChannelBuffer) response).readableBytes();
+        }
+        this.received = received - MESSAGE_SIZE;
+        return received;
+    }
+}
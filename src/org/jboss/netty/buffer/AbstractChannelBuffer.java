@@ -15,6 +15,8 @@
  */
 package org.jboss.netty.buffer;
 
+import org.jboss.netty.util.CharsetUtil;
+
 import java.io.IOException;
 import java.io.InputStream;
 import java.io.OutputStream;
@@ -30,6 +32,8 @@ import java.util.NoSuchElementException;
  */
 public abstract class AbstractChannelBuffer implements ChannelBuffer {
 
+    private static final int MAX_VARINT_LENGTH = 10;
+
     private int readerIndex;
     private int writerIndex;
     private int markedReaderIndex;
@@ -384,6 +388,70 @@ public abstract class AbstractChannelBuffer implements ChannelBuffer {
         readerIndex += length;
     }
 
+    public String readAscii(int length) {
+        checkReadableBytes(length);
+        String value = ChannelBuffers.decodeSingleByte(this, readerIndex, length, false);
+        readerIndex += length;
+        return value;
+    }
+
+    public String readUtf8(int length) {
+        checkReadableBytes(length);
+        String value = ChannelBuffers.decodeUtf8(this, readerIndex, length);
+        readerIndex += length;
+        return value;
+    }
+
+    public int readableVarIntLength() {
+        int limit = Math.min(writerIndex - readerIndex, MAX_VARINT_LENGTH);
+        for (int i = 0; i < limit; i ++) {
+            if (getByte(readerIndex + i) >= 0) {
+                return i + 1;
+            }
+        }
+        return limit == MAX_VARINT_LENGTH ? -1 : 0;
+    }
+
+    public int readVarInt32() {
+        final int readerIndex = this.readerIndex;
+        final int writerIndex = this.writerIndex;
+        int result = 0;
+        for (int i = 0; i < MAX_VARINT_LENGTH; i ++) {
+            if (readerIndex + i >= writerIndex) {
+                throw new IndexOutOfBoundsException(
+                        "Not enough readable bytes for a varint - readable: " + (writerIndex - readerIndex));
+            }
+            byte b = getByte(readerIndex + i);
+            if (i < 5) {
+                result |= (b & 0x7f) << 7 * i;
+            }
+            if (b >= 0) {
+                this.readerIndex = readerIndex + i + 1;
+                return result;
+            }
+        }
+        throw new IllegalStateException("varint longer than " + MAX_VARINT_LENGTH + " bytes");
+    }
+
+    public long readVarInt64() {
+        final int readerIndex = this.readerIndex;
+        final int writerIndex = this.writerIndex;
+        long result = 0;
+        for (int i = 0; i < MAX_VARINT_LENGTH; i ++) {
+            if (readerIndex + i >= writerIndex) {
+                throw new IndexOutOfBoundsException(
+                        "Not enough readable bytes for a varint - readable: " + (writerIndex - readerIndex));
+            }
+            byte b = getByte(readerIndex + i);
+            result |= (long) (b & 0x7f) << 7 * i;
+            if (b >= 0) {
+                this.readerIndex = readerIndex + i + 1;
+                return result;
+            }
+        }
+        throw new IllegalStateException("varint longer than " + MAX_VARINT_LENGTH + " bytes");
+    }
+
     public void skipBytes(int length) {
         int newReaderIndex = readerIndex + length;
         if (newReaderIndex > writerIndex) {
@@ -519,6 +587,42 @@ public abstract class AbstractChannelBuffer implements ChannelBuffer {
         }
     }
 
+    public void writeAscii(CharSequence value) {
+        int length = value.length();
+        ensureWritableBytes(length);
+        ChannelBuffers.encodeSingleByte(this, writerIndex, value, '\u00ff');
+        writerIndex += length;
+    }
+
+    public void writeUtf8(CharSequence value) {
+        int length = ChannelBuffers.utf8Length(value);
+        ensureWritableBytes(length);
+        ChannelBuffers.encodeUtf8(this, writerIndex, value, length);
+        writerIndex += length;
+    }
+
+    public void writeVarInt32(int value) {
+        ensureWritableBytes(ChannelBuffers.varInt32Size(value));
+        int writerIndex = this.writerIndex;
+        while ((value & ~0x7f) != 0) {
+            setByte(writerIndex ++, value & 0x7f | 0x80);
+            value >>>= 7;
+        }
+        setByte(writerIndex ++, value);
+        this.writerIndex = writerIndex;
+    }
+
+    public void writeVarInt64(long value) {
+        ensureWritableBytes(ChannelBuffers.varInt64Size(value));
+        int writerIndex = this.writerIndex;
+        while ((value & ~0x7fL) != 0) {
+            setByte(writerIndex ++, (int) value & 0x7f | 0x80);
+            value >>>= 7;
+        }
+        setByte(writerIndex ++, (int) value);
+        this.writerIndex = writerIndex;
+    }
+
     public ChannelBuffer copy() {
         return copy(readerIndex, readableBytes());
     }
@@ -548,6 +652,16 @@ public abstract class AbstractChannelBuffer implements ChannelBuffer {
             return "";
         }
 
+        if (CharsetUtil.UTF_8.equals(charset)) {
+            return ChannelBuffers.decodeUtf8(this, index, length);
+        }
+        if (CharsetUtil.US_ASCII.equals(charset)) {
+            return ChannelBuffers.decodeSingleByte(this, index, length, true);
+        }
+        if (CharsetUtil.ISO_8859_1.equals(charset)) {
+            return ChannelBuffers.decodeSingleByte(this, index, length, false);
+        }
+
         return ChannelBuffers.decodeString(
                 toByteBuffer(index, length), charset);
     }
@@ -632,6 +746,26 @@ public abstract class AbstractChannelBuffer implements ChannelBuffer {
         return endIndex - index;
     }
 
+    public int forEachByte(ChannelBufferProcessor processor) {
+        return forEachByte(readerIndex, writerIndex - readerIndex, processor);
+    }
+
+    public int forEachByte(int index, int length, ChannelBufferProcessor processor) {
+        if (processor == null) {
+            throw new NullPointerException("processor");
+        }
+        if (index < 0 || length < 0 || index + length > capacity()) {
+            throw new IndexOutOfBoundsException();
+        }
+        int endIndex = index + length;
+        for (int i = index; i < endIndex; i ++) {
+            if (!processor.process(getByte(i))) {
+                return i;
+            }
+        }
+        return -1;
+    }
+
     @Override
     public int hashCode() {
         return ChannelBuffers.hashCode(this);
@@ -181,6 +181,10 @@ import java.nio.charset.UnsupportedCharsetException;
  * <p>
  * If you are decoding variable length data such as NUL-terminated string, you
  * will find {@link #bytesBefore(byte)} also useful.
+ * <p>
+ * To scan the bytes of a buffer without looking up every index, use
+ * {@link #forEachByte(int, int, ChannelBufferProcessor)} with a
+ * {@link ChannelBufferProcessor}.
  *
  * <h3>Mark and reset</h3>
  *
@@ -1226,6 +1230,75 @@ public interface ChannelBuffer extends Comparable<ChannelBuffer> {
      */
     int  readBytes(GatheringByteChannel out, int length) throws IOException;
 
+    /**
+     * Decodes {@code length} bytes of this buffer starting at the current
+     * {@code readerIndex} into a string, one character per byte as in
+     * <tt>ISO-8859-1</tt>, and increases the {@code readerIndex} by
+     * {@code length}.  This is much faster than {@link #toString(Charset)}
+     * for ASCII text such as protocol headers.
+     *
+     * @throws IndexOutOfBoundsException
+     *         if {@code length} is greater than {@code this.readableBytes}
+     */
+    String readAscii(int length);
+
+    /**
+     * Decodes {@code length} bytes of this buffer starting at the current
+     * {@code readerIndex} as <tt>UTF-8</tt> into a string, and increases
+     * the {@code readerIndex} by {@code length}.  Malformed input is
+     * replaced in the same way as {@link #toString(Charset)} does.
+     *
+     * @throws IndexOutOfBoundsException
+     *         if {@code length} is greater than {@code this.readableBytes}
+     */
+    String readUtf8(int length);
+
+    /**
+     * Returns the number of bytes the
+     * <a href="http://code.google.com/apis/protocolbuffers/docs/encoding.html#varints">Base
+     * 128 Varint</a> at the current {@code readerIndex} occupies.  Unlike
+     * {@link #readVarInt32()} and {@link #readVarInt64()}, this method never
+     * throws an exception, so a decoder can find out whether it has received
+     * a whole varint before reading it.  This method does not modify
+     * {@code readerIndex} or {@code writerIndex} of this buffer.
+     *
+     * @return the length of the varint, which is between {@code 1} and
+     *         {@code 10},
+     *         {@code 0} if the readable bytes end before the varint does, or
+     *         {@code -1} if the varint is longer than {@code 10} bytes and
+     *         thus malformed
+     */
+    int readableVarIntLength();
+
+    /**
+     * Gets a Base 128 Varint at the current {@code readerIndex} and increases
+     * the {@code readerIndex} by its length.  The bits beyond the 32 low-order
+     * bits of a longer varint are discarded.
+     *
+     * @throws IndexOutOfBoundsException
+     *         if the readable bytes end before the varint does.  The
+     *         {@code readerIndex} is not modified in this case.
+     * @throws IllegalStateException
+     *         if the varint is longer than {@code 10} bytes
+     *
+     * @see #readableVarIntLength()
+     */
+    int readVarInt32();
+
+    /**
+     * Gets a Base 128 Varint at the current {@code readerIndex} and increases
+     * the {@code readerIndex} by its length.
+     *
+     * @throws IndexOutOfBoundsException
+     *         if the readable bytes end before the varint does.  The
+     *         {@code readerIndex} is not modified in this case.
+     * @throws IllegalStateException
+     *         if the varint is longer than {@code 10} bytes
+     *
+     * @see #readableVarIntLength()
+     */
+    long readVarInt64();
+
     /**
      * Increases the current {@code readerIndex} by the specified
      * {@code length} in this buffer.
@@ -1451,6 +1524,56 @@ public interface ChannelBuffer extends Comparable<ChannelBuffer> {
      */
     void writeZero(int length);
 
+    /**
+     * Encodes the specified character sequence one byte per character at
+     * the current {@code writerIndex} and increases the {@code writerIndex}
+     * by {@code value.length()}.  A character which does not fit into a
+     * byte, i.e. one beyond <tt>U+00FF</tt>, is written as {@code '?'}.
+     * This is much faster than {@link ChannelBuffers#copiedBuffer(CharSequence, Charset)}
+     * for ASCII text such as protocol headers.
+     *
+     * @throws IndexOutOfBoundsException
+     *         if {@code value.length()} is greater than {@code this.writableBytes}
+     */
+    void writeAscii(CharSequence value);
+
+    /**
+     * Encodes the specified character sequence as <tt>UTF-8</tt> at the
+     * current {@code writerIndex} and increases the {@code writerIndex} by
+     * the number of the written bytes.  An unpaired surrogate is written as
+     * {@code '?'}.
+     *
+     * @throws IndexOutOfBoundsException
+     *         if the encoded length is greater than {@code this.writableBytes}
+     */
+    void writeUtf8(CharSequence value);
+
+    /**
+     * Sets the specified 32-bit integer as an unsigned Base 128 Varint of
+     * {@code 1} to {@code 5} bytes at the current {@code writerIndex} and
+     * increases the {@code writerIndex} by its length.  Use
+     * {@link ChannelBuffers#encodeZigZag32(int)} to write a signed integer
+     * whose absolute value is usually small.
+     *
+     * @throws IndexOutOfBoundsException
+     *         if {@code this.writableBytes} is less than
+     *         {@link ChannelBuffers#varInt32Size(int) varInt32Size(value)}
+     */
+    void writeVarInt32(int value);
+
+    /**
+     * Sets the specified 64-bit integer as an unsigned Base 128 Varint of
+     * {@code 1} to {@code 10} bytes at the current {@code writerIndex} and
+     * increases the {@code writerIndex} by its length.  Use
+     * {@link ChannelBuffers#encodeZigZag64(long)} to write a signed integer
+     * whose absolute value is usually small.
+     *
+     * @throws IndexOutOfBoundsException
+     *         if {@code this.writableBytes} is less than
+     *         {@link ChannelBuffers#varInt64Size(long) varInt64Size(value)}
+     */
+    void writeVarInt64(long value);
+
     /**
      * Locates the first occurrence of the specified {@code value} in this
      * buffer.  The search takes place from the specified {@code fromIndex}
@@ -1581,6 +1704,38 @@ public interface ChannelBuffer extends Comparable<ChannelBuffer> {
      */
     int bytesBefore(int index, int length, ChannelBufferIndexFinder indexFinder);
 
+    /**
+     * Iterates over the readable bytes of this buffer with the specified
+     * {@code processor} in ascending order.
+     * <p>
+     * This method does not modify {@code readerIndex} or {@code writerIndex} of
+     * this buffer.
+     *
+     * @return the absolute index of the byte at which the {@code processor}
+     *         returned {@code false}.  {@code -1} if the {@code processor}
+     *         processed all readable bytes.
+     */
+    int forEachByte(ChannelBufferProcessor processor);
+
+    /**
+     * Iterates over the specified area of this buffer with the specified
+     * {@code processor} in ascending order, i.e. from {@code index} to
+     * {@code index + length - 1}.  Unlike a loop over {@link #getByte(int)},
+     * the buffer walks its backing memory without looking up every index.
+     * <p>
+     * This method does not modify {@code readerIndex} or {@code writerIndex} of
+     * this buffer.
+     *
+     * @return the absolute index of the byte at which the {@code processor}
+     *         returned {@code false}.  {@code -1} if the {@code processor}
+     *         processed all bytes of the area.
+     *
+     * @throws IndexOutOfBoundsException
+     *         if {@code index} is less than {@code 0}, or
+     *         if {@code index + length} is greater than {@code this.capacity}
+     */
+    int forEachByte(int index, int length, ChannelBufferProcessor processor);
+
     /**
      * Returns a copy of this buffer's readable bytes.  Modifying the content
      * of the returned buffer or this buffer does not affect each other at all.
@@ -0,0 +1,268 @@
+/*
+ * Copyright 2014 The Netty Project
+ *
+ * The Netty Project licenses this file to you under the Apache License,
+ * version 2.0 (the "License"); you may not use this file except in compliance
+ * with the License. You may obtain a copy of the License at:
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS, WITHOUT
+ * WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied. See the
+ * License for the specific language governing permissions and limitations
+ * under the License.
+ */
+package org.jboss.netty.buffer;
+
+import org.jboss.netty.logging.InternalLogger;
+import org.jboss.netty.logging.InternalLoggerFactory;
+import org.jboss.netty.util.internal.SystemPropertyUtil;
+
+import java.lang.ref.PhantomReference;
+import java.lang.ref.ReferenceQueue;
+import java.util.LinkedList;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+
+/**
+ * Detects {@link ReferenceCountedChannelBuffer}s which are garbage-collected
+ * without being released, and reports them via {@link InternalLogger} at the
+ * {@code ERROR} level.
+ * <p>
+ * A buffer allocated by {@link PooledChannelBufferFactory} returns its memory
+ * to the pool only when it is released.  A single missing
+ * {@link ChannelBuffers#release(ChannelBuffer)} therefore drains the pool
+ * slowly, and the application runs out of memory long after the offending
+ * code was run.  This detector keeps a phantom reference to a tracked buffer,
+ * the stack trace of its allocation and the stack traces of its most recent
+ * {@link ReferenceCountedChannelBuffer#retain() retain()} and
+ * {@link ReferenceCountedChannelBuffer#release() release()} calls, so that a
+ * leak is reported with where it was allocated and where it was last used.
+ *
+ * <h3>Detection levels</h3>
+ * <ul>
+ * <li>{@link Level#DISABLED} - no buffer is tracked.</li>
+ * <li>{@link Level#SAMPLED} - one in every {@code samplingInterval}
+ *     allocations is tracked.  The overhead is negligible, so this is the
+ *     default level, but it takes a while until a rare leak is reported.</li>
+ * <li>{@link Level#PARANOID} - every allocation is tracked.  Use this level
+ *     in tests or to pin down a leak which has been reported already.</li>
+ * </ul>
+ * The level can be changed at runtime with {@link #setLevel(Level)}, or with
+ * the following system properties:
+ * <ul>
+ * <li>{@code org.jboss.netty.leakDetectionLevel} - {@code disabled},
+ *     {@code sampled} or {@code paranoid} (default: {@code sampled})</li>
+ * <li>{@code org.jboss.netty.leakDetection.samplingInterval} - the number of
+ *     allocations per tracked allocation in sampled mode (default: 4096)</li>
+ * <li>{@code org.jboss.netty.leakDetection.maxRecords} - the number of most
+ *     recent access points recorded per tracked buffer (default: 4)</li>
+ * </ul>
+ */
+public final class ChannelBufferLeakDetector {
+
+    /**
+     * The level of leak detection.
+     */
+    public enum Level {
+        /**
+         * Disables leak detection.
+         */
+        DISABLED,
+        /**
+         * Tracks a small sample of the allocated buffers.
+         */
+        SAMPLED,
+        /**
+         * Tracks every allocated buffer.
+         */
+        PARANOID
+    }
+
+    private static final InternalLogger logger =
+        InternalLoggerFactory.getInstance(ChannelBufferLeakDetector.class);
+
+    private static final String PROP_LEVEL = "org.jboss.netty.leakDetectionLevel";
+    private static final int SAMPLING_INTERVAL = Math.max(1,
+            SystemPropertyUtil.getInt("org.jboss.netty.leakDetection.samplingInterval", 4096));
+    private static final int MAX_RECORDS = Math.max(0,
+            SystemPropertyUtil.getInt("org.jboss.netty.leakDetection.maxRecords", 4));
+
+    private static volatile Level level;
+
+    static {
+        Level defaultLevel = Level.SAMPLED;
+        String value = SystemPropertyUtil.get(PROP_LEVEL);
+        if (value != null) {
+            try {
+                defaultLevel = Level.valueOf(value.trim().toUpperCase());
+            } catch (IllegalArgumentException e) {
+                logger.warn("Unknown " + PROP_LEVEL + ": " + value + " (using " +
+                            defaultLevel.name().toLowerCase() + ')');
+            }
+        }
+        level = defaultLevel;
+
+        if (logger.isDebugEnabled()) {
+            logger.debug("-D" + PROP_LEVEL + ": " + level.name().toLowerCase());
+        }
+    }
+
+    private static final ReferenceQueue<Object> refQueue = new ReferenceQueue<Object>();
+    private static final ConcurrentMap<Leak, Boolean> activeLeaks = new ConcurrentHashMap<Leak, Boolean>();
+    private static final ConcurrentMap<String, Boolean> reportedLeaks = new ConcurrentHashMap<String, Boolean>();
+
+    // Updated without synchronization; a lost update only skews the sampling.
+    private static int allocationCount;
+
+    /**
+     * Returns the current level of leak detection.
+     */
+    public static Level getLevel() {
+        return level;
+    }
+
+    /**
+     * Sets the level of leak detection.  The new level applies to the
+     * buffers allocated afterwards.
+     */
+    public static void setLevel(Level level) {
+        if (level == null) {
+            throw new NullPointerException("level");
+        }
+        ChannelBufferLeakDetector.level = level;
+    }
+
+    /**
+     * Returns {@code true} if and only if leak detection is enabled.
+     */
+    public static boolean isEnabled() {
+        return level != Level.DISABLED;
+    }
+
+    /**
+     * Starts tracking the specified newly allocated buffer if it is sampled.
+     *
+     * @return the {@link Leak} which must be {@linkplain Leak#close() closed}
+     *         when the buffer is released, or {@code null} if the buffer is
+     *         not tracked
+     */
+    static Leak open(ChannelBuffer buffer) {
+        Level level = ChannelBufferLeakDetector.level;
+        if (level == Level.DISABLED) {
+            return null;
+        }
+        if (level == Level.SAMPLED && allocationCount ++ % SAMPLING_INTERVAL != 0) {
+            return null;
+        }
+
+        reportLeaks();
+        return new Leak(buffer);
+    }
+
+    private static void reportLeaks() {
+        for (;;) {
+            Leak leak = (Leak) refQueue.poll();
+            if (leak == null) {
+                break;
+            }
+
+            leak.clear();
+            if (activeLeaks.remove(leak) == null || !logger.isErrorEnabled()) {
+                continue;
+            }
+
+            String records = leak.toString();
+            if (reportedLeaks.putIfAbsent(records, Boolean.TRUE) != null) {
+                continue;
+            }
+
+            logger.error(
+                    "LEAK: " + leak.description + " was garbage-collected without being released, " +
+                    "so its memory has not been returned to the pool.  " +
+                    (level == Level.PARANOID ? "" :
+                        "Set -D" + PROP_LEVEL + "=paranoid to track every allocation.  ") +
+                    "Recent access records:" + records);
+        }
+    }
+
+    /**
+     * Tracks a single buffer until it is released.
+     */
+    static final class Leak extends PhantomReference<Object> {
+
+        private final String description;
+        private final Record creation;
+        private final LinkedList<Record> records = new LinkedList<Record>();
+
+        Leak(ChannelBuffer buffer) {
+            super(buffer, refQueue);
+            description = buffer.getClass().getSimpleName() + "(capacity: " + buffer.capacity() + ')';
+            creation = new Record("Created at:");
+            activeLeaks.put(this, Boolean.TRUE);
+        }
+
+        /**
+         * Records the current stack trace as an access point of the tracked
+         * buffer, discarding the oldest record if there are too many.
+         */
+        void record() {
+            if (MAX_RECORDS == 0) {
+                return;
+            }
+
+            Record record = new Record("Accessed at:");
+            synchronized (records) {
+                if (records.size() >= MAX_RECORDS) {
+                    records.removeFirst();
+                }
+                records.add(record);
+            }
+        }
+
+        /**
+         * Stops tracking the buffer because it has been released.
+         */
+        void close() {
+            if (activeLeaks.remove(this) != null) {
+                clear();
+            }
+        }
+
+        @Override
+        public String toString() {
+            StringBuilder buf = new StringBuilder(4096);
+            synchronized (records) {
+                for (int i = records.size() - 1; i >= 0; i --) {
+                    records.get(i).appendTo(buf);
+                }
+            }
+            creation.appendTo(buf);
+            return buf.toString();
+        }
+    }
+
+    private static final class Record extends Throwable {
+
+        private static final long serialVersionUID = -6011745342254209556L;
+
+        Record(String message) {
+            super(message);
+        }
+
+        void appendTo(StringBuilder buf) {
+            buf.append("\n    ").append(getMessage());
+            for (StackTraceElement e: getStackTrace()) {
+                if (e.getClassName().startsWith(ChannelBufferLeakDetector.class.getName())) {
+                    continue;
+                }
+                buf.append("\n        ").append(e);
+            }
+        }
+    }
+
+    private ChannelBufferLeakDetector() {
+        // Unused
+    }
+}
@@ -0,0 +1,112 @@
+/*
+ * Copyright 2014 The Netty Project
+ *
+ * The Netty Project licenses this file to you under the Apache License,
+ * version 2.0 (the "License"); you may not use this file except in compliance
+ * with the License. You may obtain a copy of the License at:
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS, WITHOUT
+ * WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied. See the
+ * License for the specific language governing permissions and limitations
+ * under the License.
+ */
+package org.jboss.netty.buffer;
+
+/**
+ * Processes the bytes of a {@link ChannelBuffer} one by one.
+ * <p>
+ * Unlike {@link ChannelBufferIndexFinder}, which is given the buffer and an
+ * index and thus has to look up every byte by itself, a processor is handed
+ * the bytes by {@link ChannelBuffer#forEachByte(int, int, ChannelBufferProcessor)},
+ * which lets the buffer walk its backing memory (or its components, in case of
+ * a {@link CompositeChannelBuffer}) without looking up each index.
+ *
+ * @apiviz.uses org.jboss.netty.buffer.ChannelBuffer
+ */
+public interface ChannelBufferProcessor {
+
+    /**
+     * Processes the next byte.
+     *
+     * @return {@code true} if the processor wants to continue the loop and
+     *         handle the next byte.  {@code false} if the processor wants to
+     *         stop the loop at the current byte.
+     */
+    boolean process(byte value);
+
+    /**
+     * Aborts on a {@code NUL (0x00)}.
+     */
+    ChannelBufferProcessor FIND_NUL = new ChannelBufferProcessor() {
+        public boolean process(byte value) {
+            return value != 0;
+        }
+    };
+
+    /**
+     * Aborts on a non-{@code NUL (0x00)}.
+     */
+    ChannelBufferProcessor FIND_NON_NUL = new ChannelBufferProcessor() {
+        public boolean process(byte value) {
+            return value == 0;
+        }
+    };
+
+    /**
+     * Aborts on a {@code CR ('\r')}.
+     */
+    ChannelBufferProcessor FIND_CR = new ChannelBufferProcessor() {
+        public boolean process(byte value) {
+            return value != '\r';
+        }
+    };
+
+    /**
+     * Aborts on a {@code LF ('\n')}.
+     */
+    ChannelBufferProcessor FIND_LF = new ChannelBufferProcessor() {
+        public boolean process(byte value) {
+            return value != '\n';
+        }
+    };
+
+    /**
+     * Aborts on a {@code CR ('\r')} or a {@code LF ('\n')}.
+     */
+    ChannelBufferProcessor FIND_CRLF = new ChannelBufferProcessor() {
+        public boolean process(byte value) {
+            return value != '\r' && value != '\n';
+        }
+    };
+
+    /**
+     * Aborts on a byte which is neither a {@code CR ('\r')} nor a {@code LF ('\n')}.
+     */
+    ChannelBufferProcessor FIND_NON_CRLF = new ChannelBufferProcessor() {
+        public boolean process(byte value) {
+            return value == '\r' || value == '\n';
+        }
+    };
+
+    /**
+     * Aborts on a linear whitespace (a {@code ' '} or a {@code '\t'}).
+     */
+    ChannelBufferProcessor FIND_LINEAR_WHITESPACE = new ChannelBufferProcessor() {
+        public boolean process(byte value) {
+            return value != ' ' && value != '\t';
+        }
+    };
+
+    /**
+     * Aborts on a byte which is not a linear whitespace (neither {@code ' '}
+     * nor {@code '\t'}).
+     */
+    ChannelBufferProcessor FIND_NON_LINEAR_WHITESPACE = new ChannelBufferProcessor() {
+        public boolean process(byte value) {
+            return value == ' ' || value == '\t';
+        }
+    };
+}
@@ -17,16 +17,24 @@ package org.jboss.netty.buffer;
 
 import org.jboss.netty.util.CharsetUtil;
 
+import java.io.File;
+import java.io.IOException;
+import java.io.RandomAccessFile;
 import java.nio.ByteBuffer;
 import java.nio.ByteOrder;
 import java.nio.CharBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.channels.FileChannel.MapMode;
 import java.nio.charset.CharacterCodingException;
 import java.nio.charset.Charset;
 import java.nio.charset.CharsetDecoder;
 import java.nio.charset.CharsetEncoder;
 import java.nio.charset.CoderResult;
 import java.util.ArrayList;
+import java.util.Collection;
+import java.util.IdentityHashMap;
 import java.util.List;
+import java.util.Map;
 
 
 /**
@@ -48,7 +56,7 @@ import java.util.List;
  *
  * <h3>Allocating a new buffer</h3>
  *
- * Three buffer types are provided out of the box.
+ * Four buffer types are provided out of the box.
  *
  * <ul>
  * <li>{@link #buffer(int)} allocates a new fixed-capacity heap buffer.</li>
@@ -56,6 +64,9 @@ import java.util.List;
  * <li>{@link #dynamicBuffer(int)} allocates a new dynamic-capacity heap
  *     buffer, whose capacity increases automatically as needed by a write
  *     operation.</li>
+ * <li>{@link #chunkedDynamicBuffer(int)} allocates a new dynamic-capacity
+ *     buffer which grows by appending chunks rather than by copying, which
+ *     suits large messages built by an encoder.</li>
  * </ul>
  *
  * <h3>Creating a wrapped buffer</h3>
@@ -68,6 +79,15 @@ import java.util.List;
  * you want to create a buffer which is composed of more than one array to
  * reduce the number of memory copy.
  *
+ * <h3>Creating a memory-mapped buffer</h3>
+ *
+ * {@link #wrappedMappedFile(File)} and its variants create a read-only buffer
+ * which maps the content of a file into memory.  Unlike reading the file into
+ * a heap buffer, nothing is copied until the buffer is accessed, and writing
+ * the buffer to an NIO channel hands the mapped region straight to the
+ * socket.  Use {@link MappedFile} to map a file larger than 2 GiB or to obtain
+ * many buffers from the same file without mapping it again.
+ *
  * <h3>Creating a copied buffer</h3>
  *
  * Copied buffer is a deep copy of one or more existing byte arrays, byte
@@ -232,6 +252,45 @@ public final class ChannelBuffers {
         return new DynamicChannelBuffer(endianness, estimatedLength, factory);
     }
 
+    /**
+     * Creates a new big-endian dynamic buffer which grows by appending
+     * {@link ChunkedDynamicChannelBuffer#DEFAULT_CHUNK_SIZE}-byte heap chunks
+     * instead of copying its content.  The first chunk is
+     * {@code estimatedLength} bytes long.  The new buffer's
+     * {@code readerIndex} and {@code writerIndex} are {@code 0}.
+     */
+    public static ChunkedDynamicChannelBuffer chunkedDynamicBuffer(int estimatedLength) {
+        return new ChunkedDynamicChannelBuffer(estimatedLength);
+    }
+
+    /**
+     * Creates a new dynamic buffer which grows by appending
+     * {@link ChunkedDynamicChannelBuffer#DEFAULT_CHUNK_SIZE}-byte chunks
+     * allocated by the specified factory instead of copying its content.
+     * The first chunk is {@code estimatedLength} bytes long.  The new
+     * buffer's {@code readerIndex} and {@code writerIndex} are {@code 0}.
+     */
+    public static ChunkedDynamicChannelBuffer chunkedDynamicBuffer(
+            int estimatedLength, ChannelBufferFactory factory) {
+        return chunkedDynamicBuffer(estimatedLength, ChunkedDynamicChannelBuffer.DEFAULT_CHUNK_SIZE, factory);
+    }
+
+    /**
+     * Creates a new dynamic buffer which grows by appending
+     * {@code chunkSize}-byte chunks allocated by the specified factory instead
+     * of copying its content.  The first chunk is {@code estimatedLength}
+     * bytes long.  The new buffer's {@code readerIndex} and
+     * {@code writerIndex} are {@code 0}.
+     */
+    public static ChunkedDynamicChannelBuffer chunkedDynamicBuffer(
+            int estimatedLength, int chunkSize, ChannelBufferFactory factory) {
+        if (factory == null) {
+            throw new NullPointerException("factory");
+        }
+
+        return new ChunkedDynamicChannelBuffer(factory.getDefaultOrder(), estimatedLength, chunkSize, factory);
+    }
+
     /**
      * Creates a new big-endian buffer which wraps the specified {@code array}.
      * A modification on the specified array's content will be visible to the
@@ -505,6 +564,72 @@ public final class ChannelBuffers {
         return EMPTY_BUFFER;
     }
 
+    /**
+     * Creates a new read-only buffer which maps the whole content of the
+     * specified file into memory.  The file is closed before this method
+     * returns; the mapping remains valid until the buffer is
+     * garbage-collected.
+     *
+     * @throws IllegalArgumentException
+     *         if the file is larger than {@link Integer#MAX_VALUE} bytes.
+     *         Use {@link #wrappedMappedFile(File, long, int)} or
+     *         {@link MappedFile} instead.
+     */
+    public static ChannelBuffer wrappedMappedFile(File file) throws IOException {
+        RandomAccessFile raf = new RandomAccessFile(file, "r");
+        try {
+            long length = raf.length();
+            if (length > Integer.MAX_VALUE) {
+                throw new IllegalArgumentException(
+                        "file too large to be mapped into a single buffer: " + file +
+                        " (" + length + " bytes)");
+            }
+            return wrappedMappedFile(raf.getChannel(), 0, (int) length);
+        } finally {
+            raf.close();
+        }
+    }
+
+    /**
+     * Creates a new read-only buffer which maps the {@code length} bytes of
+     * the specified file starting at {@code position} into memory.  The file
+     * is closed before this method returns; the mapping remains valid until
+     * the buffer is garbage-collected.
+     */
+    public static ChannelBuffer wrappedMappedFile(File file, long position, int length) throws IOException {
+        RandomAccessFile raf = new RandomAccessFile(file, "r");
+        try {
+            return wrappedMappedFile(raf.getChannel(), position, length);
+        } finally {
+            raf.close();
+        }
+    }
+
+    /**
+     * Creates a new read-only buffer which maps the {@code length} bytes of
+     * the specified file channel starting at {@code position} into memory.
+     * The mapping remains valid after the channel is closed.
+     *
+     * @throws IndexOutOfBoundsException
+     *         if the specified range is not within the file
+     */
+    public static ChannelBuffer wrappedMappedFile(
+            FileChannel channel, long position, int length) throws IOException {
+        if (channel == null) {
+            throw new NullPointerException("channel");
+        }
+        long size = channel.size();
+        if (position < 0 || length < 0 || position > size - length) {
+            throw new IndexOutOfBoundsException(
+                    "Invalid range - position: " + position + ", length: " + length +
+                    " (expected: range(0, " + size + "))");
+        }
+        if (length == 0) {
+            return EMPTY_BUFFER;
+        }
+        return new ByteBufferBackedChannelBuffer(channel.map(MapMode.READ_ONLY, position, length));
+    }
+
     /**
      * Creates a new big-endian buffer whose content is a copy of the
      * specified {@code array}.  The new buffer's {@code readerIndex} and
@@ -738,6 +863,19 @@ public final class ChannelBuffers {
             return copiedBuffer(endianness, (CharBuffer) string, charset);
         }
 
+        if (CharsetUtil.UTF_8.equals(charset)) {
+            byte[] array = new byte[utf8Length(string)];
+            encodeUtf8(string, array, 0);
+            return wrappedBuffer(endianness, array);
+        }
+        if (CharsetUtil.ISO_8859_1.equals(charset) || CharsetUtil.US_ASCII.equals(charset)) {
+            byte[] array = new byte[string.length()];
+            if (encodeSingleByte(string, array, 0, CharsetUtil.US_ASCII.equals(charset) ? '\u007f' : '\u00ff')) {
+                return wrappedBuffer(endianness, array);
+            }
+            // A surrogate pair is replaced with a single '?' by the encoder.
+        }
+
         return copiedBuffer(endianness, CharBuffer.wrap(string), charset);
     }
 
@@ -1070,6 +1208,23 @@ public final class ChannelBuffers {
     public static int indexOf(
             ChannelBuffer buffer, int fromIndex, int toIndex, ChannelBufferIndexFinder indexFinder) {
         if (fromIndex <= toIndex) {
+            // The built-in finders which look for one or two byte values
+            // are served by the word-wise search.
+            if (indexFinder == ChannelBufferIndexFinder.LF) {
+                return buffer.indexOf(fromIndex, toIndex, (byte) '\n');
+            }
+            if (indexFinder == ChannelBufferIndexFinder.CR) {
+                return buffer.indexOf(fromIndex, toIndex, (byte) '\r');
+            }
+            if (indexFinder == ChannelBufferIndexFinder.NUL) {
+                return buffer.indexOf(fromIndex, toIndex, (byte) 0);
+            }
+            if (indexFinder == ChannelBufferIndexFinder.CRLF) {
+                return firstIndexOf(buffer, fromIndex, toIndex, (byte) '\r', (byte) '\n', indexFinder);
+            }
+            if (indexFinder == ChannelBufferIndexFinder.LINEAR_WHITESPACE) {
+                return firstIndexOf(buffer, fromIndex, toIndex, (byte) ' ', (byte) '\t', indexFinder);
+            }
             return firstIndexOf(buffer, fromIndex, toIndex, indexFinder);
         } else {
             return lastIndexOf(buffer, fromIndex, toIndex, indexFinder);
@@ -1106,12 +1261,122 @@ public final class ChannelBuffers {
                       swapInt((int) (value >>> 32)) & 0xffffffffL;
     }
 
+    /**
+     * Releases the {@link ReferenceCountedChannelBuffer}s which back the
+     * specified buffer.  Derived, wrapped, dynamic and composite buffers are
+     * unwrapped so that the buffers they were created from are released.
+     * A buffer which backs more than one component of a composite buffer,
+     * such as two slices of the same buffer, is released only once, because
+     * derived buffers share the reference count of their origin.
+     * This method does nothing for a buffer which is not reference-counted,
+     * and thus is safe to call for any buffer whose last consumer is the caller.
+     *
+     * @return {@code true} if and only if at least one reference-counted
+     *         buffer has been released and its memory has been returned
+     */
+    public static boolean release(ChannelBuffer buffer) {
+        buffer = unwrapDerived(buffer);
+        if (buffer instanceof ReferenceCountedChannelBuffer) {
+            return ((ReferenceCountedChannelBuffer) buffer).release();
+        }
+        if (!isComposed(buffer)) {
+            return false;
+        }
+
+        boolean released = false;
+        for (ReferenceCountedChannelBuffer b: referenceCountedBuffers(buffer)) {
+            released |= b.release();
+        }
+        return released;
+    }
+
+    /**
+     * Retains the {@link ReferenceCountedChannelBuffer}s which back the
+     * specified buffer, so that the buffer survives one more call of
+     * {@link #release(ChannelBuffer)}.  Use this method before handing the
+     * same buffer, or buffers derived from it, to more than one consumer
+     * which releases what it consumes, such as {@link org.jboss.netty.channel.Channel#write(Object)}.
+     * Like {@link #release(ChannelBuffer)}, this method retains each backing
+     * buffer only once and does nothing for a buffer which is not
+     * reference-counted.
+     *
+     * @return the specified buffer
+     */
+    public static ChannelBuffer retain(ChannelBuffer buffer) {
+        ChannelBuffer unwrapped = unwrapDerived(buffer);
+        if (unwrapped instanceof ReferenceCountedChannelBuffer) {
+            ((ReferenceCountedChannelBuffer) unwrapped).retain();
+        } else if (isComposed(unwrapped)) {
+            for (ReferenceCountedChannelBuffer b: referenceCountedBuffers(unwrapped)) {
+                b.retain();
+            }
+        }
+        return buffer;
+    }
+
+    /**
+     * Unwraps derived, wrapped and dynamic buffers down to the buffer which
+     * holds their memory.
+     */
+    private static ChannelBuffer unwrapDerived(ChannelBuffer buffer) {
+        for (;;) {
+            if (buffer instanceof ReferenceCountedChannelBuffer) {
+                return buffer;
+            }
+            if (buffer instanceof WrappedChannelBuffer) {
+                buffer = ((WrappedChannelBuffer) buffer).unwrap();
+            } else if (buffer instanceof DynamicChannelBuffer) {
+                buffer = ((DynamicChannelBuffer) buffer).internalBuffer();
+            } else {
+                return buffer;
+            }
+        }
+    }
+
+    private static boolean isComposed(ChannelBuffer buffer) {
+        return buffer instanceof CompositeChannelBuffer || buffer instanceof ChunkedDynamicChannelBuffer;
+    }
+
+    /**
+     * Returns the distinct reference-counted buffers which back the
+     * components of the specified composite or chunked buffer.
+     */
+    private static Collection<ReferenceCountedChannelBuffer> referenceCountedBuffers(ChannelBuffer buffer) {
+        Map<ReferenceCountedChannelBuffer, Boolean> buffers =
+                new IdentityHashMap<ReferenceCountedChannelBuffer, Boolean>();
+        addReferenceCountedBuffers(buffer, buffers);
+        return buffers.keySet();
+    }
+
+    private static void addReferenceCountedBuffers(
+            ChannelBuffer buffer, Map<ReferenceCountedChannelBuffer, Boolean> buffers) {
+        buffer = unwrapDerived(buffer);
+        if (buffer instanceof ReferenceCountedChannelBuffer) {
+            buffers.put((ReferenceCountedChannelBuffer) buffer, Boolean.TRUE);
+        } else if (buffer instanceof ChunkedDynamicChannelBuffer) {
+            ChunkedDynamicChannelBuffer chunked = (ChunkedDynamicChannelBuffer) buffer;
+            for (int i = 0; i < chunked.numChunks(); i ++) {
+                addReferenceCountedBuffers(chunked.chunk(i), buffers);
+            }
+        } else if (buffer instanceof CompositeChannelBuffer) {
+            CompositeChannelBuffer composite = (CompositeChannelBuffer) buffer;
+            for (int i = 0; i < composite.numComponents(); i ++) {
+                addReferenceCountedBuffers(composite.component(i), buffers);
+            }
+        }
+    }
+
     private static int firstIndexOf(ChannelBuffer buffer, int fromIndex, int toIndex, byte value) {
         fromIndex = Math.max(fromIndex, 0);
         if (fromIndex >= toIndex || buffer.capacity() == 0) {
             return -1;
         }
 
+        if (toIndex <= buffer.capacity() &&
+                SwarByteSearch.isSupported(buffer, toIndex - fromIndex)) {
+            return SwarByteSearch.firstIndexOf(buffer, fromIndex, toIndex, value, value);
+        }
+
         for (int i = fromIndex; i < toIndex; i ++) {
             if (buffer.getByte(i) == value) {
                 return i;
@@ -1121,6 +1386,17 @@ public final class ChannelBuffers {
         return -1;
     }
 
+    private static int firstIndexOf(
+            ChannelBuffer buffer, int fromIndex, int toIndex, byte a, byte b,
+            ChannelBufferIndexFinder indexFinder) {
+        int start = Math.max(fromIndex, 0);
+        if (start < toIndex && toIndex <= buffer.capacity() &&
+                SwarByteSearch.isSupported(buffer, toIndex - start)) {
+            return SwarByteSearch.firstIndexOf(buffer, start, toIndex, a, b);
+        }
+        return firstIndexOf(buffer, fromIndex, toIndex, indexFinder);
+    }
+
     private static int lastIndexOf(ChannelBuffer buffer, int fromIndex, int toIndex, byte value) {
         fromIndex = Math.min(fromIndex, buffer.capacity());
         if (fromIndex < 0 || buffer.capacity() == 0) {
@@ -1207,6 +1483,334 @@ public final class ChannelBuffers {
         return dst.flip().toString();
     }
 
+    /**
+     * Decodes the specified region of the specified buffer one character
+     * per byte.  If {@code ascii} is {@code true}, a byte beyond
+     * <tt>0x7F</tt> is decoded into <tt>U+FFFD</tt> as the <tt>US-ASCII</tt>
+     * decoder does; otherwise the bytes are decoded as <tt>ISO-8859-1</tt>.
+     */
+    @SuppressWarnings("deprecation")
+    static String decodeSingleByte(ChannelBuffer buffer, int index, int length, boolean ascii) {
+        checkRange(buffer, index, length);
+        if (length == 0) {
+            return "";
+        }
+
+        byte[] src;
+        int srcIndex;
+        if (buffer.hasArray()) {
+            src = buffer.array();
+            srcIndex = buffer.arrayOffset() + index;
+        } else {
+            src = new byte[length];
+            srcIndex = 0;
+            buffer.getBytes(index, src);
+        }
+
+        if (!ascii || isAscii(src, srcIndex, length)) {
+            // Decodes every byte into the character of the same value, i.e. ISO-8859-1.
+            return new String(src, 0, srcIndex, length);
+        }
+
+        char[] dst = new char[length];
+        for (int i = 0; i < length; i ++) {
+            byte b = src[srcIndex + i];
+            dst[i] = b >= 0 ? (char) b : '\ufffd';
+        }
+        return new String(dst);
+    }
+
+    private static boolean isAscii(byte[] src, int srcIndex, int length) {
+        final int end = srcIndex + length;
+        for (int i = srcIndex; i < end; i ++) {
+            if (src[i] < 0) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    /**
+     * Decodes the specified region of the specified buffer as <tt>UTF-8</tt>.
+     * Well-formed input is decoded without a {@link CharsetDecoder}.
+     */
+    static String decodeUtf8(ChannelBuffer buffer, int index, int length) {
+        checkRange(buffer, index, length);
+        if (length == 0) {
+            return "";
+        }
+
+        byte[] src;
+        int srcIndex;
+        if (buffer.hasArray()) {
+            src = buffer.array();
+            srcIndex = buffer.arrayOffset() + index;
+        } else {
+            src = new byte[length];
+            srcIndex = 0;
+            buffer.getBytes(index, src);
+        }
+
+        String value = decodeUtf8(src, srcIndex, length);
+        if (value == null) {
+            // Malformed - let the decoder replace the malformed sequences.
+            value = decodeString(ByteBuffer.wrap(src, srcIndex, length), CharsetUtil.UTF_8);
+        }
+        return value;
+    }
+
+    /**
+     * Returns the decoded string, or {@code null} if the input is malformed.
+     */
+    @SuppressWarnings("deprecation")
+    private static String decodeUtf8(byte[] src, int srcIndex, int length) {
+        final int end = srcIndex + length;
+        int i = srcIndex;
+        while (i < end && src[i] >= 0) {
+            i ++;
+        }
+        if (i == end) {
+            // Fast path for ASCII
+            return new String(src, 0, srcIndex, length);
+        }
+
+        final char[] dst = new char[length];
+        int j = 0;
+        for (int k = srcIndex; k < i; k ++) {
+            dst[j ++] = (char) src[k];
+        }
+
+        while (i < end) {
+            int b1 = src[i ++];
+            if (b1 >= 0) {
+                dst[j ++] = (char) b1;
+            } else if ((b1 & 0xe0) == 0xc0) {
+                if (i >= end) {
+                    return null;
+                }
+                int b2 = src[i ++];
+                if ((b2 & 0xc0) != 0x80 || (b1 & 0x1e) == 0) {
+                    return null;
+                }
+                dst[j ++] = (char) ((b1 & 0x1f) << 6 | b2 & 0x3f);
+            } else if ((b1 & 0xf0) == 0xe0) {
+                if (i + 1 >= end) {
+                    return null;
+                }
+                int b2 = src[i ++];
+                int b3 = src[i ++];
+                if ((b2 & 0xc0) != 0x80 || (b3 & 0xc0) != 0x80) {
+                    return null;
+                }
+                char c = (char) ((b1 & 0x0f) << 12 | (b2 & 0x3f) << 6 | b3 & 0x3f);
+                if (c < '\u0800' || c >= '\ud800' && c <= '\udfff') {
+                    return null;
+                }
+                dst[j ++] = c;
+            } else if ((b1 & 0xf8) == 0xf0) {
+                if (i + 2 >= end) {
+                    return null;
+                }
+                int b2 = src[i ++];
+                int b3 = src[i ++];
+                int b4 = src[i ++];
+                if ((b2 & 0xc0) != 0x80 || (b3 & 0xc0) != 0x80 || (b4 & 0xc0) != 0x80) {
+                    return null;
+                }
+                int codePoint = (b1 & 0x07) << 18 | (b2 & 0x3f) << 12 | (b3 & 0x3f) << 6 | b4 & 0x3f;
+                if (codePoint < 0x10000 || codePoint > 0x10ffff) {
+                    return null;
+                }
+                dst[j ++] = (char) ((codePoint >>> 10) + (Character.MIN_HIGH_SURROGATE - (0x10000 >>> 10)));
+                dst[j ++] = (char) ((codePoint & 0x3ff) + Character.MIN_LOW_SURROGATE);
+            } else {
+                return null;
+            }
+        }
+        return new String(dst, 0, j);
+    }
+
+    /**
+     * Encodes the specified character sequence into the specified buffer at
+     * {@code index}, one byte per character.  A character beyond
+     * {@code maxChar} is encoded into {@code '?'}.
+     */
+    static void encodeSingleByte(ChannelBuffer buffer, int index, CharSequence src, char maxChar) {
+        int length = src.length();
+        checkRange(buffer, index, length);
+        if (buffer.hasArray()) {
+            encodeSingleByte(src, buffer.array(), buffer.arrayOffset() + index, maxChar);
+        } else {
+            byte[] dst = new byte[length];
+            encodeSingleByte(src, dst, 0, maxChar);
+            buffer.setBytes(index, dst);
+        }
+    }
+
+    /**
+     * Returns {@code false} if the specified character sequence contains a
+     * surrogate, which a {@link CharsetEncoder} would encode differently.
+     */
+    private static boolean encodeSingleByte(CharSequence src, byte[] dst, int dstIndex, char maxChar) {
+        final int length = src.length();
+        boolean surrogateFree = true;
+        for (int i = 0; i < length; i ++) {
+            char c = src.charAt(i);
+            if (c <= maxChar) {
+                dst[dstIndex + i] = (byte) c;
+            } else {
+                dst[dstIndex + i] = (byte) '?';
+                if (c >= '\ud800' && c <= '\udfff') {
+                    surrogateFree = false;
+                }
+            }
+        }
+        return surrogateFree;
+    }
+
+    /**
+     * Encodes the specified character sequence into the specified buffer at
+     * {@code index} as <tt>UTF-8</tt>.  {@code utf8Length} must be the
+     * value returned by {@link #utf8Length(CharSequence)}.
+     */
+    static void encodeUtf8(ChannelBuffer buffer, int index, CharSequence src, int utf8Length) {
+        checkRange(buffer, index, utf8Length);
+        if (buffer.hasArray()) {
+            encodeUtf8(src, buffer.array(), buffer.arrayOffset() + index);
+        } else {
+            byte[] dst = new byte[utf8Length];
+            encodeUtf8(src, dst, 0);
+            buffer.setBytes(index, dst);
+        }
+    }
+
+    private static void encodeUtf8(CharSequence src, byte[] dst, int dstIndex) {
+        final int length = src.length();
+        int j = dstIndex;
+        for (int i = 0; i < length; i ++) {
+            char c = src.charAt(i);
+            if (c < '\u0080') {
+                dst[j ++] = (byte) c;
+            } else if (c < '\u0800') {
+                dst[j ++] = (byte) (0xc0 | c >> 6);
+                dst[j ++] = (byte) (0x80 | c & 0x3f);
+            } else if (c < '\ud800' || c > '\udfff') {
+                dst[j ++] = (byte) (0xe0 | c >> 12);
+                dst[j ++] = (byte) (0x80 | c >> 6 & 0x3f);
+                dst[j ++] = (byte) (0x80 | c & 0x3f);
+            } else if (Character.isHighSurrogate(c) && i + 1 < length &&
+                       Character.isLowSurrogate(src.charAt(i + 1))) {
+                int codePoint = Character.toCodePoint(c, src.charAt(++ i));
+                dst[j ++] = (byte) (0xf0 | codePoint >> 18);
+                dst[j ++] = (byte) (0x80 | codePoint >> 12 & 0x3f);
+                dst[j ++] = (byte) (0x80 | codePoint >> 6 & 0x3f);
+                dst[j ++] = (byte) (0x80 | codePoint & 0x3f);
+            } else {
+                // Unpaired surrogate
+                dst[j ++] = (byte) '?';
+            }
+        }
+    }
+
+    /**
+     * Returns the number of bytes {@link ChannelBuffer#writeVarInt32(int)}
+     * encodes the specified value into.
+     */
+    public static int varInt32Size(int value) {
+        if ((value & 0xffffff80) == 0) {
+            return 1;
+        }
+        if ((value & 0xffffc000) == 0) {
+            return 2;
+        }
+        if ((value & 0xffe00000) == 0) {
+            return 3;
+        }
+        if ((value & 0xf0000000) == 0) {
+            return 4;
+        }
+        return 5;
+    }
+
+    /**
+     * Returns the number of bytes {@link ChannelBuffer#writeVarInt64(long)}
+     * encodes the specified value into.
+     */
+    public static int varInt64Size(long value) {
+        int size = 1;
+        while ((value & ~0x7fL) != 0) {
+            value >>>= 7;
+            size ++;
+        }
+        return size;
+    }
+
+    /**
+     * Encodes the specified signed 32-bit integer with ZigZag encoding, so
+     * that a value whose absolute value is small is written as a short
+     * varint even if it is negative.
+     */
+    public static int encodeZigZag32(int value) {
+        return value << 1 ^ value >> 31;
+    }
+
+    /**
+     * Decodes a 32-bit integer encoded with {@link #encodeZigZag32(int)}.
+     */
+    public static int decodeZigZag32(int value) {
+        return value >>> 1 ^ -(value & 1);
+    }
+
+    /**
+     * Encodes the specified signed 64-bit integer with ZigZag encoding, so
+     * that a value whose absolute value is small is written as a short
+     * varint even if it is negative.
+     */
+    public static long encodeZigZag64(long value) {
+        return value << 1 ^ value >> 63;
+    }
+
+    /**
+     * Decodes a 64-bit integer encoded with {@link #encodeZigZag64(long)}.
+     */
+    public static long decodeZigZag64(long value) {
+        return value >>> 1 ^ -(value & 1);
+    }
+
+    /**
+     * Returns the number of bytes {@link ChannelBuffer#writeUtf8(CharSequence)}
+     * encodes the specified character sequence into.
+     */
+    public static int utf8Length(CharSequence src) {
+        final int length = src.length();
+        int utf8Length = length;
+        for (int i = 0; i < length; i ++) {
+            char c = src.charAt(i);
+            if (c < '\u0080') {
+                continue;
+            }
+            if (c < '\u0800') {
+                utf8Length ++;
+            } else if (c < '\ud800' || c > '\udfff') {
+                utf8Length += 2;
+            } else if (Character.isHighSurrogate(c) && i + 1 < length &&
+                       Character.isLowSurrogate(src.charAt(i + 1))) {
+                // Two characters encoded into four bytes
+                utf8Length += 2;
+                i ++;
+            }
+        }
+        return utf8Length;
+    }
+
+    private static void checkRange(ChannelBuffer buffer, int index, int length) {
+        if (index < 0 || length < 0 || index > buffer.capacity() - length) {
+            throw new IndexOutOfBoundsException(
+                    "Invalid index: " + index + ", length: " + length +
+                    " (capacity: " + buffer.capacity() + ')');
+        }
+    }
+
     private ChannelBuffers() {
         // Unused
     }
@@ -0,0 +1,718 @@
+/*
+ * Copyright 2014 The Netty Project
+ *
+ * The Netty Project licenses this file to you under the Apache License,
+ * version 2.0 (the "License"); you may not use this file except in compliance
+ * with the License. You may obtain a copy of the License at:
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS, WITHOUT
+ * WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied. See the
+ * License for the specific language governing permissions and limitations
+ * under the License.
+ */
+package org.jboss.netty.buffer;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.nio.channels.GatheringByteChannel;
+import java.nio.channels.ScatteringByteChannel;
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * A dynamic capacity buffer which grows by appending fixed-size chunks
+ * instead of copying its content into a larger buffer.
+ * <p>
+ * {@link DynamicChannelBuffer} doubles its capacity and copies everything
+ * written so far whenever it runs out of space, so building a large message
+ * copies it {@code log(n)} times.  This buffer allocates a first chunk of the
+ * estimated length and then chunks of {@code chunkSize} bytes from its
+ * {@link ChannelBufferFactory}, which can be a
+ * {@link PooledChannelBufferFactory}, so no byte is copied as it grows.
+ * Locating a chunk is a constant-time operation.
+ * <p>
+ * Once the content has been written, {@link #complete()} hands the readable
+ * bytes over as a gathering {@link CompositeChannelBuffer} of the chunks,
+ * which the NIO transport writes with a single gathering write.  It is
+ * recommended to use {@link ChannelBuffers#chunkedDynamicBuffer(int, int, ChannelBufferFactory)}
+ * instead of calling the constructor explicitly.
+ */
+public class ChunkedDynamicChannelBuffer extends AbstractChannelBuffer {
+
+    /**
+     * The default size of the chunks appended when the buffer grows.
+     */
+    public static final int DEFAULT_CHUNK_SIZE = 8192;
+
+    private final ChannelBufferFactory factory;
+    private final ByteOrder endianness;
+    private final int firstChunkSize;
+    private final int chunkShift;
+    private final int chunkMask;
+    private ChannelBuffer[] chunks = new ChannelBuffer[4];
+    private int numChunks;
+    private int capacity;
+
+    public ChunkedDynamicChannelBuffer(int estimatedLength) {
+        this(ByteOrder.BIG_ENDIAN, estimatedLength, DEFAULT_CHUNK_SIZE);
+    }
+
+    public ChunkedDynamicChannelBuffer(ByteOrder endianness, int estimatedLength, int chunkSize) {
+        this(endianness, estimatedLength, chunkSize, HeapChannelBufferFactory.getInstance(endianness));
+    }
+
+    /**
+     * Creates a new buffer.
+     *
+     * @param estimatedLength the capacity of the first chunk.  If {@code 0},
+     *                        the first chunk is {@code chunkSize} bytes long.
+     * @param chunkSize       the capacity of the subsequent chunks, rounded
+     *                        up to the next power of two
+     */
+    public ChunkedDynamicChannelBuffer(
+            ByteOrder endianness, int estimatedLength, int chunkSize, ChannelBufferFactory factory) {
+        if (estimatedLength < 0) {
+            throw new IllegalArgumentException("estimatedLength: " + estimatedLength);
+        }
+        if (chunkSize <= 0 || chunkSize > 1 << 30) {
+            throw new IllegalArgumentException("chunkSize: " + chunkSize + " (expected: 1-1073741824)");
+        }
+        if (endianness == null) {
+            throw new NullPointerException("endianness");
+        }
+        if (factory == null) {
+            throw new NullPointerException("factory");
+        }
+
+        int normChunkSize = Integer.highestOneBit(chunkSize);
+        if (normChunkSize != chunkSize) {
+            normChunkSize <<= 1;
+        }
+
+        this.factory = factory;
+        this.endianness = endianness;
+        firstChunkSize = estimatedLength != 0 ? estimatedLength : normChunkSize;
+        chunkShift = Integer.numberOfTrailingZeros(normChunkSize);
+        chunkMask = normChunkSize - 1;
+        if (estimatedLength != 0) {
+            addChunk();
+        }
+    }
+
+    @Override
+    public void ensureWritableBytes(int minWritableBytes) {
+        if (minWritableBytes <= writableBytes()) {
+            return;
+        }
+
+        long minNewCapacity = (long) writerIndex() + minWritableBytes;
+        if (minNewCapacity > Integer.MAX_VALUE) {
+            throw new IllegalStateException("Maximum size of 2gb exceeded");
+        }
+        while (capacity < minNewCapacity) {
+            addChunk();
+        }
+    }
+
+    private void addChunk() {
+        int chunkSize = numChunks == 0 ? firstChunkSize : chunkMask + 1;
+        if (capacity > Integer.MAX_VALUE - chunkSize) {
+            throw new IllegalStateException("Maximum size of 2gb exceeded");
+        }
+        if (numChunks == chunks.length) {
+            ChannelBuffer[] newChunks = new ChannelBuffer[numChunks << 1];
+            System.arraycopy(chunks, 0, newChunks, 0, numChunks);
+            chunks = newChunks;
+        }
+        chunks[numChunks ++] = factory.getBuffer(endianness, chunkSize);
+        capacity += chunkSize;
+    }
+
+    /**
+     * Returns the readable bytes of this buffer as a buffer which shares the
+     * chunks of this buffer, and resets this buffer to an empty buffer.  The
+     * returned buffer is a gathering {@link CompositeChannelBuffer} if the
+     * readable bytes span more than one chunk.  The chunks which hold no
+     * readable byte are {@linkplain ChannelBuffers#release(ChannelBuffer) released}.
+     */
+    public ChannelBuffer complete() {
+        int index = readerIndex();
+        int length = readableBytes();
+        List<ChannelBuffer> components = new ArrayList<ChannelBuffer>(numChunks);
+        for (int i = 0; i < numChunks; i ++) {
+            ChannelBuffer c = chunks[i];
+            int adjustment = chunkStart(i);
+            int end = adjustment + chunkSize(i);
+            if (length > 0 && index < end) {
+                int localLength = Math.min(length, end - index);
+                components.add(c.slice(index - adjustment, localLength));
+                index += localLength;
+                length -= localLength;
+            } else {
+                ChannelBuffers.release(c);
+            }
+            chunks[i] = null;
+        }
+
+        numChunks = 0;
+        capacity = 0;
+        setIndex(0, 0);
+        markReaderIndex();
+        markWriterIndex();
+
+        switch (components.size()) {
+        case 0:
+            return ChannelBuffers.EMPTY_BUFFER;
+        case 1:
+            return components.get(0);
+        default:
+            return new CompositeChannelBuffer(order(), components, true);
+        }
+    }
+
+    /**
+     * Returns the number of chunks this buffer currently consists of.
+     */
+    public int numChunks() {
+        return numChunks;
+    }
+
+    ChannelBuffer chunk(int chunkId) {
+        return chunks[chunkId];
+    }
+
+    private int chunkId(int index) {
+        if (index < firstChunkSize) {
+            return 0;
+        }
+        return (index - firstChunkSize >>> chunkShift) + 1;
+    }
+
+    private int chunkStart(int chunkId) {
+        if (chunkId == 0) {
+            return 0;
+        }
+        return firstChunkSize + (chunkId - 1 << chunkShift);
+    }
+
+    private int chunkSize(int chunkId) {
+        return chunkId == 0 ? firstChunkSize : chunkMask + 1;
+    }
+
+    private void checkIndex(int index, int length) {
+        if (index < 0 || length < 0 || index > capacity - length) {
+            throw new IndexOutOfBoundsException(
+                    "Invalid index: " + index + ", length: " + length + " (capacity: " + capacity + ')');
+        }
+    }
+
+    public ChannelBufferFactory factory() {
+        return factory;
+    }
+
+    public ByteOrder order() {
+        return endianness;
+    }
+
+    public boolean isDirect() {
+        return numChunks != 0 && chunks[0].isDirect();
+    }
+
+    public int capacity() {
+        return capacity;
+    }
+
+    public boolean hasArray() {
+        return numChunks == 1 && chunks[0].hasArray();
+    }
+
+    public byte[] array() {
+        if (numChunks != 1) {
+            throw new UnsupportedOperationException();
+        }
+        return chunks[0].array();
+    }
+
+    public int arrayOffset() {
+        if (numChunks != 1) {
+            throw new UnsupportedOperationException();
+        }
+        return chunks[0].arrayOffset();
+    }
+
+    public byte getByte(int index) {
+        checkIndex(index, 1);
+        int chunkId = chunkId(index);
+        return chunks[chunkId].getByte(index - chunkStart(chunkId));
+    }
+
+    public short getShort(int index) {
+        checkIndex(index, 2);
+        int chunkId = chunkId(index);
+        int adjustment = chunkStart(chunkId);
+        if (index + 2 <= adjustment + chunkSize(chunkId)) {
+            return chunks[chunkId].getShort(index - adjustment);
+        } else if (order() == ByteOrder.BIG_ENDIAN) {
+            return (short) ((getByte(index) & 0xff) << 8 | getByte(index + 1) & 0xff);
+        } else {
+            return (short) (getByte(index) & 0xff | (getByte(index + 1) & 0xff) << 8);
+        }
+    }
+
+    public int getUnsignedMedium(int index) {
+        checkIndex(index, 3);
+        int chunkId = chunkId(index);
+        int adjustment = chunkStart(chunkId);
+        if (index + 3 <= adjustment + chunkSize(chunkId)) {
+            return chunks[chunkId].getUnsignedMedium(index - adjustment);
+        } else if (order() == ByteOrder.BIG_ENDIAN) {
+            return (getShort(index) & 0xffff) << 8 | getByte(index + 2) & 0xff;
+        } else {
+            return getShort(index) & 0xFFFF | (getByte(index + 2) & 0xFF) << 16;
+        }
+    }
+
+    public int getInt(int index) {
+        checkIndex(index, 4);
+        int chunkId = chunkId(index);
+        int adjustment = chunkStart(chunkId);
+        if (index + 4 <= adjustment + chunkSize(chunkId)) {
+            return chunks[chunkId].getInt(index - adjustment);
+        } else if (order() == ByteOrder.BIG_ENDIAN) {
+            return (getShort(index) & 0xffff) << 16 | getShort(index + 2) & 0xffff;
+        } else {
+            return getShort(index) & 0xFFFF | (getShort(index + 2) & 0xFFFF) << 16;
+        }
+    }
+
+    public long getLong(int index) {
+        checkIndex(index, 8);
+        int chunkId = chunkId(index);
+        int adjustment = chunkStart(chunkId);
+        if (index + 8 <= adjustment + chunkSize(chunkId)) {
+            return chunks[chunkId].getLong(index - adjustment);
+        } else if (order() == ByteOrder.BIG_ENDIAN) {
+            return (getInt(index) & 0xffffffffL) << 32 | getInt(index + 4) & 0xffffffffL;
+        } else {
+            return getInt(index) & 0xFFFFFFFFL | (getInt(index + 4) & 0xFFFFFFFFL) << 32;
+        }
+    }
+
+    public void getBytes(int index, byte[] dst, int dstIndex, int length) {
+        checkIndex(index, length);
+        if (dstIndex < 0 || dstIndex > dst.length - length) {
+            throw new IndexOutOfBoundsException(
+                    "Invalid dstIndex: " + dstIndex + ", length: " + length + " (expected: range(0, " +
+                    dst.length + "))");
+        }
+
+        int i = chunkId(index);
+        while (length > 0) {
+            int adjustment = chunkStart(i);
+            int localLength = Math.min(length, adjustment + chunkSize(i) - index);
+            chunks[i].getBytes(index - adjustment, dst, dstIndex, localLength);
+            index += localLength;
+            dstIndex += localLength;
+            length -= localLength;
+            i ++;
+        }
+    }
+
+    public void getBytes(int index, ByteBuffer dst) {
+        int limit = dst.limit();
+        int length = dst.remaining();
+        checkIndex(index, length);
+
+        int i = chunkId(index);
+        try {
+            while (length > 0) {
+                int adjustment = chunkStart(i);
+                int localLength = Math.min(length, adjustment + chunkSize(i) - index);
+                dst.limit(dst.position() + localLength);
+                chunks[i].getBytes(index - adjustment, dst);
+                index += localLength;
+                length -= localLength;
+                i ++;
+            }
+        } finally {
+            dst.limit(limit);
+        }
+    }
+
+    public void getBytes(int index, ChannelBuffer dst, int dstIndex, int length) {
+        checkIndex(index, length);
+        if (dstIndex < 0 || dstIndex > dst.capacity() - length) {
+            throw new IndexOutOfBoundsException(
+                    "Invalid dstIndex: " + dstIndex + ", length: " + length + " (expected: range(0, " +
+                    dst.capacity() + "))");
+        }
+
+        int i = chunkId(index);
+        while (length > 0) {
+            int adjustment = chunkStart(i);
+            int localLength = Math.min(length, adjustment + chunkSize(i) - index);
+            chunks[i].getBytes(index - adjustment, dst, dstIndex, localLength);
+            index += localLength;
+            dstIndex += localLength;
+            length -= localLength;
+            i ++;
+        }
+    }
+
+    public int getBytes(int index, GatheringByteChannel out, int length)
+            throws IOException {
+        return (int) out.write(toByteBuffers(index, length));
+    }
+
+    public void getBytes(int index, OutputStream out, int length)
+            throws IOException {
+        checkIndex(index, length);
+
+        int i = chunkId(index);
+        while (length > 0) {
+            int adjustment = chunkStart(i);
+            int localLength = Math.min(length, adjustment + chunkSize(i) - index);
+            chunks[i].getBytes(index - adjustment, out, localLength);
+            index += localLength;
+            length -= localLength;
+            i ++;
+        }
+    }
+
+    public void setByte(int index, int value) {
+        checkIndex(index, 1);
+        int chunkId = chunkId(index);
+        chunks[chunkId].setByte(index - chunkStart(chunkId), value);
+    }
+
+    public void setShort(int index, int value) {
+        checkIndex(index, 2);
+        int chunkId = chunkId(index);
+        int adjustment = chunkStart(chunkId);
+        if (index + 2 <= adjustment + chunkSize(chunkId)) {
+            chunks[chunkId].setShort(index - adjustment, value);
+        } else if (order() == ByteOrder.BIG_ENDIAN) {
+            setByte(index, (byte) (value >>> 8));
+            setByte(index + 1, (byte) value);
+        } else {
+            setByte(index    , (byte) value);
+            setByte(index + 1, (byte) (value >>> 8));
+        }
+    }
+
+    public void setMedium(int index, int value) {
+        checkIndex(index, 3);
+        int chunkId = chunkId(index);
+        int adjustment = chunkStart(chunkId);
+        if (index + 3 <= adjustment + chunkSize(chunkId)) {
+            chunks[chunkId].setMedium(index - adjustment, value);
+        } else if (order() == ByteOrder.BIG_ENDIAN) {
+            setShort(index, (short) (value >> 8));
+            setByte(index + 2, (byte) value);
+        } else {
+            setShort(index    , (short) value);
+            setByte(index + 2, (byte) (value >>> 16));
+        }
+    }
+
+    public void setInt(int index, int value) {
+        checkIndex(index, 4);
+        int chunkId = chunkId(index);
+        int adjustment = chunkStart(chunkId);
+        if (index + 4 <= adjustment + chunkSize(chunkId)) {
+            chunks[chunkId].setInt(index - adjustment, value);
+        } else if (order() == ByteOrder.BIG_ENDIAN) {
+            setShort(index, (short) (value >>> 16));
+            setShort(index + 2, (short) value);
+        } else {
+            setShort(index    , (short) value);
+            setShort(index + 2, (short) (value >>> 16));
+        }
+    }
+
+    public void setLong(int index, long value) {
+        checkIndex(index, 8);
+        int chunkId = chunkId(index);
+        int adjustment = chunkStart(chunkId);
+        if (index + 8 <= adjustment + chunkSize(chunkId)) {
+            chunks[chunkId].setLong(index - adjustment, value);
+        } else if (order() == ByteOrder.BIG_ENDIAN) {
+            setInt(index, (int) (value >>> 32));
+            setInt(index + 4, (int) value);
+        } else {
+            setInt(index    , (int) value);
+            setInt(index + 4, (int) (value >>> 32));
+        }
+    }
+
+    public void setBytes(int index, byte[] src, int srcIndex, int length) {
+        checkIndex(index, length);
+        if (srcIndex < 0 || srcIndex > src.length - length) {
+            throw new IndexOutOfBoundsException(
+                    "Invalid srcIndex: " + srcIndex + ", length: " + length + " (expected: range(0, " +
+                    src.length + "))");
+        }
+
+        int i = chunkId(index);
+        while (length > 0) {
+            int adjustment = chunkStart(i);
+            int localLength = Math.min(length, adjustment + chunkSize(i) - index);
+            chunks[i].setBytes(index - adjustment, src, srcIndex, localLength);
+            index += localLength;
+            srcIndex += localLength;
+            length -= localLength;
+            i ++;
+        }
+    }
+
+    public void setBytes(int index, ByteBuffer src) {
+        int limit = src.limit();
+        int length = src.remaining();
+        checkIndex(index, length);
+
+        int i = chunkId(index);
+        try {
+            while (length > 0) {
+                int adjustment = chunkStart(i);
+                int localLength = Math.min(length, adjustment + chunkSize(i) - index);
+                src.limit(src.position() + localLength);
+                chunks[i].setBytes(index - adjustment, src);
+                index += localLength;
+                length -= localLength;
+                i ++;
+            }
+        } finally {
+            src.limit(limit);
+        }
+    }
+
+    public void setBytes(int index, ChannelBuffer src, int srcIndex, int length) {
+        checkIndex(index, length);
+        if (srcIndex < 0 || srcIndex > src.capacity() - length) {
+            throw new IndexOutOfBoundsException(
+                    "Invalid srcIndex: " + srcIndex + ", length: " + length + " (expected: range(0, " +
+                    src.capacity() + "))");
+        }
+
+        int i = chunkId(index);
+        while (length > 0) {
+            int adjustment = chunkStart(i);
+            int localLength = Math.min(length, adjustment + chunkSize(i) - index);
+            chunks[i].setBytes(index - adjustment, src, srcIndex, localLength);
+            index += localLength;
+            srcIndex += localLength;
+            length -= localLength;
+            i ++;
+        }
+    }
+
+    public int setBytes(int index, InputStream in, int length)
+            throws IOException {
+        checkIndex(index, length);
+
+        int i = chunkId(index);
+        int readBytes = 0;
+        while (length > 0) {
+            int adjustment = chunkStart(i);
+            int localLength = Math.min(length, adjustment + chunkSize(i) - index);
+            int localReadBytes = chunks[i].setBytes(index - adjustment, in, localLength);
+            if (localReadBytes < 0) {
+                return readBytes == 0 ? -1 : readBytes;
+            }
+
+            index += localReadBytes;
+            length -= localReadBytes;
+            readBytes += localReadBytes;
+            if (localReadBytes == localLength) {
+                i ++;
+            }
+        }
+        return readBytes;
+    }
+
+    public int setBytes(int index, ScatteringByteChannel in, int length)
+            throws IOException {
+        checkIndex(index, length);
+
+        int i = chunkId(index);
+        int readBytes = 0;
+        while (length > 0) {
+            int adjustment = chunkStart(i);
+            int localLength = Math.min(length, adjustment + chunkSize(i) - index);
+            int localReadBytes = chunks[i].setBytes(index - adjustment, in, localLength);
+            if (localReadBytes < 0) {
+                return readBytes == 0 ? -1 : readBytes;
+            }
+
+            index += localReadBytes;
+            length -= localReadBytes;
+            readBytes += localReadBytes;
+            if (localReadBytes != localLength) {
+                break;
+            }
+            i ++;
+        }
+        return readBytes;
+    }
+
+    @Override
+    public void writeByte(int value) {
+        ensureWritableBytes(1);
+        super.writeByte(value);
+    }
+
+    @Override
+    public void writeShort(int value) {
+        ensureWritableBytes(2);
+        super.writeShort(value);
+    }
+
+    @Override
+    public void writeMedium(int value) {
+        ensureWritableBytes(3);
+        super.writeMedium(value);
+    }
+
+    @Override
+    public void writeInt(int value) {
+        ensureWritableBytes(4);
+        super.writeInt(value);
+    }
+
+    @Override
+    public void writeLong(long value) {
+        ensureWritableBytes(8);
+        super.writeLong(value);
+    }
+
+    @Override
+    public void writeBytes(byte[] src, int srcIndex, int length) {
+        ensureWritableBytes(length);
+        super.writeBytes(src, srcIndex, length);
+    }
+
+    @Override
+    public void writeBytes(ChannelBuffer src, int srcIndex, int length) {
+        ensureWritableBytes(length);
+        super.writeBytes(src, srcIndex, length);
+    }
+
+    @Override
+    public void writeBytes(ByteBuffer src) {
+        ensureWritableBytes(src.remaining());
+        super.writeBytes(src);
+    }
+
+    @Override
+    public int writeBytes(InputStream in, int length) throws IOException {
+        ensureWritableBytes(length);
+        return super.writeBytes(in, length);
+    }
+
+    @Override
+    public int writeBytes(ScatteringByteChannel in, int length)
+            throws IOException {
+        ensureWritableBytes(length);
+        return super.writeBytes(in, length);
+    }
+
+    @Override
+    public void writeZero(int length) {
+        ensureWritableBytes(length);
+        super.writeZero(length);
+    }
+
+    @Override
+    public int forEachByte(int index, int length, ChannelBufferProcessor processor) {
+        checkIndex(index, length);
+
+        int i = chunkId(index);
+        while (length > 0) {
+            int adjustment = chunkStart(i);
+            int localLength = Math.min(length, adjustment + chunkSize(i) - index);
+            int ret = chunks[i].forEachByte(index - adjustment, localLength, processor);
+            if (ret >= 0) {
+                return ret + adjustment;
+            }
+            index += localLength;
+            length -= localLength;
+            i ++;
+        }
+        return -1;
+    }
+
+    public ChannelBuffer duplicate() {
+        return new DuplicatedChannelBuffer(this);
+    }
+
+    public ChannelBuffer copy(int index, int length) {
+        checkIndex(index, length);
+        ChunkedDynamicChannelBuffer copiedBuffer =
+                new ChunkedDynamicChannelBuffer(order(), Math.max(length, 64), chunkMask + 1, factory());
+        copiedBuffer.writeBytes(this, index, length);
+        return copiedBuffer;
+    }
+
+    public ChannelBuffer slice(int index, int length) {
+        if (index == 0) {
+            if (length == 0) {
+                return ChannelBuffers.EMPTY_BUFFER;
+            }
+            return new TruncatedChannelBuffer(this, length);
+        } else {
+            if (length == 0) {
+                return ChannelBuffers.EMPTY_BUFFER;
+            }
+            return new SlicedChannelBuffer(this, index, length);
+        }
+    }
+
+    public ByteBuffer toByteBuffer(int index, int length) {
+        checkIndex(index, length);
+        if (length != 0) {
+            int chunkId = chunkId(index);
+            int adjustment = chunkStart(chunkId);
+            if (index + length <= adjustment + chunkSize(chunkId)) {
+                return chunks[chunkId].toByteBuffer(index - adjustment, length);
+            }
+        }
+
+        ByteBuffer merged = ByteBuffer.allocate(length).order(order());
+        getBytes(index, merged);
+        merged.flip();
+        return merged;
+    }
+
+    @Override
+    public ByteBuffer[] toByteBuffers(int index, int length) {
+        checkIndex(index, length);
+        if (length == 0) {
+            return new ByteBuffer[0];
+        }
+
+        int first = chunkId(index);
+        int last = chunkId(index + length - 1);
+        ByteBuffer[] buffers = new ByteBuffer[last - first + 1];
+        for (int i = first; i <= last; i ++) {
+            int adjustment = chunkStart(i);
+            int localLength = Math.min(length, adjustment + chunkSize(i) - index);
+            buffers[i - first] = chunks[i].toByteBuffer(index - adjustment, localLength);
+            index += localLength;
+            length -= localLength;
+        }
+        return buffers;
+    }
+
+    @Override
+    public String toString() {
+        String result = super.toString();
+        result = result.substring(0, result.length() - 1);
+        return result + ", chunks=" + numChunks + ')';
+    }
+}
@@ -178,6 +178,13 @@ public class CompositeChannelBuffer extends AbstractChannelBuffer {
         return components.length;
     }
 
+    /**
+     * Returns the buffer of the specified component.
+     */
+    ChannelBuffer component(int componentId) {
+        return components[componentId];
+    }
+
     public byte getByte(int index) {
         int componentId = componentId(index);
         return components[componentId].getByte(index - indices[componentId]);
@@ -640,6 +647,90 @@ public class CompositeChannelBuffer extends AbstractChannelBuffer {
         }
     }
 
+    @Override
+    public int forEachByte(int index, int length, ChannelBufferProcessor processor) {
+        if (processor == null) {
+            throw new NullPointerException("processor");
+        }
+        if (index < 0 || length < 0 || index > capacity() - length) {
+            throw new IndexOutOfBoundsException("Invalid index: " + index
+                    + " - Bytes needed: " + (index + length) + ", maximum is "
+                    + capacity());
+        }
+        if (length == 0) {
+            return -1;
+        }
+
+        int i = componentId(index);
+        while (length > 0) {
+            ChannelBuffer s = components[i];
+            int adjustment = indices[i];
+            int localLength = Math.min(length, s.capacity() - (index - adjustment));
+            int ret = s.forEachByte(index - adjustment, localLength, processor);
+            if (ret >= 0) {
+                return ret + adjustment;
+            }
+            index += localLength;
+            length -= localLength;
+            i ++;
+        }
+        return -1;
+    }
+
+    @Override
+    public int indexOf(int fromIndex, int toIndex, byte value) {
+        // Search component by component rather than looking up every index.
+        if (fromIndex <= toIndex) {
+            fromIndex = Math.max(fromIndex, 0);
+            if (fromIndex >= toIndex || capacity() == 0) {
+                return -1;
+            }
+
+            int i = componentId(fromIndex);
+            while (fromIndex < toIndex && i < components.length) {
+                int adjustment = indices[i];
+                int localToIndex = Math.min(toIndex, indices[i + 1]);
+                if (fromIndex < localToIndex) {
+                    int ret = components[i].indexOf(
+                            fromIndex - adjustment, localToIndex - adjustment, value);
+                    if (ret >= 0) {
+                        return ret + adjustment;
+                    }
+                    fromIndex = localToIndex;
+                }
+                i ++;
+            }
+            if (fromIndex < toIndex) {
+                throw new IndexOutOfBoundsException("Invalid index: " + toIndex
+                        + ", maximum is " + capacity());
+            }
+        } else {
+            fromIndex = Math.min(fromIndex, capacity());
+            if (fromIndex < 0 || capacity() == 0 || fromIndex <= toIndex) {
+                return -1;
+            }
+
+            int i = componentId(fromIndex - 1);
+            while (fromIndex > toIndex && i >= 0) {
+                int adjustment = indices[i];
+                int localToIndex = Math.max(toIndex, adjustment);
+                if (fromIndex > localToIndex) {
+                    int ret = components[i].indexOf(
+                            fromIndex - adjustment, localToIndex - adjustment, value);
+                    if (ret >= 0) {
+                        return ret + adjustment;
+                    }
+                    fromIndex = localToIndex;
+                }
+                i --;
+            }
+            if (fromIndex > toIndex) {
+                throw new IndexOutOfBoundsException("Invalid index: " + toIndex);
+            }
+        }
+        return -1;
+    }
+
     public ByteBuffer toByteBuffer(int index, int length) {
         if (components.length == 1) {
             return components[0].toByteBuffer(index, length);
@@ -684,26 +775,33 @@ public class CompositeChannelBuffer extends AbstractChannelBuffer {
     }
 
     private int componentId(int index) {
+        final int[] indices = this.indices;
         int lastComponentId = lastAccessedComponentId;
         if (index >= indices[lastComponentId]) {
             if (index < indices[lastComponentId + 1]) {
                 return lastComponentId;
             }
-
-            // Search right
-            for (int i = lastComponentId + 1; i < components.length; i ++) {
-                if (index < indices[i + 1]) {
-                    lastAccessedComponentId = i;
-                    return i;
-                }
+            // Sequential access usually moves on to the next component.
+            int nextComponentId = lastComponentId + 1;
+            if (nextComponentId < components.length && index < indices[nextComponentId + 1]) {
+                lastAccessedComponentId = nextComponentId;
+                return nextComponentId;
             }
-        } else {
-            // Search left
-            for (int i = lastComponentId - 1; i >= 0; i --) {
-                if (index >= indices[i]) {
-                    lastAccessedComponentId = i;
-                    return i;
-                }
+        }
+
+        // Binary search for the component whose range contains the index.
+        // Empty components are skipped because their range is empty.
+        int low = 0;
+        int high = components.length - 1;
+        while (low <= high) {
+            int mid = low + high >>> 1;
+            if (index < indices[mid]) {
+                high = mid - 1;
+            } else if (index >= indices[mid + 1]) {
+                low = mid + 1;
+            } else {
+                lastAccessedComponentId = mid;
+                return mid;
             }
         }
 
@@ -19,6 +19,8 @@ import java.lang.ref.ReferenceQueue;
 import java.nio.ByteBuffer;
 import java.nio.ByteOrder;
 
+import org.jboss.netty.util.internal.SystemPropertyUtil;
+
 /**
  * A {@link ChannelBufferFactory} which pre-allocates a large chunk of direct
  * buffer and returns its slice on demand.  Direct buffers are reclaimed via
@@ -29,9 +31,18 @@ import java.nio.ByteOrder;
  * is much lower than the GC throughput of heap buffers.  This factory avoids
  * this problem by allocating a large chunk of pre-allocated direct buffer and
  * reducing the number of the garbage collected internal direct buffer objects.
+ * <p>
+ * If {@code preferUnsafe} is specified in the constructor, or the system
+ * property {@code org.jboss.netty.preferUnsafeDirectBuffer} is {@code true},
+ * this factory returns {@link UnsafeDirectChannelBuffer}s, which access the
+ * memory via {@code sun.misc.Unsafe}, if available in the current runtime
+ * environment, and {@link ByteBufferBackedChannelBuffer}s otherwise.
  */
 public class DirectChannelBufferFactory extends AbstractChannelBufferFactory {
 
+    private static final boolean DEFAULT_PREFER_UNSAFE =
+        SystemPropertyUtil.getBoolean("org.jboss.netty.preferUnsafeDirectBuffer", false);
+
     private static final DirectChannelBufferFactory INSTANCE_BE =
         new DirectChannelBufferFactory(ByteOrder.BIG_ENDIAN);
 
@@ -57,6 +68,7 @@ public class DirectChannelBufferFactory extends AbstractChannelBufferFactory {
     private final Object bigEndianLock = new Object();
     private final Object littleEndianLock = new Object();
     private final int preallocatedBufCapacity;
+    private final boolean preferUnsafe;
     private ChannelBuffer preallocatedBEBuf;
     private int preallocatedBEBufPos;
     private ChannelBuffer preallocatedLEBuf;
@@ -93,6 +105,18 @@ public class DirectChannelBufferFactory extends AbstractChannelBufferFactory {
      * @param defaultOrder the default {@link ByteOrder} of this factory
      */
     public DirectChannelBufferFactory(ByteOrder defaultOrder, int preallocatedBufferCapacity) {
+        this(defaultOrder, preallocatedBufferCapacity, DEFAULT_PREFER_UNSAFE);
+    }
+
+    /**
+     * Creates a new factory with the specified default {@link ByteOrder}.
+     *
+     * @param defaultOrder the default {@link ByteOrder} of this factory
+     * @param preferUnsafe {@code true} to create {@link UnsafeDirectChannelBuffer}s
+     *                     if they are supported in the current runtime environment
+     */
+    public DirectChannelBufferFactory(
+            ByteOrder defaultOrder, int preallocatedBufferCapacity, boolean preferUnsafe) {
         super(defaultOrder);
         if (preallocatedBufferCapacity <= 0) {
             throw new IllegalArgumentException(
@@ -100,6 +124,7 @@ public class DirectChannelBufferFactory extends AbstractChannelBufferFactory {
         }
 
         preallocatedBufCapacity = preallocatedBufferCapacity;
+        this.preferUnsafe = preferUnsafe && UnsafeDirectChannelBuffer.isSupported();
     }
 
     public ChannelBuffer getBuffer(ByteOrder order, int capacity) {
@@ -113,7 +138,7 @@ public class DirectChannelBufferFactory extends AbstractChannelBufferFactory {
             return ChannelBuffers.EMPTY_BUFFER;
         }
         if (capacity >= preallocatedBufCapacity) {
-            return ChannelBuffers.directBuffer(order, capacity);
+            return newDirectBuffer(order, capacity);
         }
 
         ChannelBuffer slice;
@@ -157,18 +182,28 @@ public class DirectChannelBufferFactory extends AbstractChannelBufferFactory {
         return buf;
     }
 
+    private ChannelBuffer newDirectBuffer(ByteOrder order, int capacity) {
+        if (preferUnsafe) {
+            ChannelBuffer buffer = new UnsafeDirectChannelBuffer(
+                    ByteBuffer.allocateDirect(capacity).order(order));
+            buffer.clear();
+            return buffer;
+        }
+        return ChannelBuffers.directBuffer(order, capacity);
+    }
+
     private ChannelBuffer allocateBigEndianBuffer(int capacity) {
         ChannelBuffer slice;
         synchronized (bigEndianLock) {
             if (preallocatedBEBuf == null) {
-                preallocatedBEBuf = ChannelBuffers.directBuffer(ByteOrder.BIG_ENDIAN, preallocatedBufCapacity);
+                preallocatedBEBuf = newDirectBuffer(ByteOrder.BIG_ENDIAN, preallocatedBufCapacity);
                 slice = preallocatedBEBuf.slice(0, capacity);
                 preallocatedBEBufPos = capacity;
             } else if (preallocatedBEBuf.capacity() - preallocatedBEBufPos >= capacity) {
                 slice = preallocatedBEBuf.slice(preallocatedBEBufPos, capacity);
                 preallocatedBEBufPos += capacity;
             } else {
-                preallocatedBEBuf = ChannelBuffers.directBuffer(ByteOrder.BIG_ENDIAN, preallocatedBufCapacity);
+                preallocatedBEBuf = newDirectBuffer(ByteOrder.BIG_ENDIAN, preallocatedBufCapacity);
                 slice = preallocatedBEBuf.slice(0, capacity);
                 preallocatedBEBufPos = capacity;
             }
@@ -180,14 +215,14 @@ public class DirectChannelBufferFactory extends AbstractChannelBufferFactory {
         ChannelBuffer slice;
         synchronized (littleEndianLock) {
             if (preallocatedLEBuf == null) {
-                preallocatedLEBuf = ChannelBuffers.directBuffer(ByteOrder.LITTLE_ENDIAN, preallocatedBufCapacity);
+                preallocatedLEBuf = newDirectBuffer(ByteOrder.LITTLE_ENDIAN, preallocatedBufCapacity);
                 slice = preallocatedLEBuf.slice(0, capacity);
                 preallocatedLEBufPos = capacity;
             } else if (preallocatedLEBuf.capacity() - preallocatedLEBufPos >= capacity) {
                 slice = preallocatedLEBuf.slice(preallocatedLEBufPos, capacity);
                 preallocatedLEBufPos += capacity;
             } else {
-                preallocatedLEBuf = ChannelBuffers.directBuffer(ByteOrder.LITTLE_ENDIAN, preallocatedBufCapacity);
+                preallocatedLEBuf = newDirectBuffer(ByteOrder.LITTLE_ENDIAN, preallocatedBufCapacity);
                 slice = preallocatedLEBuf.slice(0, capacity);
                 preallocatedLEBufPos = capacity;
             }
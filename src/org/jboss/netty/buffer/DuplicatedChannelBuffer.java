@@ -82,6 +82,11 @@ public class DuplicatedChannelBuffer extends AbstractChannelBuffer implements Wr
         return buffer.getByte(index);
     }
 
+    @Override
+    public int forEachByte(int index, int length, ChannelBufferProcessor processor) {
+        return buffer.forEachByte(index, length, processor);
+    }
+
     public short getShort(int index) {
         return buffer.getShort(index);
     }
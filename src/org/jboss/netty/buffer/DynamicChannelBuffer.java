@@ -85,9 +85,17 @@ public class DynamicChannelBuffer extends AbstractChannelBuffer {
 
         ChannelBuffer newBuffer = factory().getBuffer(order(), newCapacity);
         newBuffer.writeBytes(buffer, 0, writerIndex());
+        ChannelBuffers.release(buffer);
         buffer = newBuffer;
     }
 
+    /**
+     * Returns the buffer which currently holds the content of this buffer.
+     */
+    ChannelBuffer internalBuffer() {
+        return buffer;
+    }
+
     public ChannelBufferFactory factory() {
         return factory;
     }
@@ -120,6 +128,11 @@ public class DynamicChannelBuffer extends AbstractChannelBuffer {
         return buffer.getByte(index);
     }
 
+    @Override
+    public int forEachByte(int index, int length, ChannelBufferProcessor processor) {
+        return buffer.forEachByte(index, length, processor);
+    }
+
     public short getShort(int index) {
         return buffer.getShort(index);
     }
@@ -90,6 +90,24 @@ public abstract class HeapChannelBuffer extends AbstractChannelBuffer {
         return array[index];
     }
 
+    @Override
+    public int forEachByte(int index, int length, ChannelBufferProcessor processor) {
+        if (processor == null) {
+            throw new NullPointerException("processor");
+        }
+        if (index < 0 || length < 0 || index + length > array.length) {
+            throw new IndexOutOfBoundsException();
+        }
+        byte[] array = this.array;
+        int endIndex = index + length;
+        for (int i = index; i < endIndex; i ++) {
+            if (!processor.process(array[i])) {
+                return i;
+            }
+        }
+        return -1;
+    }
+
     public void getBytes(int index, ChannelBuffer dst, int dstIndex, int length) {
         if (dst instanceof HeapChannelBuffer) {
             getBytes(index, ((HeapChannelBuffer) dst).array, dstIndex, length);
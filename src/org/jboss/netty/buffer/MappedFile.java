@@ -0,0 +1,203 @@
+/*
+ * Copyright 2014 The Netty Project
+ *
+ * The Netty Project licenses this file to you under the Apache License,
+ * version 2.0 (the "License"); you may not use this file except in compliance
+ * with the License. You may obtain a copy of the License at:
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS, WITHOUT
+ * WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied. See the
+ * License for the specific language governing permissions and limitations
+ * under the License.
+ */
+package org.jboss.netty.buffer;
+
+import java.io.File;
+import java.io.IOException;
+import java.io.RandomAccessFile;
+import java.nio.ByteBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.channels.FileChannel.MapMode;
+
+/**
+ * A read-only, memory-mapped view of a file which can be larger than what a
+ * single {@link ChannelBuffer} or {@link MappedByteBuffer} is able to address.
+ * <p>
+ * The file is mapped lazily in fixed-size regions, and each region is mapped
+ * only once no matter how many buffers are obtained from it.
+ * {@link #slice(long, int)} returns a read-only buffer for an arbitrary range
+ * of the file; a range which crosses a region boundary is returned as a
+ * gathering composite buffer, so that writing it to an NIO channel hands the
+ * mapped regions straight to the socket without copying them into the heap.
+ *
+ * <pre>
+ * {@link MappedFile} index = new {@link MappedFile}(new {@link File}("index.dat"));
+ * long offset = ...;
+ * int length = ...;
+ * channel.write(index.slice(offset, length));
+ * </pre>
+ *
+ * A mapped region stays valid until it is garbage-collected, even after this
+ * file has been {@linkplain #close() closed}.  The content of the returned
+ * buffers is undefined if the underlying file is modified or truncated while
+ * it is mapped.
+ *
+ * @see ChannelBuffers#wrappedMappedFile(File)
+ */
+public class MappedFile {
+
+    /**
+     * The default size of a mapped region (1 GiB).
+     */
+    public static final int DEFAULT_REGION_SIZE = 1 << 30;
+
+    private final FileChannel channel;
+    private final boolean closeChannel;
+    private final long length;
+    private final int regionSize;
+    private final MappedByteBuffer[] regions;
+
+    /**
+     * Creates a new instance which maps the specified file in regions of
+     * {@link #DEFAULT_REGION_SIZE} bytes.
+     */
+    public MappedFile(File file) throws IOException {
+        this(file, DEFAULT_REGION_SIZE);
+    }
+
+    /**
+     * Creates a new instance which maps the specified file in regions of
+     * {@code regionSize} bytes.
+     */
+    public MappedFile(File file, int regionSize) throws IOException {
+        this(new RandomAccessFile(file, "r").getChannel(), regionSize, true);
+    }
+
+    /**
+     * Creates a new instance which maps the content of the specified channel
+     * in regions of {@code regionSize} bytes.  The specified channel is not
+     * closed by {@link #close()}.
+     */
+    public MappedFile(FileChannel channel, int regionSize) throws IOException {
+        this(channel, regionSize, false);
+    }
+
+    private MappedFile(FileChannel channel, int regionSize, boolean closeChannel) throws IOException {
+        if (channel == null) {
+            throw new NullPointerException("channel");
+        }
+        if (regionSize <= 0) {
+            if (closeChannel) {
+                channel.close();
+            }
+            throw new IllegalArgumentException(
+                    "regionSize must be a positive integer: " + regionSize);
+        }
+
+        this.channel = channel;
+        this.closeChannel = closeChannel;
+        this.regionSize = regionSize;
+        try {
+            length = channel.size();
+        } catch (IOException e) {
+            if (closeChannel) {
+                channel.close();
+            }
+            throw e;
+        }
+
+        long regionCount = (length + regionSize - 1) / regionSize;
+        if (regionCount > Integer.MAX_VALUE) {
+            if (closeChannel) {
+                channel.close();
+            }
+            throw new IllegalArgumentException(
+                    "regionSize too small for a file of " + length + " bytes: " + regionSize);
+        }
+        regions = new MappedByteBuffer[(int) regionCount];
+    }
+
+    /**
+     * Returns the length of the mapped file in bytes.
+     */
+    public long length() {
+        return length;
+    }
+
+    /**
+     * Returns the size of a mapped region in bytes.
+     */
+    public int regionSize() {
+        return regionSize;
+    }
+
+    /**
+     * Returns a read-only buffer whose content is the {@code length} bytes
+     * of this file starting at {@code position}.  The {@code readerIndex} and
+     * {@code writerIndex} of the returned buffer are {@code 0} and
+     * {@code length} respectively.
+     *
+     * @throws IndexOutOfBoundsException
+     *         if the specified range is not within the file
+     */
+    public ChannelBuffer slice(long position, int length) throws IOException {
+        if (position < 0 || length < 0 || position > this.length - length) {
+            throw new IndexOutOfBoundsException(
+                    "Invalid range - position: " + position + ", length: " + length +
+                    " (expected: range(0, " + this.length + "))");
+        }
+        if (length == 0) {
+            return ChannelBuffers.EMPTY_BUFFER;
+        }
+
+        int first = (int) (position / regionSize);
+        int last = (int) ((position + length - 1) / regionSize);
+        if (first == last) {
+            return ChannelBuffers.wrappedBuffer(
+                    slice(first, (int) (position - (long) first * regionSize), length));
+        }
+
+        ByteBuffer[] slices = new ByteBuffer[last - first + 1];
+        int offset = (int) (position - (long) first * regionSize);
+        int remaining = length;
+        for (int i = first; i <= last; i ++) {
+            int localLength = Math.min(remaining, regionSize - offset);
+            slices[i - first] = slice(i, offset, localLength);
+            remaining -= localLength;
+            offset = 0;
+        }
+        return ChannelBuffers.wrappedBuffer(true, slices);
+    }
+
+    private ByteBuffer slice(int regionIndex, int offset, int length) throws IOException {
+        ByteBuffer slice = region(regionIndex).duplicate();
+        slice.limit(offset + length).position(offset);
+        return slice;
+    }
+
+    private synchronized MappedByteBuffer region(int index) throws IOException {
+        MappedByteBuffer region = regions[index];
+        if (region == null) {
+            long position = (long) index * regionSize;
+            region = channel.map(
+                    MapMode.READ_ONLY, position, Math.min(regionSize, length - position));
+            regions[index] = region;
+        }
+        return region;
+    }
+
+    /**
+     * Closes the underlying file if it was opened by this instance.  The
+     * buffers which were obtained from this file remain readable, but no new
+     * region can be mapped once it is closed.
+     */
+    public void close() throws IOException {
+        if (closeChannel) {
+            channel.close();
+        }
+    }
+}
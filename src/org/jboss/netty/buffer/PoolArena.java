@@ -0,0 +1,266 @@
+/*
+ * Copyright 2014 The Netty Project
+ *
+ * The Netty Project licenses this file to you under the Apache License,
+ * version 2.0 (the "License"); you may not use this file except in compliance
+ * with the License. You may obtain a copy of the License at:
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS, WITHOUT
+ * WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied. See the
+ * License for the specific language governing permissions and limitations
+ * under the License.
+ */
+package org.jboss.netty.buffer;
+
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * An independent region of pooled memory which serves the allocation requests
+ * of the threads bound to it.  Requests are normalized into size classes:
+ * <ul>
+ * <li><strong>tiny</strong> - less than 512 bytes, rounded up to a multiple
+ *     of 16 and served from {@link PoolSubpage}s,</li>
+ * <li><strong>small</strong> - from 512 bytes up to a page, rounded up to a
+ *     power of two and served from {@link PoolSubpage}s,</li>
+ * <li><strong>normal</strong> - from a page up to a chunk, rounded up to a
+ *     power of two and served as a run of pages of a {@link PoolChunk},</li>
+ * <li><strong>huge</strong> - larger than a chunk, allocated without pooling.</li>
+ * </ul>
+ */
+abstract class PoolArena {
+
+    static final int NUM_TINY_SUBPAGE_POOLS = 512 >>> 4;
+
+    final PooledChannelBufferFactory parent;
+
+    final int pageSize;
+    final int pageShifts;
+    final int maxOrder;
+    final int chunkSize;
+    private final int subpageOverflowMask;
+
+    private final PoolSubpage[] tinySubpagePools;
+    private final PoolSubpage[] smallSubpagePools;
+    private final List<PoolChunk> chunks = new ArrayList<PoolChunk>();
+
+    final AtomicInteger numThreadCaches = new AtomicInteger();
+
+    protected PoolArena(PooledChannelBufferFactory parent, int pageSize, int maxOrder, int pageShifts, int chunkSize) {
+        this.parent = parent;
+        this.pageSize = pageSize;
+        this.maxOrder = maxOrder;
+        this.pageShifts = pageShifts;
+        this.chunkSize = chunkSize;
+        subpageOverflowMask = ~(pageSize - 1);
+
+        tinySubpagePools = new PoolSubpage[NUM_TINY_SUBPAGE_POOLS];
+        for (int i = 0; i < tinySubpagePools.length; i ++) {
+            tinySubpagePools[i] = new PoolSubpage(pageSize);
+        }
+
+        smallSubpagePools = new PoolSubpage[pageShifts - 9];
+        for (int i = 0; i < smallSubpagePools.length; i ++) {
+            smallSubpagePools[i] = new PoolSubpage(pageSize);
+        }
+    }
+
+    /**
+     * Allocates a new buffer of the specified capacity, trying the specified
+     * thread-local cache first.
+     */
+    PooledChannelBuffer allocate(PoolThreadCache cache, ByteOrder order, int reqCapacity) {
+        final int normCapacity = normalizeCapacity(reqCapacity);
+        if (normCapacity > chunkSize) {
+            PoolChunk chunk = newUnpooledChunk(reqCapacity);
+            return new PooledChannelBuffer(parent, chunk, 0, 0, reqCapacity, reqCapacity, order);
+        }
+
+        PooledChannelBuffer buf = cache.allocate(order, reqCapacity, normCapacity);
+        if (buf != null) {
+            return buf;
+        }
+
+        PoolChunk chunk = null;
+        long handle = -1;
+        int offset = 0;
+        synchronized (this) {
+            if ((normCapacity & subpageOverflowMask) == 0) {
+                // Tiny or small - try the subpages with free elements first.
+                PoolSubpage head = findSubpagePoolHead(normCapacity);
+                PoolSubpage s = head.next;
+                if (s != head) {
+                    assert s.doNotDestroy && s.elemSize == normCapacity;
+                    handle = s.allocate();
+                    chunk = s.chunk;
+                }
+            }
+
+            if (handle < 0) {
+                for (PoolChunk c: chunks) {
+                    handle = c.allocate(normCapacity);
+                    if (handle >= 0) {
+                        chunk = c;
+                        break;
+                    }
+                }
+            }
+
+            if (handle < 0) {
+                chunk = newChunk();
+                handle = chunk.allocate(normCapacity);
+                assert handle >= 0;
+                chunks.add(chunk);
+            }
+
+            offset = chunk.offset(handle);
+        }
+
+        return new PooledChannelBuffer(parent, chunk, handle, offset, reqCapacity, normCapacity, order);
+    }
+
+    /**
+     * Returns the specified allocation to this arena.
+     */
+    void free(PoolChunk chunk, long handle) {
+        if (chunk.unpooled) {
+            // Huge allocations are left to the garbage collector.
+            return;
+        }
+
+        synchronized (this) {
+            chunk.free(handle);
+            if (chunk.isUnused() && chunks.size() > 1) {
+                // Keep at least one chunk around so that a burst of
+                // allocations does not create and destroy chunks repeatedly.
+                chunks.remove(chunk);
+            }
+        }
+    }
+
+    PoolSubpage findSubpagePoolHead(int elemSize) {
+        if (isTiny(elemSize)) {
+            return tinySubpagePools[elemSize >>> 4];
+        }
+
+        return smallSubpagePools[smallIdx(elemSize)];
+    }
+
+    int normalizeCapacity(int reqCapacity) {
+        if (reqCapacity < 0) {
+            throw new IllegalArgumentException("capacity: " + reqCapacity + " (expected: 0+)");
+        }
+        if (reqCapacity >= chunkSize) {
+            return reqCapacity;
+        }
+
+        if (!isTiny(reqCapacity)) {
+            // Round up to the next power of two.
+            int normalizedCapacity = reqCapacity;
+            normalizedCapacity --;
+            normalizedCapacity |= normalizedCapacity >>>  1;
+            normalizedCapacity |= normalizedCapacity >>>  2;
+            normalizedCapacity |= normalizedCapacity >>>  4;
+            normalizedCapacity |= normalizedCapacity >>>  8;
+            normalizedCapacity |= normalizedCapacity >>> 16;
+            normalizedCapacity ++;
+            return normalizedCapacity;
+        }
+
+        // Round up to the next multiple of 16.
+        if ((reqCapacity & 15) == 0) {
+            return reqCapacity;
+        }
+        return (reqCapacity & ~15) + 16;
+    }
+
+    boolean isTinyOrSmall(int normCapacity) {
+        return (normCapacity & subpageOverflowMask) == 0;
+    }
+
+    static boolean isTiny(int normCapacity) {
+        return (normCapacity & 0xFFFFFE00) == 0;
+    }
+
+    static int tinyIdx(int normCapacity) {
+        return normCapacity >>> 4;
+    }
+
+    static int smallIdx(int normCapacity) {
+        return PoolChunk.log2(normCapacity) - 9;
+    }
+
+    protected abstract PoolChunk newChunk();
+
+    protected abstract PoolChunk newUnpooledChunk(int capacity);
+
+    @Override
+    public synchronized String toString() {
+        StringBuilder buf = new StringBuilder();
+        buf.append(getClass().getSimpleName());
+        buf.append("(chunks: ");
+        buf.append(chunks);
+        buf.append(", threadCaches: ");
+        buf.append(numThreadCaches.get());
+        buf.append(')');
+        return buf.toString();
+    }
+
+    static final class HeapArena extends PoolArena {
+
+        HeapArena(PooledChannelBufferFactory parent, int pageSize, int maxOrder, int pageShifts, int chunkSize) {
+            super(parent, pageSize, maxOrder, pageShifts, chunkSize);
+        }
+
+        @Override
+        protected PoolChunk newChunk() {
+            byte[] memory = new byte[chunkSize];
+            return new PoolChunk(
+                    this, new BigEndianHeapChannelBuffer(memory), new LittleEndianHeapChannelBuffer(memory),
+                    pageSize, maxOrder, pageShifts, chunkSize);
+        }
+
+        @Override
+        protected PoolChunk newUnpooledChunk(int capacity) {
+            byte[] memory = new byte[capacity];
+            return new PoolChunk(
+                    this, new BigEndianHeapChannelBuffer(memory), new LittleEndianHeapChannelBuffer(memory),
+                    capacity);
+        }
+    }
+
+    static final class DirectArena extends PoolArena {
+
+        DirectArena(PooledChannelBufferFactory parent, int pageSize, int maxOrder, int pageShifts, int chunkSize) {
+            super(parent, pageSize, maxOrder, pageShifts, chunkSize);
+        }
+
+        @Override
+        protected PoolChunk newChunk() {
+            return newDirectChunk(chunkSize, false);
+        }
+
+        @Override
+        protected PoolChunk newUnpooledChunk(int capacity) {
+            return newDirectChunk(capacity, true);
+        }
+
+        private PoolChunk newDirectChunk(int capacity, boolean unpooled) {
+            ByteBuffer memory = ByteBuffer.allocateDirect(capacity);
+            ChannelBuffer bigEndianView =
+                    new ByteBufferBackedChannelBuffer(memory.duplicate().order(ByteOrder.BIG_ENDIAN));
+            ChannelBuffer littleEndianView =
+                    new ByteBufferBackedChannelBuffer(memory.duplicate().order(ByteOrder.LITTLE_ENDIAN));
+            if (unpooled) {
+                return new PoolChunk(this, bigEndianView, littleEndianView, capacity);
+            }
+            return new PoolChunk(this, bigEndianView, littleEndianView, pageSize, maxOrder, pageShifts, chunkSize);
+        }
+    }
+}
@@ -0,0 +1,286 @@
+/*
+ * Copyright 2014 The Netty Project
+ *
+ * The Netty Project licenses this file to you under the Apache License,
+ * version 2.0 (the "License"); you may not use this file except in compliance
+ * with the License. You may obtain a copy of the License at:
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS, WITHOUT
+ * WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied. See the
+ * License for the specific language governing permissions and limitations
+ * under the License.
+ */
+package org.jboss.netty.buffer;
+
+import java.nio.ByteOrder;
+
+/**
+ * A large contiguous region of memory which is managed by a {@link PoolArena}.
+ * <p>
+ * A chunk is split into pages which are allocated in runs using a buddy
+ * allocator: the pages form the leaves of a complete binary tree, and each
+ * node of the tree remembers the depth of the shallowest free node below it
+ * in {@code memoryMap}, so that a free run of a given size is found in
+ * {@code O(maxOrder)} steps.  Allocations smaller than a page are served from
+ * a {@link PoolSubpage}.
+ * <p>
+ * An allocation is identified by a {@code long} handle whose lower 32 bits
+ * are the index of its node in {@code memoryMap} and whose upper 32 bits are
+ * the index of its element in the subpage bitmap, if any.
+ * <p>
+ * All methods except the accessors of the views must be called while
+ * holding the lock of the owning arena.
+ */
+final class PoolChunk {
+
+    final PoolArena arena;
+    final boolean unpooled;
+
+    private final ChannelBuffer bigEndianView;
+    private final ChannelBuffer littleEndianView;
+
+    private final byte[] memoryMap;
+    private final byte[] depthMap;
+    private final PoolSubpage[] subpages;
+    private final int subpageOverflowMask;
+    private final int pageSize;
+    private final int pageShifts;
+    private final int maxOrder;
+    private final int chunkSize;
+    private final int log2ChunkSize;
+    private final int maxSubpageAllocs;
+    private final byte unusable;
+
+    private int freeBytes;
+
+    PoolChunk(PoolArena arena, ChannelBuffer bigEndianView, ChannelBuffer littleEndianView,
+              int pageSize, int maxOrder, int pageShifts, int chunkSize) {
+        unpooled = false;
+        this.arena = arena;
+        this.bigEndianView = bigEndianView;
+        this.littleEndianView = littleEndianView;
+        this.pageSize = pageSize;
+        this.pageShifts = pageShifts;
+        this.maxOrder = maxOrder;
+        this.chunkSize = chunkSize;
+        unusable = (byte) (maxOrder + 1);
+        log2ChunkSize = log2(chunkSize);
+        subpageOverflowMask = ~(pageSize - 1);
+        freeBytes = chunkSize;
+
+        maxSubpageAllocs = 1 << maxOrder;
+
+        // Generate the memory map.
+        memoryMap = new byte[maxSubpageAllocs << 1];
+        depthMap = new byte[memoryMap.length];
+        int memoryMapIndex = 1;
+        for (int d = 0; d <= maxOrder; d ++) {
+            int depth = 1 << d;
+            for (int p = 0; p < depth; p ++) {
+                memoryMap[memoryMapIndex] = (byte) d;
+                depthMap[memoryMapIndex] = (byte) d;
+                memoryMapIndex ++;
+            }
+        }
+
+        subpages = new PoolSubpage[maxSubpageAllocs];
+    }
+
+    /**
+     * Creates a special chunk which is not pooled and thus is used only once.
+     */
+    PoolChunk(PoolArena arena, ChannelBuffer bigEndianView, ChannelBuffer littleEndianView, int size) {
+        unpooled = true;
+        this.arena = arena;
+        this.bigEndianView = bigEndianView;
+        this.littleEndianView = littleEndianView;
+        memoryMap = null;
+        depthMap = null;
+        subpages = null;
+        subpageOverflowMask = 0;
+        pageSize = 0;
+        pageShifts = 0;
+        maxOrder = 0;
+        unusable = (byte) (maxOrder + 1);
+        chunkSize = size;
+        log2ChunkSize = log2(chunkSize);
+        maxSubpageAllocs = 0;
+    }
+
+    /**
+     * Returns the view of the whole chunk with the specified byte order.
+     */
+    ChannelBuffer view(ByteOrder order) {
+        if (order == ByteOrder.BIG_ENDIAN) {
+            return bigEndianView;
+        }
+        return littleEndianView;
+    }
+
+    int freeBytes() {
+        return freeBytes;
+    }
+
+    boolean isUnused() {
+        return freeBytes == chunkSize;
+    }
+
+    /**
+     * Allocates a run of pages or an element of a subpage.
+     *
+     * @return the handle of the allocation, or {@code -1} if this chunk has
+     *         no room for {@code normCapacity} bytes
+     */
+    long allocate(int normCapacity) {
+        if ((normCapacity & subpageOverflowMask) != 0) {
+            return allocateRun(normCapacity);
+        } else {
+            return allocateSubpage(normCapacity);
+        }
+    }
+
+    private long allocateRun(int normCapacity) {
+        int d = maxOrder - (log2(normCapacity) - pageShifts);
+        int id = allocateNode(d);
+        if (id < 0) {
+            return id;
+        }
+        freeBytes -= runLength(id);
+        return id;
+    }
+
+    private long allocateSubpage(int normCapacity) {
+        int id = allocateNode(maxOrder);
+        if (id < 0) {
+            return id;
+        }
+
+        freeBytes -= pageSize;
+
+        PoolSubpage head = arena.findSubpagePoolHead(normCapacity);
+        int subpageIdx = subpageIdx(id);
+        PoolSubpage subpage = subpages[subpageIdx];
+        if (subpage == null) {
+            subpage = new PoolSubpage(head, this, id, runOffset(id), pageSize, normCapacity);
+            subpages[subpageIdx] = subpage;
+        } else {
+            subpage.init(head, normCapacity);
+        }
+        return subpage.allocate();
+    }
+
+    /**
+     * Frees the allocation of the specified handle.
+     */
+    void free(long handle) {
+        int memoryMapIdx = (int) handle;
+        int bitmapIdx = (int) (handle >>> 32);
+
+        if (bitmapIdx != 0) {
+            PoolSubpage subpage = subpages[subpageIdx(memoryMapIdx)];
+            assert subpage != null && subpage.doNotDestroy;
+
+            PoolSubpage head = arena.findSubpagePoolHead(subpage.elemSize);
+            if (subpage.free(head, bitmapIdx & 0x3FFFFFFF)) {
+                return;
+            }
+        }
+
+        freeBytes += runLength(memoryMapIdx);
+        memoryMap[memoryMapIdx] = depthMap[memoryMapIdx];
+        updateParentsFree(memoryMapIdx);
+    }
+
+    /**
+     * Returns the offset of the allocation of the specified handle in this chunk.
+     */
+    int offset(long handle) {
+        int memoryMapIdx = (int) handle;
+        int bitmapIdx = (int) (handle >>> 32);
+        if (bitmapIdx == 0) {
+            return runOffset(memoryMapIdx);
+        }
+
+        PoolSubpage subpage = subpages[subpageIdx(memoryMapIdx)];
+        return subpage.runOffset + (bitmapIdx & 0x3FFFFFFF) * subpage.elemSize;
+    }
+
+    /**
+     * Finds the leftmost free node at depth {@code d} and marks it as used.
+     */
+    private int allocateNode(int d) {
+        int id = 1;
+        int initial = - (1 << d); // All ids at depth d have the bit (1 << d) set.
+        byte val = memoryMap[id];
+        if (val > d) { // Unusable
+            return -1;
+        }
+        while (val < d || (id & initial) == 0) {
+            id <<= 1;
+            val = memoryMap[id];
+            if (val > d) {
+                id ^= 1;
+                val = memoryMap[id];
+            }
+        }
+        memoryMap[id] = unusable;
+        updateParentsAlloc(id);
+        return id;
+    }
+
+    private void updateParentsAlloc(int id) {
+        while (id > 1) {
+            int parentId = id >>> 1;
+            byte val1 = memoryMap[id];
+            byte val2 = memoryMap[id ^ 1];
+            memoryMap[parentId] = val1 < val2 ? val1 : val2;
+            id = parentId;
+        }
+    }
+
+    private void updateParentsFree(int id) {
+        int logChild = depthMap[id] + 1;
+        while (id > 1) {
+            int parentId = id >>> 1;
+            byte val1 = memoryMap[id];
+            byte val2 = memoryMap[id ^ 1];
+            logChild -= 1; // In the first iteration, this equals the depth of id.
+
+            if (val1 == logChild && val2 == logChild) {
+                // Both children are completely free; so is the parent.
+                memoryMap[parentId] = (byte) (logChild - 1);
+            } else {
+                memoryMap[parentId] = val1 < val2 ? val1 : val2;
+            }
+
+            id = parentId;
+        }
+    }
+
+    private int runLength(int id) {
+        return 1 << log2ChunkSize - depthMap[id];
+    }
+
+    private int runOffset(int id) {
+        // The position of id among the nodes of the same depth.
+        int shift = id ^ 1 << depthMap[id];
+        return shift * runLength(id);
+    }
+
+    private int subpageIdx(int memoryMapIdx) {
+        return memoryMapIdx ^ maxSubpageAllocs; // Remove the highest set bit to get the offset.
+    }
+
+    static int log2(int val) {
+        return 31 - Integer.numberOfLeadingZeros(val);
+    }
+
+    @Override
+    public String toString() {
+        return "Chunk(" + Integer.toHexString(System.identityHashCode(this)) + ": " +
+               (chunkSize - freeBytes) + '/' + chunkSize + ')';
+    }
+}
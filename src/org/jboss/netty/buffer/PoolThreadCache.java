@@ -0,0 +1,221 @@
+/*
+ * Copyright 2014 The Netty Project
+ *
+ * The Netty Project licenses this file to you under the Apache License,
+ * version 2.0 (the "License"); you may not use this file except in compliance
+ * with the License. You may obtain a copy of the License at:
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS, WITHOUT
+ * WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied. See the
+ * License for the specific language governing permissions and limitations
+ * under the License.
+ */
+package org.jboss.netty.buffer;
+
+import java.nio.ByteOrder;
+
+/**
+ * A per-thread cache of recently released allocations, which lets a thread
+ * allocate and release buffers of common sizes without acquiring the lock of
+ * a {@link PoolArena}.  Allocations which have not been reused for a while
+ * are returned to their arena periodically.
+ * <p>
+ * A cache is accessed only by the thread it belongs to, except when the
+ * thread is dead and {@link PooledChannelBufferFactory} frees it.
+ */
+final class PoolThreadCache {
+
+    final PoolArena arena;
+    final Thread thread;
+
+    private final MemoryRegionCache[] tinyCaches;
+    private final MemoryRegionCache[] smallCaches;
+    private final MemoryRegionCache[] normalCaches;
+    private final int freeSweepAllocationThreshold;
+
+    private int allocations;
+
+    PoolThreadCache(PoolArena arena, int tinyCacheSize, int smallCacheSize, int normalCacheSize,
+                    int maxCachedBufferCapacity, int freeSweepAllocationThreshold) {
+        this.arena = arena;
+        this.freeSweepAllocationThreshold = freeSweepAllocationThreshold;
+        thread = Thread.currentThread();
+
+        tinyCaches = newCaches(tinyCacheSize, PoolArena.NUM_TINY_SUBPAGE_POOLS);
+        smallCaches = newCaches(smallCacheSize, arena.pageShifts - 9);
+
+        int maxCachedCapacity = Math.min(arena.chunkSize, maxCachedBufferCapacity);
+        if (maxCachedCapacity >= arena.pageSize) {
+            normalCaches = newCaches(
+                    normalCacheSize, PoolChunk.log2(maxCachedCapacity) - arena.pageShifts + 1);
+        } else {
+            normalCaches = newCaches(0, 0);
+        }
+
+        arena.numThreadCaches.getAndIncrement();
+    }
+
+    private static MemoryRegionCache[] newCaches(int cacheSize, int numCaches) {
+        if (cacheSize <= 0) {
+            return new MemoryRegionCache[0];
+        }
+
+        MemoryRegionCache[] caches = new MemoryRegionCache[numCaches];
+        for (int i = 0; i < caches.length; i ++) {
+            caches[i] = new MemoryRegionCache(cacheSize);
+        }
+        return caches;
+    }
+
+    /**
+     * Returns a buffer backed by a cached allocation of the specified size
+     * class, or {@code null} if there is none.
+     */
+    PooledChannelBuffer allocate(ByteOrder order, int reqCapacity, int normCapacity) {
+        MemoryRegionCache cache = cacheFor(normCapacity);
+        if (cache == null) {
+            return null;
+        }
+
+        PooledChannelBuffer buf = cache.allocate(arena.parent, order, reqCapacity, normCapacity);
+        if (++ allocations >= freeSweepAllocationThreshold) {
+            allocations = 0;
+            trim();
+        }
+        return buf;
+    }
+
+    /**
+     * Caches the specified allocation for later reuse.
+     *
+     * @return {@code false} if the allocation could not be cached and thus
+     *         has to be returned to its arena
+     */
+    boolean add(PoolChunk chunk, long handle, int offset, int normCapacity) {
+        MemoryRegionCache cache = cacheFor(normCapacity);
+        if (cache == null) {
+            return false;
+        }
+        return cache.add(chunk, handle, offset);
+    }
+
+    private MemoryRegionCache cacheFor(int normCapacity) {
+        MemoryRegionCache[] caches;
+        int idx;
+        if (PoolArena.isTiny(normCapacity)) {
+            caches = tinyCaches;
+            idx = PoolArena.tinyIdx(normCapacity);
+        } else if (arena.isTinyOrSmall(normCapacity)) {
+            caches = smallCaches;
+            idx = PoolArena.smallIdx(normCapacity);
+        } else {
+            caches = normalCaches;
+            idx = PoolChunk.log2(normCapacity) - arena.pageShifts;
+        }
+
+        if (idx >= caches.length) {
+            return null;
+        }
+        return caches[idx];
+    }
+
+    /**
+     * Returns the cached allocations which were not reused since the last
+     * trim to their arenas.
+     */
+    void trim() {
+        trim(tinyCaches);
+        trim(smallCaches);
+        trim(normalCaches);
+    }
+
+    private static void trim(MemoryRegionCache[] caches) {
+        for (MemoryRegionCache c: caches) {
+            c.trim();
+        }
+    }
+
+    /**
+     * Returns all cached allocations to their arenas and unbinds this cache
+     * from its arena.
+     */
+    void free() {
+        free(tinyCaches);
+        free(smallCaches);
+        free(normalCaches);
+        arena.numThreadCaches.getAndDecrement();
+    }
+
+    private static void free(MemoryRegionCache[] caches) {
+        for (MemoryRegionCache c: caches) {
+            c.free();
+        }
+    }
+
+    /**
+     * A bounded LIFO stack of cached allocations of the same size class.
+     * The most recently released allocation is reused first because its
+     * memory is the most likely to be in the CPU cache.
+     */
+    private static final class MemoryRegionCache {
+        private final PoolChunk[] chunks;
+        private final long[] handles;
+        private final int[] offsets;
+        private int size;
+        private int allocations;
+
+        MemoryRegionCache(int capacity) {
+            chunks = new PoolChunk[capacity];
+            handles = new long[capacity];
+            offsets = new int[capacity];
+        }
+
+        boolean add(PoolChunk chunk, long handle, int offset) {
+            if (size == chunks.length) {
+                return false;
+            }
+            chunks[size] = chunk;
+            handles[size] = handle;
+            offsets[size] = offset;
+            size ++;
+            return true;
+        }
+
+        PooledChannelBuffer allocate(
+                PooledChannelBufferFactory parent, ByteOrder order, int reqCapacity, int normCapacity) {
+            if (size == 0) {
+                return null;
+            }
+            size --;
+            PoolChunk chunk = chunks[size];
+            chunks[size] = null;
+            allocations ++;
+            return new PooledChannelBuffer(
+                    parent, chunk, handles[size], offsets[size], reqCapacity, normCapacity, order);
+        }
+
+        void trim() {
+            int toFree = size - allocations;
+            allocations = 0;
+            if (toFree > 0) {
+                free(toFree);
+            }
+        }
+
+        void free() {
+            free(size);
+        }
+
+        private void free(int max) {
+            for (int i = 0; i < max && size > 0; i ++) {
+                size --;
+                PoolChunk chunk = chunks[size];
+                chunks[size] = null;
+                chunk.arena.free(chunk, handles[size]);
+            }
+        }
+    }
+}
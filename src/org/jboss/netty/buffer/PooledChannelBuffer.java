@@ -0,0 +1,322 @@
+/*
+ * Copyright 2014 The Netty Project
+ *
+ * The Netty Project licenses this file to you under the Apache License,
+ * version 2.0 (the "License"); you may not use this file except in compliance
+ * with the License. You may obtain a copy of the License at:
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS, WITHOUT
+ * WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied. See the
+ * License for the specific language governing permissions and limitations
+ * under the License.
+ */
+package org.jboss.netty.buffer;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.nio.channels.GatheringByteChannel;
+import java.nio.channels.ScatteringByteChannel;
+import java.util.concurrent.atomic.AtomicIntegerFieldUpdater;
+
+/**
+ * A {@link ReferenceCountedChannelBuffer} which exposes a region of a
+ * {@link PoolChunk} and returns it to the pool when released.
+ */
+final class PooledChannelBuffer extends AbstractChannelBuffer implements ReferenceCountedChannelBuffer {
+
+    private static final AtomicIntegerFieldUpdater<PooledChannelBuffer> refCntUpdater =
+            AtomicIntegerFieldUpdater.newUpdater(PooledChannelBuffer.class, "refCnt");
+
+    private final PooledChannelBufferFactory factory;
+    private final PoolChunk chunk;
+    private final long handle;
+    private final ChannelBuffer memory;
+    private final int adjustment;
+    private final int length;
+    private final int maxLength;
+    private final ChannelBufferLeakDetector.Leak leak;
+
+    private volatile int refCnt = 1;
+
+    PooledChannelBuffer(PooledChannelBufferFactory factory, PoolChunk chunk, long handle,
+                        int offset, int length, int maxLength, ByteOrder order) {
+        this.factory = factory;
+        this.chunk = chunk;
+        this.handle = handle;
+        memory = chunk.view(order);
+        adjustment = offset;
+        this.length = length;
+        this.maxLength = maxLength;
+        leak = chunk.unpooled ? null : ChannelBufferLeakDetector.open(this);
+    }
+
+    public int refCnt() {
+        return refCnt;
+    }
+
+    public ReferenceCountedChannelBuffer retain() {
+        for (;;) {
+            int refCnt = this.refCnt;
+            if (refCnt == 0) {
+                throw new IllegalStateException("buffer has been released already");
+            }
+            if (refCnt == Integer.MAX_VALUE) {
+                throw new IllegalStateException("refCnt overflow");
+            }
+            if (refCntUpdater.compareAndSet(this, refCnt, refCnt + 1)) {
+                if (leak != null) {
+                    leak.record();
+                }
+                return this;
+            }
+        }
+    }
+
+    public boolean release() {
+        for (;;) {
+            int refCnt = this.refCnt;
+            if (refCnt == 0) {
+                throw new IllegalStateException("buffer has been released already");
+            }
+            if (refCntUpdater.compareAndSet(this, refCnt, refCnt - 1)) {
+                if (refCnt == 1) {
+                    if (leak != null) {
+                        leak.close();
+                    }
+                    deallocate();
+                    return true;
+                }
+                if (leak != null) {
+                    leak.record();
+                }
+                return false;
+            }
+        }
+    }
+
+    private void deallocate() {
+        if (chunk.unpooled) {
+            return;
+        }
+
+        PoolThreadCache cache = factory.threadCache();
+        if (!cache.add(chunk, handle, adjustment, maxLength)) {
+            chunk.arena.free(chunk, handle);
+        }
+    }
+
+    /**
+     * Returns an unpooled factory of the same byte order and kind of memory,
+     * so that the buffers derived from this buffer, such as extracted frames
+     * and the result of {@link #readBytes(int)}, do not need to be released.
+     * Only the buffers allocated directly from the {@link PooledChannelBufferFactory}
+     * are pooled.
+     */
+    public ChannelBufferFactory factory() {
+        if (isDirect()) {
+            return DirectChannelBufferFactory.getInstance(order());
+        }
+        return HeapChannelBufferFactory.getInstance(order());
+    }
+
+    public ByteOrder order() {
+        return memory.order();
+    }
+
+    public boolean isDirect() {
+        return memory.isDirect();
+    }
+
+    public int capacity() {
+        return length;
+    }
+
+    public boolean hasArray() {
+        return memory.hasArray();
+    }
+
+    public byte[] array() {
+        ensureAccessible();
+        return memory.array();
+    }
+
+    public int arrayOffset() {
+        return memory.arrayOffset() + adjustment;
+    }
+
+    public byte getByte(int index) {
+        checkIndex(index);
+        return memory.getByte(index + adjustment);
+    }
+
+    @Override
+    public int forEachByte(int index, int length, ChannelBufferProcessor processor) {
+        checkIndex(index, length);
+        int ret = memory.forEachByte(index + adjustment, length, processor);
+        return ret < 0 ? -1 : ret - adjustment;
+    }
+
+    public short getShort(int index) {
+        checkIndex(index, 2);
+        return memory.getShort(index + adjustment);
+    }
+
+    public int getUnsignedMedium(int index) {
+        checkIndex(index, 3);
+        return memory.getUnsignedMedium(index + adjustment);
+    }
+
+    public int getInt(int index) {
+        checkIndex(index, 4);
+        return memory.getInt(index + adjustment);
+    }
+
+    public long getLong(int index) {
+        checkIndex(index, 8);
+        return memory.getLong(index + adjustment);
+    }
+
+    public ChannelBuffer duplicate() {
+        ensureAccessible();
+        return new DuplicatedChannelBuffer(this);
+    }
+
+    public ChannelBuffer copy(int index, int length) {
+        checkIndex(index, length);
+        return memory.copy(index + adjustment, length);
+    }
+
+    public ChannelBuffer slice(int index, int length) {
+        checkIndex(index, length);
+        if (length == 0) {
+            return ChannelBuffers.EMPTY_BUFFER;
+        }
+        return new SlicedChannelBuffer(this, index, length);
+    }
+
+    public void getBytes(int index, ChannelBuffer dst, int dstIndex, int length) {
+        checkIndex(index, length);
+        memory.getBytes(index + adjustment, dst, dstIndex, length);
+    }
+
+    public void getBytes(int index, byte[] dst, int dstIndex, int length) {
+        checkIndex(index, length);
+        memory.getBytes(index + adjustment, dst, dstIndex, length);
+    }
+
+    public void getBytes(int index, ByteBuffer dst) {
+        checkIndex(index, dst.remaining());
+        memory.getBytes(index + adjustment, dst);
+    }
+
+    public void setByte(int index, int value) {
+        checkIndex(index);
+        memory.setByte(index + adjustment, value);
+    }
+
+    public void setShort(int index, int value) {
+        checkIndex(index, 2);
+        memory.setShort(index + adjustment, value);
+    }
+
+    public void setMedium(int index, int value) {
+        checkIndex(index, 3);
+        memory.setMedium(index + adjustment, value);
+    }
+
+    public void setInt(int index, int value) {
+        checkIndex(index, 4);
+        memory.setInt(index + adjustment, value);
+    }
+
+    public void setLong(int index, long value) {
+        checkIndex(index, 8);
+        memory.setLong(index + adjustment, value);
+    }
+
+    public void setBytes(int index, byte[] src, int srcIndex, int length) {
+        checkIndex(index, length);
+        memory.setBytes(index + adjustment, src, srcIndex, length);
+    }
+
+    public void setBytes(int index, ChannelBuffer src, int srcIndex, int length) {
+        checkIndex(index, length);
+        memory.setBytes(index + adjustment, src, srcIndex, length);
+    }
+
+    public void setBytes(int index, ByteBuffer src) {
+        checkIndex(index, src.remaining());
+        memory.setBytes(index + adjustment, src);
+    }
+
+    public void getBytes(int index, OutputStream out, int length)
+            throws IOException {
+        checkIndex(index, length);
+        memory.getBytes(index + adjustment, out, length);
+    }
+
+    public int getBytes(int index, GatheringByteChannel out, int length)
+            throws IOException {
+        checkIndex(index, length);
+        return memory.getBytes(index + adjustment, out, length);
+    }
+
+    public int setBytes(int index, InputStream in, int length)
+            throws IOException {
+        checkIndex(index, length);
+        return memory.setBytes(index + adjustment, in, length);
+    }
+
+    public int setBytes(int index, ScatteringByteChannel in, int length)
+            throws IOException {
+        checkIndex(index, length);
+        return memory.setBytes(index + adjustment, in, length);
+    }
+
+    public ByteBuffer toByteBuffer(int index, int length) {
+        checkIndex(index, length);
+        return memory.toByteBuffer(index + adjustment, length).slice().order(order());
+    }
+
+    private void ensureAccessible() {
+        if (refCnt == 0) {
+            throw new IllegalStateException("buffer has been released already");
+        }
+    }
+
+    private void checkIndex(int index) {
+        ensureAccessible();
+        if (index < 0 || index >= length) {
+            throw new IndexOutOfBoundsException("Invalid index: " + index
+                    + ", maximum is " + length);
+        }
+    }
+
+    private void checkIndex(int startIndex, int length) {
+        ensureAccessible();
+        if (length < 0) {
+            throw new IllegalArgumentException(
+                    "length is negative: " + length);
+        }
+        if (startIndex < 0) {
+            throw new IndexOutOfBoundsException("startIndex cannot be negative");
+        }
+        if (startIndex + length > this.length) {
+            throw new IndexOutOfBoundsException("Index too big - Bytes needed: "
+                    + (startIndex + length) + ", maximum is " + this.length);
+        }
+    }
+
+    @Override
+    public String toString() {
+        String result = super.toString();
+        result = result.substring(0, result.length() - 1);
+        return result + ", refCnt=" + refCnt + ')';
+    }
+}
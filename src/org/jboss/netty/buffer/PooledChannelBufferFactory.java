@@ -0,0 +1,352 @@
+/*
+ * Copyright 2014 The Netty Project
+ *
+ * The Netty Project licenses this file to you under the Apache License,
+ * version 2.0 (the "License"); you may not use this file except in compliance
+ * with the License. You may obtain a copy of the License at:
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS, WITHOUT
+ * WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied. See the
+ * License for the specific language governing permissions and limitations
+ * under the License.
+ */
+package org.jboss.netty.buffer;
+
+import org.jboss.netty.util.internal.SystemPropertyUtil;
+
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.util.ArrayList;
+import java.util.Iterator;
+import java.util.List;
+
+/**
+ * A {@link ChannelBufferFactory} which recycles the memory of released
+ * buffers instead of leaving it to the garbage collector, reducing the
+ * allocation rate of an application dramatically when it allocates many
+ * short-lived buffers.
+ * <p>
+ * Memory is carved out of large chunks which belong to one of several
+ * independent arenas, in the manner of jemalloc.  Each thread is bound to the
+ * arena with the least threads, and keeps a small cache of recently released
+ * allocations so that most allocations do not need to acquire the lock of
+ * its arena at all.  A factory pools either heap or direct memory.
+ *
+ * <h3>Releasing buffers</h3>
+ *
+ * Every buffer returned by this factory, except an empty one, is a
+ * {@link ReferenceCountedChannelBuffer}.  Its memory is recycled only when
+ * {@link ReferenceCountedChannelBuffer#release()} is called by the last
+ * consumer of the buffer, usually via {@link ChannelBuffers#release(ChannelBuffer)}.
+ * A buffer which is never released is eventually reclaimed by the garbage
+ * collector, but its memory is lost to the pool.  Such a buffer is reported
+ * by {@link ChannelBufferLeakDetector}.
+ * <p>
+ * When a pooled buffer is set to the {@link org.jboss.netty.channel.ChannelConfig}
+ * of a channel, the NIO transport releases the pooled buffers it has written,
+ * and {@link org.jboss.netty.handler.codec.frame.FrameDecoder} releases the
+ * received buffers it has consumed.  If the factory pools direct memory, the
+ * NIO socket transport reads incoming data straight into pooled buffers, so a
+ * handler which consumes a received {@link ChannelBuffer} without passing it
+ * on must release it.
+ * <p>
+ * {@link ChannelBuffer#factory()} of a pooled buffer returns an unpooled
+ * factory of the same byte order and kind of memory.  Hence the frames a
+ * decoder derives from a pooled buffer, for example via
+ * {@link org.jboss.netty.handler.codec.frame.FrameDecoder#extractFrame(ChannelBuffer, int, int)}
+ * or {@link ChannelBuffer#readBytes(int)}, are ordinary buffers, and the
+ * handlers which consume them, such as
+ * {@link org.jboss.netty.handler.codec.string.StringDecoder}, do not need to
+ * release anything.
+ *
+ * <h3>Tuning</h3>
+ *
+ * The default parameters can be overridden with the following system properties:
+ * <ul>
+ * <li>{@code org.jboss.netty.allocator.pageSize} - the size of a page (default: 8192)</li>
+ * <li>{@code org.jboss.netty.allocator.maxOrder} - the chunk size is {@code pageSize << maxOrder}
+ *     (default: 11, i.e. 16 MiB chunks)</li>
+ * <li>{@code org.jboss.netty.allocator.numArenas} - the number of arenas
+ *     (default: twice the number of available processors)</li>
+ * <li>{@code org.jboss.netty.allocator.tinyCacheSize}, {@code smallCacheSize} and
+ *     {@code normalCacheSize} - the number of cached allocations per size class
+ *     and thread (default: 512, 256 and 64)</li>
+ * <li>{@code org.jboss.netty.allocator.maxCachedBufferCapacity} - the largest
+ *     allocation kept in a thread cache (default: 32768)</li>
+ * </ul>
+ */
+public class PooledChannelBufferFactory extends AbstractChannelBufferFactory {
+
+    private static final int DEFAULT_PAGE_SIZE =
+            SystemPropertyUtil.getInt("org.jboss.netty.allocator.pageSize", 8192);
+    private static final int DEFAULT_MAX_ORDER =
+            SystemPropertyUtil.getInt("org.jboss.netty.allocator.maxOrder", 11);
+    private static final int DEFAULT_NUM_ARENAS;
+    private static final int DEFAULT_TINY_CACHE_SIZE =
+            SystemPropertyUtil.getInt("org.jboss.netty.allocator.tinyCacheSize", 512);
+    private static final int DEFAULT_SMALL_CACHE_SIZE =
+            SystemPropertyUtil.getInt("org.jboss.netty.allocator.smallCacheSize", 256);
+    private static final int DEFAULT_NORMAL_CACHE_SIZE =
+            SystemPropertyUtil.getInt("org.jboss.netty.allocator.normalCacheSize", 64);
+    private static final int DEFAULT_MAX_CACHED_BUFFER_CAPACITY =
+            SystemPropertyUtil.getInt("org.jboss.netty.allocator.maxCachedBufferCapacity", 32 * 1024);
+    private static final int FREE_SWEEP_ALLOCATION_THRESHOLD = 8192;
+
+    private static final int MIN_PAGE_SIZE = 4096;
+    private static final int MAX_CHUNK_SIZE = (int) (((long) Integer.MAX_VALUE + 1) / 2);
+
+    static {
+        // Use at most 50% of the maximum heap, assuming each arena keeps three chunks.
+        long chunkSize = (long) DEFAULT_PAGE_SIZE << DEFAULT_MAX_ORDER;
+        int defaultNumArenas = (int) Math.min(
+                Runtime.getRuntime().availableProcessors() * 2,
+                Runtime.getRuntime().maxMemory() / chunkSize / 2 / 3);
+        DEFAULT_NUM_ARENAS = Math.max(1,
+                SystemPropertyUtil.getInt("org.jboss.netty.allocator.numArenas", defaultNumArenas));
+    }
+
+    private static final PooledChannelBufferFactory HEAP_INSTANCE = new PooledChannelBufferFactory(false);
+    private static final PooledChannelBufferFactory DIRECT_INSTANCE = new PooledChannelBufferFactory(true);
+
+    /**
+     * Returns the shared factory which pools heap memory and whose default
+     * {@link ByteOrder} is {@link ByteOrder#BIG_ENDIAN}.
+     */
+    public static ChannelBufferFactory getInstance() {
+        return HEAP_INSTANCE;
+    }
+
+    /**
+     * Returns the shared factory which pools direct memory and whose default
+     * {@link ByteOrder} is {@link ByteOrder#BIG_ENDIAN}.
+     */
+    public static ChannelBufferFactory getDirectInstance() {
+        return DIRECT_INSTANCE;
+    }
+
+    private final boolean direct;
+    private final PoolArena[] arenas;
+    private final int tinyCacheSize;
+    private final int smallCacheSize;
+    private final int normalCacheSize;
+    private final int maxCachedBufferCapacity;
+    private final List<PoolThreadCache> threadCaches = new ArrayList<PoolThreadCache>();
+    private final ThreadLocal<PoolThreadCache> threadCache = new ThreadLocal<PoolThreadCache>() {
+        @Override
+        protected PoolThreadCache initialValue() {
+            return newThreadCache();
+        }
+    };
+
+    /**
+     * Creates a new factory which pools heap memory and whose default
+     * {@link ByteOrder} is {@link ByteOrder#BIG_ENDIAN}.
+     */
+    public PooledChannelBufferFactory() {
+        this(false);
+    }
+
+    /**
+     * Creates a new factory whose default {@link ByteOrder} is
+     * {@link ByteOrder#BIG_ENDIAN}.
+     *
+     * @param direct {@code true} to pool direct memory, {@code false} to pool heap memory
+     */
+    public PooledChannelBufferFactory(boolean direct) {
+        this(ByteOrder.BIG_ENDIAN, direct);
+    }
+
+    /**
+     * Creates a new factory with the specified default {@link ByteOrder}.
+     *
+     * @param defaultOrder the default {@link ByteOrder} of this factory
+     * @param direct {@code true} to pool direct memory, {@code false} to pool heap memory
+     */
+    public PooledChannelBufferFactory(ByteOrder defaultOrder, boolean direct) {
+        this(defaultOrder, direct, DEFAULT_NUM_ARENAS, DEFAULT_PAGE_SIZE, DEFAULT_MAX_ORDER);
+    }
+
+    /**
+     * Creates a new factory with the specified default {@link ByteOrder}
+     * and arena layout.
+     *
+     * @param defaultOrder the default {@link ByteOrder} of this factory
+     * @param direct    {@code true} to pool direct memory, {@code false} to pool heap memory
+     * @param numArenas the number of arenas
+     * @param pageSize  the size of a page, which must be a power of two and at least 4096
+     * @param maxOrder  the depth of the page tree of a chunk, which determines the
+     *                  chunk size {@code pageSize << maxOrder}
+     */
+    public PooledChannelBufferFactory(
+            ByteOrder defaultOrder, boolean direct, int numArenas, int pageSize, int maxOrder) {
+        this(defaultOrder, direct, numArenas, pageSize, maxOrder,
+             DEFAULT_TINY_CACHE_SIZE, DEFAULT_SMALL_CACHE_SIZE, DEFAULT_NORMAL_CACHE_SIZE,
+             DEFAULT_MAX_CACHED_BUFFER_CAPACITY);
+    }
+
+    /**
+     * Creates a new factory with the specified default {@link ByteOrder},
+     * arena layout and thread cache sizes.  A cache size of {@code 0}
+     * disables caching of the corresponding size class.
+     */
+    public PooledChannelBufferFactory(
+            ByteOrder defaultOrder, boolean direct, int numArenas, int pageSize, int maxOrder,
+            int tinyCacheSize, int smallCacheSize, int normalCacheSize, int maxCachedBufferCapacity) {
+        super(defaultOrder);
+        if (numArenas <= 0) {
+            throw new IllegalArgumentException("numArenas: " + numArenas + " (expected: > 0)");
+        }
+        if (pageSize < MIN_PAGE_SIZE || (pageSize & pageSize - 1) != 0) {
+            throw new IllegalArgumentException(
+                    "pageSize: " + pageSize + " (expected: power of 2 and >= " + MIN_PAGE_SIZE + ')');
+        }
+        if (maxOrder < 0 || maxOrder > 14) {
+            throw new IllegalArgumentException("maxOrder: " + maxOrder + " (expected: 0-14)");
+        }
+        int chunkSize = pageSize;
+        for (int i = maxOrder; i > 0; i --) {
+            if (chunkSize > MAX_CHUNK_SIZE / 2) {
+                throw new IllegalArgumentException(String.format(
+                        "pageSize (%d) << maxOrder (%d) must not exceed %d", pageSize, maxOrder, MAX_CHUNK_SIZE));
+            }
+            chunkSize <<= 1;
+        }
+        if (tinyCacheSize < 0) {
+            throw new IllegalArgumentException("tinyCacheSize: " + tinyCacheSize + " (expected: 0+)");
+        }
+        if (smallCacheSize < 0) {
+            throw new IllegalArgumentException("smallCacheSize: " + smallCacheSize + " (expected: 0+)");
+        }
+        if (normalCacheSize < 0) {
+            throw new IllegalArgumentException("normalCacheSize: " + normalCacheSize + " (expected: 0+)");
+        }
+        if (maxCachedBufferCapacity < 0) {
+            throw new IllegalArgumentException(
+                    "maxCachedBufferCapacity: " + maxCachedBufferCapacity + " (expected: 0+)");
+        }
+
+        this.direct = direct;
+        this.tinyCacheSize = tinyCacheSize;
+        this.smallCacheSize = smallCacheSize;
+        this.normalCacheSize = normalCacheSize;
+        this.maxCachedBufferCapacity = maxCachedBufferCapacity;
+
+        int pageShifts = PoolChunk.log2(pageSize);
+        arenas = new PoolArena[numArenas];
+        for (int i = 0; i < arenas.length; i ++) {
+            if (direct) {
+                arenas[i] = new PoolArena.DirectArena(this, pageSize, maxOrder, pageShifts, chunkSize);
+            } else {
+                arenas[i] = new PoolArena.HeapArena(this, pageSize, maxOrder, pageShifts, chunkSize);
+            }
+        }
+    }
+
+    /**
+     * Returns {@code true} if and only if this factory pools direct memory.
+     */
+    public boolean isDirect() {
+        return direct;
+    }
+
+    public ChannelBuffer getBuffer(ByteOrder order, int capacity) {
+        if (order == null) {
+            throw new NullPointerException("order");
+        }
+        if (capacity < 0) {
+            throw new IllegalArgumentException("capacity: " + capacity);
+        }
+        if (capacity == 0) {
+            return ChannelBuffers.EMPTY_BUFFER;
+        }
+
+        PoolThreadCache cache = threadCache();
+        return cache.arena.allocate(cache, order, capacity);
+    }
+
+    public ChannelBuffer getBuffer(ByteOrder order, byte[] array, int offset, int length) {
+        if (array == null) {
+            throw new NullPointerException("array");
+        }
+        if (offset < 0) {
+            throw new IndexOutOfBoundsException("offset: " + offset);
+        }
+        if (length == 0) {
+            return ChannelBuffers.EMPTY_BUFFER;
+        }
+        if (offset + length > array.length) {
+            throw new IndexOutOfBoundsException("length: " + length);
+        }
+
+        ChannelBuffer buf = getBuffer(order, length);
+        buf.writeBytes(array, offset, length);
+        return buf;
+    }
+
+    public ChannelBuffer getBuffer(ByteBuffer nioBuffer) {
+        ChannelBuffer buf = getBuffer(nioBuffer.order(), nioBuffer.remaining());
+        int pos = nioBuffer.position();
+        buf.writeBytes(nioBuffer);
+        nioBuffer.position(pos);
+        return buf;
+    }
+
+    /**
+     * Returns the cached allocations of the current thread to their arenas.
+     * A thread which is about to become idle for a long time may call this
+     * method to make its cached memory available to other threads.
+     */
+    public void trimCurrentThreadCache() {
+        threadCache().trim();
+    }
+
+    PoolThreadCache threadCache() {
+        return threadCache.get();
+    }
+
+    private PoolThreadCache newThreadCache() {
+        synchronized (threadCaches) {
+            // Reclaim the caches of the threads which died since the last time.
+            for (Iterator<PoolThreadCache> i = threadCaches.iterator(); i.hasNext();) {
+                PoolThreadCache c = i.next();
+                if (!c.thread.isAlive()) {
+                    i.remove();
+                    c.free();
+                }
+            }
+
+            PoolArena arena = leastUsedArena();
+            PoolThreadCache cache = new PoolThreadCache(
+                    arena, tinyCacheSize, smallCacheSize, normalCacheSize,
+                    maxCachedBufferCapacity, FREE_SWEEP_ALLOCATION_THRESHOLD);
+            threadCaches.add(cache);
+            return cache;
+        }
+    }
+
+    private PoolArena leastUsedArena() {
+        PoolArena minArena = arenas[0];
+        for (int i = 1; i < arenas.length; i ++) {
+            PoolArena arena = arenas[i];
+            if (arena.numThreadCaches.get() < minArena.numThreadCaches.get()) {
+                minArena = arena;
+            }
+        }
+        return minArena;
+    }
+
+    @Override
+    public String toString() {
+        StringBuilder buf = new StringBuilder();
+        buf.append(getClass().getSimpleName());
+        buf.append("(direct: ");
+        buf.append(direct);
+        buf.append(", arenas: ");
+        buf.append(arenas.length);
+        buf.append(')');
+        return buf.toString();
+    }
+}
@@ -159,6 +159,11 @@ public class ReadOnlyChannelBuffer extends AbstractChannelBuffer implements Wrap
         return buffer.getByte(index);
     }
 
+    @Override
+    public int forEachByte(int index, int length, ChannelBufferProcessor processor) {
+        return buffer.forEachByte(index, length, processor);
+    }
+
     public short getShort(int index) {
         return buffer.getShort(index);
     }
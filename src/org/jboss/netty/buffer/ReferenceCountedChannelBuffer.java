@@ -0,0 +1,64 @@
+/*
+ * Copyright 2014 The Netty Project
+ *
+ * The Netty Project licenses this file to you under the Apache License,
+ * version 2.0 (the "License"); you may not use this file except in compliance
+ * with the License. You may obtain a copy of the License at:
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS, WITHOUT
+ * WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied. See the
+ * License for the specific language governing permissions and limitations
+ * under the License.
+ */
+package org.jboss.netty.buffer;
+
+/**
+ * A {@link ChannelBuffer} whose memory is explicitly managed by a reference
+ * count, such as a buffer allocated by {@link PooledChannelBufferFactory}.
+ * <p>
+ * A newly allocated buffer has a reference count of {@code 1}.  Whoever
+ * consumes the buffer last is responsible for calling {@link #release()},
+ * which returns the underlying memory to where it came from once the count
+ * reaches {@code 0}.  Any access to a buffer whose reference count is
+ * {@code 0} raises an {@link IllegalStateException}.
+ * <p>
+ * Derived buffers, such as {@link ChannelBuffer#slice()} and
+ * {@link ChannelBuffer#duplicate()}, share the reference count of the buffer
+ * they were derived from.  Use {@link ChannelBuffers#release(ChannelBuffer)}
+ * to release a buffer without knowing whether it is reference-counted,
+ * derived or composed of several reference-counted buffers.
+ */
+public interface ReferenceCountedChannelBuffer extends ChannelBuffer {
+
+    /**
+     * Returns the current reference count of this buffer.  If {@code 0}, the
+     * memory of this buffer has been returned already and the buffer must
+     * not be accessed anymore.
+     */
+    int refCnt();
+
+    /**
+     * Increases the reference count of this buffer by {@code 1}.
+     *
+     * @return this buffer
+     *
+     * @throws IllegalStateException
+     *         if this buffer has been released already
+     */
+    ReferenceCountedChannelBuffer retain();
+
+    /**
+     * Decreases the reference count of this buffer by {@code 1} and returns
+     * its memory if the reference count reaches {@code 0}.
+     *
+     * @return {@code true} if and only if the reference count became
+     *         {@code 0} and the memory of this buffer has been returned
+     *
+     * @throws IllegalStateException
+     *         if this buffer has been released already
+     */
+    boolean release();
+}
@@ -90,6 +90,13 @@ public class SlicedChannelBuffer extends AbstractChannelBuffer implements Wrappe
         return buffer.getByte(index + adjustment);
     }
 
+    @Override
+    public int forEachByte(int index, int length, ChannelBufferProcessor processor) {
+        checkIndex(index, length);
+        int ret = buffer.forEachByte(index + adjustment, length, processor);
+        return ret < 0 ? -1 : ret - adjustment;
+    }
+
     public short getShort(int index) {
         checkIndex(index, 2);
         return buffer.getShort(index + adjustment);
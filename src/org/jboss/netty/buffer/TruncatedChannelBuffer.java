@@ -83,6 +83,12 @@ public class TruncatedChannelBuffer extends AbstractChannelBuffer implements Wra
         return buffer.getByte(index);
     }
 
+    @Override
+    public int forEachByte(int index, int length, ChannelBufferProcessor processor) {
+        checkIndex(index, length);
+        return buffer.forEachByte(index, length, processor);
+    }
+
     public short getShort(int index) {
         checkIndex(index, 2);
         return buffer.getShort(index);
@@ -0,0 +1,408 @@
+/*
+ * Copyright 2014 The Netty Project
+ *
+ * The Netty Project licenses this file to you under the Apache License,
+ * version 2.0 (the "License"); you may not use this file except in compliance
+ * with the License. You may obtain a copy of the License at:
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS, WITHOUT
+ * WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied. See the
+ * License for the specific language governing permissions and limitations
+ * under the License.
+ */
+package org.jboss.netty.buffer;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.nio.channels.ClosedChannelException;
+import java.nio.channels.GatheringByteChannel;
+import java.nio.channels.ScatteringByteChannel;
+
+import org.jboss.netty.util.internal.UnsafeMemory;
+
+/**
+ * A direct buffer which accesses the memory of a direct {@link ByteBuffer}
+ * via its raw address rather than through the {@link ByteBuffer} API.
+ * Unlike {@link ByteBufferBackedChannelBuffer}, primitive accesses do not
+ * go through the bounds and byte order checks of the {@link ByteBuffer}, and
+ * bulk transfers to and from byte arrays and other direct buffers are single
+ * memory copies without any {@link ByteBuffer#duplicate()}.
+ * <p>
+ * This buffer is only available if {@link #isSupported()} returns
+ * {@code true}.  Use {@link DirectChannelBufferFactory} with
+ * {@code preferUnsafe} set to obtain it with an automatic fallback to
+ * {@link ByteBufferBackedChannelBuffer}.
+ */
+public class UnsafeDirectChannelBuffer extends AbstractChannelBuffer {
+
+    private final ByteBuffer buffer;
+    private final ByteOrder order;
+    private final boolean swap;
+    private final long memoryAddress;
+    private final int capacity;
+
+    /**
+     * Returns {@code true} if and only if this buffer can be used in the
+     * current runtime environment.
+     */
+    public static boolean isSupported() {
+        return UnsafeMemory.isAvailable();
+    }
+
+    /**
+     * Creates a new buffer which wraps the specified direct buffer's slice.
+     * A read-only buffer is rejected because this buffer writes to the memory
+     * directly; wrap it with {@link ChannelBuffers#wrappedBuffer(ByteBuffer)}
+     * instead.
+     *
+     * @throws IllegalArgumentException if the specified buffer is not direct
+     *                                  or is read-only
+     * @throws UnsupportedOperationException if {@link #isSupported()} is {@code false}
+     */
+    public UnsafeDirectChannelBuffer(ByteBuffer buffer) {
+        if (buffer == null) {
+            throw new NullPointerException("buffer");
+        }
+        if (!buffer.isDirect()) {
+            throw new IllegalArgumentException("buffer is not direct");
+        }
+        if (buffer.isReadOnly()) {
+            throw new IllegalArgumentException("buffer is read-only");
+        }
+        if (!isSupported()) {
+            throw new UnsupportedOperationException("sun.misc.Unsafe is not available");
+        }
+
+        order = buffer.order();
+        swap = order == ByteOrder.BIG_ENDIAN != UnsafeMemory.isNativeOrderBigEndian();
+        this.buffer = buffer.slice().order(order);
+        memoryAddress = UnsafeMemory.directBufferAddress(this.buffer);
+        capacity = this.buffer.remaining();
+        writerIndex(capacity);
+    }
+
+    private UnsafeDirectChannelBuffer(UnsafeDirectChannelBuffer buffer) {
+        this.buffer = buffer.buffer;
+        order = buffer.order;
+        swap = buffer.swap;
+        memoryAddress = buffer.memoryAddress;
+        capacity = buffer.capacity;
+        setIndex(buffer.readerIndex(), buffer.writerIndex());
+    }
+
+    public ChannelBufferFactory factory() {
+        return DirectChannelBufferFactory.getInstance(order());
+    }
+
+    public boolean isDirect() {
+        return true;
+    }
+
+    public ByteOrder order() {
+        return order;
+    }
+
+    public int capacity() {
+        return capacity;
+    }
+
+    public boolean hasArray() {
+        return false;
+    }
+
+    public byte[] array() {
+        throw new UnsupportedOperationException();
+    }
+
+    public int arrayOffset() {
+        throw new UnsupportedOperationException();
+    }
+
+    public byte getByte(int index) {
+        checkIndex(index, 1);
+        return UnsafeMemory.getByte(memoryAddress + index);
+    }
+
+    public short getShort(int index) {
+        checkIndex(index, 2);
+        short v = UnsafeMemory.getShort(memoryAddress + index);
+        return swap ? Short.reverseBytes(v) : v;
+    }
+
+    public int getUnsignedMedium(int index) {
+        checkIndex(index, 3);
+        long address = memoryAddress + index;
+        if (order == ByteOrder.BIG_ENDIAN) {
+            return (UnsafeMemory.getByte(address)     & 0xff) << 16 |
+                   (UnsafeMemory.getByte(address + 1) & 0xff) <<  8 |
+                    UnsafeMemory.getByte(address + 2) & 0xff;
+        } else {
+            return  UnsafeMemory.getByte(address)     & 0xff        |
+                   (UnsafeMemory.getByte(address + 1) & 0xff) <<  8 |
+                   (UnsafeMemory.getByte(address + 2) & 0xff) << 16;
+        }
+    }
+
+    public int getInt(int index) {
+        checkIndex(index, 4);
+        int v = UnsafeMemory.getInt(memoryAddress + index);
+        return swap ? Integer.reverseBytes(v) : v;
+    }
+
+    public long getLong(int index) {
+        checkIndex(index, 8);
+        long v = UnsafeMemory.getLong(memoryAddress + index);
+        return swap ? Long.reverseBytes(v) : v;
+    }
+
+    public void setByte(int index, int value) {
+        checkIndex(index, 1);
+        UnsafeMemory.putByte(memoryAddress + index, (byte) value);
+    }
+
+    public void setShort(int index, int value) {
+        checkIndex(index, 2);
+        short v = (short) value;
+        UnsafeMemory.putShort(memoryAddress + index, swap ? Short.reverseBytes(v) : v);
+    }
+
+    public void setMedium(int index, int value) {
+        checkIndex(index, 3);
+        long address = memoryAddress + index;
+        if (order == ByteOrder.BIG_ENDIAN) {
+            UnsafeMemory.putByte(address,     (byte) (value >>> 16));
+            UnsafeMemory.putByte(address + 1, (byte) (value >>>  8));
+            UnsafeMemory.putByte(address + 2, (byte) value);
+        } else {
+            UnsafeMemory.putByte(address,     (byte) value);
+            UnsafeMemory.putByte(address + 1, (byte) (value >>>  8));
+            UnsafeMemory.putByte(address + 2, (byte) (value >>> 16));
+        }
+    }
+
+    public void setInt(int index, int value) {
+        checkIndex(index, 4);
+        UnsafeMemory.putInt(memoryAddress + index, swap ? Integer.reverseBytes(value) : value);
+    }
+
+    public void setLong(int index, long value) {
+        checkIndex(index, 8);
+        UnsafeMemory.putLong(memoryAddress + index, swap ? Long.reverseBytes(value) : value);
+    }
+
+    public void getBytes(int index, ChannelBuffer dst, int dstIndex, int length) {
+        checkIndex(index, length);
+        if (dst instanceof UnsafeDirectChannelBuffer) {
+            UnsafeDirectChannelBuffer udst = (UnsafeDirectChannelBuffer) dst;
+            udst.checkIndex(dstIndex, length);
+            UnsafeMemory.copyMemory(memoryAddress + index, udst.memoryAddress + dstIndex, length);
+        } else if (dst.hasArray()) {
+            getBytes(index, dst.array(), dst.arrayOffset() + dstIndex, length);
+        } else {
+            dst.setBytes(dstIndex, internalByteBuffer(index, length));
+        }
+    }
+
+    public void getBytes(int index, byte[] dst, int dstIndex, int length) {
+        checkIndex(index, length);
+        checkArrayIndex(dst, dstIndex, length);
+        UnsafeMemory.copyMemory(memoryAddress + index, dst, dstIndex, length);
+    }
+
+    public void getBytes(int index, ByteBuffer dst) {
+        int bytesToCopy = Math.min(capacity() - index, dst.remaining());
+        checkIndex(index, bytesToCopy);
+        if (dst.isDirect() && !dst.isReadOnly()) {
+            int position = dst.position();
+            UnsafeMemory.copyMemory(
+                    memoryAddress + index, UnsafeMemory.directBufferAddress(dst) + position, bytesToCopy);
+            dst.position(position + bytesToCopy);
+        } else if (dst.hasArray()) {
+            int position = dst.position();
+            getBytes(index, dst.array(), dst.arrayOffset() + position, bytesToCopy);
+            dst.position(position + bytesToCopy);
+        } else {
+            dst.put(internalByteBuffer(index, bytesToCopy));
+        }
+    }
+
+    public void setBytes(int index, ChannelBuffer src, int srcIndex, int length) {
+        checkIndex(index, length);
+        if (src instanceof UnsafeDirectChannelBuffer) {
+            UnsafeDirectChannelBuffer usrc = (UnsafeDirectChannelBuffer) src;
+            usrc.checkIndex(srcIndex, length);
+            UnsafeMemory.copyMemory(usrc.memoryAddress + srcIndex, memoryAddress + index, length);
+        } else if (src.hasArray()) {
+            setBytes(index, src.array(), src.arrayOffset() + srcIndex, length);
+        } else {
+            src.getBytes(srcIndex, internalByteBuffer(index, length));
+        }
+    }
+
+    public void setBytes(int index, byte[] src, int srcIndex, int length) {
+        checkIndex(index, length);
+        checkArrayIndex(src, srcIndex, length);
+        UnsafeMemory.copyMemory(src, srcIndex, memoryAddress + index, length);
+    }
+
+    public void setBytes(int index, ByteBuffer src) {
+        int length = src.remaining();
+        checkIndex(index, length);
+        if (src.isDirect()) {
+            int position = src.position();
+            UnsafeMemory.copyMemory(
+                    UnsafeMemory.directBufferAddress(src) + position, memoryAddress + index, length);
+            src.position(position + length);
+        } else if (src.hasArray()) {
+            int position = src.position();
+            setBytes(index, src.array(), src.arrayOffset() + position, length);
+            src.position(position + length);
+        } else {
+            internalByteBuffer(index, length).put(src);
+        }
+    }
+
+    public void getBytes(int index, OutputStream out, int length) throws IOException {
+        checkIndex(index, length);
+        if (length == 0) {
+            return;
+        }
+
+        byte[] tmp = new byte[length];
+        UnsafeMemory.copyMemory(memoryAddress + index, tmp, 0, length);
+        out.write(tmp);
+    }
+
+    public int getBytes(int index, GatheringByteChannel out, int length) throws IOException {
+        checkIndex(index, length);
+        if (length == 0) {
+            return 0;
+        }
+
+        return out.write(internalByteBuffer(index, length));
+    }
+
+    public int setBytes(int index, InputStream in, int length) throws IOException {
+        checkIndex(index, length);
+        byte[] tmp = new byte[length];
+        int readBytes = 0;
+        do {
+            int localReadBytes = in.read(tmp, readBytes, length - readBytes);
+            if (localReadBytes < 0) {
+                if (readBytes == 0) {
+                    return -1;
+                } else {
+                    break;
+                }
+            }
+            readBytes += localReadBytes;
+        } while (readBytes < length);
+
+        UnsafeMemory.copyMemory(tmp, 0, memoryAddress + index, readBytes);
+        return readBytes;
+    }
+
+    public int setBytes(int index, ScatteringByteChannel in, int length) throws IOException {
+        checkIndex(index, length);
+        ByteBuffer slice = internalByteBuffer(index, length);
+        int readBytes = 0;
+
+        while (readBytes < length) {
+            int localReadBytes;
+            try {
+                localReadBytes = in.read(slice);
+            } catch (ClosedChannelException e) {
+                localReadBytes = -1;
+            }
+            if (localReadBytes < 0) {
+                if (readBytes == 0) {
+                    return -1;
+                } else {
+                    return readBytes;
+                }
+            }
+            if (localReadBytes == 0) {
+                break;
+            }
+            readBytes += localReadBytes;
+        }
+
+        return readBytes;
+    }
+
+    @Override
+    public int forEachByte(int index, int length, ChannelBufferProcessor processor) {
+        if (processor == null) {
+            throw new NullPointerException("processor");
+        }
+        checkIndex(index, length);
+        long address = memoryAddress + index;
+        for (int i = 0; i < length; i ++) {
+            if (!processor.process(UnsafeMemory.getByte(address + i))) {
+                return index + i;
+            }
+        }
+        return -1;
+    }
+
+    public ByteBuffer toByteBuffer(int index, int length) {
+        if (index == 0 && length == capacity()) {
+            return buffer.duplicate().order(order());
+        } else {
+            checkIndex(index, length);
+            return internalByteBuffer(index, length).slice().order(order());
+        }
+    }
+
+    public ChannelBuffer slice(int index, int length) {
+        if (index == 0 && length == capacity()) {
+            ChannelBuffer slice = duplicate();
+            slice.setIndex(0, length);
+            return slice;
+        } else {
+            if (index >= 0 && length == 0) {
+                return ChannelBuffers.EMPTY_BUFFER;
+            }
+            checkIndex(index, length);
+            return new UnsafeDirectChannelBuffer(internalByteBuffer(index, length).order(order()));
+        }
+    }
+
+    public ChannelBuffer duplicate() {
+        return new UnsafeDirectChannelBuffer(this);
+    }
+
+    public ChannelBuffer copy(int index, int length) {
+        checkIndex(index, length);
+        ByteBuffer dst = ByteBuffer.allocateDirect(length).order(order());
+        UnsafeDirectChannelBuffer copy = new UnsafeDirectChannelBuffer(dst);
+        UnsafeMemory.copyMemory(memoryAddress + index, copy.memoryAddress, length);
+        return copy;
+    }
+
+    private ByteBuffer internalByteBuffer(int index, int length) {
+        return (ByteBuffer) buffer.duplicate().limit(index + length).position(index);
+    }
+
+    private void checkIndex(int index, int length) {
+        if (index < 0 || length < 0 || index > capacity - length) {
+            throw new IndexOutOfBoundsException("Invalid index: " + index
+                    + " - Bytes needed: " + (index + length) + ", maximum is "
+                    + capacity);
+        }
+    }
+
+    private static void checkArrayIndex(byte[] array, int index, int length) {
+        if (index < 0 || length < 0 || index > array.length - length) {
+            throw new IndexOutOfBoundsException("Invalid index: " + index
+                    + " - Bytes needed: " + (index + length) + ", maximum is "
+                    + array.length);
+        }
+    }
+}
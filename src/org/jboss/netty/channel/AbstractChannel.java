@@ -5,6 +5,8 @@ import org.jboss.netty.util.internal.ConcurrentHashMap;
 import java.net.SocketAddress;
 import java.util.Random;
 import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicReferenceArray;
 
 /**
  * A skeletal Channel implementation.
@@ -12,33 +14,104 @@ import java.util.concurrent.ConcurrentMap;
 public abstract class AbstractChannel implements
 		org.jboss.netty.channel.Channel {
 
-	//άChannelӦID
-	static final ConcurrentMap<Integer, Channel> allChannels = new ConcurrentHashMap<Integer, Channel>();
+	/**
+	 * The number of IDs a thread reserves at once.
+	 */
+	private static final int ID_BLOCK_SIZE = 1024;
 
-	private static final Random random = new Random();
+	/**
+	 * The first ID of the next block to reserve.  Starts at a random value so
+	 * that the IDs differ from run to run.
+	 */
+	private static final AtomicInteger nextIdBlock = new AtomicInteger(new Random().nextInt());
 
-	private static Integer allocateId(Channel channel) {
-		Integer id = random.nextInt();
-		for (;;) {
-			// ѭֱõһΨһID.
-			// It should be found in one loop practically.
-			if (allChannels.putIfAbsent(id, channel) == null) {
-				// Successfully acquired.
-				return id;
-			} else {
-				// Taken by other channel at almost the same moment.
-				id = id.intValue() + 1;
+	/**
+	 * The reserved blocks which still have live channels or are being used
+	 * by a thread, by their first ID.  Once the IDs have wrapped around, a
+	 * block in this map is skipped, so that no two live channels share an ID.
+	 */
+	private static final ConcurrentMap<Integer, IdBlock> reservedIdBlocks =
+		new ConcurrentHashMap<Integer, IdBlock>();
+
+	/**
+	 * The block the current thread allocates IDs from.
+	 */
+	private static final ThreadLocal<IdBlock> currentIdBlock = new ThreadLocal<IdBlock>();
+
+	/**
+	 * A block of {@link #ID_BLOCK_SIZE} IDs reserved by a thread, so that
+	 * threads creating channels do not contend with each other.  A block is
+	 * released for reuse when the thread has allocated all of its IDs and
+	 * all channels with those IDs have been closed.
+	 */
+	private static final class IdBlock {
+		final Integer firstId;
+		/** The next ID; only accessed by the thread which reserved the block */
+		private int nextId;
+		/** The live channels plus one for the thread while it allocates IDs */
+		private final AtomicInteger refCnt = new AtomicInteger(1);
+
+		IdBlock(int firstId) {
+			this.firstId = firstId;
+			nextId = firstId;
+		}
+
+		/**
+		 * Allocates an ID from the block reserved by the current thread.
+		 * The blocks of live channels are never reserved again, so an ID is
+		 * unique among the live channels even after 2<sup>32</sup> channels
+		 * have been created and the IDs have wrapped around.
+		 */
+		static IdBlock allocate() {
+			IdBlock block = currentIdBlock.get();
+			if (block == null) {
+				block = reserve();
+				currentIdBlock.set(block);
+			}
+			block.refCnt.incrementAndGet();
+			return block;
+		}
+
+		private static IdBlock reserve() {
+			for (;;) {
+				IdBlock block = new IdBlock(nextIdBlock.getAndAdd(ID_BLOCK_SIZE));
+				if (reservedIdBlocks.putIfAbsent(block.firstId, block) == null) {
+					return block;
+				}
+				// The IDs have wrapped around and some channels from this
+				// block are still open - skip it.
+			}
+		}
+
+		/**
+		 * Returns the next ID of this block, and gives the block up once all
+		 * its IDs have been allocated.
+		 */
+		Integer nextId() {
+			int id = nextId ++;
+			if (nextId - firstId == ID_BLOCK_SIZE) {
+				currentIdBlock.remove();
+				release();
+			}
+			return id;
+		}
+
+		void release() {
+			if (refCnt.decrementAndGet() == 0) {
+				reservedIdBlocks.remove(firstId, this);
 			}
 		}
 	}
 
 	private final Integer id;
+	private final IdBlock idBlock;
 	private final Channel parent; //
 	private final ChannelFactory factory;
 	private final ChannelPipeline pipeline;
 	//
 	private final ChannelFuture succeededFuture = new SucceededChannelFuture(
 			this);
+	private final ChannelFuture voidFuture = new VoidChannelFuture(this);
 	private final ChannelCloseFuture closeFuture = new ChannelCloseFuture();
 	private volatile int interestOps = OP_READ;
 
@@ -47,6 +120,13 @@ public abstract class AbstractChannel implements
 	private String strVal;
 	private volatile Object attachment;
 
+	/**
+	 * The values of the {@link ChannelAttribute}s, indexed by their indexes.
+	 * Only replaced while holding {@link #attributesLock}.
+	 */
+	private volatile AtomicReferenceArray<Object> attributes;
+	private final Object attributesLock = new Object();
+
 	/**
 	 * ʵעĺ壬رChannelSink
 	 * 
@@ -67,7 +147,8 @@ public abstract class AbstractChannel implements
 		this.factory = factory;
 		this.pipeline = pipeline;
 
-		id = allocateId(this);
+		idBlock = IdBlock.allocate();
+		id = idBlock.nextId();
 
 		pipeline.attach(this, sink);
 	}
@@ -78,6 +159,7 @@ public abstract class AbstractChannel implements
 			ChannelFactory factory, ChannelPipeline pipeline, ChannelSink sink) {
 
 		this.id = id;
+		idBlock = null;
 		this.parent = parent;
 		this.factory = factory;
 		this.pipeline = pipeline;
@@ -107,6 +189,13 @@ public abstract class AbstractChannel implements
 		return succeededFuture;
 	}
 
+	/**
+	 * Returns the cached {@link VoidChannelFuture} instance.
+	 */
+	protected ChannelFuture getVoidFuture() {
+		return voidFuture;
+	}
+
 	/**
 	 * Returns the FailedChannelFuture whose cause is an
 	 * UnsupportedOperationException.
@@ -148,11 +237,15 @@ public abstract class AbstractChannel implements
 	 *         yet
 	 */
 	protected boolean setClosed() {
-		// Deallocate the current channel's ID from allChannels so that other
-		// new channels can use it.
-		allChannels.remove(id);
+		if (!closeFuture.setClosed()) {
+			return false;
+		}
 
-		return closeFuture.setClosed();
+		// Let a new channel use the ID once the IDs have wrapped around.
+		if (idBlock != null) {
+			idBlock.release();
+		}
+		return true;
 	}
 
 	// 涼ǵø׽ֵĻ߼
@@ -231,6 +324,52 @@ public abstract class AbstractChannel implements
 		this.attachment = attachment;
 	}
 
+	/**
+	 * Returns the value of the {@link ChannelAttribute} with the specified
+	 * index, or {@code null} if not set.
+	 */
+	final Object getAttribute(int index) {
+		AtomicReferenceArray<Object> attributes = this.attributes;
+		if (attributes == null || index >= attributes.length()) {
+			return null;
+		}
+		return attributes.get(index);
+	}
+
+	/**
+	 * Sets or removes (if {@code value} is {@code null}) the value of the
+	 * {@link ChannelAttribute} with the specified index.
+	 * 
+	 * @param onlyIfAbsent
+	 *            {@code true} to set the value only when no value was set
+	 * @return the old value, or {@code null} if no value was set
+	 */
+	final Object setAttribute(int index, Object value, boolean onlyIfAbsent) {
+		synchronized (attributesLock) {
+			AtomicReferenceArray<Object> attributes = this.attributes;
+			if (attributes == null || index >= attributes.length()) {
+				if (value == null) {
+					return null;
+				}
+				// Make room for all attributes created so far at once.
+				int length = Math.max(index + 1, ChannelAttribute.count());
+				AtomicReferenceArray<Object> newAttributes = new AtomicReferenceArray<Object>(length);
+				if (attributes != null) {
+					for (int i = 0; i < attributes.length(); i ++) {
+						newAttributes.set(i, attributes.get(i));
+					}
+				}
+				this.attributes = attributes = newAttributes;
+			}
+
+			Object old = attributes.get(index);
+			if (!onlyIfAbsent || old == null) {
+				attributes.set(index, value);
+			}
+			return old;
+		}
+	}
+
 	/**
 	 * Returns the String representation of this channel. The returned string
 	 * contains the ID, local address, and remote address of this channel for
@@ -0,0 +1,211 @@
+/*
+ * Copyright 2014 The Netty Project
+ *
+ * The Netty Project licenses this file to you under the Apache License,
+ * version 2.0 (the "License"); you may not use this file except in compliance
+ * with the License. You may obtain a copy of the License at:
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS, WITHOUT
+ * WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied. See the
+ * License for the specific language governing permissions and limitations
+ * under the License.
+ */
+package org.jboss.netty.channel;
+
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import org.jboss.netty.util.internal.ConcurrentIdentityWeakKeyHashMap;
+
+/**
+ * A {@link ChannelLocal} alternative whose values are stored in the
+ * {@link Channel} itself.  Every {@link ChannelAttribute} is assigned an index
+ * when created, and the value of a channel is kept in a slot of an array
+ * allocated by the channel, so an access costs an array lookup instead of a
+ * lookup in a map shared by all channels, and a value is garbage-collected
+ * with its channel without weak reference bookkeeping.
+ * <p>
+ * The API is the same as {@link ChannelLocal}, except that the values of all
+ * channels cannot be iterated over.  An index is never reused, so create a
+ * {@link ChannelAttribute} once, usually as a {@code static final} field,
+ * rather than per channel or per handler.
+ * <p>
+ * The values of a {@link Channel} which is not an {@link AbstractChannel} are
+ * kept in a weak map, like {@link ChannelLocal} does.
+ * @apiviz.stereotype utility
+ */
+public class ChannelAttribute<T> {
+
+    private static final AtomicInteger nextIndex = new AtomicInteger();
+
+    /**
+     * Returns the number of {@link ChannelAttribute}s created so far.
+     */
+    static int count() {
+        return nextIndex.get();
+    }
+
+    private final int index = nextIndex.getAndIncrement();
+    private volatile ConcurrentMap<Channel, Object> fallbackMap;
+
+    private final ChannelFutureListener remover = new ChannelFutureListener() {
+        public void operationComplete(ChannelFuture future) throws Exception {
+            remove(future.getChannel());
+        }
+    };
+
+    private final boolean removeOnClose;
+
+    /**
+     * Creates a {@link Channel} attribute by calling {@link #ChannelAttribute(boolean)} with
+     * {@code false} as parameter
+     */
+    public ChannelAttribute() {
+        this(false);
+    }
+
+    /**
+     * Creates a {@link Channel} attribute.
+     *
+     * @param removeOnClose if {@code true} the value of a {@link Channel} is
+     *                      removed once the {@link Channel} was closed.
+     */
+    public ChannelAttribute(boolean removeOnClose) {
+        this.removeOnClose = removeOnClose;
+    }
+
+    /**
+     * Returns the initial value of the attribute.  By default, it returns
+     * {@code null}.  Override it to change the initial value.
+     *
+     * @param channel the channel where this attribute is accessed with
+     */
+    protected T initialValue(Channel channel) {
+        return null;
+    }
+
+    /**
+     * Returns the value of this attribute.
+     */
+    public T get(Channel channel) {
+        if (channel == null) {
+            throw new NullPointerException("channel");
+        }
+
+        T value = get0(channel);
+        if (value == null) {
+            value = initialValue(channel);
+            if (value != null) {
+                T oldValue = setIfAbsent(channel, value);
+                if (oldValue != null) {
+                    value = oldValue;
+                }
+            }
+        }
+        return value;
+    }
+
+    /**
+     * Sets the value of this attribute.
+     *
+     * @return the old value. {@code null} if there was no old value.
+     */
+    public T set(Channel channel, T value) {
+        if (value == null) {
+            return remove(channel);
+        } else {
+            if (channel == null) {
+                throw new NullPointerException("channel");
+            }
+            T old = set0(channel, value, false);
+            if (removeOnClose && old == null) {
+                channel.getCloseFuture().addListener(remover);
+            }
+            return old;
+        }
+    }
+
+    /**
+     * Sets the value of this attribute only when no value was set.
+     *
+     * @return {@code null} if the specified value was set.
+     *         An existing value if failed to set.
+     */
+    public T setIfAbsent(Channel channel, T value) {
+        if (value == null) {
+            return get(channel);
+        } else {
+            if (channel == null) {
+                throw new NullPointerException("channel");
+            }
+            T mapping = set0(channel, value, true);
+            if (removeOnClose && mapping == null) {
+                channel.getCloseFuture().addListener(remover);
+            }
+            return mapping;
+        }
+    }
+
+    /**
+     * Removes the attribute and returns the removed value.  If no value was set,
+     * this method returns the return value of {@link #initialValue(Channel)},
+     * which is {@code null} by default.
+     *
+     * @return the removed value.
+     *         {@linkplain #initialValue(Channel) an initial value} (by default
+     *         {@code null}) if no value was set.
+     */
+    public T remove(Channel channel) {
+        if (channel == null) {
+            throw new NullPointerException("channel");
+        }
+        T removed = set0(channel, null, false);
+        if (removed == null) {
+            return initialValue(channel);
+        } else {
+            if (removeOnClose) {
+                channel.getCloseFuture().removeListener(remover);
+            }
+            return removed;
+        }
+    }
+
+    @SuppressWarnings("unchecked")
+    private T get0(Channel channel) {
+        if (channel instanceof AbstractChannel) {
+            return (T) ((AbstractChannel) channel).getAttribute(index);
+        }
+        return (T) fallbackMap().get(channel);
+    }
+
+    @SuppressWarnings("unchecked")
+    private T set0(Channel channel, T value, boolean onlyIfAbsent) {
+        if (channel instanceof AbstractChannel) {
+            return (T) ((AbstractChannel) channel).setAttribute(index, value, onlyIfAbsent);
+        }
+        ConcurrentMap<Channel, Object> map = fallbackMap();
+        if (value == null) {
+            return (T) map.remove(channel);
+        }
+        if (onlyIfAbsent) {
+            return (T) map.putIfAbsent(channel, value);
+        }
+        return (T) map.put(channel, value);
+    }
+
+    private ConcurrentMap<Channel, Object> fallbackMap() {
+        ConcurrentMap<Channel, Object> map = fallbackMap;
+        if (map == null) {
+            synchronized (this) {
+                map = fallbackMap;
+                if (map == null) {
+                    fallbackMap = map = new ConcurrentIdentityWeakKeyHashMap<Channel, Object>();
+                }
+            }
+        }
+        return map;
+    }
+}
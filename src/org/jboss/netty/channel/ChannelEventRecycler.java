@@ -0,0 +1,187 @@
+/*
+ * Copyright 2014 The Netty Project
+ *
+ * The Netty Project licenses this file to you under the Apache License,
+ * version 2.0 (the "License"); you may not use this file except in compliance
+ * with the License. You may obtain a copy of the License at:
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS, WITHOUT
+ * WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied. See the
+ * License for the specific language governing permissions and limitations
+ * under the License.
+ */
+package org.jboss.netty.channel;
+
+import java.net.SocketAddress;
+
+import org.jboss.netty.util.internal.Recycler;
+import org.jboss.netty.util.internal.SystemPropertyUtil;
+
+/**
+ * Reuses the {@link UpstreamMessageEvent}s and {@link DownstreamMessageEvent}s
+ * created by {@link Channels}, and the write futures created by
+ * {@link Channels#recyclableFuture(Channel)}, so that the steady-state traffic
+ * of a channel allocates almost nothing per message.  Recycling is disabled by
+ * default, because it imposes the following ownership rules on handlers.
+ *
+ * <h3>Upstream message events</h3>
+ * An event fired by {@link Channels#fireMessageReceived(Channel, Object)} and
+ * its variants is recycled as soon as the call returns.  A handler which keeps
+ * an event after its {@code handleUpstream()} returned, such as
+ * {@link org.jboss.netty.handler.execution.ExecutionHandler}, must call
+ * {@link #retain(ChannelEvent)} first, so that the event is not recycled.
+ *
+ * <h3>Downstream message events</h3>
+ * An event sent by {@link Channels#write(Channel, Object)} and its variants is
+ * recycled by the NIO socket transport once the message has been written or
+ * has failed.  A handler must not access the event after it sent it further
+ * downstream.
+ *
+ * <h3>Write futures</h3>
+ * A future returned by {@link Channels#recyclableFuture(Channel)} is recycled
+ * right after it is complete and its listeners have been notified.  Add all
+ * listeners before the future is passed to a write, and do not access the
+ * future outside of the listeners.  Such a future cannot be waited for.
+ *
+ * <h3>Debug mode</h3>
+ * When the {@code org.jboss.netty.recycleEvents.debug} system property is
+ * {@code true}, accessing a recycled event or future, or recycling it twice,
+ * raises an {@link IllegalStateException}, so that a handler which breaks the
+ * rules above fails fast instead of seeing the data of an unrelated message.
+ * <p>
+ * Recycling can be enabled at runtime with {@link #setEnabled(boolean)}, or
+ * with the {@code org.jboss.netty.recycleEvents} system property.  The number
+ * of objects pooled per thread is limited by the
+ * {@code org.jboss.netty.recycler.maxCapacity} system property (default: 256).
+ */
+public final class ChannelEventRecycler {
+
+    static final boolean DEBUG =
+            SystemPropertyUtil.getBoolean("org.jboss.netty.recycleEvents.debug", false);
+
+    private static volatile boolean enabled =
+            SystemPropertyUtil.getBoolean("org.jboss.netty.recycleEvents", false);
+
+    // The states of a recyclable object.
+    static final int NOT_POOLED = 0;
+    static final int IN_USE = 1;
+    static final int RETAINED = 2;
+    static final int RECYCLED = 3;
+
+    static final Recycler<UpstreamMessageEvent> UPSTREAM_MESSAGE_EVENTS =
+            new Recycler<UpstreamMessageEvent>() {
+        @Override
+        protected UpstreamMessageEvent newObject() {
+            return new UpstreamMessageEvent();
+        }
+    };
+
+    static final Recycler<DownstreamMessageEvent> DOWNSTREAM_MESSAGE_EVENTS =
+            new Recycler<DownstreamMessageEvent>() {
+        @Override
+        protected DownstreamMessageEvent newObject() {
+            return new DownstreamMessageEvent();
+        }
+    };
+
+    static final Recycler<RecyclableChannelFuture> FUTURES =
+            new Recycler<RecyclableChannelFuture>() {
+        @Override
+        protected RecyclableChannelFuture newObject() {
+            return new RecyclableChannelFuture();
+        }
+    };
+
+    /**
+     * Returns {@code true} if and only if recycling is enabled.
+     */
+    public static boolean isEnabled() {
+        return enabled;
+    }
+
+    /**
+     * Enables or disables recycling.  The objects in use keep being recycled
+     * even after recycling has been disabled.
+     */
+    public static void setEnabled(boolean enabled) {
+        ChannelEventRecycler.enabled = enabled;
+    }
+
+    /**
+     * Returns {@code true} if and only if the ownership rules are enforced.
+     */
+    public static boolean isDebugEnabled() {
+        return DEBUG;
+    }
+
+    /**
+     * Prevents the specified event from being recycled, so that it can be
+     * accessed after it has been handled.  Does nothing if the event is not
+     * recyclable.
+     *
+     * @return the specified event
+     */
+    public static <E extends ChannelEvent> E retain(E e) {
+        if (e instanceof UpstreamMessageEvent) {
+            ((UpstreamMessageEvent) e).retain();
+        } else if (e instanceof DownstreamMessageEvent) {
+            ((DownstreamMessageEvent) e).retain();
+        }
+        return e;
+    }
+
+    /**
+     * Recycles the specified event.  A transport calls this method once it has
+     * written the message of the event and taken its future.  Does nothing if
+     * the event is not recyclable or has been {@linkplain #retain(ChannelEvent) retained}.
+     */
+    public static void recycle(ChannelEvent e) {
+        if (e instanceof UpstreamMessageEvent) {
+            ((UpstreamMessageEvent) e).recycle();
+        } else if (e instanceof DownstreamMessageEvent) {
+            ((DownstreamMessageEvent) e).recycle();
+        }
+    }
+
+    static UpstreamMessageEvent newUpstreamMessageEvent(
+            Channel channel, Object message, SocketAddress remoteAddress) {
+        if (!enabled) {
+            return new UpstreamMessageEvent(channel, message, remoteAddress);
+        }
+        UpstreamMessageEvent e = UPSTREAM_MESSAGE_EVENTS.get();
+        e.init(channel, message, remoteAddress);
+        return e;
+    }
+
+    static DownstreamMessageEvent newDownstreamMessageEvent(
+            Channel channel, ChannelFuture future, Object message, SocketAddress remoteAddress) {
+        if (!enabled) {
+            return new DownstreamMessageEvent(channel, future, message, remoteAddress);
+        }
+        DownstreamMessageEvent e = DOWNSTREAM_MESSAGE_EVENTS.get();
+        e.init(channel, future, message, remoteAddress);
+        return e;
+    }
+
+    static ChannelFuture newFuture(Channel channel) {
+        if (!enabled) {
+            return new DefaultChannelFuture(channel, false);
+        }
+        RecyclableChannelFuture future = FUTURES.get();
+        future.init(channel);
+        return future;
+    }
+
+    static void checkNotRecycled(int state) {
+        if (state == RECYCLED) {
+            throw new IllegalStateException("accessed after recycled");
+        }
+    }
+
+    private ChannelEventRecycler() {
+        // Unused
+    }
+}
@@ -0,0 +1,48 @@
+/*
+ * Copyright 2014 The Netty Project
+ *
+ * The Netty Project licenses this file to you under the Apache License,
+ * version 2.0 (the "License"); you may not use this file except in compliance
+ * with the License. You may obtain a copy of the License at:
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS, WITHOUT
+ * WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied. See the
+ * License for the specific language governing permissions and limitations
+ * under the License.
+ */
+package org.jboss.netty.channel;
+
+/**
+ * (Internal use only) Invokes the handler at a given position of a
+ * {@link StaticChannelPipeline}.  A subclass generated at runtime for the
+ * handler classes of a pipeline calls each handler through its own call site,
+ * so that the JIT compiler can inline the handler methods instead of
+ * dispatching through a single megamorphic interface call.
+ *
+ * @see StaticChannelPipeline#compile()
+ */
+public abstract class ChannelHandlerDispatcher {
+
+    /**
+     * Creates a new instance.
+     */
+    protected ChannelHandlerDispatcher() {
+    }
+
+    /**
+     * Invokes {@link ChannelUpstreamHandler#handleUpstream(ChannelHandlerContext, ChannelEvent)}
+     * of the specified handler, which is at the specified position of the pipeline.
+     */
+    public abstract void handleUpstream(
+            int index, ChannelHandler handler, ChannelHandlerContext ctx, ChannelEvent e) throws Exception;
+
+    /**
+     * Invokes {@link ChannelDownstreamHandler#handleDownstream(ChannelHandlerContext, ChannelEvent)}
+     * of the specified handler, which is at the specified position of the pipeline.
+     */
+    public abstract void handleDownstream(
+            int index, ChannelHandler handler, ChannelHandlerContext ctx, ChannelEvent e) throws Exception;
+}
@@ -0,0 +1,540 @@
+/*
+ * Copyright 2014 The Netty Project
+ *
+ * The Netty Project licenses this file to you under the Apache License,
+ * version 2.0 (the "License"); you may not use this file except in compliance
+ * with the License. You may obtain a copy of the License at:
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS, WITHOUT
+ * WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied. See the
+ * License for the specific language governing permissions and limitations
+ * under the License.
+ */
+package org.jboss.netty.channel;
+
+import java.io.ByteArrayOutputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.lang.ref.Reference;
+import java.lang.ref.SoftReference;
+import java.lang.ref.WeakReference;
+import java.lang.reflect.Modifier;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.Map.Entry;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import org.jboss.netty.logging.InternalLogger;
+import org.jboss.netty.logging.InternalLoggerFactory;
+
+/**
+ * Generates a {@link ChannelHandlerDispatcher} for a sequence of handler
+ * classes.  The generated class looks like the following:
+ * <pre>
+ * public final class GeneratedChannelHandlerDispatcher<i>N</i> extends {@link ChannelHandlerDispatcher} {
+ *     public void handleUpstream(int index, ChannelHandler handler, ChannelHandlerContext ctx, ChannelEvent e) {
+ *         switch (index) {
+ *         case 0:
+ *             ((FirstHandler) handler).handleUpstream(ctx, e);
+ *             return;
+ *         case 1:
+ *             ...
+ *         default:
+ *             ((ChannelUpstreamHandler) handler).handleUpstream(ctx, e);
+ *         }
+ *     }
+ *     ...
+ * }
+ * </pre>
+ * The class file is written directly in the Java 5 format, which does not
+ * require stack map frames, so that no bytecode library is needed.  The
+ * generated dispatchers are cached per sequence of handler classes, so all
+ * pipelines created by the same {@link ChannelPipelineFactory} share one.
+ * The cache refers to the handler classes weakly and to the dispatchers
+ * softly, so that it never keeps the class loader of an application alive,
+ * and holds at most {@value #MAX_CACHED_DISPATCHERS} dispatchers.
+ */
+final class ChannelHandlerDispatcherGenerator {
+
+    private static final InternalLogger logger =
+        InternalLoggerFactory.getInstance(ChannelHandlerDispatcherGenerator.class);
+
+    private static final String DISPATCHER = internalName(ChannelHandlerDispatcher.class);
+    private static final String UPSTREAM_HANDLER = internalName(ChannelUpstreamHandler.class);
+    private static final String DOWNSTREAM_HANDLER = internalName(ChannelDownstreamHandler.class);
+    private static final String DISPATCH_DESCRIPTOR =
+            '(' + "I" + descriptor(ChannelHandler.class) + descriptor(ChannelHandlerContext.class) +
+            descriptor(ChannelEvent.class) + ")V";
+    private static final String HANDLE_DESCRIPTOR =
+            '(' + descriptor(ChannelHandlerContext.class) + descriptor(ChannelEvent.class) + ")V";
+
+    static final int MAX_CACHED_DISPATCHERS = 256;
+
+    /**
+     * Dispatchers cached per sequence of handler classes, in access order.
+     * A sequence which failed to compile is mapped to {@link #FAILED}.
+     */
+    private static final Map<Shape, Reference<Object>> cache =
+            new LinkedHashMap<Shape, Reference<Object>>(16, 0.75f, true) {
+        private static final long serialVersionUID = -3420474386497584395L;
+
+        @Override
+        protected boolean removeEldestEntry(Entry<Shape, Reference<Object>> eldest) {
+            return size() > MAX_CACHED_DISPATCHERS;
+        }
+    };
+    private static final Object FAILED = new Object();
+    private static final AtomicInteger nextId = new AtomicInteger();
+
+    /**
+     * Returns the dispatcher for the specified handlers, or {@code null} if it
+     * could not be generated.
+     */
+    static ChannelHandlerDispatcher get(ChannelHandler[] handlers) {
+        Class<?>[] classes = new Class<?>[handlers.length];
+        for (int i = 0; i < handlers.length; i ++) {
+            classes[i] = handlers[i].getClass();
+        }
+        Shape shape = new Shape(classes);
+
+        Object dispatcher = getCached(shape);
+        if (dispatcher == null) {
+            try {
+                dispatcher = generate(classes);
+            } catch (Throwable t) {
+                if (logger.isDebugEnabled()) {
+                    logger.debug("Failed to generate a dispatcher for: " + Arrays.asList(classes), t);
+                }
+                dispatcher = FAILED;
+            }
+            dispatcher = cache(shape, dispatcher);
+        }
+        return dispatcher == FAILED ? null : (ChannelHandlerDispatcher) dispatcher;
+    }
+
+    private static Object getCached(Shape shape) {
+        synchronized (cache) {
+            Reference<Object> ref = cache.get(shape);
+            return ref == null ? null : ref.get();
+        }
+    }
+
+    /**
+     * Caches the specified dispatcher unless another thread has cached one
+     * for the same shape in the meantime.
+     *
+     * @return the cached dispatcher
+     */
+    private static Object cache(Shape shape, Object dispatcher) {
+        synchronized (cache) {
+            Reference<Object> ref = cache.get(shape);
+            Object oldDispatcher = ref == null ? null : ref.get();
+            if (oldDispatcher != null) {
+                return oldDispatcher;
+            }
+
+            // Purge the entries whose classes or dispatchers have been collected.
+            for (Iterator<Entry<Shape, Reference<Object>>> i = cache.entrySet().iterator(); i.hasNext();) {
+                Entry<Shape, Reference<Object>> e = i.next();
+                if (e.getValue().get() == null || e.getKey().isStale()) {
+                    i.remove();
+                }
+            }
+            cache.put(shape.weak(), new SoftReference<Object>(dispatcher));
+            return dispatcher;
+        }
+    }
+
+    private static ChannelHandlerDispatcher generate(Class<?>[] classes) throws Exception {
+        String name = ChannelHandlerDispatcher.class.getPackage().getName() +
+                ".GeneratedChannelHandlerDispatcher" + nextId.getAndIncrement();
+        byte[] classFile = new ClassFileWriter(internalName(name), classes).write();
+        Class<?> c = new DispatcherClassLoader(classes).define(name, classFile);
+        return (ChannelHandlerDispatcher) c.getDeclaredConstructor().newInstance();
+    }
+
+    /**
+     * Returns the type to cast a handler of the specified class to, so that
+     * its handler method can be invoked from the generated class: the class
+     * itself or its nearest accessible superclass, or {@code null} to invoke
+     * the method via the interface.
+     */
+    static Class<?> invocationTarget(Class<?> c, Class<?> handlerInterface, String methodName) {
+        for (; c != null && handlerInterface.isAssignableFrom(c); c = c.getSuperclass()) {
+            if (!isAccessible(c)) {
+                continue;
+            }
+            try {
+                // Also makes sure the class sees the same Netty classes as we do.
+                c.getMethod(methodName, ChannelHandlerContext.class, ChannelEvent.class);
+                return c;
+            } catch (NoSuchMethodException e) {
+                return null;
+            }
+        }
+        return null;
+    }
+
+    private static boolean isAccessible(Class<?> c) {
+        for (; c != null; c = c.getEnclosingClass()) {
+            if (!Modifier.isPublic(c.getModifiers())) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    static String internalName(Class<?> c) {
+        return internalName(c.getName());
+    }
+
+    private static String internalName(String className) {
+        return className.replace('.', '/');
+    }
+
+    private static String descriptor(Class<?> c) {
+        return 'L' + internalName(c) + ';';
+    }
+
+    /**
+     * The sequence of handler classes a dispatcher is generated for.  The
+     * key of a cache entry refers to the classes weakly, while the key used
+     * for a lookup refers to them strongly to avoid creating references.
+     */
+    private static final class Shape {
+        /** {@link Class}es, or {@link WeakReference}s to them */
+        private final Object[] classes;
+        private final int hashCode;
+
+        Shape(Class<?>[] classes) {
+            this(classes, Arrays.hashCode(classes));
+        }
+
+        private Shape(Object[] classes, int hashCode) {
+            this.classes = classes;
+            this.hashCode = hashCode;
+        }
+
+        Shape weak() {
+            Object[] refs = new Object[classes.length];
+            for (int i = 0; i < refs.length; i ++) {
+                refs[i] = new WeakReference<Class<?>>(get(i));
+            }
+            return new Shape(refs, hashCode);
+        }
+
+        Class<?> get(int index) {
+            Object c = classes[index];
+            if (c instanceof Reference<?>) {
+                return (Class<?>) ((Reference<?>) c).get();
+            }
+            return (Class<?>) c;
+        }
+
+        boolean isStale() {
+            for (int i = 0; i < classes.length; i ++) {
+                if (get(i) == null) {
+                    return true;
+                }
+            }
+            return false;
+        }
+
+        @Override
+        public int hashCode() {
+            return hashCode;
+        }
+
+        @Override
+        public boolean equals(Object o) {
+            if (this == o) {
+                return true;
+            }
+            if (!(o instanceof Shape)) {
+                return false;
+            }
+
+            Shape that = (Shape) o;
+            if (hashCode != that.hashCode || classes.length != that.classes.length) {
+                return false;
+            }
+            for (int i = 0; i < classes.length; i ++) {
+                Class<?> c = get(i);
+                if (c == null || c != that.get(i)) {
+                    return false;
+                }
+            }
+            return true;
+        }
+    }
+
+    /**
+     * Resolves the handler classes of a generated class to the exact classes
+     * it was generated for, and everything else via the class loader of Netty.
+     */
+    private static final class DispatcherClassLoader extends ClassLoader {
+        private final Map<String, Class<?>> classes = new HashMap<String, Class<?>>();
+
+        DispatcherClassLoader(Class<?>[] classes) {
+            super(parentClassLoader());
+            for (Class<?> c: classes) {
+                for (; c != null; c = c.getSuperclass()) {
+                    this.classes.put(c.getName(), c);
+                }
+            }
+        }
+
+        private static ClassLoader parentClassLoader() {
+            ClassLoader parent = ChannelHandlerDispatcher.class.getClassLoader();
+            if (parent == null) {
+                parent = ClassLoader.getSystemClassLoader();
+            }
+            return parent;
+        }
+
+        Class<?> define(String name, byte[] classFile) {
+            return defineClass(name, classFile, 0, classFile.length);
+        }
+
+        @Override
+        protected synchronized Class<?> loadClass(String name, boolean resolve)
+                throws ClassNotFoundException {
+            Class<?> c = classes.get(name);
+            if (c != null) {
+                return c;
+            }
+            return super.loadClass(name, resolve);
+        }
+    }
+
+    private static final class ClassFileWriter {
+        private static final int ACC_PUBLIC = 0x0001;
+        private static final int ACC_FINAL = 0x0010;
+        private static final int ACC_SUPER = 0x0020;
+
+        private static final int ALOAD_0 = 0x2a;
+        private static final int ILOAD_1 = 0x1b;
+        private static final int ALOAD_2 = 0x2c;
+        private static final int ALOAD_3 = 0x2d;
+        private static final int ALOAD = 0x19;
+        private static final int TABLESWITCH = 0xaa;
+        private static final int RETURN = 0xb1;
+        private static final int INVOKEVIRTUAL = 0xb6;
+        private static final int INVOKESPECIAL = 0xb7;
+        private static final int INVOKEINTERFACE = 0xb9;
+        private static final int CHECKCAST = 0xc0;
+
+        private final String name;
+        private final Class<?>[] classes;
+        private final ByteArrayOutputStream constantPoolBytes = new ByteArrayOutputStream();
+        private final DataOutputStream constantPool = new DataOutputStream(constantPoolBytes);
+        private final Map<String, Integer> constants = new HashMap<String, Integer>();
+        private int constantCount = 1;
+
+        ClassFileWriter(String name, Class<?>[] classes) {
+            this.name = name;
+            this.classes = classes;
+        }
+
+        byte[] write() throws IOException {
+            int thisClass = classConstant(name);
+            int superClass = classConstant(DISPATCHER);
+            int code = utf8Constant("Code");
+
+            ByteArrayOutputStream methodBytes = new ByteArrayOutputStream();
+            DataOutputStream methods = new DataOutputStream(methodBytes);
+            writeConstructor(methods, code);
+            writeDispatchMethod(methods, code, "handleUpstream", UPSTREAM_HANDLER, ChannelUpstreamHandler.class);
+            writeDispatchMethod(methods, code, "handleDownstream", DOWNSTREAM_HANDLER, ChannelDownstreamHandler.class);
+
+            ByteArrayOutputStream classBytes = new ByteArrayOutputStream();
+            DataOutputStream out = new DataOutputStream(classBytes);
+            out.writeInt(0xCAFEBABE);
+            out.writeShort(0);  // minor version
+            out.writeShort(49); // major version (Java 5)
+            out.writeShort(constantCount);
+            constantPool.flush();
+            constantPoolBytes.writeTo(out);
+            out.writeShort(ACC_PUBLIC | ACC_FINAL | ACC_SUPER);
+            out.writeShort(thisClass);
+            out.writeShort(superClass);
+            out.writeShort(0); // interfaces
+            out.writeShort(0); // fields
+            out.writeShort(3); // methods
+            methods.flush();
+            methodBytes.writeTo(out);
+            out.writeShort(0); // attributes
+            out.flush();
+            return classBytes.toByteArray();
+        }
+
+        private void writeConstructor(DataOutputStream out, int code) throws IOException {
+            ByteArrayOutputStream bytecode = new ByteArrayOutputStream();
+            bytecode.write(ALOAD_0);
+            bytecode.write(INVOKESPECIAL);
+            writeShort(bytecode, methodConstant(false, DISPATCHER, "<init>", "()V"));
+            bytecode.write(RETURN);
+            writeMethod(out, code, "<init>", "()V", 1, 1, bytecode.toByteArray());
+        }
+
+        private void writeDispatchMethod(
+                DataOutputStream out, int code, String methodName,
+                String handlerInterface, Class<?> handlerInterfaceClass) throws IOException {
+
+            // Generate the invocation of each case first.
+            ByteArrayOutputStream cases = new ByteArrayOutputStream();
+            int[] caseOffsets = new int[classes.length];
+            int defaultOffset = writeInvocation(cases, null, handlerInterface, methodName);
+            for (int i = 0; i < classes.length; i ++) {
+                Class<?> target = null;
+                if (handlerInterfaceClass.isAssignableFrom(classes[i])) {
+                    target = invocationTarget(classes[i], handlerInterfaceClass, methodName);
+                }
+                if (target == null) {
+                    caseOffsets[i] = defaultOffset;
+                } else {
+                    caseOffsets[i] = writeInvocation(cases, target, handlerInterface, methodName);
+                }
+            }
+
+            // iload_1; tableswitch <padding> default low high offsets...
+            ByteArrayOutputStream bytecode = new ByteArrayOutputStream();
+            bytecode.write(ILOAD_1);
+            int switchPosition = bytecode.size();
+            bytecode.write(TABLESWITCH);
+            while (bytecode.size() % 4 != 0) {
+                bytecode.write(0);
+            }
+            int casesPosition = bytecode.size() + 12 + 4 * classes.length;
+            int base = casesPosition - switchPosition;
+            writeInt(bytecode, base + defaultOffset);
+            writeInt(bytecode, 0);
+            writeInt(bytecode, classes.length - 1);
+            for (int caseOffset: caseOffsets) {
+                writeInt(bytecode, base + caseOffset);
+            }
+            cases.writeTo(bytecode);
+
+            writeMethod(out, code, methodName, DISPATCH_DESCRIPTOR, 3, 5, bytecode.toByteArray());
+        }
+
+        /**
+         * Writes {@code ((target) handler).methodName(ctx, e); return;}, or
+         * an invocation via the interface if {@code target} is {@code null}.
+         *
+         * @return the offset of the written code
+         */
+        private int writeInvocation(
+                ByteArrayOutputStream out, Class<?> target,
+                String handlerInterface, String methodName) {
+            int offset = out.size();
+            boolean viaInterface = target == null;
+            String owner = viaInterface ? handlerInterface : internalName(target);
+
+            out.write(ALOAD_2);
+            out.write(CHECKCAST);
+            writeShort(out, classConstant(owner));
+            out.write(ALOAD_3);
+            out.write(ALOAD);
+            out.write(4);
+            if (viaInterface) {
+                out.write(INVOKEINTERFACE);
+                writeShort(out, methodConstant(true, owner, methodName, HANDLE_DESCRIPTOR));
+                out.write(3);
+                out.write(0);
+            } else {
+                out.write(INVOKEVIRTUAL);
+                writeShort(out, methodConstant(false, owner, methodName, HANDLE_DESCRIPTOR));
+            }
+            out.write(RETURN);
+            return offset;
+        }
+
+        private void writeMethod(
+                DataOutputStream out, int code, String methodName, String descriptor,
+                int maxStack, int maxLocals, byte[] bytecode) throws IOException {
+            out.writeShort(ACC_PUBLIC);
+            out.writeShort(utf8Constant(methodName));
+            out.writeShort(utf8Constant(descriptor));
+            out.writeShort(1); // attributes
+            out.writeShort(code);
+            out.writeInt(12 + bytecode.length);
+            out.writeShort(maxStack);
+            out.writeShort(maxLocals);
+            out.writeInt(bytecode.length);
+            out.write(bytecode);
+            out.writeShort(0); // exception table
+            out.writeShort(0); // attributes
+        }
+
+        private int utf8Constant(String value) {
+            Integer index = constants.get("U" + value);
+            if (index == null) {
+                try {
+                    constantPool.writeByte(1);
+                    constantPool.writeUTF(value);
+                } catch (IOException e) {
+                    throw new Error(e);
+                }
+                index = newConstant("U" + value);
+            }
+            return index;
+        }
+
+        private int classConstant(String internalName) {
+            Integer index = constants.get("C" + internalName);
+            if (index == null) {
+                int nameIndex = utf8Constant(internalName);
+                constantPoolBytes.write(7);
+                writeShort(constantPoolBytes, nameIndex);
+                index = newConstant("C" + internalName);
+            }
+            return index;
+        }
+
+        private int methodConstant(boolean interfaceMethod, String owner, String methodName, String descriptor) {
+            String key = (interfaceMethod ? "I" : "M") + owner + '.' + methodName + descriptor;
+            Integer index = constants.get(key);
+            if (index == null) {
+                int classIndex = classConstant(owner);
+                int nameIndex = utf8Constant(methodName);
+                int descriptorIndex = utf8Constant(descriptor);
+                constantPoolBytes.write(12);
+                writeShort(constantPoolBytes, nameIndex);
+                writeShort(constantPoolBytes, descriptorIndex);
+                int nameAndTypeIndex = newConstant("N" + key);
+                constantPoolBytes.write(interfaceMethod ? 11 : 10);
+                writeShort(constantPoolBytes, classIndex);
+                writeShort(constantPoolBytes, nameAndTypeIndex);
+                index = newConstant(key);
+            }
+            return index;
+        }
+
+        private int newConstant(String key) {
+            int index = constantCount ++;
+            constants.put(key, index);
+            return index;
+        }
+
+        private static void writeShort(ByteArrayOutputStream out, int value) {
+            out.write(value >>> 8);
+            out.write(value);
+        }
+
+        private static void writeInt(ByteArrayOutputStream out, int value) {
+            writeShort(out, value >>> 16);
+            writeShort(out, value);
+        }
+    }
+
+    private ChannelHandlerDispatcherGenerator() {
+        // Unused
+    }
+}
@@ -0,0 +1,427 @@
+/*
+ * Copyright 2014 The Netty Project
+ *
+ * The Netty Project licenses this file to you under the Apache License,
+ * version 2.0 (the "License"); you may not use this file except in compliance
+ * with the License. You may obtain a copy of the License at:
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS, WITHOUT
+ * WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied. See the
+ * License for the specific language governing permissions and limitations
+ * under the License.
+ */
+package org.jboss.netty.channel;
+
+import java.lang.management.ManagementFactory;
+import java.util.Map;
+import java.util.TreeMap;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicLongArray;
+
+import javax.management.JMException;
+import javax.management.MBeanServer;
+import javax.management.ObjectName;
+import javax.management.StandardMBean;
+
+import org.jboss.netty.util.internal.SystemPropertyUtil;
+
+/**
+ * Records how many events each handler of a {@link DefaultChannelPipeline} or
+ * a {@link StaticChannelPipeline} handles and how long it takes, so that a
+ * slow handler can be found without attaching a profiler.
+ * <p>
+ * The metrics are aggregated per handler name across all channels, and kept
+ * separately for {@code handleUpstream()} and {@code handleDownstream()}.
+ * The recorded latency of an invocation excludes the time spent in the other
+ * handlers it forwarded the event to from the same thread, so a handler is not
+ * blamed for the handlers which follow it.
+ * <p>
+ * The instrumentation is disabled by default, in which case it costs a single
+ * volatile read per handler invocation.  Enable it at runtime with
+ * {@link #setEnabled(boolean)}, or with the
+ * {@code org.jboss.netty.handlerMetrics} system property.  The metrics can be
+ * retrieved with {@link #snapshot()}, or via JMX once {@link #registerMBean()}
+ * has been called.
+ */
+public final class ChannelHandlerMetrics {
+
+    /**
+     * The {@link ObjectName} which the MBean is registered under.
+     */
+    public static final String OBJECT_NAME = "org.jboss.netty:type=ChannelHandlerMetrics";
+
+    static volatile boolean enabled =
+            SystemPropertyUtil.getBoolean("org.jboss.netty.handlerMetrics", false);
+
+    private static final ConcurrentMap<String, HandlerMetrics> metrics =
+            new ConcurrentHashMap<String, HandlerMetrics>();
+
+    /**
+     * The time spent in the nested handler invocations of the current
+     * invocation, per thread.
+     */
+    private static final ThreadLocal<long[]> nestedNanos = new ThreadLocal<long[]>() {
+        @Override
+        protected long[] initialValue() {
+            return new long[1];
+        }
+    };
+
+    /**
+     * Returns {@code true} if and only if the handler invocations are recorded.
+     */
+    public static boolean isEnabled() {
+        return enabled;
+    }
+
+    /**
+     * Enables or disables the recording of handler invocations.
+     */
+    public static void setEnabled(boolean enabled) {
+        ChannelHandlerMetrics.enabled = enabled;
+    }
+
+    /**
+     * Returns the metrics recorded since the last {@link #reset()}, sorted by
+     * handler name.
+     */
+    public static Map<String, Snapshot> snapshot() {
+        Map<String, Snapshot> snapshot = new TreeMap<String, Snapshot>();
+        for (HandlerMetrics m: metrics.values()) {
+            Latency upstream = new Latency(m.upstream);
+            Latency downstream = new Latency(m.downstream);
+            if (upstream.getCount() != 0 || downstream.getCount() != 0) {
+                snapshot.put(m.name, new Snapshot(m.name, upstream, downstream));
+            }
+        }
+        return snapshot;
+    }
+
+    /**
+     * Discards all recorded metrics.
+     */
+    public static void reset() {
+        // Keep the entries because they are cached by the handler contexts.
+        for (HandlerMetrics m: metrics.values()) {
+            m.upstream.reset();
+            m.downstream.reset();
+        }
+    }
+
+    /**
+     * Registers the {@link ChannelHandlerMetricsMBean} to the platform
+     * {@link MBeanServer} under {@link #OBJECT_NAME}, if not registered yet.
+     */
+    public static synchronized void registerMBean() {
+        MBeanServer server = ManagementFactory.getPlatformMBeanServer();
+        try {
+            ObjectName name = new ObjectName(OBJECT_NAME);
+            if (!server.isRegistered(name)) {
+                server.registerMBean(
+                        new StandardMBean(new MBeanImpl(), ChannelHandlerMetricsMBean.class), name);
+            }
+        } catch (JMException e) {
+            throw new ChannelException("failed to register " + OBJECT_NAME, e);
+        }
+    }
+
+    /**
+     * Unregisters the {@link ChannelHandlerMetricsMBean} from the platform
+     * {@link MBeanServer}, if registered.
+     */
+    public static synchronized void unregisterMBean() {
+        MBeanServer server = ManagementFactory.getPlatformMBeanServer();
+        try {
+            ObjectName name = new ObjectName(OBJECT_NAME);
+            if (server.isRegistered(name)) {
+                server.unregisterMBean(name);
+            }
+        } catch (JMException e) {
+            throw new ChannelException("failed to unregister " + OBJECT_NAME, e);
+        }
+    }
+
+    /**
+     * Returns the metrics of the handlers with the specified name.  The
+     * result is supposed to be cached by the caller.
+     */
+    static HandlerMetrics metrics(String name) {
+        HandlerMetrics m = metrics.get(name);
+        if (m == null) {
+            m = new HandlerMetrics(name);
+            HandlerMetrics oldM = metrics.putIfAbsent(name, m);
+            if (oldM != null) {
+                m = oldM;
+            }
+        }
+        return m;
+    }
+
+    static void handleUpstream(
+            HandlerMetrics m, ChannelUpstreamHandler handler,
+            ChannelHandlerContext ctx, ChannelEvent e) throws Exception {
+        long[] nested = nestedNanos.get();
+        long outerNested = nested[0];
+        nested[0] = 0;
+        long startTime = System.nanoTime();
+        try {
+            handler.handleUpstream(ctx, e);
+        } finally {
+            long elapsed = System.nanoTime() - startTime;
+            m.upstream.record(elapsed - nested[0]);
+            nested[0] = outerNested + elapsed;
+        }
+    }
+
+    static void handleDownstream(
+            HandlerMetrics m, ChannelDownstreamHandler handler,
+            ChannelHandlerContext ctx, ChannelEvent e) throws Exception {
+        long[] nested = nestedNanos.get();
+        long outerNested = nested[0];
+        nested[0] = 0;
+        long startTime = System.nanoTime();
+        try {
+            handler.handleDownstream(ctx, e);
+        } finally {
+            long elapsed = System.nanoTime() - startTime;
+            m.downstream.record(elapsed - nested[0]);
+            nested[0] = outerNested + elapsed;
+        }
+    }
+
+    /**
+     * The metrics of the handlers with the same name, as of the time
+     * {@link ChannelHandlerMetrics#snapshot()} was called.
+     */
+    public static final class Snapshot {
+        private final String name;
+        private final Latency upstream;
+        private final Latency downstream;
+
+        Snapshot(String name, Latency upstream, Latency downstream) {
+            this.name = name;
+            this.upstream = upstream;
+            this.downstream = downstream;
+        }
+
+        /**
+         * Returns the name of the handlers.
+         */
+        public String getName() {
+            return name;
+        }
+
+        /**
+         * Returns the metrics of {@link ChannelUpstreamHandler#handleUpstream(ChannelHandlerContext, ChannelEvent)}.
+         */
+        public Latency getUpstream() {
+            return upstream;
+        }
+
+        /**
+         * Returns the metrics of {@link ChannelDownstreamHandler#handleDownstream(ChannelHandlerContext, ChannelEvent)}.
+         */
+        public Latency getDownstream() {
+            return downstream;
+        }
+
+        @Override
+        public String toString() {
+            return name + "(upstream: " + upstream + ", downstream: " + downstream + ')';
+        }
+    }
+
+    /**
+     * The invocation count and the latency distribution of a handler method.
+     * The distribution is recorded in a histogram whose bucket {@code i}
+     * counts the invocations which took less than 2<sup>i</sup> nanoseconds
+     * and at least 2<sup>i-1</sup> nanoseconds.
+     */
+    public static final class Latency {
+        private final long count;
+        private final long totalNanos;
+        private final long maxNanos;
+        private final long[] histogram;
+
+        Latency(LatencyRecorder recorder) {
+            histogram = new long[LatencyRecorder.BUCKETS];
+            long count = 0;
+            for (int i = 0; i < histogram.length; i ++) {
+                count += histogram[i] = recorder.histogram.get(i);
+            }
+            this.count = count;
+            totalNanos = recorder.totalNanos.get();
+            maxNanos = recorder.maxNanos.get();
+        }
+
+        /**
+         * Returns the number of invocations.
+         */
+        public long getCount() {
+            return count;
+        }
+
+        /**
+         * Returns the cumulative time of all invocations in nanoseconds.
+         */
+        public long getTotalNanos() {
+            return totalNanos;
+        }
+
+        /**
+         * Returns the mean time of an invocation in nanoseconds.
+         */
+        public long getMeanNanos() {
+            return count == 0 ? 0 : totalNanos / count;
+        }
+
+        /**
+         * Returns the time of the slowest invocation in nanoseconds.
+         */
+        public long getMaxNanos() {
+            return maxNanos;
+        }
+
+        /**
+         * Returns the number of invocations per histogram bucket.
+         */
+        public long[] getHistogram() {
+            return histogram.clone();
+        }
+
+        /**
+         * Returns the upper bound of the time in nanoseconds which the
+         * specified percentage of invocations took at most, or {@code 0} if
+         * there was no invocation.
+         *
+         * @param percentile a value between {@code 0} and {@code 100}
+         */
+        public long getPercentileNanos(double percentile) {
+            if (percentile < 0 || percentile > 100) {
+                throw new IllegalArgumentException(
+                        "percentile: " + percentile + " (expected: 0-100)");
+            }
+            if (count == 0) {
+                return 0;
+            }
+            long threshold = (long) Math.ceil(count * percentile / 100);
+            long sum = 0;
+            for (int i = 0; i < histogram.length; i ++) {
+                sum += histogram[i];
+                if (sum >= threshold && sum != 0) {
+                    return Math.min(maxNanos, (1L << i) - 1);
+                }
+            }
+            return maxNanos;
+        }
+
+        @Override
+        public String toString() {
+            return "count=" + count + ", mean=" + getMeanNanos() + "ns, p99<=" +
+                   getPercentileNanos(99) + "ns, max=" + maxNanos + "ns";
+        }
+    }
+
+    /**
+     * The metrics of all handlers with the same name.
+     */
+    static final class HandlerMetrics {
+        final String name;
+        final LatencyRecorder upstream = new LatencyRecorder();
+        final LatencyRecorder downstream = new LatencyRecorder();
+
+        HandlerMetrics(String name) {
+            this.name = name;
+        }
+    }
+
+    static final class LatencyRecorder {
+        static final int BUCKETS = 48;
+
+        final AtomicLongArray histogram = new AtomicLongArray(BUCKETS);
+        final AtomicLong totalNanos = new AtomicLong();
+        final AtomicLong maxNanos = new AtomicLong();
+
+        void record(long nanos) {
+            if (nanos < 0) {
+                nanos = 0;
+            }
+            int bucket = Math.min(BUCKETS - 1, 64 - Long.numberOfLeadingZeros(nanos));
+            histogram.incrementAndGet(bucket);
+            totalNanos.addAndGet(nanos);
+            for (;;) {
+                long max = maxNanos.get();
+                if (nanos <= max || maxNanos.compareAndSet(max, nanos)) {
+                    break;
+                }
+            }
+        }
+
+        void reset() {
+            for (int i = 0; i < BUCKETS; i ++) {
+                histogram.set(i, 0);
+            }
+            totalNanos.set(0);
+            maxNanos.set(0);
+        }
+    }
+
+    private static final class MBeanImpl implements ChannelHandlerMetricsMBean {
+        MBeanImpl() {
+        }
+
+        public boolean isEnabled() {
+            return ChannelHandlerMetrics.isEnabled();
+        }
+
+        public void setEnabled(boolean enabled) {
+            ChannelHandlerMetrics.setEnabled(enabled);
+        }
+
+        public String[] getHandlerNames() {
+            return snapshot().keySet().toArray(new String[0]);
+        }
+
+        public String getReport() {
+            StringBuilder buf = new StringBuilder();
+            for (Snapshot s: snapshot().values()) {
+                buf.append(s);
+                buf.append('\n');
+            }
+            return buf.toString();
+        }
+
+        public long getUpstreamCount(String handlerName) {
+            HandlerMetrics m = metrics.get(handlerName);
+            return m == null ? 0 : new Latency(m.upstream).getCount();
+        }
+
+        public long getUpstreamTotalNanos(String handlerName) {
+            HandlerMetrics m = metrics.get(handlerName);
+            return m == null ? 0 : m.upstream.totalNanos.get();
+        }
+
+        public long getDownstreamCount(String handlerName) {
+            HandlerMetrics m = metrics.get(handlerName);
+            return m == null ? 0 : new Latency(m.downstream).getCount();
+        }
+
+        public long getDownstreamTotalNanos(String handlerName) {
+            HandlerMetrics m = metrics.get(handlerName);
+            return m == null ? 0 : m.downstream.totalNanos.get();
+        }
+
+        public void reset() {
+            ChannelHandlerMetrics.reset();
+        }
+    }
+
+    private ChannelHandlerMetrics() {
+        // Unused
+    }
+}
@@ -0,0 +1,74 @@
+/*
+ * Copyright 2014 The Netty Project
+ *
+ * The Netty Project licenses this file to you under the Apache License,
+ * version 2.0 (the "License"); you may not use this file except in compliance
+ * with the License. You may obtain a copy of the License at:
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS, WITHOUT
+ * WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied. See the
+ * License for the specific language governing permissions and limitations
+ * under the License.
+ */
+package org.jboss.netty.channel;
+
+/**
+ * The JMX management interface of {@link ChannelHandlerMetrics}, registered
+ * by {@link ChannelHandlerMetrics#registerMBean()}.
+ */
+public interface ChannelHandlerMetricsMBean {
+
+    /**
+     * @see ChannelHandlerMetrics#isEnabled()
+     */
+    boolean isEnabled();
+
+    /**
+     * @see ChannelHandlerMetrics#setEnabled(boolean)
+     */
+    void setEnabled(boolean enabled);
+
+    /**
+     * Returns the names of the handlers which have been invoked since the
+     * last reset.
+     */
+    String[] getHandlerNames();
+
+    /**
+     * Returns a human-readable table of the invocation counts and latencies
+     * of all handlers.
+     */
+    String getReport();
+
+    /**
+     * Returns the number of upstream events handled by the handlers with the
+     * specified name.
+     */
+    long getUpstreamCount(String handlerName);
+
+    /**
+     * Returns the total time in nanoseconds spent by the handlers with the
+     * specified name in handling upstream events.
+     */
+    long getUpstreamTotalNanos(String handlerName);
+
+    /**
+     * Returns the number of downstream events handled by the handlers with the
+     * specified name.
+     */
+    long getDownstreamCount(String handlerName);
+
+    /**
+     * Returns the total time in nanoseconds spent by the handlers with the
+     * specified name in handling downstream events.
+     */
+    long getDownstreamTotalNanos(String handlerName);
+
+    /**
+     * @see ChannelHandlerMetrics#reset()
+     */
+    void reset();
+}
@@ -30,7 +30,7 @@ import java.util.concurrent.ConcurrentMap;
  * <p>
  * Alternatively, you might want to use the
  * {@link ChannelHandlerContext#setAttachment(Object) ChannelHandlerContext.attachment}
- * property, which performs better.
+ * property, or a {@link ChannelAttribute}, which perform better.
  * @apiviz.stereotype utility
  */
 public class ChannelLocal<T> implements Iterable<Entry<Channel, T>> {
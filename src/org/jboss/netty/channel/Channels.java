@@ -88,6 +88,31 @@ public final class Channels {
 		}
 	}
 
+	/**
+	 * Returns the {@link VoidChannelFuture} of the specified {@link Channel},
+	 * which can be used instead of a new {@link ChannelFuture} when the result
+	 * of a request is of no interest.
+	 */
+	public static ChannelFuture voidFuture(Channel channel) {
+		if (channel instanceof AbstractChannel) {
+			return ((AbstractChannel) channel).getVoidFuture();
+		} else {
+			return new VoidChannelFuture(channel);
+		}
+	}
+
+	/**
+	 * Creates a new non-cancellable {@link ChannelFuture} for a write request
+	 * which is reused once it is complete and its listeners have been
+	 * notified, if {@linkplain ChannelEventRecycler recycling} is enabled.
+	 * Add all listeners before passing the future to
+	 * {@link #write(Channel, ChannelFuture, Object)}, and do not access it
+	 * outside of the listeners.
+	 */
+	public static ChannelFuture recyclableFuture(Channel channel) {
+		return ChannelEventRecycler.newFuture(channel);
+	}
+
 	/**
 	 * Creates a new {@link ChannelFuture} which has failed already for the
 	 * specified {@link Channel}.
@@ -209,8 +234,10 @@ public final class Channels {
 	 */
 	public static void fireMessageReceived(Channel channel, Object message,
 			SocketAddress remoteAddress) {
-		channel.getPipeline().sendUpstream(
-				new UpstreamMessageEvent(channel, message, remoteAddress));
+		UpstreamMessageEvent e = ChannelEventRecycler.newUpstreamMessageEvent(
+				channel, message, remoteAddress);
+		channel.getPipeline().sendUpstream(e);
+		e.recycle();
 	}
 
 	/**
@@ -224,8 +251,7 @@ public final class Channels {
 	 */
 	public static void fireMessageReceived(ChannelHandlerContext ctx,
 			Object message) {
-		ctx.sendUpstream(new UpstreamMessageEvent(ctx.getChannel(), message,
-				null));
+		fireMessageReceived(ctx, message, null);
 	}
 
 	/**
@@ -241,8 +267,10 @@ public final class Channels {
 	 */
 	public static void fireMessageReceived(ChannelHandlerContext ctx,
 			Object message, SocketAddress remoteAddress) {
-		ctx.sendUpstream(new UpstreamMessageEvent(ctx.getChannel(), message,
-				remoteAddress));
+		UpstreamMessageEvent e = ChannelEventRecycler.newUpstreamMessageEvent(
+				ctx.getChannel(), message, remoteAddress);
+		ctx.sendUpstream(e);
+		e.recycle();
 	}
 
 	/**
@@ -632,6 +660,27 @@ public final class Channels {
 		return write(channel, message, null);
 	}
 
+	/**
+	 * Sends a {@code "write"} request to the last
+	 * {@link ChannelDownstreamHandler} in the {@link ChannelPipeline} of the
+	 * specified {@link Channel}, notifying the specified {@link ChannelFuture}
+	 * rather than creating a new one.  Specify {@link #voidFuture(Channel)} to
+	 * avoid allocating a future when the result of the write is of no interest.
+	 * 
+	 * @param channel
+	 *            the channel to write a message
+	 * @param future
+	 *            the future which will be notified when the write operation is
+	 *            done
+	 * @param message
+	 *            the message to write to the channel
+	 */
+	public static void write(Channel channel, ChannelFuture future,
+			Object message) {
+		channel.getPipeline().sendDownstream(
+				ChannelEventRecycler.newDownstreamMessageEvent(channel, future, message, null));
+	}
+
 	/**
 	 * Sends a {@code "write"} request to the {@link ChannelDownstreamHandler}
 	 * which is placed in the closest downstream from the handler associated
@@ -668,7 +717,7 @@ public final class Channels {
 			SocketAddress remoteAddress) {
 		ChannelFuture future = future(channel);
 		channel.getPipeline().sendDownstream(
-				new DownstreamMessageEvent(channel, future, message,
+				ChannelEventRecycler.newDownstreamMessageEvent(channel, future, message,
 						remoteAddress));
 		return future;
 	}
@@ -691,8 +740,42 @@ public final class Channels {
 	 */
 	public static void write(ChannelHandlerContext ctx, ChannelFuture future,
 			Object message, SocketAddress remoteAddress) {
-		ctx.sendDownstream(new DownstreamMessageEvent(ctx.getChannel(), future,
-				message, remoteAddress));
+		ctx.sendDownstream(ChannelEventRecycler.newDownstreamMessageEvent(
+				ctx.getChannel(), future, message, remoteAddress));
+	}
+
+	/**
+	 * Sends a {@code "flush"} request to the last
+	 * {@link ChannelDownstreamHandler} in the {@link ChannelPipeline} of the
+	 * specified {@link Channel}.  The messages which were queued by previous
+	 * {@code "write"} requests are written out to the transport.
+	 * 
+	 * @param channel
+	 *            the channel to flush
+	 * 
+	 * @return the {@link ChannelFuture} which will be notified when the flush
+	 *         request has been handed over to the transport
+	 */
+	public static ChannelFuture flush(Channel channel) {
+		ChannelFuture future = future(channel);
+		channel.getPipeline().sendDownstream(
+				new DownstreamFlushEvent(channel, future));
+		return future;
+	}
+
+	/**
+	 * Sends a {@code "flush"} request to the {@link ChannelDownstreamHandler}
+	 * which is placed in the closest downstream from the handler associated
+	 * with the specified {@link ChannelHandlerContext}.
+	 * 
+	 * @param ctx
+	 *            the context
+	 * @param future
+	 *            the future which will be notified when the flush request has
+	 *            been handed over to the transport
+	 */
+	public static void flush(ChannelHandlerContext ctx, ChannelFuture future) {
+		ctx.sendDownstream(new DownstreamFlushEvent(ctx.getChannel(), future));
 	}
 
 	/**
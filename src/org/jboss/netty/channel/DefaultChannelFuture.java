@@ -4,10 +4,8 @@ import org.jboss.netty.logging.InternalLogger;
 import org.jboss.netty.logging.InternalLoggerFactory;
 import org.jboss.netty.util.internal.DeadLockProofWorker;
 
-import java.util.ArrayList;
-import java.util.Collection;
-import java.util.List;
 import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicReferenceFieldUpdater;
 
 import static java.util.concurrent.TimeUnit.*;
 
@@ -51,15 +49,24 @@ public class DefaultChannelFuture implements ChannelFuture {
         DefaultChannelFuture.useDeadLockChecker = useDeadLockChecker;
     }
 
+    private static final AtomicReferenceFieldUpdater<DefaultChannelFuture, Object> stateUpdater =
+            AtomicReferenceFieldUpdater.newUpdater(DefaultChannelFuture.class, Object.class, "state");
+
+    private static final Result SUCCESS = new Result(null);
+    private static final Result CANCELLED_RESULT = new Result(CANCELLED);
+
     private final Channel channel;
     private final boolean cancellable;
 
-    private ChannelFutureListener firstListener;
-    private List<ChannelFutureListener> otherListeners;
-    private List<ChannelFutureProgressListener> progressListeners;
-    private boolean done;
-    private Throwable cause;
-    private int waiters;
+    /**
+     * Either the {@link Result} of this future once it is done, or the listeners
+     * added so far: {@code null} if there is none, the {@link ChannelFutureListener}
+     * itself if there is only one, or else a {@link ListenerNode} whose chain holds
+     * the listeners in reverse order of their addition.
+     */
+    private volatile Object state;
+    // Only modified while holding the monitor of this future.
+    private volatile int waiters;
 
     /**
      * Creates a new instance.
@@ -78,24 +85,25 @@ public class DefaultChannelFuture implements ChannelFuture {
         return channel;
     }
 
-    public synchronized boolean isDone() {
-        return done;
+    public boolean isDone() {
+        return state instanceof Result;
     }
 
-    public synchronized boolean isSuccess() {
-        return done && cause == null;
+    public boolean isSuccess() {
+        return state == SUCCESS;
     }
 
-    public synchronized Throwable getCause() {
-        if (cause != CANCELLED) {
-            return cause;
+    public Throwable getCause() {
+        Object state = this.state;
+        if (state instanceof Result && state != CANCELLED_RESULT) {
+            return ((Result) state).cause;
         } else {
             return null;
         }
     }
 
-    public synchronized boolean isCancelled() {
-        return cause == CANCELLED;
+    public boolean isCancelled() {
+        return state == CANCELLED_RESULT;
     }
 
     public void addListener(ChannelFutureListener listener) {
@@ -103,32 +111,26 @@ public class DefaultChannelFuture implements ChannelFuture {
             throw new NullPointerException("listener");
         }
 
-        boolean notifyNow = false;
-        synchronized (this) {
-            if (done) {   // done = trueʾûмߣߣ
-                notifyNow = true;
-            } else {
-                if (firstListener == null) {
-                    firstListener = listener;
-                } else {
-                    if (otherListeners == null) {
-                        otherListeners = new ArrayList<ChannelFutureListener>(1);
-                    }
-                    otherListeners.add(listener);
-                }
+        for (;;) {
+            Object state = this.state;
+            if (state instanceof Result) {
+                notifyListener(listener);
+                return;
+            }
 
-                if (listener instanceof ChannelFutureProgressListener) {
-                    if (progressListeners == null) {
-                        progressListeners = new ArrayList<ChannelFutureProgressListener>(1);
-                    }
-                    progressListeners.add((ChannelFutureProgressListener) listener);
-                }
+            Object newState;
+            if (state == null) {
+                newState = listener;
+            } else if (state instanceof ListenerNode) {
+                newState = new ListenerNode(listener, (ListenerNode) state);
+            } else {
+                newState = new ListenerNode(
+                        listener, new ListenerNode((ChannelFutureListener) state, null));
             }
-        }
 
-        if (notifyNow) {
-        	// ֪ͨ
-            notifyListener(listener);
+            if (stateUpdater.compareAndSet(this, state, newState)) {
+                return;
+            }
         }
     }
 
@@ -137,21 +139,23 @@ public class DefaultChannelFuture implements ChannelFuture {
             throw new NullPointerException("listener");
         }
 
-        synchronized (this) {
-            if (!done) {
-                if (listener == firstListener) {
-                    if (otherListeners != null && !otherListeners.isEmpty()) {
-                        firstListener = otherListeners.remove(0);
-                    } else {
-                        firstListener = null;
-                    }
-                } else if (otherListeners != null) {
-                    otherListeners.remove(listener);
+        for (;;) {
+            Object state = this.state;
+            Object newState;
+            if (state == listener) {
+                newState = null;
+            } else if (state instanceof ListenerNode) {
+                newState = ((ListenerNode) state).remove(listener);
+                if (newState == state) {
+                    return;
                 }
+            } else {
+                // Not found or done already.
+                return;
+            }
 
-                if (listener instanceof ChannelFutureProgressListener) {
-                    progressListeners.remove(listener);
-                }
+            if (stateUpdater.compareAndSet(this, state, newState)) {
+                return;
             }
         }
     }
@@ -214,10 +218,14 @@ public class DefaultChannelFuture implements ChannelFuture {
         }
 
         synchronized (this) {
-            while (!done) {
+            while (!isDone()) {
                 checkDeadLock();
                 waiters++;
                 try {
+                    // Check again now that the completing thread is going to see 'waiters'.
+                    if (isDone()) {
+                        break;
+                    }
                 	// ǰ̵߳ȴ̵ֱ߳ notifynotifyAll
                     wait();  //Objectwait
                 } finally {
@@ -244,10 +252,13 @@ public class DefaultChannelFuture implements ChannelFuture {
     public ChannelFuture awaitUninterruptibly() {
         boolean interrupted = false;
         synchronized (this) {
-            while (!done) {
+            while (!isDone()) {
                 checkDeadLock();
                 waiters++;
                 try {
+                    if (isDone()) {
+                        break;
+                    }
                     wait();
                 } catch (InterruptedException e) {
                     interrupted = true;
@@ -291,14 +302,17 @@ public class DefaultChannelFuture implements ChannelFuture {
 
         try {
             synchronized (this) {
-                if (done || waitTime <= 0) {
-                    return done;
+                if (isDone() || waitTime <= 0) {
+                    return isDone();
                 }
 
                 checkDeadLock();
                 waiters++;
                 try {
                     for (;;) {
+                        if (isDone()) {
+                            return true;
+                        }
                         try {
                             wait(waitTime / 1000000, (int) (waitTime % 1000000));
                         } catch (InterruptedException e) {
@@ -309,12 +323,12 @@ public class DefaultChannelFuture implements ChannelFuture {
                             }
                         }
 
-                        if (done) {
+                        if (isDone()) {
                             return true;
                         } else {
                             waitTime = timeoutNanos - (System.nanoTime() - startTime);
                             if (waitTime <= 0) {
-                                return done;
+                                return isDone();
                             }
                         }
                     }
@@ -339,38 +353,11 @@ public class DefaultChannelFuture implements ChannelFuture {
     }
 
     public boolean setSuccess() {
-        synchronized (this) {
-            // Allow only once.
-            if (done) {
-                return false;
-            }
-
-            done = true;
-            if (waiters > 0) {
-                notifyAll();
-            }
-        }
-
-        notifyListeners();
-        return true;
+        return complete(SUCCESS);
     }
 
     public boolean setFailure(Throwable cause) {
-        synchronized (this) {
-            // Allow only once.
-            if (done) {
-                return false;
-            }
-
-            this.cause = cause;
-            done = true;
-            if (waiters > 0) {
-                notifyAll();
-            }
-        }
-
-        notifyListeners();
-        return true;
+        return complete(new Result(cause));
     }
 
     public boolean cancel() {
@@ -378,39 +365,56 @@ public class DefaultChannelFuture implements ChannelFuture {
             return false;
         }
 
-        synchronized (this) {
+        return complete(CANCELLED_RESULT);
+    }
+
+    /**
+     * Returns this future to its initial state so that it can be reused.
+     * Must be called only when this future is done and nobody waits for it.
+     */
+    void reset() {
+        state = null;
+    }
+
+    private boolean complete(Result result) {
+        Object listeners;
+        for (;;) {
+            listeners = state;
             // Allow only once.
-            if (done) {
+            if (listeners instanceof Result) {
                 return false;
             }
+            if (stateUpdater.compareAndSet(this, listeners, result)) {
+                break;
+            }
+        }
 
-            cause = CANCELLED;
-            done = true;
-            if (waiters > 0) {
+        // 'state' was set before 'waiters' is read, and a waiter increments 'waiters'
+        // before it checks 'state', so either of them always sees the other.
+        if (waiters > 0) {
+            synchronized (this) {
                 notifyAll();
             }
         }
 
-        notifyListeners();
+        notifyListeners(listeners);
         return true;
     }
 
-    private void notifyListeners() {
-        // This method doesn't need synchronization because:
-        // 1) This method is always called after synchronized (this) block.
-        //    Hence any listener list modification happens-before this method.
-        // 2) This method is called only when 'done' is true.  Once 'done'
-        //    becomes true, the listener list is never modified - see add/removeListener()
-        if (firstListener != null) {
-            notifyListener(firstListener);
-            firstListener = null;
+    private void notifyListeners(Object listeners) {
+        if (listeners == null) {
+            return;
+        }
+
+        if (listeners instanceof ChannelFutureListener) {
+            notifyListener((ChannelFutureListener) listeners);
+            return;
+        }
 
-            if (otherListeners != null) {
-                for (ChannelFutureListener l: otherListeners) {
-                    notifyListener(l);
-                }
-                otherListeners = null;
-            }
+        // Notify in the order of addition.
+        ChannelFutureListener[] array = ((ListenerNode) listeners).toArray();
+        for (ChannelFutureListener l: array) {
+            notifyListener(l);
         }
     }
 
@@ -427,26 +431,20 @@ public class DefaultChannelFuture implements ChannelFuture {
     }
 
     public boolean setProgress(long amount, long current, long total) {
-        ChannelFutureProgressListener[] plisteners;
-        synchronized (this) {
-            // Do not generate progress event after completion.
-            if (done) {
-                return false;
-            }
-
-            Collection<ChannelFutureProgressListener> progressListeners =
-                this.progressListeners;
-            if (progressListeners == null || progressListeners.isEmpty()) {
-                // Nothing to notify - no need to create an empty array.
-                return true;
-            }
-
-            plisteners = progressListeners.toArray(
-                    new ChannelFutureProgressListener[progressListeners.size()]);
+        Object state = this.state;
+        // Do not generate progress event after completion.
+        if (state instanceof Result) {
+            return false;
         }
 
-        for (ChannelFutureProgressListener pl: plisteners) {
-            notifyProgressListener(pl, amount, current, total);
+        if (state instanceof ChannelFutureProgressListener) {
+            notifyProgressListener((ChannelFutureProgressListener) state, amount, current, total);
+        } else if (state instanceof ListenerNode) {
+            for (ChannelFutureListener l: ((ListenerNode) state).toArray()) {
+                if (l instanceof ChannelFutureProgressListener) {
+                    notifyProgressListener((ChannelFutureProgressListener) l, amount, current, total);
+                }
+            }
         }
 
         return true;
@@ -466,4 +464,69 @@ public class DefaultChannelFuture implements ChannelFuture {
             }
         }
     }
+
+    private static final class Result {
+        final Throwable cause;
+
+        Result(Throwable cause) {
+            this.cause = cause;
+        }
+    }
+
+    /**
+     * An immutable node of the chain of listeners added to a pending future.
+     */
+    private static final class ListenerNode {
+        final ChannelFutureListener listener;
+        final ListenerNode next;
+
+        ListenerNode(ChannelFutureListener listener, ListenerNode next) {
+            this.listener = listener;
+            this.next = next;
+        }
+
+        /**
+         * Returns the listeners of this chain in the order of their addition.
+         */
+        ChannelFutureListener[] toArray() {
+            int size = 0;
+            for (ListenerNode n = this; n != null; n = n.next) {
+                size ++;
+            }
+            ChannelFutureListener[] array = new ChannelFutureListener[size];
+            for (ListenerNode n = this; n != null; n = n.next) {
+                array[-- size] = n.listener;
+            }
+            return array;
+        }
+
+        /**
+         * Returns a chain without the first added occurrence of the specified
+         * listener, or this chain if the listener is not found.
+         */
+        Object remove(ChannelFutureListener listener) {
+            ChannelFutureListener[] array = toArray();
+            int idx = -1;
+            for (int i = 0; i < array.length; i ++) {
+                if (array[i] == listener) {
+                    idx = i;
+                    break;
+                }
+            }
+            if (idx < 0) {
+                return this;
+            }
+
+            ListenerNode head = null;
+            for (int i = 0; i < array.length; i ++) {
+                if (i != idx) {
+                    head = new ListenerNode(array[i], head);
+                }
+            }
+            if (head != null && head.next == null) {
+                return head.listener;
+            }
+            return head;
+        }
+    }
 }
@@ -14,6 +14,13 @@ import java.util.concurrent.RejectedExecutionException;
 /**
  * ĬϵChannelPipelineʵ֣ƼʵChannelsеpipeline()
  * ֱӵù
+ * <p>
+ * Modifications are serialized by the pipeline monitor and publish an
+ * immutable snapshot of the handler list when they complete, so event
+ * dispatch and the query methods ({@link #get(String)},
+ * {@link #getContext(ChannelHandler)}, {@link #getNames()}, {@link #toMap()}
+ * ...) never acquire the monitor and always see a consistent handler chain,
+ * even while handlers are added or removed from another thread.
  */
 public class DefaultChannelPipeline implements ChannelPipeline {
 
@@ -21,10 +28,15 @@ public class DefaultChannelPipeline implements ChannelPipeline {
     //
     static final ChannelSink discardingSink = new DiscardingChannelSink();
 
+    private static final DefaultChannelHandlerContext[] EMPTY_CONTEXTS = new DefaultChannelHandlerContext[0];
+
     private volatile Channel channel;
     private volatile ChannelSink sink;
     private volatile DefaultChannelHandlerContext head;
     private volatile DefaultChannelHandlerContext tail;
+    private volatile DefaultChannelHandlerContext firstUpstream;
+    private volatile DefaultChannelHandlerContext lastDownstream;
+    private volatile DefaultChannelHandlerContext[] contexts = EMPTY_CONTEXTS;
     private final Map<String, DefaultChannelHandlerContext> name2ctx =
         new HashMap<String, DefaultChannelHandlerContext>(4);
 
@@ -71,6 +83,7 @@ public class DefaultChannelPipeline implements ChannelPipeline {
             oldHead.prev = newHead;
             head = newHead;
             name2ctx.put(name, newHead);
+            updateHandlerLinks();
 
             callAfterAdd(newHead);
         }
@@ -89,6 +102,7 @@ public class DefaultChannelPipeline implements ChannelPipeline {
             oldTail.next = newTail;
             tail = newTail;
             name2ctx.put(name, newTail);
+            updateHandlerLinks();
 
             callAfterAdd(newTail);
         }
@@ -107,6 +121,7 @@ public class DefaultChannelPipeline implements ChannelPipeline {
             ctx.prev.next = newCtx;
             ctx.prev = newCtx;
             name2ctx.put(name, newCtx);
+            updateHandlerLinks();
 
             callAfterAdd(newCtx);
         }
@@ -125,6 +140,7 @@ public class DefaultChannelPipeline implements ChannelPipeline {
             ctx.next.prev = newCtx;
             ctx.next = newCtx;
             name2ctx.put(name, newCtx);
+            updateHandlerLinks();
 
             callAfterAdd(newCtx);
         }
@@ -149,6 +165,7 @@ public class DefaultChannelPipeline implements ChannelPipeline {
 
             head = tail = null;
             name2ctx.clear();
+            updateHandlerLinks();
 
             callAfterRemove(ctx);
         } else if (ctx == head) {
@@ -163,6 +180,7 @@ public class DefaultChannelPipeline implements ChannelPipeline {
             prev.next = next;
             next.prev = prev;
             name2ctx.remove(ctx.getName());
+            updateHandlerLinks();
 
             callAfterRemove(ctx);
         }
@@ -189,6 +207,7 @@ public class DefaultChannelPipeline implements ChannelPipeline {
             head = oldHead.next;
             name2ctx.remove(oldHead.getName());
         }
+        updateHandlerLinks();
 
         callAfterRemove(oldHead);
 
@@ -215,6 +234,7 @@ public class DefaultChannelPipeline implements ChannelPipeline {
             tail = oldTail.prev;
             name2ctx.remove(oldTail.getName());
         }
+        updateHandlerLinks();
 
         callAfterRemove(oldTail);
 
@@ -262,6 +282,7 @@ public class DefaultChannelPipeline implements ChannelPipeline {
                 name2ctx.remove(ctx.getName());
             }
             name2ctx.put(newName, newCtx);
+            updateHandlerLinks();
 
             ChannelHandlerLifeCycleException removeException = null;
             ChannelHandlerLifeCycleException addException = null;
@@ -382,24 +403,24 @@ public class DefaultChannelPipeline implements ChannelPipeline {
         }
     }
 
-    public synchronized ChannelHandler getFirst() {
-        DefaultChannelHandlerContext head = this.head;
-        if (head == null) {
+    public ChannelHandler getFirst() {
+        DefaultChannelHandlerContext[] contexts = this.contexts;
+        if (contexts.length == 0) {
             return null;
         }
-        return head.getHandler();
+        return contexts[0].getHandler();
     }
 
-    public synchronized ChannelHandler getLast() {
-        DefaultChannelHandlerContext tail = this.tail;
-        if (tail == null) {
+    public ChannelHandler getLast() {
+        DefaultChannelHandlerContext[] contexts = this.contexts;
+        if (contexts.length == 0) {
             return null;
         }
-        return tail.getHandler();
+        return contexts[contexts.length - 1].getHandler();
     }
 
-    public synchronized ChannelHandler get(String name) {
-        DefaultChannelHandlerContext ctx = name2ctx.get(name);
+    public ChannelHandler get(String name) {
+        ChannelHandlerContext ctx = getContext(name);
         if (ctx == null) {
             return null;
         } else {
@@ -407,7 +428,7 @@ public class DefaultChannelPipeline implements ChannelPipeline {
         }
     }
 
-    public synchronized <T extends ChannelHandler> T get(Class<T> handlerType) {
+    public <T extends ChannelHandler> T get(Class<T> handlerType) {
         ChannelHandlerContext ctx = getContext(handlerType);
         if (ctx == null) {
             return null;
@@ -418,87 +439,56 @@ public class DefaultChannelPipeline implements ChannelPipeline {
         }
     }
 
-    public synchronized ChannelHandlerContext getContext(String name) {
+    public ChannelHandlerContext getContext(String name) {
         if (name == null) {
             throw new NullPointerException("name");
         }
-        return name2ctx.get(name);
+        for (DefaultChannelHandlerContext ctx: contexts) {
+            if (ctx.getName().equals(name)) {
+                return ctx;
+            }
+        }
+        return null;
     }
 
-    public synchronized ChannelHandlerContext getContext(ChannelHandler handler) {
+    public ChannelHandlerContext getContext(ChannelHandler handler) {
         if (handler == null) {
             throw new NullPointerException("handler");
         }
-        if (name2ctx.isEmpty()) {
-            return null;
-        }
-        DefaultChannelHandlerContext ctx = head;
-        for (;;) {
+        for (DefaultChannelHandlerContext ctx: contexts) {
             if (ctx.getHandler() == handler) {
                 return ctx;
             }
-
-            ctx = ctx.next;
-            if (ctx == null) {
-                break;
-            }
         }
         return null;
     }
 
-    public synchronized ChannelHandlerContext getContext(
+    public ChannelHandlerContext getContext(
             Class<? extends ChannelHandler> handlerType) {
         if (handlerType == null) {
             throw new NullPointerException("handlerType");
         }
-
-        if (name2ctx.isEmpty()) {
-            return null;
-        }
-        DefaultChannelHandlerContext ctx = head;
-        for (;;) {
+        for (DefaultChannelHandlerContext ctx: contexts) {
             if (handlerType.isAssignableFrom(ctx.getHandler().getClass())) {
                 return ctx;
             }
-
-            ctx = ctx.next;
-            if (ctx == null) {
-                break;
-            }
         }
         return null;
     }
 
     public List<String> getNames() {
-        List<String> list = new ArrayList<String>();
-        if (name2ctx.isEmpty()) {
-            return list;
-        }
-
-        DefaultChannelHandlerContext ctx = head;
-        for (;;) {
+        DefaultChannelHandlerContext[] contexts = this.contexts;
+        List<String> list = new ArrayList<String>(contexts.length);
+        for (DefaultChannelHandlerContext ctx: contexts) {
             list.add(ctx.getName());
-            ctx = ctx.next;
-            if (ctx == null) {
-                break;
-            }
         }
         return list;
     }
 
     public Map<String, ChannelHandler> toMap() {
         Map<String, ChannelHandler> map = new LinkedHashMap<String, ChannelHandler>();
-        if (name2ctx.isEmpty()) {
-            return map;
-        }
-
-        DefaultChannelHandlerContext ctx = head;
-        for (;;) {
+        for (DefaultChannelHandlerContext ctx: contexts) {
             map.put(ctx.getName(), ctx.getHandler());
-            ctx = ctx.next;
-            if (ctx == null) {
-                break;
-            }
         }
         return map;
     }
@@ -511,27 +501,24 @@ public class DefaultChannelPipeline implements ChannelPipeline {
         StringBuilder buf = new StringBuilder();
         buf.append(getClass().getSimpleName());
         buf.append('{');
-        DefaultChannelHandlerContext ctx = head;
-        if (ctx != null) {
-            for (;;) {
-                buf.append('(');
-                buf.append(ctx.getName());
-                buf.append(" = ");
-                buf.append(ctx.getHandler().getClass().getName());
-                buf.append(')');
-                ctx = ctx.next;
-                if (ctx == null) {
-                    break;
-                }
+        DefaultChannelHandlerContext[] contexts = this.contexts;
+        for (int i = 0; i < contexts.length; i ++) {
+            if (i != 0) {
                 buf.append(", ");
             }
+            DefaultChannelHandlerContext ctx = contexts[i];
+            buf.append('(');
+            buf.append(ctx.getName());
+            buf.append(" = ");
+            buf.append(ctx.getHandler().getClass().getName());
+            buf.append(')');
         }
         buf.append('}');
         return buf.toString();
     }
 
     public void sendUpstream(ChannelEvent e) {
-        DefaultChannelHandlerContext head = getActualUpstreamContext(this.head);
+        DefaultChannelHandlerContext head = firstUpstream;
         if (head == null) {
             if (logger.isWarnEnabled()) {
                 logger.warn(
@@ -546,7 +533,12 @@ public class DefaultChannelPipeline implements ChannelPipeline {
 
     void sendUpstream(DefaultChannelHandlerContext ctx, ChannelEvent e) {
         try {
-            ((ChannelUpstreamHandler) ctx.getHandler()).handleUpstream(ctx, e);
+            ChannelUpstreamHandler handler = (ChannelUpstreamHandler) ctx.getHandler();
+            if (ChannelHandlerMetrics.enabled) {
+                ChannelHandlerMetrics.handleUpstream(ctx.metrics(), handler, ctx, e);
+            } else {
+                handler.handleUpstream(ctx, e);
+            }
         } catch (Throwable t) {
             notifyHandlerException(e, t);
         }
@@ -557,7 +549,7 @@ public class DefaultChannelPipeline implements ChannelPipeline {
      * ûеĻChannelSink
      */
     public void sendDownstream(ChannelEvent e) {
-        DefaultChannelHandlerContext tail = getActualDownstreamContext(this.tail);
+        DefaultChannelHandlerContext tail = lastDownstream;
         if (tail == null) {
             try {
                 getSink().eventSunk(this, e);
@@ -580,7 +572,12 @@ public class DefaultChannelPipeline implements ChannelPipeline {
         }
 
         try {
-            ((ChannelDownstreamHandler) ctx.getHandler()).handleDownstream(ctx, e);
+            ChannelDownstreamHandler handler = (ChannelDownstreamHandler) ctx.getHandler();
+            if (ChannelHandlerMetrics.enabled) {
+                ChannelHandlerMetrics.handleDownstream(ctx.metrics(), handler, ctx, e);
+            } else {
+                handler.handleDownstream(ctx, e);
+            }
         } catch (Throwable t) {
             // Unlike an upstream event, a downstream event usually has an
             // incomplete future which is supposed to be updated by ChannelSink.
@@ -592,40 +589,35 @@ public class DefaultChannelPipeline implements ChannelPipeline {
         }
     }
 
-    private DefaultChannelHandlerContext getActualUpstreamContext(DefaultChannelHandlerContext ctx) {
-        if (ctx == null) {
-            return null;
-        }
-
-        DefaultChannelHandlerContext realCtx = ctx;
-        while (!realCtx.canHandleUpstream()) {
-            realCtx = realCtx.next;
-            if (realCtx == null) {
-                return null;
-            }
-        }
-
-        return realCtx;
-    }
-
     /**
-     * ˽зǻôctxӦHandlerʼHandler
-     * HandlerʲôأChannelSink
+     * Recomputes the {@code nextUpstream} and {@code nextDownstream} links of
+     * all contexts, so that an event is forwarded straight to the next handler
+     * which can handle it instead of walking over the ones which cannot, and
+     * publishes a new snapshot of the handler list for the lock-free readers.
+     * Must be called whenever the handler list is modified.
      */
-    private DefaultChannelHandlerContext getActualDownstreamContext(DefaultChannelHandlerContext ctx) {
-        if (ctx == null) {
-            return null;
+    private void updateHandlerLinks() {
+        DefaultChannelHandlerContext[] contexts = new DefaultChannelHandlerContext[name2ctx.size()];
+        int i = contexts.length;
+        DefaultChannelHandlerContext nextUpstream = null;
+        for (DefaultChannelHandlerContext ctx = tail; ctx != null; ctx = ctx.prev) {
+            contexts[-- i] = ctx;
+            ctx.nextUpstream = nextUpstream;
+            if (ctx.canHandleUpstream()) {
+                nextUpstream = ctx;
+            }
         }
+        firstUpstream = nextUpstream;
 
-        DefaultChannelHandlerContext realCtx = ctx;
-        while (!realCtx.canHandleDownstream()) {
-            realCtx = realCtx.prev; //ǰ
-            if (realCtx == null) {
-                return null;
+        DefaultChannelHandlerContext nextDownstream = null;
+        for (DefaultChannelHandlerContext ctx = head; ctx != null; ctx = ctx.next) {
+            ctx.nextDownstream = nextDownstream;
+            if (ctx.canHandleDownstream()) {
+                nextDownstream = ctx;
             }
         }
-
-        return realCtx;
+        lastDownstream = nextDownstream;
+        this.contexts = contexts;
     }
 
     public ChannelFuture execute(Runnable task) {
@@ -665,6 +657,7 @@ public class DefaultChannelPipeline implements ChannelPipeline {
         head = tail = ctx;
         name2ctx.clear();
         name2ctx.put(name, ctx);
+        updateHandlerLinks();
         callAfterAdd(ctx);
     }
 
@@ -704,11 +697,15 @@ public class DefaultChannelPipeline implements ChannelPipeline {
     private final class DefaultChannelHandlerContext implements ChannelHandlerContext {
         volatile DefaultChannelHandlerContext next;
         volatile DefaultChannelHandlerContext prev;
+        volatile DefaultChannelHandlerContext nextUpstream;
+        volatile DefaultChannelHandlerContext nextDownstream;
         private final String name;
         private final ChannelHandler handler;
         private final boolean canHandleUpstream;
         private final boolean canHandleDownstream;
         private volatile Object attachment;
+        // Looked up lazily once the metrics are enabled.
+        private ChannelHandlerMetrics.HandlerMetrics metrics;
 
         DefaultChannelHandlerContext(
                 DefaultChannelHandlerContext prev, DefaultChannelHandlerContext next,
@@ -760,6 +757,14 @@ public class DefaultChannelPipeline implements ChannelPipeline {
             return name;
         }
 
+        ChannelHandlerMetrics.HandlerMetrics metrics() {
+            ChannelHandlerMetrics.HandlerMetrics metrics = this.metrics;
+            if (metrics == null) {
+                this.metrics = metrics = ChannelHandlerMetrics.metrics(name);
+            }
+            return metrics;
+        }
+
         public Object getAttachment() {
             return attachment;
         }
@@ -769,7 +774,7 @@ public class DefaultChannelPipeline implements ChannelPipeline {
         }
 
         public void sendDownstream(ChannelEvent e) {
-            DefaultChannelHandlerContext prev = getActualDownstreamContext(this.prev);
+            DefaultChannelHandlerContext prev = nextDownstream;
             if (prev == null) {
                 try {
                     getSink().eventSunk(DefaultChannelPipeline.this, e);
@@ -782,7 +787,7 @@ public class DefaultChannelPipeline implements ChannelPipeline {
         }
 
         public void sendUpstream(ChannelEvent e) {
-            DefaultChannelHandlerContext next = getActualUpstreamContext(this.next);
+            DefaultChannelHandlerContext next = nextUpstream;
             if (next != null) {
                 DefaultChannelPipeline.this.sendUpstream(next, e);
             }
@@ -0,0 +1,52 @@
+/*
+ * Copyright 2014 The Netty Project
+ *
+ * The Netty Project licenses this file to you under the Apache License,
+ * version 2.0 (the "License"); you may not use this file except in compliance
+ * with the License. You may obtain a copy of the License at:
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS, WITHOUT
+ * WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied. See the
+ * License for the specific language governing permissions and limitations
+ * under the License.
+ */
+package org.jboss.netty.channel;
+
+/**
+ * The default downstream {@link FlushEvent} implementation.
+ */
+public class DownstreamFlushEvent implements FlushEvent {
+
+    private final Channel channel;
+    private final ChannelFuture future;
+
+    /**
+     * Creates a new instance.
+     */
+    public DownstreamFlushEvent(Channel channel, ChannelFuture future) {
+        if (channel == null) {
+            throw new NullPointerException("channel");
+        }
+        if (future == null) {
+            throw new NullPointerException("future");
+        }
+        this.channel = channel;
+        this.future = future;
+    }
+
+    public Channel getChannel() {
+        return channel;
+    }
+
+    public ChannelFuture getFuture() {
+        return future;
+    }
+
+    @Override
+    public String toString() {
+        return getChannel().toString() + " FLUSH";
+    }
+}
@@ -15,6 +15,8 @@
  */
 package org.jboss.netty.channel;
 
+import static org.jboss.netty.channel.ChannelEventRecycler.*;
+
 import java.net.SocketAddress;
 
 import org.jboss.netty.util.internal.StringUtil;
@@ -24,10 +26,11 @@ import org.jboss.netty.util.internal.StringUtil;
  */
 public class DownstreamMessageEvent implements MessageEvent {
 
-    private final Channel channel;
-    private final ChannelFuture future;
-    private final Object message;
-    private final SocketAddress remoteAddress;
+    private Channel channel;
+    private ChannelFuture future;
+    private Object message;
+    private SocketAddress remoteAddress;
+    private int recycleState;
 
     /**
      * Creates a new instance.
@@ -35,7 +38,18 @@ public class DownstreamMessageEvent implements MessageEvent {
     public DownstreamMessageEvent(
             Channel channel, ChannelFuture future,
             Object message, SocketAddress remoteAddress) {
+        init(channel, future, message, remoteAddress);
+        recycleState = NOT_POOLED;
+    }
 
+    /**
+     * Creates a new recyclable instance.
+     */
+    DownstreamMessageEvent() {
+        recycleState = RECYCLED;
+    }
+
+    void init(Channel channel, ChannelFuture future, Object message, SocketAddress remoteAddress) {
         if (channel == null) {
             throw new NullPointerException("channel");
         }
@@ -53,21 +67,61 @@ public class DownstreamMessageEvent implements MessageEvent {
         } else {
             this.remoteAddress = channel.getRemoteAddress();
         }
+        recycleState = IN_USE;
+    }
+
+    void retain() {
+        if (DEBUG) {
+            checkNotRecycled(recycleState);
+        }
+        if (recycleState == IN_USE) {
+            recycleState = RETAINED;
+        }
+    }
+
+    void recycle() {
+        switch (recycleState) {
+        case IN_USE:
+            channel = null;
+            future = null;
+            message = null;
+            remoteAddress = null;
+            recycleState = RECYCLED;
+            DOWNSTREAM_MESSAGE_EVENTS.recycle(this);
+            break;
+        case RECYCLED:
+            if (DEBUG) {
+                throw new IllegalStateException("recycled already");
+            }
+            break;
+        }
     }
 
     public Channel getChannel() {
+        if (DEBUG) {
+            checkNotRecycled(recycleState);
+        }
         return channel;
     }
 
     public ChannelFuture getFuture() {
+        if (DEBUG) {
+            checkNotRecycled(recycleState);
+        }
         return future;
     }
 
     public Object getMessage() {
+        if (DEBUG) {
+            checkNotRecycled(recycleState);
+        }
         return message;
     }
 
     public SocketAddress getRemoteAddress() {
+        if (DEBUG) {
+            checkNotRecycled(recycleState);
+        }
         return remoteAddress;
     }
 
@@ -0,0 +1,32 @@
+/*
+ * Copyright 2014 The Netty Project
+ *
+ * The Netty Project licenses this file to you under the Apache License,
+ * version 2.0 (the "License"); you may not use this file except in compliance
+ * with the License. You may obtain a copy of the License at:
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS, WITHOUT
+ * WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied. See the
+ * License for the specific language governing permissions and limitations
+ * under the License.
+ */
+package org.jboss.netty.channel;
+
+/**
+ * A {@link ChannelEvent} which represents the request to write out the
+ * messages which were queued by previous write requests on a {@link Channel}.
+ * This event is for going downstream only.  Please refer to the
+ * {@link ChannelEvent} documentation to find out what an upstream event and a
+ * downstream event are and what fundamental differences they have.
+ * <p>
+ * A transport which writes every message as soon as it is requested simply
+ * marks the {@linkplain #getFuture() future} of this event as succeeded.
+ *
+ * @see Channels#flush(Channel)
+ */
+public interface FlushEvent extends ChannelEvent {
+    // Marker interface
+}
@@ -0,0 +1,156 @@
+/*
+ * Copyright 2014 The Netty Project
+ *
+ * The Netty Project licenses this file to you under the Apache License,
+ * version 2.0 (the "License"); you may not use this file except in compliance
+ * with the License. You may obtain a copy of the License at:
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS, WITHOUT
+ * WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied. See the
+ * License for the specific language governing permissions and limitations
+ * under the License.
+ */
+package org.jboss.netty.channel;
+
+import static org.jboss.netty.channel.ChannelEventRecycler.*;
+
+import java.util.concurrent.TimeUnit;
+
+/**
+ * A {@link DefaultChannelFuture} which returns itself to the pool of
+ * {@link ChannelEventRecycler} once it is complete and its listeners have been
+ * notified.
+ */
+final class RecyclableChannelFuture extends DefaultChannelFuture {
+
+    private Channel channel;
+    private int recycleState = RECYCLED;
+
+    RecyclableChannelFuture() {
+        super(null, false);
+    }
+
+    void init(Channel channel) {
+        this.channel = channel;
+        recycleState = IN_USE;
+    }
+
+    @Override
+    public Channel getChannel() {
+        if (DEBUG) {
+            checkNotRecycled(recycleState);
+        }
+        return channel;
+    }
+
+    @Override
+    public boolean isDone() {
+        if (DEBUG) {
+            checkNotRecycled(recycleState);
+        }
+        return super.isDone();
+    }
+
+    @Override
+    public boolean isSuccess() {
+        if (DEBUG) {
+            checkNotRecycled(recycleState);
+        }
+        return super.isSuccess();
+    }
+
+    @Override
+    public Throwable getCause() {
+        if (DEBUG) {
+            checkNotRecycled(recycleState);
+        }
+        return super.getCause();
+    }
+
+    @Override
+    public void addListener(ChannelFutureListener listener) {
+        if (DEBUG) {
+            checkNotRecycled(recycleState);
+        }
+        super.addListener(listener);
+    }
+
+    @Override
+    public boolean setSuccess() {
+        if (DEBUG) {
+            checkNotRecycled(recycleState);
+        }
+        if (super.setSuccess()) {
+            recycle();
+            return true;
+        }
+        return false;
+    }
+
+    @Override
+    public boolean setFailure(Throwable cause) {
+        if (DEBUG) {
+            checkNotRecycled(recycleState);
+        }
+        if (super.setFailure(cause)) {
+            recycle();
+            return true;
+        }
+        return false;
+    }
+
+    private void recycle() {
+        channel = null;
+        recycleState = RECYCLED;
+        reset();
+        FUTURES.recycle(this);
+    }
+
+    @Override
+    public ChannelFuture await() {
+        throw cannotWait();
+    }
+
+    @Override
+    public boolean await(long timeout, TimeUnit unit) {
+        throw cannotWait();
+    }
+
+    @Override
+    public boolean await(long timeoutMillis) {
+        throw cannotWait();
+    }
+
+    @Override
+    public ChannelFuture awaitUninterruptibly() {
+        throw cannotWait();
+    }
+
+    @Override
+    public boolean awaitUninterruptibly(long timeout, TimeUnit unit) {
+        throw cannotWait();
+    }
+
+    @Override
+    public boolean awaitUninterruptibly(long timeoutMillis) {
+        throw cannotWait();
+    }
+
+    @Override
+    public ChannelFuture sync() {
+        throw cannotWait();
+    }
+
+    @Override
+    public ChannelFuture syncUninterruptibly() {
+        throw cannotWait();
+    }
+
+    private static IllegalStateException cannotWait() {
+        return new IllegalStateException(
+                "a recyclable future cannot be waited for; use addListener() instead.");
+    }
+}
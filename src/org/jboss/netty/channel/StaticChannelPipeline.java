@@ -18,6 +18,7 @@ package org.jboss.netty.channel;
 import org.jboss.netty.logging.InternalLogger;
 import org.jboss.netty.logging.InternalLoggerFactory;
 import org.jboss.netty.util.internal.ConversionUtil;
+import org.jboss.netty.util.internal.SystemPropertyUtil;
 
 import java.util.ArrayList;
 import java.util.HashMap;
@@ -31,6 +32,20 @@ import java.util.Map;
  * An attempt to insert, remove, or replace a handler in this pipeline will
  * trigger an {@link UnsupportedOperationException}.
  *
+ * <h3>Compiled dispatch</h3>
+ *
+ * Because the handlers of this pipeline never change, {@link #compile()} can
+ * replace the generic dispatch through {@link ChannelUpstreamHandler} and
+ * {@link ChannelDownstreamHandler} with a class generated at runtime, which
+ * invokes the handler at each position through its own call site.  The JIT
+ * compiler can then inline every handler into the dispatch path instead of
+ * falling back to a megamorphic interface call.  The generated class is
+ * shared by all pipelines with the same sequence of handler classes, which
+ * is usually the case for the pipelines created by a
+ * {@link ChannelPipelineFactory}.  All pipelines are compiled on construction
+ * if the system property {@code "org.jboss.netty.compilePipelines"} is
+ * {@code true}.
+ *
  * @deprecated use {@link DefaultChannelPipeline}
  */
 @Deprecated
@@ -39,10 +54,15 @@ public class StaticChannelPipeline implements ChannelPipeline {
     // FIXME Code duplication with DefaultChannelPipeline
     static final InternalLogger logger = InternalLoggerFactory.getInstance(StaticChannelPipeline.class);
 
+    private static final boolean COMPILE =
+            SystemPropertyUtil.getBoolean("org.jboss.netty.compilePipelines", false);
+
     private volatile Channel channel;
     private volatile ChannelSink sink;
     private final StaticChannelHandlerContext[] contexts;
-    private final int lastIndex;
+    private final StaticChannelHandlerContext firstUpstream;
+    private final StaticChannelHandlerContext lastDownstream;
+    private volatile ChannelHandlerDispatcher dispatcher;
     private final Map<String, StaticChannelHandlerContext> name2ctx =
         new HashMap<String, StaticChannelHandlerContext>(4);
 
@@ -73,11 +93,9 @@ public class StaticChannelPipeline implements ChannelPipeline {
 
         if (nContexts == contexts.length) {
             this.contexts = contexts;
-            lastIndex = contexts.length - 1;
         } else {
             this.contexts = contexts =
                 new StaticChannelHandlerContext[nContexts];
-            lastIndex = nContexts - 1;
         }
 
         // Initialize the first non-null handlers only.
@@ -90,10 +108,60 @@ public class StaticChannelPipeline implements ChannelPipeline {
             name2ctx.put(name, ctx);
         }
 
+        // Link each context to the next one which handles the same direction.
+        StaticChannelHandlerContext nextUpstream = null;
+        for (int i = nContexts - 1; i >= 0; i --) {
+            contexts[i].nextUpstream = nextUpstream;
+            if (contexts[i].canHandleUpstream()) {
+                nextUpstream = contexts[i];
+            }
+        }
+        firstUpstream = nextUpstream;
+
+        StaticChannelHandlerContext nextDownstream = null;
+        for (int i = 0; i < nContexts; i ++) {
+            contexts[i].nextDownstream = nextDownstream;
+            if (contexts[i].canHandleDownstream()) {
+                nextDownstream = contexts[i];
+            }
+        }
+        lastDownstream = nextDownstream;
+
         for (ChannelHandlerContext ctx: contexts) {
             callBeforeAdd(ctx);
             callAfterAdd(ctx);
         }
+
+        if (COMPILE) {
+            compile();
+        }
+    }
+
+    /**
+     * Generates a class which dispatches events to the handlers of this
+     * pipeline via direct calls, as described in the class documentation.
+     * If the class could not be generated, the events are dispatched as
+     * usual.
+     *
+     * @return this pipeline
+     */
+    public StaticChannelPipeline compile() {
+        if (dispatcher == null) {
+            ChannelHandler[] handlers = new ChannelHandler[contexts.length];
+            for (int i = 0; i < handlers.length; i ++) {
+                handlers[i] = contexts[i].getHandler();
+            }
+            dispatcher = ChannelHandlerDispatcherGenerator.get(handlers);
+        }
+        return this;
+    }
+
+    /**
+     * Returns {@code true} if and only if {@link #compile()} generated a
+     * dispatcher for this pipeline.
+     */
+    public boolean isCompiled() {
+        return dispatcher != null;
     }
 
     public ChannelFuture execute(Runnable task) {
@@ -359,7 +427,7 @@ public class StaticChannelPipeline implements ChannelPipeline {
     }
 
     public void sendUpstream(ChannelEvent e) {
-        StaticChannelHandlerContext head = getActualUpstreamContext(0);
+        StaticChannelHandlerContext head = firstUpstream;
         if (head == null) {
             logger.warn(
                     "The pipeline contains no upstream handlers; discarding: " + e);
@@ -371,14 +439,22 @@ public class StaticChannelPipeline implements ChannelPipeline {
 
     void sendUpstream(StaticChannelHandlerContext ctx, ChannelEvent e) {
         try {
-            ((ChannelUpstreamHandler) ctx.getHandler()).handleUpstream(ctx, e);
+            ChannelHandlerDispatcher dispatcher = this.dispatcher;
+            if (ChannelHandlerMetrics.enabled) {
+                ChannelHandlerMetrics.handleUpstream(
+                        ctx.metrics(), (ChannelUpstreamHandler) ctx.getHandler(), ctx, e);
+            } else if (dispatcher != null) {
+                dispatcher.handleUpstream(ctx.index, ctx.getHandler(), ctx, e);
+            } else {
+                ((ChannelUpstreamHandler) ctx.getHandler()).handleUpstream(ctx, e);
+            }
         } catch (Throwable t) {
             notifyHandlerException(e, t);
         }
     }
 
     public void sendDownstream(ChannelEvent e) {
-        StaticChannelHandlerContext tail = getActualDownstreamContext(lastIndex);
+        StaticChannelHandlerContext tail = lastDownstream;
         if (tail == null) {
             try {
                 getSink().eventSunk(this, e);
@@ -398,7 +474,15 @@ public class StaticChannelPipeline implements ChannelPipeline {
         }
 
         try {
-            ((ChannelDownstreamHandler) ctx.getHandler()).handleDownstream(ctx, e);
+            ChannelHandlerDispatcher dispatcher = this.dispatcher;
+            if (ChannelHandlerMetrics.enabled) {
+                ChannelHandlerMetrics.handleDownstream(
+                        ctx.metrics(), (ChannelDownstreamHandler) ctx.getHandler(), ctx, e);
+            } else if (dispatcher != null) {
+                dispatcher.handleDownstream(ctx.index, ctx.getHandler(), ctx, e);
+            } else {
+                ((ChannelDownstreamHandler) ctx.getHandler()).handleDownstream(ctx, e);
+            }
         } catch (Throwable t) {
             // Unlike an upstream event, a downstream event usually has an
             // incomplete future which is supposed to be updated by ChannelSink.
@@ -410,26 +494,6 @@ public class StaticChannelPipeline implements ChannelPipeline {
         }
     }
 
-    private StaticChannelHandlerContext getActualUpstreamContext(int index) {
-        for (int i = index; i < contexts.length; i ++) {
-            StaticChannelHandlerContext ctx = contexts[i];
-            if (ctx.canHandleUpstream()) {
-                return ctx;
-            }
-        }
-        return null;
-    }
-
-    private StaticChannelHandlerContext getActualDownstreamContext(int index) {
-        for (int i = index; i >= 0; i --) {
-            StaticChannelHandlerContext ctx = contexts[i];
-            if (ctx.canHandleDownstream()) {
-                return ctx;
-            }
-        }
-        return null;
-    }
-
     protected void notifyHandlerException(ChannelEvent e, Throwable t) {
         if (e instanceof ExceptionEvent) {
             logger.warn(
@@ -458,7 +522,11 @@ public class StaticChannelPipeline implements ChannelPipeline {
         private final ChannelHandler handler;
         private final boolean canHandleUpstream;
         private final boolean canHandleDownstream;
+        StaticChannelHandlerContext nextUpstream;
+        StaticChannelHandlerContext nextDownstream;
         private volatile Object attachment;
+        // Looked up lazily once the metrics are enabled.
+        private ChannelHandlerMetrics.HandlerMetrics metrics;
 
         StaticChannelHandlerContext(
                 int index, String name, ChannelHandler handler) {
@@ -508,6 +576,14 @@ public class StaticChannelPipeline implements ChannelPipeline {
             return name;
         }
 
+        ChannelHandlerMetrics.HandlerMetrics metrics() {
+            ChannelHandlerMetrics.HandlerMetrics metrics = this.metrics;
+            if (metrics == null) {
+                this.metrics = metrics = ChannelHandlerMetrics.metrics(name);
+            }
+            return metrics;
+        }
+
         public Object getAttachment() {
             return attachment;
         }
@@ -517,7 +593,7 @@ public class StaticChannelPipeline implements ChannelPipeline {
         }
 
         public void sendDownstream(ChannelEvent e) {
-            StaticChannelHandlerContext prev = getActualDownstreamContext(index - 1);
+            StaticChannelHandlerContext prev = nextDownstream;
             if (prev == null) {
                 try {
                     getSink().eventSunk(StaticChannelPipeline.this, e);
@@ -530,7 +606,7 @@ public class StaticChannelPipeline implements ChannelPipeline {
         }
 
         public void sendUpstream(ChannelEvent e) {
-            StaticChannelHandlerContext next = getActualUpstreamContext(index + 1);
+            StaticChannelHandlerContext next = nextUpstream;
             if (next != null) {
                 StaticChannelPipeline.this.sendUpstream(next, e);
             }
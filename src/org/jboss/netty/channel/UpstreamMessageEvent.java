@@ -15,6 +15,7 @@
  */
 package org.jboss.netty.channel;
 
+import static org.jboss.netty.channel.ChannelEventRecycler.*;
 import static org.jboss.netty.channel.Channels.*;
 
 import java.net.SocketAddress;
@@ -26,16 +27,28 @@ import org.jboss.netty.util.internal.StringUtil;
  */
 public class UpstreamMessageEvent implements MessageEvent {
 
-    private final Channel channel;
-    private final Object message;
-    private final SocketAddress remoteAddress;
+    private Channel channel;
+    private Object message;
+    private SocketAddress remoteAddress;
+    private int recycleState;
 
     /**
      * Creates a new instance.
      */
     public UpstreamMessageEvent(
             Channel channel, Object message, SocketAddress remoteAddress) {
+        init(channel, message, remoteAddress);
+        recycleState = NOT_POOLED;
+    }
+
+    /**
+     * Creates a new recyclable instance.
+     */
+    UpstreamMessageEvent() {
+        recycleState = RECYCLED;
+    }
 
+    void init(Channel channel, Object message, SocketAddress remoteAddress) {
         if (channel == null) {
             throw new NullPointerException("channel");
         }
@@ -49,9 +62,39 @@ public class UpstreamMessageEvent implements MessageEvent {
         } else {
             this.remoteAddress = channel.getRemoteAddress();
         }
+        recycleState = IN_USE;
+    }
+
+    void retain() {
+        if (DEBUG) {
+            checkNotRecycled(recycleState);
+        }
+        if (recycleState == IN_USE) {
+            recycleState = RETAINED;
+        }
+    }
+
+    void recycle() {
+        switch (recycleState) {
+        case IN_USE:
+            channel = null;
+            message = null;
+            remoteAddress = null;
+            recycleState = RECYCLED;
+            UPSTREAM_MESSAGE_EVENTS.recycle(this);
+            break;
+        case RECYCLED:
+            if (DEBUG) {
+                throw new IllegalStateException("recycled already");
+            }
+            break;
+        }
     }
 
     public Channel getChannel() {
+        if (DEBUG) {
+            checkNotRecycled(recycleState);
+        }
         return channel;
     }
 
@@ -60,10 +103,16 @@ public class UpstreamMessageEvent implements MessageEvent {
     }
 
     public Object getMessage() {
+        if (DEBUG) {
+            checkNotRecycled(recycleState);
+        }
         return message;
     }
 
     public SocketAddress getRemoteAddress() {
+        if (DEBUG) {
+            checkNotRecycled(recycleState);
+        }
         return remoteAddress;
     }
 
@@ -0,0 +1,146 @@
+/*
+ * Copyright 2014 The Netty Project
+ *
+ * The Netty Project licenses this file to you under the Apache License,
+ * version 2.0 (the "License"); you may not use this file except in compliance
+ * with the License. You may obtain a copy of the License at:
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS, WITHOUT
+ * WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied. See the
+ * License for the specific language governing permissions and limitations
+ * under the License.
+ */
+package org.jboss.netty.channel;
+
+import java.util.concurrent.TimeUnit;
+
+/**
+ * A {@link ChannelFuture} for the requests whose result is of no interest to
+ * the caller.  A single instance is shared by all such requests of a
+ * {@link Channel}, so that no future is allocated per request.
+ * <p>
+ * A void future never completes: it ignores all updates and rejects listeners
+ * and {@code await*()} calls with an {@link IllegalStateException}.  The
+ * failure of a request is still reported to the pipeline as an
+ * {@link ExceptionEvent} by the transport.  Do not pass it to a handler
+ * which listens to the futures of the events it forwards.
+ *
+ * @see Channels#voidFuture(Channel)
+ */
+public final class VoidChannelFuture implements ChannelFuture {
+
+    private final Channel channel;
+
+    /**
+     * Creates a new instance.
+     *
+     * @param channel the {@link Channel} associated with this future
+     */
+    public VoidChannelFuture(Channel channel) {
+        if (channel == null) {
+            throw new NullPointerException("channel");
+        }
+        this.channel = channel;
+    }
+
+    public Channel getChannel() {
+        return channel;
+    }
+
+    public boolean isDone() {
+        return false;
+    }
+
+    public boolean isCancelled() {
+        return false;
+    }
+
+    public boolean isSuccess() {
+        return false;
+    }
+
+    public Throwable getCause() {
+        return null;
+    }
+
+    public boolean cancel() {
+        return false;
+    }
+
+    public boolean setSuccess() {
+        return false;
+    }
+
+    public boolean setFailure(Throwable cause) {
+        return false;
+    }
+
+    public boolean setProgress(long amount, long current, long total) {
+        return false;
+    }
+
+    public void addListener(ChannelFutureListener listener) {
+        fail();
+    }
+
+    public void removeListener(ChannelFutureListener listener) {
+        // NOOP
+    }
+
+    @Deprecated
+    public ChannelFuture rethrowIfFailed() throws Exception {
+        return this;
+    }
+
+    public ChannelFuture sync() throws InterruptedException {
+        fail();
+        return this;
+    }
+
+    public ChannelFuture syncUninterruptibly() {
+        fail();
+        return this;
+    }
+
+    public ChannelFuture await() throws InterruptedException {
+        fail();
+        return this;
+    }
+
+    public boolean await(long timeout, TimeUnit unit) throws InterruptedException {
+        fail();
+        return false;
+    }
+
+    public boolean await(long timeoutMillis) throws InterruptedException {
+        fail();
+        return false;
+    }
+
+    public ChannelFuture awaitUninterruptibly() {
+        fail();
+        return this;
+    }
+
+    public boolean awaitUninterruptibly(long timeout, TimeUnit unit) {
+        fail();
+        return false;
+    }
+
+    public boolean awaitUninterruptibly(long timeoutMillis) {
+        fail();
+        return false;
+    }
+
+    private static void fail() {
+        throw new IllegalStateException("void future");
+    }
+
+    @Override
+    public String toString() {
+        return getClass().getSimpleName() + '(' + channel + ')';
+    }
+}
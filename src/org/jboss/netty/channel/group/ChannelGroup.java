@@ -130,7 +130,11 @@ public interface ChannelGroup extends Set<Channel>, Comparable<ChannelGroup> {
      * group. If the specified {@code message} is an instance of
      * {@link ChannelBuffer}, it is automatically
      * {@linkplain ChannelBuffer#duplicate() duplicated} to avoid a race
-     * condition. Please note that this operation is asynchronous as
+     * condition. A {@linkplain org.jboss.netty.buffer.ReferenceCountedChannelBuffer reference-counted}
+     * buffer is {@linkplain org.jboss.netty.buffer.ChannelBuffers#retain(ChannelBuffer) retained}
+     * once for every channel but the first, because each channel releases
+     * what it has written, and released if this group has no channel to write
+     * to. Please note that this operation is asynchronous as
      * {@link Channel#write(Object)} is.
      *
      * @return the {@link ChannelGroupFuture} instance that notifies when
@@ -143,8 +147,9 @@ public interface ChannelGroup extends Set<Channel>, Comparable<ChannelGroup> {
      * {@code remoteAddress} to all {@link Channel}s in this group.  If the
      * specified {@code message} is an instance of {@link ChannelBuffer}, it is
      * automatically {@linkplain ChannelBuffer#duplicate() duplicated} to avoid
-     * a race condition. Please note that this operation is asynchronous as
-     * {@link Channel#write(Object, SocketAddress)} is.
+     * a race condition, and retained for every channel but the first as
+     * described in {@link #write(Object)}. Please note that this operation is
+     * asynchronous as {@link Channel#write(Object, SocketAddress)} is.
      *
      * @return the {@link ChannelGroupFuture} instance that notifies when
      *         the operation is done for all channels
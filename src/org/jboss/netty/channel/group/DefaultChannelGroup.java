@@ -26,6 +26,7 @@ import java.util.concurrent.ConcurrentMap;
 import java.util.concurrent.atomic.AtomicInteger;
 
 import org.jboss.netty.buffer.ChannelBuffer;
+import org.jboss.netty.buffer.ChannelBuffers;
 import org.jboss.netty.channel.Channel;
 import org.jboss.netty.channel.ChannelFuture;
 import org.jboss.netty.channel.ChannelFutureListener;
@@ -248,7 +249,7 @@ public class DefaultChannelGroup extends AbstractSet<Channel> implements Channel
             new LinkedHashMap<Integer, ChannelFuture>(size());
         if (message instanceof ChannelBuffer) {
             ChannelBuffer buf = (ChannelBuffer) message;
-            for (Channel c: nonServerChannels.values()) {
+            for (Channel c: retainForWrite(buf)) {
                 futures.put(c.getId(), c.write(buf.duplicate()));
             }
         } else {
@@ -264,7 +265,7 @@ public class DefaultChannelGroup extends AbstractSet<Channel> implements Channel
             new LinkedHashMap<Integer, ChannelFuture>(size());
         if (message instanceof ChannelBuffer) {
             ChannelBuffer buf = (ChannelBuffer) message;
-            for (Channel c: nonServerChannels.values()) {
+            for (Channel c: retainForWrite(buf)) {
                 futures.put(c.getId(), c.write(buf.duplicate(), remoteAddress));
             }
         } else {
@@ -275,6 +276,24 @@ public class DefaultChannelGroup extends AbstractSet<Channel> implements Channel
         return new DefaultChannelGroupFuture(this, futures);
     }
 
+    /**
+     * Returns the channels to write the specified buffer to, having retained
+     * the buffer once for every channel but the first.  Every channel releases
+     * what it has written, so a pooled buffer needs one reference per channel
+     * before the first write completes.  If there is no channel to write to,
+     * the buffer is released instead.
+     */
+    private Collection<Channel> retainForWrite(ChannelBuffer buf) {
+        Collection<Channel> channels = new ArrayList<Channel>(nonServerChannels.values());
+        if (channels.isEmpty()) {
+            ChannelBuffers.release(buf);
+        }
+        for (int i = 1; i < channels.size(); i ++) {
+            ChannelBuffers.retain(buf);
+        }
+        return channels;
+    }
+
     @Override
     public int hashCode() {
         return System.identityHashCode(this);
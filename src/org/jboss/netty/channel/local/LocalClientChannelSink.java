@@ -23,6 +23,7 @@ import org.jboss.netty.channel.ChannelFuture;
 import org.jboss.netty.channel.ChannelPipeline;
 import org.jboss.netty.channel.ChannelState;
 import org.jboss.netty.channel.ChannelStateEvent;
+import org.jboss.netty.channel.FlushEvent;
 import org.jboss.netty.channel.MessageEvent;
 import org.jboss.netty.logging.InternalLogger;
 import org.jboss.netty.logging.InternalLoggerFactory;
@@ -78,6 +79,9 @@ final class LocalClientChannelSink extends AbstractChannelSink {
             boolean offered = channel.writeBuffer.offer(event);
             assert offered;
             channel.flushWriteBuffer();
+        } else if (e instanceof FlushEvent) {
+            // Messages are never held back by this transport.
+            e.getFuture().setSuccess();
         }
     }
 
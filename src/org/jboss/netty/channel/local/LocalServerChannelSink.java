@@ -25,6 +25,7 @@ import org.jboss.netty.channel.ChannelFuture;
 import org.jboss.netty.channel.ChannelPipeline;
 import org.jboss.netty.channel.ChannelState;
 import org.jboss.netty.channel.ChannelStateEvent;
+import org.jboss.netty.channel.FlushEvent;
 import org.jboss.netty.channel.MessageEvent;
 
 final class LocalServerChannelSink extends AbstractChannelSink {
@@ -96,6 +97,9 @@ final class LocalServerChannelSink extends AbstractChannelSink {
             boolean offered = channel.writeBuffer.offer(event);
             assert offered;
             channel.flushWriteBuffer();
+        } else if (e instanceof FlushEvent) {
+            // Messages are never held back by this transport.
+            e.getFuture().setSuccess();
         }
     }
 
@@ -24,6 +24,7 @@ import org.jboss.netty.channel.ChannelFuture;
 import org.jboss.netty.channel.ChannelPipeline;
 import org.jboss.netty.channel.ChannelState;
 import org.jboss.netty.channel.ChannelStateEvent;
+import org.jboss.netty.channel.FlushEvent;
 import org.jboss.netty.channel.MessageEvent;
 
 final class HttpTunnelingClientSocketPipelineSink extends AbstractChannelSink {
@@ -62,6 +63,9 @@ final class HttpTunnelingClientSocketPipelineSink extends AbstractChannelSink {
             }
         } else if (e instanceof MessageEvent) {
             channel.writeReal((ChannelBuffer) ((MessageEvent) e).getMessage(), future);
+        } else if (e instanceof FlushEvent) {
+            // Messages are never held back by this transport.
+            e.getFuture().setSuccess();
         }
     }
 }
@@ -72,6 +72,18 @@ abstract class AbstractNioChannel<C extends SelectableChannel & WritableByteChan
     boolean inWriteNowLoop;
     boolean writeSuspended;
 
+    /**
+     * The {@link System#nanoTime()} of the last read and write, and of the last
+     * idle events, used by the {@link AbstractNioWorker} to detect the idle
+     * states configured in {@link NioChannelConfig}.  Only accessed by the I/O
+     * thread.
+     */
+    long lastReadTime;
+    long lastWriteTime;
+    long lastReaderIdleTime;
+    long lastWriterIdleTime;
+    long lastAllIdleTime;
+
     private volatile InetSocketAddress localAddress;
     volatile InetSocketAddress remoteAddress;
 
@@ -83,6 +95,7 @@ abstract class AbstractNioChannel<C extends SelectableChannel & WritableByteChan
         super(id, parent, factory, pipeline, sink);
         this.worker = worker;
         channel = ch;
+        resetIdleTimes();
     }
 
     protected AbstractNioChannel(
@@ -91,6 +104,16 @@ abstract class AbstractNioChannel<C extends SelectableChannel & WritableByteChan
         super(parent, factory, pipeline, sink);
         this.worker = worker;
         channel = ch;
+        resetIdleTimes();
+    }
+
+    private void resetIdleTimes() {
+        long currentTime = System.nanoTime();
+        lastReadTime = currentTime;
+        lastWriteTime = currentTime;
+        lastReaderIdleTime = currentTime;
+        lastWriterIdleTime = currentTime;
+        lastAllIdleTime = currentTime;
     }
 
     /**
@@ -260,10 +283,12 @@ abstract class AbstractNioChannel<C extends SelectableChannel & WritableByteChan
         }
 
         public boolean offer(MessageEvent e) {
+            // Get the size before publishing the event; the I/O thread may write
+            // and recycle it as soon as it is in the queue.
+            int messageSize = getMessageSize(e);
             boolean success = queue.offer(e);
             assert success;
 
-            int messageSize = getMessageSize(e);
             int newWriteBufferSize = writeBufferSize.addAndGet(messageSize);
             int highWaterMark =  getConfig().getWriteBufferHighWaterMark();
 
@@ -65,6 +65,13 @@ abstract class AbstractNioSelector implements NioSelector {
      */
     protected volatile Selector selector;
 
+    /**
+     * The array-backed selected-key set of {@link #selector}, or {@code null} if
+     * the {@link Selector} still uses its own selected-key set.  Only accessed by
+     * the I/O thread once it has been started.
+     */
+    SelectedSelectionKeySet selectedKeys;
+
     /**
      *  Selector.select ״̬ԭӱ
      * Boolean that controls determines if a blocked Selector.select should
@@ -151,6 +158,7 @@ abstract class AbstractNioSelector implements NioSelector {
         try {
         	// ޷ٴδһSelector
             newSelector = SelectorUtil.open();
+            selectedKeys = SelectorUtil.optimize(newSelector);
         } catch (Exception e) {
             logger.warn("Failed to create a new Selector.", e);
             return;
@@ -210,13 +218,13 @@ abstract class AbstractNioSelector implements NioSelector {
         if (selector == null) {
             return;
         }
-        // use 80% of the timeout for measure
-        final long minSelectTimeout = SelectorUtil.SELECT_TIMEOUT_NANOS * 80 / 100;
         boolean wakenupFromLoop = false;
         for (;;) {
             wakenUp.set(false);
 
             try {
+                // use 80% of the timeout for measure
+                long minSelectTimeout = selectTimeoutNanos() * 80 / 100;
                 long beforeSelect = System.nanoTime();
                 // жٸChannel׼
                 int selected = select(selector);
@@ -341,6 +349,7 @@ abstract class AbstractNioSelector implements NioSelector {
         try {
         	// һSelector
             selector = SelectorUtil.open();
+            selectedKeys = SelectorUtil.optimize(selector);
         } catch (Throwable t) {
             throw new ChannelException("Failed to create a selector.", t);
         }
@@ -389,6 +398,12 @@ abstract class AbstractNioSelector implements NioSelector {
     protected final boolean cleanUpCancelledKeys() throws IOException {
         if (cancelledKeys >= CLEANUP_INTERVAL) {
             cancelledKeys = 0;
+            // selectNow() re-adds the keys that are still ready, so there is no need
+            // to keep the ones which were not processed yet.
+            SelectedSelectionKeySet selectedKeys = this.selectedKeys;
+            if (selectedKeys != null) {
+                selectedKeys.reset();
+            }
             //  Select
             selector.selectNow();
             return true;
@@ -424,6 +439,14 @@ abstract class AbstractNioSelector implements NioSelector {
         return SelectorUtil.select(selector);
     }
 
+    /**
+     * Returns the timeout of {@link #select(Selector)} in nanoseconds, which is
+     * used to tell a timed out select from the epoll bug.
+     */
+    protected long selectTimeoutNanos() {
+        return SelectorUtil.SELECT_TIMEOUT_NANOS;
+    }
+
     protected abstract void close(SelectionKey k);
 
     protected abstract ThreadRenamingRunnable newThreadRenamingRunnable(int id, ThreadNameDeterminer determiner);
@@ -1,17 +1,26 @@
 package org.jboss.netty.channel.socket.nio;
 
+import org.jboss.netty.buffer.ChannelBuffer;
+import org.jboss.netty.buffer.ChannelBuffers;
 import org.jboss.netty.channel.Channel;
+import org.jboss.netty.channel.ChannelEventRecycler;
 import org.jboss.netty.channel.ChannelFuture;
 import org.jboss.netty.channel.MessageEvent;
 import org.jboss.netty.channel.socket.Worker;
+import org.jboss.netty.channel.socket.nio.SocketSendBufferPool.GatheringMessageSendBuffer;
 import org.jboss.netty.channel.socket.nio.SocketSendBufferPool.SendBuffer;
+import org.jboss.netty.handler.timeout.DefaultIdleStateEvent;
+import org.jboss.netty.handler.timeout.IdleState;
+import org.jboss.netty.handler.timeout.IdleStateEvent;
 import org.jboss.netty.util.ThreadNameDeterminer;
 import org.jboss.netty.util.ThreadRenamingRunnable;
+import org.jboss.netty.util.internal.SystemPropertyUtil;
 
 import java.io.IOException;
 import java.nio.channels.AsynchronousCloseException;
 import java.nio.channels.CancelledKeyException;
 import java.nio.channels.ClosedChannelException;
+import java.nio.channels.GatheringByteChannel;
 import java.nio.channels.NotYetConnectedException;
 import java.nio.channels.SelectionKey;
 import java.nio.channels.Selector;
@@ -22,6 +31,7 @@ import java.util.List;
 import java.util.Queue;
 import java.util.Set;
 import java.util.concurrent.Executor;
+import java.util.concurrent.TimeUnit;
 
 import static org.jboss.netty.channel.Channels.*;
 
@@ -30,6 +40,23 @@ abstract class AbstractNioWorker extends AbstractNioSelector implements Worker {
 	// 
     protected final SocketSendBufferPool sendBufferPool = new SocketSendBufferPool();
 
+    /**
+     * The interval in milliseconds at which the I/O thread checks its channels
+     * for the idle states configured in {@link NioChannelConfig}.
+     */
+    private static final long IDLE_CHECK_INTERVAL =
+            SystemPropertyUtil.getLong("org.jboss.netty.idleCheckInterval", 100);
+    private static final long IDLE_CHECK_INTERVAL_NANOS =
+            TimeUnit.MILLISECONDS.toNanos(IDLE_CHECK_INTERVAL);
+
+    /**
+     * The {@link System#nanoTime()} of the current loop iteration, which the
+     * reads performed in {@link #process(Selector)} are stamped with.
+     */
+    long loopTime;
+    private long lastIdleCheckTime = System.nanoTime();
+    private boolean idleCheckRequired;
+
     AbstractNioWorker(Executor executor) {
         super(executor);
     }
@@ -79,6 +106,41 @@ abstract class AbstractNioWorker extends AbstractNioSelector implements Worker {
      */
     @Override
     protected void process(Selector selector) throws IOException {
+        long currentTime = System.nanoTime();
+        loopTime = currentTime;
+
+        processSelectedKeys(selector);
+
+        if (currentTime - lastIdleCheckTime >= IDLE_CHECK_INTERVAL_NANOS) {
+            lastIdleCheckTime = currentTime;
+            checkIdleChannels(selector, currentTime);
+        }
+    }
+
+    @Override
+    protected int select(Selector selector) throws IOException {
+        if (idleCheckRequired && IDLE_CHECK_INTERVAL < SelectorUtil.SELECT_TIMEOUT) {
+            // Wake up in time for the next idle check.
+            return SelectorUtil.select(selector, IDLE_CHECK_INTERVAL);
+        }
+        return super.select(selector);
+    }
+
+    @Override
+    protected long selectTimeoutNanos() {
+        if (idleCheckRequired && IDLE_CHECK_INTERVAL < SelectorUtil.SELECT_TIMEOUT) {
+            return IDLE_CHECK_INTERVAL_NANOS;
+        }
+        return super.selectTimeoutNanos();
+    }
+
+    private void processSelectedKeys(Selector selector) throws IOException {
+        SelectedSelectionKeySet optimizedKeys = this.selectedKeys;
+        if (optimizedKeys != null) {
+            processOptimizedKeys(optimizedKeys);
+            return;
+        }
+
         Set<SelectionKey> selectedKeys = selector.selectedKeys();
         //Ϊվضÿδȴ¿
         if (selectedKeys.isEmpty()) {
@@ -87,21 +149,7 @@ abstract class AbstractNioWorker extends AbstractNioSelector implements Worker {
         for (Iterator<SelectionKey> i = selectedKeys.iterator(); i.hasNext();) {
             SelectionKey k = i.next();
             i.remove();
-            try {
-            	//ȡSelectionKeyľϡ
-                int readyOps = k.readyOps();
-                if ((readyOps & SelectionKey.OP_READ) != 0 || readyOps == 0) {
-                    if (!read(k)) {
-                        // Connection already closed - no need to handle write.
-                        continue;
-                    }
-                }
-                if ((readyOps & SelectionKey.OP_WRITE) != 0) {
-                    writeFromSelectorLoop(k);
-                }
-            } catch (CancelledKeyException e) {
-                close(k);
-            }
+            processKey(k);
 
             if (cleanUpCancelledKeys()) {
                 break; // break the loop to avoid ConcurrentModificationException
@@ -109,6 +157,95 @@ abstract class AbstractNioWorker extends AbstractNioSelector implements Worker {
         }
     }
 
+    private void processOptimizedKeys(SelectedSelectionKeySet selectedKeys) throws IOException {
+        for (int i = 0; i < selectedKeys.size; i ++) {
+            SelectionKey k = selectedKeys.keys[i];
+            // null out the entry so the key can be GC'ed once its channel is closed.
+            selectedKeys.keys[i] = null;
+            processKey(k);
+
+            if (cleanUpCancelledKeys()) {
+                // The set has been reset and re-populated by selectNow(),
+                // so start over from the first key.
+                i = -1;
+            }
+        }
+        selectedKeys.size = 0;
+    }
+
+    /**
+     * Triggers an {@link IdleStateEvent} for every channel of this worker
+     * which has been idle for longer than configured in its
+     * {@link NioChannelConfig}, without scheduling any timeout per channel.
+     */
+    private void checkIdleChannels(Selector selector, long currentTime) {
+        boolean idleCheckRequired = false;
+        for (SelectionKey k: selector.keys()) {
+            Object attachment = k.attachment();
+            if (!k.isValid() || !(attachment instanceof AbstractNioChannel<?>)) {
+                continue;
+            }
+
+            AbstractNioChannel<?> ch = (AbstractNioChannel<?>) attachment;
+            NioChannelConfig config = ch.getConfig();
+            long readerIdleTime = TimeUnit.MILLISECONDS.toNanos(config.getReaderIdleTimeMillis());
+            long writerIdleTime = TimeUnit.MILLISECONDS.toNanos(config.getWriterIdleTimeMillis());
+            long allIdleTime = TimeUnit.MILLISECONDS.toNanos(config.getAllIdleTimeMillis());
+            if (readerIdleTime <= 0 && writerIdleTime <= 0 && allIdleTime <= 0) {
+                continue;
+            }
+            idleCheckRequired = true;
+
+            if (readerIdleTime > 0 &&
+                    currentTime - ch.lastReadTime >= readerIdleTime &&
+                    currentTime - ch.lastReaderIdleTime >= readerIdleTime) {
+                ch.lastReaderIdleTime = currentTime;
+                fireChannelIdle(ch, IdleState.READER_IDLE, ch.lastReadTime, currentTime);
+            }
+            if (writerIdleTime > 0 &&
+                    currentTime - ch.lastWriteTime >= writerIdleTime &&
+                    currentTime - ch.lastWriterIdleTime >= writerIdleTime) {
+                ch.lastWriterIdleTime = currentTime;
+                fireChannelIdle(ch, IdleState.WRITER_IDLE, ch.lastWriteTime, currentTime);
+            }
+            if (allIdleTime > 0) {
+                long lastIoTime = ch.lastReadTime - ch.lastWriteTime > 0 ? ch.lastReadTime : ch.lastWriteTime;
+                if (currentTime - lastIoTime >= allIdleTime &&
+                        currentTime - ch.lastAllIdleTime >= allIdleTime) {
+                    ch.lastAllIdleTime = currentTime;
+                    fireChannelIdle(ch, IdleState.ALL_IDLE, lastIoTime, currentTime);
+                }
+            }
+        }
+        this.idleCheckRequired = idleCheckRequired;
+    }
+
+    private static void fireChannelIdle(
+            AbstractNioChannel<?> channel, IdleState state, long lastActivityTime, long currentTime) {
+        long lastActivityTimeMillis = System.currentTimeMillis() -
+                TimeUnit.NANOSECONDS.toMillis(currentTime - lastActivityTime);
+        channel.getPipeline().sendUpstream(
+                new DefaultIdleStateEvent(channel, state, lastActivityTimeMillis));
+    }
+
+    private void processKey(SelectionKey k) {
+        try {
+        	//ȡSelectionKeyľϡ
+            int readyOps = k.readyOps();
+            if ((readyOps & SelectionKey.OP_READ) != 0 || readyOps == 0) {
+                if (!read(k)) {
+                    // Connection already closed - no need to handle write.
+                    return;
+                }
+            }
+            if ((readyOps & SelectionKey.OP_WRITE) != 0) {
+                writeFromSelectorLoop(k);
+            }
+        } catch (CancelledKeyException e) {
+            close(k);
+        }
+    }
+
     void writeFromUserCode(final AbstractNioChannel<?> channel) {
         if (!channel.isConnected()) {
             cleanUpWriteBuffer(channel);
@@ -132,6 +269,17 @@ abstract class AbstractNioWorker extends AbstractNioSelector implements Worker {
         write0(channel);
     }
 
+    /**
+     * Leaves the queued messages of the specified channel in its write buffer
+     * queue and lets the I/O thread write them out in its next loop iteration,
+     * so that the messages written in the meantime are coalesced.
+     */
+    void deferWriteFromUserCode(final AbstractNioChannel<?> channel) {
+        if (channel.writeTaskInTaskQueue.compareAndSet(false, true)) {
+            registerTask(channel.writeTask);
+        }
+    }
+
     void writeFromTaskLoop(AbstractNioChannel<?> ch) {
         if (!ch.writeSuspended) {
             write0(ch);
@@ -158,6 +306,8 @@ abstract class AbstractNioWorker extends AbstractNioSelector implements Worker {
         final WritableByteChannel ch = channel.channel;
         final Queue<MessageEvent> writeBuffer = channel.writeBufferQueue;
         final int writeSpinCount = channel.getConfig().getWriteSpinCount();
+        final boolean gathering =
+                SocketSendBufferPool.MAX_GATHERING_BUFFERS > 1 && ch instanceof GatheringByteChannel;
         List<Throwable> causes = null;
 
         synchronized (channel.writeLock) {
@@ -177,6 +327,10 @@ abstract class AbstractNioWorker extends AbstractNioSelector implements Worker {
                         future = evt.getFuture();
 
                         channel.currentWriteBuffer = buf = sendBufferPool.acquire(evt.getMessage());
+                        if (gathering && !writeBuffer.isEmpty()) {
+                            // Write out the following messages as well with a single gathering write.
+                            channel.currentWriteBuffer = buf = sendBufferPool.acquire(evt, buf, writeBuffer);
+                        }
                     } else {
                         future = evt.getFuture();
                         buf = channel.currentWriteBuffer;
@@ -194,11 +348,30 @@ abstract class AbstractNioWorker extends AbstractNioSelector implements Worker {
                         }
                     }
 
+                    if (buf instanceof GatheringMessageSendBuffer) {
+                        GatheringMessageSendBuffer gatheredBuf = (GatheringMessageSendBuffer) buf;
+                        MessageEvent writtenEvt;
+                        while ((writtenEvt = gatheredBuf.pollWritten()) != null) {
+                            channel.currentWriteEvent = evt = gatheredBuf.current();
+                            ChannelFuture writtenFuture = writtenEvt.getFuture();
+                            ChannelEventRecycler.recycle(writtenEvt);
+                            writtenFuture.setSuccess();
+                        }
+                        future = evt.getFuture();
+                        if (channel.currentWriteBuffer != buf) {
+                            // A listener has closed the channel and the write buffer was cleaned up.
+                            evt = null;
+                            buf = null;
+                            continue;
+                        }
+                    }
+
                     if (buf.finished()) {
                         // Successful write - proceed to the next message.
                         buf.release();
                         channel.currentWriteEvent = null;
                         channel.currentWriteBuffer = null;
+                        ChannelEventRecycler.recycle(evt);
                         // Mark the event object for garbage collection.
                         //noinspection UnusedAssignment
                         evt = null;
@@ -221,10 +394,16 @@ abstract class AbstractNioWorker extends AbstractNioSelector implements Worker {
                     // Doesn't need a user attention - ignore.
                 } catch (Throwable t) {
                     if (buf != null) {
+                        if (buf instanceof GatheringMessageSendBuffer) {
+                            ((GatheringMessageSendBuffer) buf).fail(t);
+                        }
                         buf.release();
                     }
                     channel.currentWriteEvent = null;
                     channel.currentWriteBuffer = null;
+                    if (evt != null) {
+                        ChannelEventRecycler.recycle(evt);
+                    }
                     // Mark the event object for garbage collection.
                     //noinspection UnusedAssignment
                     buf = null;
@@ -281,6 +460,9 @@ abstract class AbstractNioWorker extends AbstractNioSelector implements Worker {
             // close the channel now
             close(channel, succeededFuture(channel));
         }
+        if (writtenBytes > 0) {
+            channel.lastWriteTime = System.nanoTime();
+        }
         if (iothread) {
             fireWriteComplete(channel, writtenBytes);
         } else {
@@ -392,11 +574,16 @@ abstract class AbstractNioWorker extends AbstractNioSelector implements Worker {
                 }
 
                 ChannelFuture future = evt.getFuture();
-                if (channel.currentWriteBuffer != null) {
-                    channel.currentWriteBuffer.release();
+                SendBuffer buf = channel.currentWriteBuffer;
+                if (buf != null) {
+                    if (buf instanceof GatheringMessageSendBuffer) {
+                        ((GatheringMessageSendBuffer) buf).fail(cause);
+                    }
+                    buf.release();
                     channel.currentWriteBuffer = null;
                 }
                 channel.currentWriteEvent = null;
+                ChannelEventRecycler.recycle(evt);
                 // Mark the event object for garbage collection.
                 //noinspection UnusedAssignment
                 evt = null;
@@ -420,7 +607,14 @@ abstract class AbstractNioWorker extends AbstractNioSelector implements Worker {
                     }
                     fireExceptionCaught = true;
                 }
-                evt.getFuture().setFailure(cause);
+                Object m = evt.getMessage();
+                if (m instanceof ChannelBuffer) {
+                    // The message will never be written, so return it to the pool if necessary.
+                    ChannelBuffers.release((ChannelBuffer) m);
+                }
+                ChannelFuture future = evt.getFuture();
+                ChannelEventRecycler.recycle(evt);
+                future.setFailure(cause);
             }
         }
 
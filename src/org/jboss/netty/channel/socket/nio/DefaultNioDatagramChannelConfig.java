@@ -44,6 +44,10 @@ class DefaultNioDatagramChannelConfig extends DefaultDatagramChannelConfig
     private volatile int writeBufferHighWaterMark = 64 * 1024;
     private volatile int writeBufferLowWaterMark = 32 * 1024;
     private volatile int writeSpinCount = 16;
+    private volatile boolean autoFlush = true;
+    private volatile int readerIdleTimeMillis;
+    private volatile int writerIdleTimeMillis;
+    private volatile int allIdleTimeMillis;
     private final DatagramChannel channel;
 
     DefaultNioDatagramChannelConfig(DatagramChannel channel) {
@@ -78,6 +82,14 @@ class DefaultNioDatagramChannelConfig extends DefaultDatagramChannelConfig
             setWriteBufferLowWaterMark0(ConversionUtil.toInt(value));
         } else if ("writeSpinCount".equals(key)) {
             setWriteSpinCount(ConversionUtil.toInt(value));
+        } else if ("autoFlush".equals(key)) {
+            setAutoFlush(ConversionUtil.toBoolean(value));
+        } else if ("readerIdleTimeMillis".equals(key)) {
+            setReaderIdleTimeMillis(ConversionUtil.toInt(value));
+        } else if ("writerIdleTimeMillis".equals(key)) {
+            setWriterIdleTimeMillis(ConversionUtil.toInt(value));
+        } else if ("allIdleTimeMillis".equals(key)) {
+            setAllIdleTimeMillis(ConversionUtil.toInt(value));
         } else {
             return false;
         }
@@ -142,6 +154,50 @@ class DefaultNioDatagramChannelConfig extends DefaultDatagramChannelConfig
         this.writeSpinCount = writeSpinCount;
     }
 
+    public boolean isAutoFlush() {
+        return autoFlush;
+    }
+
+    public void setAutoFlush(boolean autoFlush) {
+        this.autoFlush = autoFlush;
+    }
+
+    public int getReaderIdleTimeMillis() {
+        return readerIdleTimeMillis;
+    }
+
+    public void setReaderIdleTimeMillis(int readerIdleTimeMillis) {
+        if (readerIdleTimeMillis < 0) {
+            throw new IllegalArgumentException(
+                    "readerIdleTimeMillis: " + readerIdleTimeMillis);
+        }
+        this.readerIdleTimeMillis = readerIdleTimeMillis;
+    }
+
+    public int getWriterIdleTimeMillis() {
+        return writerIdleTimeMillis;
+    }
+
+    public void setWriterIdleTimeMillis(int writerIdleTimeMillis) {
+        if (writerIdleTimeMillis < 0) {
+            throw new IllegalArgumentException(
+                    "writerIdleTimeMillis: " + writerIdleTimeMillis);
+        }
+        this.writerIdleTimeMillis = writerIdleTimeMillis;
+    }
+
+    public int getAllIdleTimeMillis() {
+        return allIdleTimeMillis;
+    }
+
+    public void setAllIdleTimeMillis(int allIdleTimeMillis) {
+        if (allIdleTimeMillis < 0) {
+            throw new IllegalArgumentException(
+                    "allIdleTimeMillis: " + allIdleTimeMillis);
+        }
+        this.allIdleTimeMillis = allIdleTimeMillis;
+    }
+
     @Override
     public void setNetworkInterface(NetworkInterface networkInterface) {
         if (DetectionUtil.javaVersion() < 7) {
@@ -44,6 +44,10 @@ class DefaultNioSocketChannelConfig extends DefaultSocketChannelConfig
     private volatile ReceiveBufferSizePredictor predictor;
     private volatile ReceiveBufferSizePredictorFactory predictorFactory = DEFAULT_PREDICTOR_FACTORY;
     private volatile int writeSpinCount = 16;
+    private volatile boolean autoFlush = true;
+    private volatile int readerIdleTimeMillis;
+    private volatile int writerIdleTimeMillis;
+    private volatile int allIdleTimeMillis;
 
     DefaultNioSocketChannelConfig(Socket socket) {
         super(socket);
@@ -77,6 +81,14 @@ class DefaultNioSocketChannelConfig extends DefaultSocketChannelConfig
             setWriteBufferLowWaterMark0(ConversionUtil.toInt(value));
         } else if ("writeSpinCount".equals(key)) {
             setWriteSpinCount(ConversionUtil.toInt(value));
+        } else if ("autoFlush".equals(key)) {
+            setAutoFlush(ConversionUtil.toBoolean(value));
+        } else if ("readerIdleTimeMillis".equals(key)) {
+            setReaderIdleTimeMillis(ConversionUtil.toInt(value));
+        } else if ("writerIdleTimeMillis".equals(key)) {
+            setWriterIdleTimeMillis(ConversionUtil.toInt(value));
+        } else if ("allIdleTimeMillis".equals(key)) {
+            setAllIdleTimeMillis(ConversionUtil.toInt(value));
         } else if ("receiveBufferSizePredictorFactory".equals(key)) {
             setReceiveBufferSizePredictorFactory((ReceiveBufferSizePredictorFactory) value);
         } else if ("receiveBufferSizePredictor".equals(key)) {
@@ -143,6 +155,50 @@ class DefaultNioSocketChannelConfig extends DefaultSocketChannelConfig
         this.writeSpinCount = writeSpinCount;
     }
 
+    public boolean isAutoFlush() {
+        return autoFlush;
+    }
+
+    public void setAutoFlush(boolean autoFlush) {
+        this.autoFlush = autoFlush;
+    }
+
+    public int getReaderIdleTimeMillis() {
+        return readerIdleTimeMillis;
+    }
+
+    public void setReaderIdleTimeMillis(int readerIdleTimeMillis) {
+        if (readerIdleTimeMillis < 0) {
+            throw new IllegalArgumentException(
+                    "readerIdleTimeMillis: " + readerIdleTimeMillis);
+        }
+        this.readerIdleTimeMillis = readerIdleTimeMillis;
+    }
+
+    public int getWriterIdleTimeMillis() {
+        return writerIdleTimeMillis;
+    }
+
+    public void setWriterIdleTimeMillis(int writerIdleTimeMillis) {
+        if (writerIdleTimeMillis < 0) {
+            throw new IllegalArgumentException(
+                    "writerIdleTimeMillis: " + writerIdleTimeMillis);
+        }
+        this.writerIdleTimeMillis = writerIdleTimeMillis;
+    }
+
+    public int getAllIdleTimeMillis() {
+        return allIdleTimeMillis;
+    }
+
+    public void setAllIdleTimeMillis(int allIdleTimeMillis) {
+        if (allIdleTimeMillis < 0) {
+            throw new IllegalArgumentException(
+                    "allIdleTimeMillis: " + allIdleTimeMillis);
+        }
+        this.allIdleTimeMillis = allIdleTimeMillis;
+    }
+
     public ReceiveBufferSizePredictor getReceiveBufferSizePredictor() {
         ReceiveBufferSizePredictor predictor = this.predictor;
         if (predictor == null) {
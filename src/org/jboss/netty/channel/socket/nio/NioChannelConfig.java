@@ -20,6 +20,11 @@ import java.nio.channels.WritableByteChannel;
 
 import org.jboss.netty.channel.Channel;
 import org.jboss.netty.channel.ChannelConfig;
+import org.jboss.netty.channel.Channels;
+import org.jboss.netty.handler.timeout.IdleState;
+import org.jboss.netty.handler.timeout.IdleStateEvent;
+import org.jboss.netty.handler.timeout.IdleStateHandler;
+import org.jboss.netty.util.Timer;
 
 /**
  * Special {@link ChannelConfig} sub-type which offers extra methods which are useful for NIO.
@@ -79,4 +84,80 @@ public interface NioChannelConfig extends ChannelConfig {
      *         if the specified value is {@code 0} or less than {@code 0}
      */
     void setWriteSpinCount(int writeSpinCount);
+
+    /**
+     * Returns {@code true} if and only if a write request is written out to
+     * the socket as soon as it is requested.  If {@code false}, written messages
+     * are only queued, and the I/O thread writes them out with as few system
+     * calls as possible either on {@link Channels#flush(Channel)} or in its next
+     * loop iteration.  The default value is {@code true}.
+     */
+    boolean isAutoFlush();
+
+    /**
+     * Sets if a write request is written out to the socket as soon as it is
+     * requested.  If {@code false}, written messages are only queued, and the I/O
+     * thread writes them out with as few system calls as possible either on
+     * {@link Channels#flush(Channel)} or in its next loop iteration.  The
+     * default value is {@code true}.
+     */
+    void setAutoFlush(boolean autoFlush);
+
+    /**
+     * Returns the time in milliseconds after which an {@link IdleStateEvent}
+     * whose state is {@link IdleState#READER_IDLE} is triggered by the I/O
+     * thread when nothing was read from the channel.  {@code 0} means disabled,
+     * which is the default.
+     */
+    int getReaderIdleTimeMillis();
+
+    /**
+     * Sets the time in milliseconds after which an {@link IdleStateEvent}
+     * whose state is {@link IdleState#READER_IDLE} is triggered by the I/O
+     * thread when nothing was read from the channel.  Specify {@code 0} to
+     * disable.  Unlike {@link IdleStateHandler}, no {@link Timer} is involved;
+     * the I/O thread checks its channels periodically instead.
+     *
+     * @throws IllegalArgumentException
+     *         if the specified value is less than {@code 0}
+     */
+    void setReaderIdleTimeMillis(int readerIdleTimeMillis);
+
+    /**
+     * Returns the time in milliseconds after which an {@link IdleStateEvent}
+     * whose state is {@link IdleState#WRITER_IDLE} is triggered by the I/O
+     * thread when nothing was written to the channel.  {@code 0} means
+     * disabled, which is the default.
+     */
+    int getWriterIdleTimeMillis();
+
+    /**
+     * Sets the time in milliseconds after which an {@link IdleStateEvent}
+     * whose state is {@link IdleState#WRITER_IDLE} is triggered by the I/O
+     * thread when nothing was written to the channel.  Specify {@code 0} to
+     * disable.
+     *
+     * @throws IllegalArgumentException
+     *         if the specified value is less than {@code 0}
+     */
+    void setWriterIdleTimeMillis(int writerIdleTimeMillis);
+
+    /**
+     * Returns the time in milliseconds after which an {@link IdleStateEvent}
+     * whose state is {@link IdleState#ALL_IDLE} is triggered by the I/O
+     * thread when nothing was read from or written to the channel.  {@code 0}
+     * means disabled, which is the default.
+     */
+    int getAllIdleTimeMillis();
+
+    /**
+     * Sets the time in milliseconds after which an {@link IdleStateEvent}
+     * whose state is {@link IdleState#ALL_IDLE} is triggered by the I/O
+     * thread when nothing was read from or written to the channel.  Specify
+     * {@code 0} to disable.
+     *
+     * @throws IllegalArgumentException
+     *         if the specified value is less than {@code 0}
+     */
+    void setAllIdleTimeMillis(int allIdleTimeMillis);
 }
@@ -76,7 +76,12 @@ public final class NioClientBoss extends AbstractNioSelector implements Boss {
 
     @Override
     protected void process(Selector selector) {
-        processSelectedKeys(selector.selectedKeys());
+        SelectedSelectionKeySet optimizedKeys = this.selectedKeys;
+        if (optimizedKeys != null) {
+            processOptimizedKeys(optimizedKeys);
+        } else {
+            processSelectedKeys(selector.selectedKeys());
+        }
 
         // Handle connection timeout every 10 milliseconds approximately.
         long currentTimeNanos = System.nanoTime();
@@ -94,23 +99,35 @@ public final class NioClientBoss extends AbstractNioSelector implements Boss {
         for (Iterator<SelectionKey> i = selectedKeys.iterator(); i.hasNext();) {
             SelectionKey k = i.next();
             i.remove();
+            processKey(k);
+        }
+    }
 
-            if (!k.isValid()) {
-                close(k);
-                continue;
-            }
+    private void processOptimizedKeys(SelectedSelectionKeySet selectedKeys) {
+        for (int i = 0; i < selectedKeys.size; i ++) {
+            SelectionKey k = selectedKeys.keys[i];
+            selectedKeys.keys[i] = null;
+            processKey(k);
+        }
+        selectedKeys.size = 0;
+    }
 
-            try {
-                if (k.isConnectable()) {
-                    connect(k);
-                }
-            } catch (Throwable t) {
-                NioClientSocketChannel ch = (NioClientSocketChannel) k.attachment();
-                ch.connectFuture.setFailure(t);
-                fireExceptionCaught(ch, t);
-                k.cancel(); // Some JDK implementations run into an infinite loop without this.
-                ch.worker.close(ch, succeededFuture(ch));
+    private void processKey(SelectionKey k) {
+        if (!k.isValid()) {
+            close(k);
+            return;
+        }
+
+        try {
+            if (k.isConnectable()) {
+                connect(k);
             }
+        } catch (Throwable t) {
+            NioClientSocketChannel ch = (NioClientSocketChannel) k.attachment();
+            ch.connectFuture.setFailure(t);
+            fireExceptionCaught(ch, t);
+            k.cancel(); // Some JDK implementations run into an infinite loop without this.
+            ch.worker.close(ch, succeededFuture(ch));
         }
     }
 
@@ -26,6 +26,7 @@ import org.jboss.netty.channel.ChannelFutureListener;
 import org.jboss.netty.channel.ChannelPipeline;
 import org.jboss.netty.channel.ChannelState;
 import org.jboss.netty.channel.ChannelStateEvent;
+import org.jboss.netty.channel.FlushEvent;
 import org.jboss.netty.channel.MessageEvent;
 
 /**
@@ -94,7 +95,14 @@ class NioDatagramPipelineSink extends AbstractNioChannelSink {
             final MessageEvent event = (MessageEvent) e;
             final boolean offered = channel.writeBufferQueue.offer(event);
             assert offered;
+            if (channel.getConfig().isAutoFlush()) {
+                channel.worker.writeFromUserCode(channel);
+            } else {
+                channel.worker.deferWriteFromUserCode(channel);
+            }
+        } else if (e instanceof FlushEvent) {
             channel.worker.writeFromUserCode(channel);
+            future.setSuccess();
         }
     }
 
@@ -93,6 +93,7 @@ public class NioDatagramWorker extends AbstractNioWorker {
 
                 // Update the predictor.
                 predictor.previousReceiveBufferSize(readBytes);
+                channel.lastReadTime = loopTime;
 
                 // Notify the interested parties about the newly arrived message.
                 fireMessageReceived(
@@ -335,6 +336,9 @@ public class NioDatagramWorker extends AbstractNioWorker {
             }
         }
 
+        if (writtenBytes > 0) {
+            channel.lastWriteTime = System.nanoTime();
+        }
         fireWriteComplete(channel, writtenBytes);
     }
 
@@ -76,6 +76,17 @@ public final class NioServerBoss extends AbstractNioSelector implements Boss {
      */
     @Override
     protected void process(Selector selector) {
+        SelectedSelectionKeySet optimizedKeys = this.selectedKeys;
+        if (optimizedKeys != null) {
+            for (int i = 0; i < optimizedKeys.size; i ++) {
+                SelectionKey k = optimizedKeys.keys[i];
+                optimizedKeys.keys[i] = null;
+                processKey(k);
+            }
+            optimizedKeys.size = 0;
+            return;
+        }
+
         Set<SelectionKey> selectedKeys = selector.selectedKeys();
         if (selectedKeys.isEmpty()) {
             return;
@@ -83,40 +94,44 @@ public final class NioServerBoss extends AbstractNioSelector implements Boss {
         for (Iterator<SelectionKey> i = selectedKeys.iterator(); i.hasNext();) {
             SelectionKey k = i.next();
             i.remove(); //
-            // õ׽ͨ
-            NioServerSocketChannel channel = (NioServerSocketChannel) k.attachment();
+            processKey(k);
+        }
+    }
 
-            try {
-                // accept connections in a for loop until no new connection is ready
-                for (;;) {
-                	
-                    SocketChannel acceptedSocket = channel.socket.accept();
-                    // ģʽ
-                    if (acceptedSocket == null) {
-                        break;
-                    }
-                    // ĵôͷַworker
-                    registerAcceptedChannel(channel, acceptedSocket, thread);
-                }
-            } catch (CancelledKeyException e) {
-                // Raised by accept() when the server socket was closed.
-                k.cancel();
-                channel.close();
-            } catch (SocketTimeoutException e) {
-                // Thrown every second to get ClosedChannelException
-                // raised.
-            } catch (ClosedChannelException e) {
-                // Closed as requested.
-            } catch (Throwable t) {
-                if (logger.isWarnEnabled()) {
-                    logger.warn( "Failed to accept a connection.", t);
-                }
+    private void processKey(SelectionKey k) {
+        // õ׽ͨ
+        NioServerSocketChannel channel = (NioServerSocketChannel) k.attachment();
 
-                try {
-                    Thread.sleep(1000);
-                } catch (InterruptedException e1) {
-                    // Ignore
+        try {
+            // accept connections in a for loop until no new connection is ready
+            for (;;) {
+            	
+                SocketChannel acceptedSocket = channel.socket.accept();
+                // ģʽ
+                if (acceptedSocket == null) {
+                    break;
                 }
+                // ĵôͷַworker
+                registerAcceptedChannel(channel, acceptedSocket, thread);
+            }
+        } catch (CancelledKeyException e) {
+            // Raised by accept() when the server socket was closed.
+            k.cancel();
+            channel.close();
+        } catch (SocketTimeoutException e) {
+            // Thrown every second to get ClosedChannelException
+            // raised.
+        } catch (ClosedChannelException e) {
+            // Closed as requested.
+        } catch (Throwable t) {
+            if (logger.isWarnEnabled()) {
+                logger.warn( "Failed to accept a connection.", t);
+            }
+
+            try {
+                Thread.sleep(1000);
+            } catch (InterruptedException e1) {
+                // Ignore
             }
         }
     }
@@ -6,6 +6,7 @@ import org.jboss.netty.channel.ChannelFuture;
 import org.jboss.netty.channel.ChannelPipeline;
 import org.jboss.netty.channel.ChannelState;
 import org.jboss.netty.channel.ChannelStateEvent;
+import org.jboss.netty.channel.FlushEvent;
 import org.jboss.netty.channel.MessageEvent;
 
 import java.net.SocketAddress;
@@ -81,7 +82,15 @@ class NioServerSocketPipelineSink extends AbstractNioChannelSink {
             NioSocketChannel channel = (NioSocketChannel) event.getChannel();
             boolean offered = channel.writeBufferQueue.offer(event);
             assert offered;
+            if (channel.getConfig().isAutoFlush()) {
+                channel.worker.writeFromUserCode(channel);
+            } else {
+                channel.worker.deferWriteFromUserCode(channel);
+            }
+        } else if (e instanceof FlushEvent) {
+            NioSocketChannel channel = (NioSocketChannel) e.getChannel();
             channel.worker.writeFromUserCode(channel);
+            e.getFuture().setSuccess();
         }
     }
 }
@@ -42,6 +42,14 @@ import org.jboss.netty.channel.socket.SocketChannelConfig;
  * </tr><tr>
  * <td>{@code "writeSpinCount"}</td><td>{@link #setWriteSpinCount(int)}</td>
  * </tr><tr>
+ * <td>{@code "autoFlush"}</td><td>{@link #setAutoFlush(boolean)}</td>
+ * </tr><tr>
+ * <td>{@code "readerIdleTimeMillis"}</td><td>{@link #setReaderIdleTimeMillis(int)}</td>
+ * </tr><tr>
+ * <td>{@code "writerIdleTimeMillis"}</td><td>{@link #setWriterIdleTimeMillis(int)}</td>
+ * </tr><tr>
+ * <td>{@code "allIdleTimeMillis"}</td><td>{@link #setAllIdleTimeMillis(int)}</td>
+ * </tr><tr>
  * <td>{@code "receiveBufferSizePredictor"}</td>
  * <td>{@link #setReceiveBufferSizePredictor(ReceiveBufferSizePredictor)}</td>
  * </tr><tr>
@@ -2,6 +2,8 @@ package org.jboss.netty.channel.socket.nio;
 
 import org.jboss.netty.buffer.ChannelBuffer;
 import org.jboss.netty.buffer.ChannelBufferFactory;
+import org.jboss.netty.buffer.ChannelBuffers;
+import org.jboss.netty.buffer.PooledChannelBufferFactory;
 import org.jboss.netty.channel.Channel;
 import org.jboss.netty.channel.ChannelException;
 import org.jboss.netty.channel.ChannelFuture;
@@ -47,7 +49,17 @@ public class NioWorker extends AbstractNioWorker {
         int readBytes = 0;
         boolean failure = true;
 
-        ByteBuffer bb = recvBufferPool.get(predictedRecvBufSize).order(bufferFactory.getDefaultOrder());
+        // A pooled direct buffer can be handed to the pipeline as-is, so read
+        // into it directly rather than copying out of the shared receive buffer.
+        ChannelBuffer pooledBuffer = null;
+        ByteBuffer bb;
+        if (bufferFactory instanceof PooledChannelBufferFactory &&
+                ((PooledChannelBufferFactory) bufferFactory).isDirect()) {
+            pooledBuffer = bufferFactory.getBuffer(predictedRecvBufSize);
+            bb = pooledBuffer.toByteBuffer(0, predictedRecvBufSize);
+        } else {
+            bb = recvBufferPool.get(predictedRecvBufSize).order(bufferFactory.getDefaultOrder());
+        }
         try {
             while ((ret = ch.read(bb)) > 0) {
                 readBytes += ret;
@@ -63,17 +75,24 @@ public class NioWorker extends AbstractNioWorker {
         }
 
         if (readBytes > 0) {
-            bb.flip();
-
-            final ChannelBuffer buffer = bufferFactory.getBuffer(readBytes);
-            buffer.setBytes(0, bb);
+            final ChannelBuffer buffer;
+            if (pooledBuffer != null) {
+                buffer = pooledBuffer;
+            } else {
+                bb.flip();
+                buffer = bufferFactory.getBuffer(readBytes);
+                buffer.setBytes(0, bb);
+            }
             buffer.writerIndex(readBytes);
 
             // Update the predictor.
             predictor.previousReceiveBufferSize(readBytes);
+            channel.lastReadTime = loopTime;
 
             // Fire the event.
             fireMessageReceived(channel, buffer);
+        } else if (pooledBuffer != null) {
+            ChannelBuffers.release(pooledBuffer);
         }
 
         if (ret < 0 || failure) {
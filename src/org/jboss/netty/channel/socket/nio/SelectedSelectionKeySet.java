@@ -0,0 +1,97 @@
+/*
+ * Copyright 2014 The Netty Project
+ *
+ * The Netty Project licenses this file to you under the Apache License,
+ * version 2.0 (the "License"); you may not use this file except in compliance
+ * with the License. You may obtain a copy of the License at:
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS, WITHOUT
+ * WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied. See the
+ * License for the specific language governing permissions and limitations
+ * under the License.
+ */
+package org.jboss.netty.channel.socket.nio;
+
+import java.nio.channels.SelectionKey;
+import java.util.AbstractSet;
+import java.util.Arrays;
+import java.util.Iterator;
+import java.util.NoSuchElementException;
+
+/**
+ * An array-backed replacement of the {@link java.util.HashSet} which holds the
+ * selected keys of a {@link java.nio.channels.Selector}.  Adding a key never
+ * hashes nor allocates, and the I/O thread can walk the keys by index instead
+ * of creating an {@link Iterator} for every select.
+ * <p>
+ * {@link #contains(Object)} always returns {@code false} and {@link #remove(Object)}
+ * is a no-op, so the keys must be consumed and then discarded with {@link #reset()}.
+ */
+final class SelectedSelectionKeySet extends AbstractSet<SelectionKey> {
+
+    SelectionKey[] keys = new SelectionKey[1024];
+    int size;
+
+    @Override
+    public boolean add(SelectionKey o) {
+        if (o == null) {
+            return false;
+        }
+
+        keys[size ++] = o;
+        if (size == keys.length) {
+            SelectionKey[] newKeys = new SelectionKey[size << 1];
+            System.arraycopy(keys, 0, newKeys, 0, size);
+            keys = newKeys;
+        }
+        return true;
+    }
+
+    @Override
+    public boolean remove(Object o) {
+        return false;
+    }
+
+    @Override
+    public boolean contains(Object o) {
+        return false;
+    }
+
+    @Override
+    public int size() {
+        return size;
+    }
+
+    @Override
+    public Iterator<SelectionKey> iterator() {
+        return new Iterator<SelectionKey>() {
+            private int idx;
+
+            public boolean hasNext() {
+                return idx < size;
+            }
+
+            public SelectionKey next() {
+                if (!hasNext()) {
+                    throw new NoSuchElementException();
+                }
+                return keys[idx ++];
+            }
+
+            public void remove() {
+                throw new UnsupportedOperationException();
+            }
+        };
+    }
+
+    /**
+     * Discards all keys so that the next selection starts with an empty set.
+     */
+    void reset() {
+        Arrays.fill(keys, 0, size, null);
+        size = 0;
+    }
+}
@@ -20,6 +20,7 @@ import org.jboss.netty.logging.InternalLoggerFactory;
 import org.jboss.netty.util.internal.SystemPropertyUtil;
 
 import java.io.IOException;
+import java.lang.reflect.Field;
 import java.nio.channels.CancelledKeyException;
 import java.nio.channels.Selector;
 import java.util.concurrent.TimeUnit;
@@ -35,6 +36,8 @@ final class SelectorUtil {
     static final long SELECT_TIMEOUT_NANOS = TimeUnit.MILLISECONDS.toNanos(SELECT_TIMEOUT);
     static final boolean EPOLL_BUG_WORKAROUND =
             SystemPropertyUtil.getBoolean("org.jboss.netty.epollBugWorkaround", false);
+    static final boolean DISABLE_KEYSET_OPTIMIZATION =
+            SystemPropertyUtil.getBoolean("org.jboss.netty.noKeySetOptimization", false);
 
     // Workaround for JDK NIO bug.
     //
@@ -56,6 +59,7 @@ final class SelectorUtil {
         if (logger.isDebugEnabled()) {
             logger.debug("Using select timeout of " + SELECT_TIMEOUT);
             logger.debug("Epoll-bug workaround enabled = " + EPOLL_BUG_WORKAROUND);
+            logger.debug("Selected-key set optimization disabled = " + DISABLE_KEYSET_OPTIMIZATION);
         }
     }
 
@@ -63,11 +67,52 @@ final class SelectorUtil {
         return Selector.open();
     }
 
+    /**
+     * Replaces the selected-key set of the specified {@link Selector} with a
+     * {@link SelectedSelectionKeySet}.
+     *
+     * @return the installed {@link SelectedSelectionKeySet}, or {@code null} if the
+     *         {@link Selector} implementation does not allow the replacement
+     */
+    static SelectedSelectionKeySet optimize(Selector selector) {
+        if (DISABLE_KEYSET_OPTIMIZATION) {
+            return null;
+        }
+
+        try {
+            Class<?> selectorImplClass =
+                    Class.forName("sun.nio.ch.SelectorImpl", false, ClassLoader.getSystemClassLoader());
+            if (!selectorImplClass.isAssignableFrom(selector.getClass())) {
+                return null;
+            }
+
+            Field selectedKeysField = selectorImplClass.getDeclaredField("selectedKeys");
+            Field publicSelectedKeysField = selectorImplClass.getDeclaredField("publicSelectedKeys");
+            selectedKeysField.setAccessible(true);
+            publicSelectedKeysField.setAccessible(true);
+
+            SelectedSelectionKeySet selectedKeySet = new SelectedSelectionKeySet();
+            selectedKeysField.set(selector, selectedKeySet);
+            publicSelectedKeysField.set(selector, selectedKeySet);
+            return selectedKeySet;
+        } catch (Throwable t) {
+            // The JDK may not allow the access, e.g. when the module system encapsulates sun.nio.ch.
+            if (logger.isDebugEnabled()) {
+                logger.debug("Failed to instrument an optimized java.util.Set into: " + selector, t);
+            }
+            return null;
+        }
+    }
+
     static int select(Selector selector) throws IOException {
+        return select(selector, SELECT_TIMEOUT);
+    }
+
+    static int select(Selector selector, long timeout) throws IOException {
         try {
         	//ֱʱ500s
         	//Selects a set of keys whose corresponding channels are ready for I/O operations. 
-            return selector.select(SELECT_TIMEOUT);
+            return selector.select(timeout);
         } catch (CancelledKeyException e) {
             if (logger.isDebugEnabled()) {
                 logger.debug(
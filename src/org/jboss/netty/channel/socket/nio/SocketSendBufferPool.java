@@ -16,11 +16,14 @@
 package org.jboss.netty.channel.socket.nio;
 
 import org.jboss.netty.buffer.ChannelBuffer;
+import org.jboss.netty.buffer.ChannelBuffers;
 import org.jboss.netty.buffer.CompositeChannelBuffer;
 import org.jboss.netty.channel.DefaultFileRegion;
 import org.jboss.netty.channel.FileRegion;
+import org.jboss.netty.channel.MessageEvent;
 import org.jboss.netty.util.ExternalResourceReleasable;
 import org.jboss.netty.util.internal.ByteBufferUtil;
+import org.jboss.netty.util.internal.SystemPropertyUtil;
 
 import java.io.IOException;
 import java.lang.ref.SoftReference;
@@ -29,6 +32,9 @@ import java.nio.ByteBuffer;
 import java.nio.channels.DatagramChannel;
 import java.nio.channels.GatheringByteChannel;
 import java.nio.channels.WritableByteChannel;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Queue;
 
 final class SocketSendBufferPool implements ExternalResourceReleasable {
 
@@ -38,6 +44,17 @@ final class SocketSendBufferPool implements ExternalResourceReleasable {
     private static final int ALIGN_SHIFT = 4;
     private static final int ALIGN_MASK = 15;
 
+    /**
+     * The maximum number of {@link ByteBuffer}s passed to a single gathering write
+     * which spans the messages of several write requests.  Should not exceed the
+     * {@code IOV_MAX} of the platform.  {@code 1} or less disables gathering.
+     */
+    static final int MAX_GATHERING_BUFFERS =
+            SystemPropertyUtil.getInt("org.jboss.netty.maxGatheringWriteBuffers", 1024);
+
+    // Do not hold back large writes for the sake of gathering.
+    private static final int MAX_GATHERING_BYTES = DEFAULT_PREALLOCATION_SIZE << 2;
+
     private PreallocationRef poolHead;
     private Preallocation current = new Preallocation(DEFAULT_PREALLOCATION_SIZE);
 
@@ -53,6 +70,83 @@ final class SocketSendBufferPool implements ExternalResourceReleasable {
                 "unsupported message type: " + message.getClass());
     }
 
+    /**
+     * Acquires a {@link SendBuffer} which writes out the specified {@link SendBuffer}
+     * of the specified write request together with the messages of the write
+     * requests which follow it in the specified queue, using a single gathering
+     * write.  The gathered write requests are removed from the queue.
+     *
+     * @return the {@link GatheringMessageSendBuffer}, or the specified {@link SendBuffer}
+     *         as-is if there is nothing to gather
+     */
+    SendBuffer acquire(MessageEvent evt, SendBuffer buf, Queue<MessageEvent> queue) {
+        int nioCount = nioBufferCount(buf);
+        if (nioCount < 0) {
+            return buf;
+        }
+
+        long totalBytes = buf.totalBytes();
+        List<MessageEvent> events = null;
+        List<SendBuffer> buffers = null;
+        for (;;) {
+            if (nioCount >= MAX_GATHERING_BUFFERS || totalBytes >= MAX_GATHERING_BYTES) {
+                break;
+            }
+
+            MessageEvent next = queue.peek();
+            if (next == null || !(next.getMessage() instanceof ChannelBuffer)) {
+                break;
+            }
+
+            ChannelBuffer src = (ChannelBuffer) next.getMessage();
+            int maxNioCount = 1;
+            if (src instanceof CompositeChannelBuffer && ((CompositeChannelBuffer) src).useGathering()) {
+                maxNioCount = ((CompositeChannelBuffer) src).numComponents();
+            }
+            if (nioCount + maxNioCount > MAX_GATHERING_BUFFERS) {
+                break;
+            }
+
+            next = queue.poll();
+            SendBuffer nextBuf = acquire(src);
+            if (events == null) {
+                events = new ArrayList<MessageEvent>();
+                buffers = new ArrayList<SendBuffer>();
+                events.add(evt);
+                buffers.add(buf);
+            }
+            events.add(next);
+            buffers.add(nextBuf);
+            nioCount += nioBufferCount(nextBuf);
+            totalBytes += nextBuf.totalBytes();
+        }
+
+        if (events == null) {
+            return buf;
+        }
+        return new GatheringMessageSendBuffer(
+                events.toArray(new MessageEvent[events.size()]),
+                buffers.toArray(new SendBuffer[buffers.size()]), nioCount);
+    }
+
+    /**
+     * Returns the number of {@link ByteBuffer}s which are written out by the
+     * specified {@link SendBuffer}, or {@code -1} if it does not write out
+     * {@link ByteBuffer}s.
+     */
+    private static int nioBufferCount(SendBuffer buf) {
+        if (buf instanceof UnpooledSendBuffer) {
+            return 1;
+        }
+        if (buf instanceof GatheringSendBuffer) {
+            return ((GatheringSendBuffer) buf).buffers.length;
+        }
+        if (buf instanceof EmptySendBuffer) {
+            return 0;
+        }
+        return -1;
+    }
+
     private SendBuffer acquire(FileRegion src) {
         if (src.getCount() == 0) {
             return EMPTY_BUFFER;
@@ -63,18 +157,19 @@ final class SocketSendBufferPool implements ExternalResourceReleasable {
     private SendBuffer acquire(ChannelBuffer src) {
         final int size = src.readableBytes();
         if (size == 0) {
+            ChannelBuffers.release(src);
             return EMPTY_BUFFER;
         }
 
         if (src instanceof CompositeChannelBuffer && ((CompositeChannelBuffer) src).useGathering()) {
-            return new GatheringSendBuffer(src.toByteBuffers());
+            return new GatheringSendBuffer(src.toByteBuffers(), src);
         }
 
         if (src.isDirect()) {
-            return new UnpooledSendBuffer(src.toByteBuffer());
+            return new UnpooledSendBuffer(src.toByteBuffer(), src);
         }
         if (src.readableBytes() > DEFAULT_PREALLOCATION_SIZE) {
-            return new UnpooledSendBuffer(src.toByteBuffer());
+            return new UnpooledSendBuffer(src.toByteBuffer(), src);
         }
 
         Preallocation current = this.current;
@@ -107,6 +202,9 @@ final class SocketSendBufferPool implements ExternalResourceReleasable {
         dstbuf.mark();
         src.getBytes(src.readerIndex(), dstbuf);
         dstbuf.reset();
+
+        // The content has been copied, so a pooled source can be recycled right away.
+        ChannelBuffers.release(src);
         return dst;
     }
 
@@ -181,9 +279,16 @@ final class SocketSendBufferPool implements ExternalResourceReleasable {
 
         final ByteBuffer buffer;
         final int initialPos;
-
-        UnpooledSendBuffer(ByteBuffer buffer) {
+        private final ChannelBuffer source;
+
+        /**
+         * @param source the {@link ChannelBuffer} which backs the specified
+         *               {@link ByteBuffer}, released by {@link #release()},
+         *               or {@code null} if there is none
+         */
+        UnpooledSendBuffer(ByteBuffer buffer, ChannelBuffer source) {
             this.buffer = buffer;
+            this.source = source;
             initialPos = buffer.position();
         }
 
@@ -208,7 +313,9 @@ final class SocketSendBufferPool implements ExternalResourceReleasable {
         }
 
         public void release() {
-            // Unpooled.
+            if (source != null) {
+                ChannelBuffers.release(source);
+            }
         }
     }
 
@@ -217,7 +324,7 @@ final class SocketSendBufferPool implements ExternalResourceReleasable {
         private final Preallocation parent;
 
         PooledSendBuffer(Preallocation parent, ByteBuffer buffer) {
-            super(buffer);
+            super(buffer, null);
             this.parent = parent;
         }
 
@@ -235,13 +342,15 @@ final class SocketSendBufferPool implements ExternalResourceReleasable {
 
     static class GatheringSendBuffer implements SendBuffer {
 
-        private final ByteBuffer[] buffers;
+        final ByteBuffer[] buffers;
+        private final ChannelBuffer source;
         private final int last;
         private long written;
         private final int total;
 
-        GatheringSendBuffer(ByteBuffer[] buffers) {
+        GatheringSendBuffer(ByteBuffer[] buffers, ChannelBuffer source) {
             this.buffers = buffers;
+            this.source = source;
             last = buffers.length - 1;
             int total = 0;
             for (ByteBuffer buf: buffers) {
@@ -302,7 +411,123 @@ final class SocketSendBufferPool implements ExternalResourceReleasable {
         }
 
         public void release() {
-            // nothing todo
+            ChannelBuffers.release(source);
+        }
+    }
+
+    /**
+     * A {@link SendBuffer} which writes out the messages of several write requests
+     * with a single gathering write.  The write requests which have been written
+     * out completely are retrieved with {@link #pollWritten()}, except for the last
+     * one, which is the {@linkplain #current() current} write request once all
+     * others have been written.
+     */
+    static final class GatheringMessageSendBuffer implements SendBuffer {
+
+        private final MessageEvent[] events;
+        private final SendBuffer[] buffers;
+        private final ByteBuffer[] nioBuffers;
+        // the index of the first ByteBuffer of each message in nioBuffers
+        private final int[] nioOffsets;
+        private int head;
+        private int nioHead;
+
+        GatheringMessageSendBuffer(MessageEvent[] events, SendBuffer[] buffers, int nioCount) {
+            this.events = events;
+            this.buffers = buffers;
+            nioBuffers = new ByteBuffer[nioCount];
+            nioOffsets = new int[buffers.length + 1];
+            int idx = 0;
+            for (int i = 0; i < buffers.length; i ++) {
+                nioOffsets[i] = idx;
+                SendBuffer buf = buffers[i];
+                if (buf instanceof UnpooledSendBuffer) {
+                    nioBuffers[idx ++] = ((UnpooledSendBuffer) buf).buffer;
+                } else if (buf instanceof GatheringSendBuffer) {
+                    ByteBuffer[] bufs = ((GatheringSendBuffer) buf).buffers;
+                    System.arraycopy(bufs, 0, nioBuffers, idx, bufs.length);
+                    idx += bufs.length;
+                }
+            }
+            nioOffsets[buffers.length] = idx;
+        }
+
+        /**
+         * Returns the first write request which has not been written out completely.
+         */
+        MessageEvent current() {
+            return events[head];
+        }
+
+        /**
+         * Removes the first write request if it has been written out completely and
+         * it is not the last one.
+         *
+         * @return the removed write request, or {@code null} if there is none
+         */
+        MessageEvent pollWritten() {
+            if (head == events.length - 1 || nioHead < nioOffsets[head + 1]) {
+                return null;
+            }
+
+            MessageEvent evt = events[head];
+            buffers[head].release();
+            events[head] = null;
+            buffers[head] = null;
+            head ++;
+            return evt;
+        }
+
+        /**
+         * Marks the futures of the write requests which follow the
+         * {@linkplain #current() current} one as failed.
+         */
+        void fail(Throwable cause) {
+            for (int i = head + 1; i < events.length; i ++) {
+                events[i].getFuture().setFailure(cause);
+            }
+        }
+
+        public boolean finished() {
+            return nioHead == nioBuffers.length;
+        }
+
+        public long writtenBytes() {
+            return buffers[head].totalBytes() - remainingBytes(head);
+        }
+
+        public long totalBytes() {
+            return buffers[head].totalBytes();
+        }
+
+        private long remainingBytes(int idx) {
+            long remaining = 0;
+            for (int i = Math.max(nioHead, nioOffsets[idx]); i < nioOffsets[idx + 1]; i ++) {
+                remaining += nioBuffers[i].remaining();
+            }
+            return remaining;
+        }
+
+        public long transferTo(WritableByteChannel ch) throws IOException {
+            long w = ((GatheringByteChannel) ch).write(nioBuffers, nioHead, nioBuffers.length - nioHead);
+            while (nioHead < nioBuffers.length && !nioBuffers[nioHead].hasRemaining()) {
+                nioHead ++;
+            }
+            return w;
+        }
+
+        public long transferTo(DatagramChannel ch, SocketAddress raddr) {
+            throw new UnsupportedOperationException();
+        }
+
+        public void release() {
+            for (int i = head; i < buffers.length; i ++) {
+                SendBuffer buf = buffers[i];
+                if (buf != null) {
+                    buffers[i] = null;
+                    buf.release();
+                }
+            }
         }
     }
 
@@ -6,6 +6,7 @@ import org.jboss.netty.channel.ChannelFutureListener;
 import org.jboss.netty.channel.ChannelPipeline;
 import org.jboss.netty.channel.ChannelState;
 import org.jboss.netty.channel.ChannelStateEvent;
+import org.jboss.netty.channel.FlushEvent;
 import org.jboss.netty.channel.MessageEvent;
 import org.jboss.netty.util.ThreadNameDeterminer;
 import org.jboss.netty.util.ThreadRenamingRunnable;
@@ -70,6 +71,9 @@ class OioClientSocketPipelineSink extends AbstractOioChannelSink {
             OioWorker.write(
                     channel, future,
                     ((MessageEvent) e).getMessage());
+        } else if (e instanceof FlushEvent) {
+            // Messages are never held back by this transport.
+            e.getFuture().setSuccess();
         }
     }
 
@@ -26,6 +26,7 @@ import org.jboss.netty.channel.ChannelFutureListener;
 import org.jboss.netty.channel.ChannelPipeline;
 import org.jboss.netty.channel.ChannelState;
 import org.jboss.netty.channel.ChannelStateEvent;
+import org.jboss.netty.channel.FlushEvent;
 import org.jboss.netty.channel.MessageEvent;
 import org.jboss.netty.util.ThreadNameDeterminer;
 import org.jboss.netty.util.ThreadRenamingRunnable;
@@ -77,6 +78,9 @@ class OioDatagramPipelineSink extends AbstractOioChannelSink {
             MessageEvent evt = (MessageEvent) e;
             OioDatagramWorker.write(
                     channel, future, evt.getMessage(), evt.getRemoteAddress());
+        } else if (e instanceof FlushEvent) {
+            // Messages are never held back by this transport.
+            e.getFuture().setSuccess();
         }
     }
 
@@ -307,7 +307,14 @@ public class DelimiterBasedFrameDecoder extends FrameDecoder {
      * found in the haystack.
      */
     private static int indexOf(ChannelBuffer haystack, ChannelBuffer needle) {
+        final byte first = needle.getByte(0);
         for (int i = haystack.readerIndex(); i < haystack.writerIndex(); i ++) {
+            // Skip to the next occurrence of the first byte of the needle.
+            i = haystack.indexOf(i, haystack.writerIndex(), first);
+            if (i < 0) {
+                return -1;
+            }
+
             int haystackIndex = i;
             int needleIndex;
             for (needleIndex = 0; needleIndex < needle.capacity(); needleIndex ++) {
@@ -175,6 +175,20 @@ import java.net.SocketAddress;
  * }
  * </pre>
  *
+ * <h3>Releasing pooled buffers</h3>
+ * <p>
+ * If the received {@link ChannelBuffer}s are
+ * {@link org.jboss.netty.buffer.ReferenceCountedChannelBuffer}s, for example
+ * when a {@link org.jboss.netty.buffer.PooledChannelBufferFactory} is
+ * configured, {@link FrameDecoder} releases them as soon as their content has
+ * been consumed or copied into a new cumulative buffer.  Therefore, a frame
+ * must not share its content with the cumulative buffer.  Return a copy such
+ * as {@link #extractFrame(ChannelBuffer, int, int)} and
+ * {@link ChannelBuffer#readBytes(int)} rather than a slice such as
+ * {@link ChannelBuffer#readSlice(int)}.  Such a copy is allocated from
+ * {@link ChannelBuffer#factory()}, which is unpooled even for a pooled buffer,
+ * so the consumer of the frame does not need to release it.
+ *
  * @apiviz.landmark
  */
 public abstract class FrameDecoder extends SimpleChannelUpstreamHandler implements LifeCycleAwareChannelHandler {
@@ -322,6 +336,7 @@ public abstract class FrameDecoder extends SimpleChannelUpstreamHandler implemen
             CompositeChannelBuffer composite = (CompositeChannelBuffer) cumulation;
             if (composite.numComponents() >= maxCumulationBufferComponents) {
                 cumulation = composite.copy();
+                ChannelBuffers.release(composite);
             }
         }
 
@@ -344,6 +359,7 @@ public abstract class FrameDecoder extends SimpleChannelUpstreamHandler implemen
                 // exceeded the threshold.
                 cumulation = newCumulation = newCumulationBuffer(ctx, input.readableBytes());
                 cumulation.writeBytes(input);
+                ChannelBuffers.release(input);
             } else {
                 // Nothing was consumed by callDecode() or input.capacity() did not
                 // exceed the threshold.
@@ -355,6 +371,7 @@ public abstract class FrameDecoder extends SimpleChannelUpstreamHandler implemen
             }
         } else {
             cumulation = newCumulation = null;
+            ChannelBuffers.release(input);
         }
         return newCumulation;
     }
@@ -477,17 +494,21 @@ public abstract class FrameDecoder extends SimpleChannelUpstreamHandler implemen
 
             this.cumulation = null;
 
-            if (cumulation.readable()) {
-                // Make sure all frames are read before notifying a closed channel.
-                callDecode(ctx, ctx.getChannel(), cumulation, null);
-            }
+            try {
+                if (cumulation.readable()) {
+                    // Make sure all frames are read before notifying a closed channel.
+                    callDecode(ctx, ctx.getChannel(), cumulation, null);
+                }
 
-            // Call decodeLast() finally.  Please note that decodeLast() is
-            // called even if there's nothing more to read from the buffer to
-            // notify a user that the connection was closed explicitly.
-            Object partialFrame = decodeLast(ctx, ctx.getChannel(), cumulation);
-            if (partialFrame != null) {
-                unfoldAndFireMessageReceived(ctx, null, partialFrame);
+                // Call decodeLast() finally.  Please note that decodeLast() is
+                // called even if there's nothing more to read from the buffer to
+                // notify a user that the connection was closed explicitly.
+                Object partialFrame = decodeLast(ctx, ctx.getChannel(), cumulation);
+                if (partialFrame != null) {
+                    unfoldAndFireMessageReceived(ctx, null, partialFrame);
+                }
+            } finally {
+                ChannelBuffers.release(cumulation);
             }
         } finally {
             ctx.sendUpstream(e);
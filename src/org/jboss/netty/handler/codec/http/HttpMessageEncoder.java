@@ -170,9 +170,7 @@ public abstract class HttpMessageEncoder extends OneToOneEncoder {
     }
 
     protected static void encodeAscii(String s, ChannelBuffer buf) {
-        for (int i = 0; i < s.length(); i++) {
-            buf.writeByte(s.charAt(i));
-        }
+        buf.writeAscii(s);
     }
 
     protected abstract void encodeInitialLine(ChannelBuffer buf, HttpMessage message) throws Exception;
@@ -29,7 +29,7 @@ public class HttpRequestEncoder extends HttpMessageEncoder {
     @Override
     protected void encodeInitialLine(ChannelBuffer buf, HttpMessage message) throws Exception {
         HttpRequest request = (HttpRequest) message;
-        buf.writeBytes(request.getMethod().toString().getBytes("ASCII"));
+        buf.writeAscii(request.getMethod().toString());
         buf.writeByte(SP);
 
         // Add / as absolute path if no is present.
@@ -43,9 +43,9 @@ public class HttpRequestEncoder extends HttpMessageEncoder {
             }
         }
 
-        buf.writeBytes(uri.getBytes("UTF-8"));
+        buf.writeUtf8(uri);
         buf.writeByte(SP);
-        buf.writeBytes(request.getProtocolVersion().toString().getBytes("ASCII"));
+        buf.writeAscii(request.getProtocolVersion().toString());
         buf.writeByte(CR);
         buf.writeByte(LF);
     }
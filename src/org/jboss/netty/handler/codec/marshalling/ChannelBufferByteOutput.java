@@ -39,10 +39,10 @@ class ChannelBufferByteOutput implements ByteOutput {
     }
 
     /**
-     * Calls {@link #ChannelBufferByteOutput(ChannelBuffer)} with a dynamic {@link ChannelBuffer}
+     * Calls {@link #ChannelBufferByteOutput(ChannelBuffer)} with a chunked dynamic {@link ChannelBuffer}
      */
     public ChannelBufferByteOutput(ChannelBufferFactory factory, int estimatedLength) {
-        this(ChannelBuffers.dynamicBuffer(estimatedLength, factory));
+        this(ChannelBuffers.chunkedDynamicBuffer(estimatedLength, factory));
     }
 
     public void close() throws IOException {
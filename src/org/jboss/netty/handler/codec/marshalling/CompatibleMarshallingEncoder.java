@@ -16,6 +16,8 @@
 package org.jboss.netty.handler.codec.marshalling;
 
 import org.jboss.marshalling.Marshaller;
+import org.jboss.netty.buffer.ChannelBuffers;
+import org.jboss.netty.buffer.ChunkedDynamicChannelBuffer;
 import org.jboss.netty.channel.Channel;
 import org.jboss.netty.channel.ChannelHandler.Sharable;
 import org.jboss.netty.channel.ChannelHandlerContext;
@@ -48,13 +50,14 @@ public class CompatibleMarshallingEncoder extends OneToOneEncoder {
     @Override
     protected Object encode(ChannelHandlerContext ctx, Channel channel, Object msg) throws Exception {
         Marshaller marshaller = provider.getMarshaller(ctx);
-        ChannelBufferByteOutput output =
-                new ChannelBufferByteOutput(ctx.getChannel().getConfig().getBufferFactory(), 256);
+        ChunkedDynamicChannelBuffer encoded = ChannelBuffers.chunkedDynamicBuffer(
+                256, ctx.getChannel().getConfig().getBufferFactory());
+        ChannelBufferByteOutput output = new ChannelBufferByteOutput(encoded);
         marshaller.start(output);
         marshaller.writeObject(msg);
         marshaller.finish();
         marshaller.close();
 
-        return output.getBuffer();
+        return encoded.complete();
     }
 }
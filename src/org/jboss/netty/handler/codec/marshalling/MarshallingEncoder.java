@@ -16,7 +16,8 @@
 package org.jboss.netty.handler.codec.marshalling;
 
 import org.jboss.marshalling.Marshaller;
-import org.jboss.netty.buffer.ChannelBuffer;
+import org.jboss.netty.buffer.ChannelBuffers;
+import org.jboss.netty.buffer.ChunkedDynamicChannelBuffer;
 import org.jboss.netty.channel.Channel;
 import org.jboss.netty.channel.ChannelHandler.Sharable;
 import org.jboss.netty.channel.ChannelHandlerContext;
@@ -75,18 +76,18 @@ public class MarshallingEncoder extends OneToOneEncoder {
     @Override
     protected Object encode(ChannelHandlerContext ctx, Channel channel, Object msg) throws Exception {
         Marshaller marshaller = provider.getMarshaller(ctx);
-        ChannelBufferByteOutput output = new ChannelBufferByteOutput(
-                ctx.getChannel().getConfig().getBufferFactory(), estimatedLength);
-        output.getBuffer().writeBytes(LENGTH_PLACEHOLDER);
+        ChunkedDynamicChannelBuffer encoded = ChannelBuffers.chunkedDynamicBuffer(
+                estimatedLength, ctx.getChannel().getConfig().getBufferFactory());
+        ChannelBufferByteOutput output = new ChannelBufferByteOutput(encoded);
+        encoded.writeBytes(LENGTH_PLACEHOLDER);
         marshaller.start(output);
         marshaller.writeObject(msg);
         marshaller.finish();
         marshaller.close();
 
-        ChannelBuffer encoded = output.getBuffer();
         encoded.setInt(0, encoded.writerIndex() - 4);
 
-        return encoded;
+        return encoded.complete();
     }
 
 }
@@ -45,31 +45,26 @@ public class ProtobufVarint32FrameDecoder extends FrameDecoder {
 
     @Override
     protected Object decode(ChannelHandlerContext ctx, Channel channel, ChannelBuffer buffer) throws Exception {
-        buffer.markReaderIndex();
-        final byte[] buf = new byte[5];
-        for (int i = 0; i < buf.length; i ++) {
-            if (!buffer.readable()) {
-                buffer.resetReaderIndex();
-                return null;
-            }
-
-            buf[i] = buffer.readByte();
-            if (buf[i] >= 0) {
-                int length = CodedInputStream.newInstance(buf, 0, i + 1).readRawVarint32();
-                if (length < 0) {
-                    throw new CorruptedFrameException("negative length: " + length);
-                }
+        int lengthFieldLength = buffer.readableVarIntLength();
+        if (lengthFieldLength == 0 && buffer.readableBytes() < 5) {
+            return null;
+        }
+        if (lengthFieldLength <= 0 || lengthFieldLength > 5) {
+            // Couldn't find the byte whose MSB is off.
+            throw new CorruptedFrameException("length wider than 32-bit");
+        }
 
-                if (buffer.readableBytes() < length) {
-                    buffer.resetReaderIndex();
-                    return null;
-                } else {
-                    return buffer.readBytes(length);
-                }
-            }
+        int readerIndex = buffer.readerIndex();
+        int length = buffer.readVarInt32();
+        if (length < 0) {
+            throw new CorruptedFrameException("negative length: " + length);
         }
 
-        // Couldn't find the byte whose MSB is off.
-        throw new CorruptedFrameException("length wider than 32-bit");
+        if (buffer.readableBytes() < length) {
+            buffer.readerIndex(readerIndex);
+            return null;
+        } else {
+            return buffer.readBytes(length);
+        }
     }
 }
@@ -18,7 +18,6 @@ package org.jboss.netty.handler.codec.protobuf;
 import static org.jboss.netty.buffer.ChannelBuffers.*;
 
 import org.jboss.netty.buffer.ChannelBuffer;
-import org.jboss.netty.buffer.ChannelBufferOutputStream;
 import org.jboss.netty.channel.Channel;
 import org.jboss.netty.channel.ChannelHandler.Sharable;
 import org.jboss.netty.channel.ChannelHandlerContext;
@@ -54,12 +53,8 @@ public class ProtobufVarint32LengthFieldPrepender extends OneToOneEncoder {
         int length = body.readableBytes();
         ChannelBuffer header =
             channel.getConfig().getBufferFactory().getBuffer(
-                    body.order(),
-                    CodedOutputStream.computeRawVarint32Size(length));
-        CodedOutputStream codedOutputStream = CodedOutputStream
-                .newInstance(new ChannelBufferOutputStream(header));
-        codedOutputStream.writeRawVarint32(length);
-        codedOutputStream.flush();
+                    body.order(), varInt32Size(length));
+        header.writeVarInt32(length);
         return wrappedBuffer(header, body);
     }
 
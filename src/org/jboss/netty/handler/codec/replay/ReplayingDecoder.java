@@ -16,6 +16,7 @@
 package org.jboss.netty.handler.codec.replay;
 
 import org.jboss.netty.buffer.ChannelBuffer;
+import org.jboss.netty.buffer.ChannelBuffers;
 import org.jboss.netty.channel.Channel;
 import org.jboss.netty.channel.ChannelHandler;
 import org.jboss.netty.channel.ChannelHandlerContext;
@@ -475,8 +476,12 @@ public abstract class ReplayingDecoder<T extends Enum<T>>
                             this.cumulation = input;
                         }
                     }
+                    if (copy) {
+                        ChannelBuffers.release(input);
+                    }
                 } else {
                     cumulation = null;
+                    ChannelBuffers.release(input);
                 }
             }
         } else {
@@ -560,6 +565,9 @@ public abstract class ReplayingDecoder<T extends Enum<T>>
             Object partiallyDecoded = decodeLast(ctx, e.getChannel(), replayable, state);
 
             this.cumulation = null;
+            if (cumulation != null) {
+                ChannelBuffers.release(cumulation);
+            }
 
             if (partiallyDecoded != null) {
                 unfoldAndFireMessageReceived(ctx, null, partiallyDecoded);
@@ -27,6 +27,7 @@ import java.nio.charset.Charset;
 import org.jboss.netty.buffer.ChannelBuffer;
 import org.jboss.netty.buffer.ChannelBufferFactory;
 import org.jboss.netty.buffer.ChannelBufferIndexFinder;
+import org.jboss.netty.buffer.ChannelBufferProcessor;
 
 class ReplayingDecoderBuffer implements ChannelBuffer {
 
@@ -224,6 +225,19 @@ class ReplayingDecoderBuffer implements ChannelBuffer {
         return endIndex;
     }
 
+    public int forEachByte(ChannelBufferProcessor processor) {
+        int ret = buf().forEachByte(processor);
+        if (ret < 0) {
+            throw REPLAY;
+        }
+        return ret;
+    }
+
+    public int forEachByte(int index, int length, ChannelBufferProcessor processor) {
+        checkIndex(index, length);
+        return buf().forEachByte(index, length, processor);
+    }
+
     public int bytesBefore(byte value) {
         int bytes = buf().bytesBefore(value);
         if (bytes < 0) {
@@ -327,6 +341,34 @@ class ReplayingDecoderBuffer implements ChannelBuffer {
         throw new UnreplayableOperationException();
     }
 
+    public String readAscii(int length) {
+        checkReadableBytes(length);
+        return buf().readAscii(length);
+    }
+
+    public String readUtf8(int length) {
+        checkReadableBytes(length);
+        return buf().readUtf8(length);
+    }
+
+    public int readableVarIntLength() {
+        return buf().readableVarIntLength();
+    }
+
+    public int readVarInt32() {
+        if (buf().readableVarIntLength() == 0) {
+            throw REPLAY;
+        }
+        return buf().readVarInt32();
+    }
+
+    public long readVarInt64() {
+        if (buf().readableVarIntLength() == 0) {
+            throw REPLAY;
+        }
+        return buf().readVarInt64();
+    }
+
     public void readBytes(ChannelBuffer dst, int dstIndex, int length) {
         checkReadableBytes(length);
         buf().readBytes(dst, dstIndex, length);
@@ -667,6 +709,22 @@ class ReplayingDecoderBuffer implements ChannelBuffer {
         throw new UnreplayableOperationException();
     }
 
+    public void writeAscii(CharSequence value) {
+        throw new UnreplayableOperationException();
+    }
+
+    public void writeUtf8(CharSequence value) {
+        throw new UnreplayableOperationException();
+    }
+
+    public void writeVarInt32(int value) {
+        throw new UnreplayableOperationException();
+    }
+
+    public void writeVarInt64(long value) {
+        throw new UnreplayableOperationException();
+    }
+
     public int writerIndex() {
         return buf().writerIndex();
     }
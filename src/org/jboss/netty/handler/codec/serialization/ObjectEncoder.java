@@ -22,6 +22,7 @@ import java.io.ObjectOutputStream;
 
 import org.jboss.netty.buffer.ChannelBuffer;
 import org.jboss.netty.buffer.ChannelBufferOutputStream;
+import org.jboss.netty.buffer.ChunkedDynamicChannelBuffer;
 import org.jboss.netty.channel.Channel;
 import org.jboss.netty.channel.ChannelHandler.Sharable;
 import org.jboss.netty.channel.ChannelHandlerContext;
@@ -57,9 +58,9 @@ public class ObjectEncoder extends OneToOneEncoder {
      * @param estimatedLength
      *        the estimated byte length of the serialized form of an object.
      *        If the length of the serialized form exceeds this value, the
-     *        internal buffer will be expanded automatically at the cost of
-     *        memory bandwidth.  If this value is too big, it will also waste
-     *        memory bandwidth.  To avoid unnecessary memory copy or allocation
+     *        internal buffer will be expanded automatically by appending
+     *        chunks to it.  If this value is too big, it will waste memory
+     *        bandwidth.  To avoid unnecessary memory copy or allocation
      *        cost, please specify the properly estimated value.
      */
     public ObjectEncoder(int estimatedLength) {
@@ -72,17 +73,16 @@ public class ObjectEncoder extends OneToOneEncoder {
 
     @Override
     protected Object encode(ChannelHandlerContext ctx, Channel channel, Object msg) throws Exception {
-        ChannelBufferOutputStream bout =
-            new ChannelBufferOutputStream(dynamicBuffer(
-                    estimatedLength, ctx.getChannel().getConfig().getBufferFactory()));
+        ChunkedDynamicChannelBuffer encoded = chunkedDynamicBuffer(
+                estimatedLength, ctx.getChannel().getConfig().getBufferFactory());
+        ChannelBufferOutputStream bout = new ChannelBufferOutputStream(encoded);
         bout.write(LENGTH_PLACEHOLDER);
         ObjectOutputStream oout = new CompactObjectOutputStream(bout);
         oout.writeObject(msg);
         oout.flush();
         oout.close();
 
-        ChannelBuffer encoded = bout.buffer();
         encoded.setInt(0, encoded.writerIndex() - 4);
-        return encoded;
+        return encoded.complete();
     }
 }
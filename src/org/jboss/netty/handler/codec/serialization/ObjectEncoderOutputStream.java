@@ -80,7 +80,7 @@ public class ObjectEncoderOutputStream extends OutputStream implements
 
     public void writeObject(Object obj) throws IOException {
         ChannelBufferOutputStream bout = new ChannelBufferOutputStream(
-                ChannelBuffers.dynamicBuffer(estimatedLength));
+                ChannelBuffers.chunkedDynamicBuffer(estimatedLength));
         ObjectOutputStream oout = new CompactObjectOutputStream(bout);
         oout.writeObject(obj);
         oout.flush();
@@ -16,6 +16,7 @@
 package org.jboss.netty.handler.codec.string;
 
 import org.jboss.netty.buffer.ChannelBuffer;
+import org.jboss.netty.buffer.ChannelBufferFactory;
 import org.jboss.netty.channel.Channel;
 import org.jboss.netty.channel.ChannelHandler.Sharable;
 import org.jboss.netty.channel.ChannelHandlerContext;
@@ -24,6 +25,7 @@ import org.jboss.netty.channel.MessageEvent;
 import org.jboss.netty.handler.codec.frame.DelimiterBasedFrameDecoder;
 import org.jboss.netty.handler.codec.frame.Delimiters;
 import org.jboss.netty.handler.codec.oneone.OneToOneEncoder;
+import org.jboss.netty.util.CharsetUtil;
 
 import java.nio.charset.Charset;
 
@@ -88,10 +90,33 @@ public class StringEncoder extends OneToOneEncoder {
     protected Object encode(
             ChannelHandlerContext ctx, Channel channel, Object msg) throws Exception {
         if (msg instanceof String) {
-            return copiedBuffer(
-                    ctx.getChannel().getConfig().getBufferFactory().getDefaultOrder(), (String) msg, charset);
+            String value = (String) msg;
+            ChannelBufferFactory factory = ctx.getChannel().getConfig().getBufferFactory();
+            if (CharsetUtil.UTF_8.equals(charset)) {
+                ChannelBuffer buf = factory.getBuffer(utf8Length(value));
+                buf.writeUtf8(value);
+                return buf;
+            }
+            if (CharsetUtil.ISO_8859_1.equals(charset) && !containsSurrogate(value)) {
+                // The charset encoder replaces a surrogate pair with a single '?',
+                // so only a string without surrogates has one byte per character.
+                ChannelBuffer buf = factory.getBuffer(value.length());
+                buf.writeAscii(value);
+                return buf;
+            }
+            return copiedBuffer(factory.getDefaultOrder(), value, charset);
         }
 
         return msg;
     }
+
+    private static boolean containsSurrogate(String value) {
+        for (int i = 0; i < value.length(); i ++) {
+            char c = value.charAt(i);
+            if (c >= '\ud800' && c <= '\udfff') {
+                return true;
+            }
+        }
+        return false;
+    }
 }
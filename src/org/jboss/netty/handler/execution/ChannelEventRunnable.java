@@ -18,6 +18,7 @@ package org.jboss.netty.handler.execution;
 import java.util.concurrent.Executor;
 
 import org.jboss.netty.channel.ChannelEvent;
+import org.jboss.netty.channel.ChannelEventRecycler;
 import org.jboss.netty.channel.ChannelHandlerContext;
 import org.jboss.netty.util.EstimatableObjectWrapper;
 
@@ -40,7 +41,8 @@ public abstract class ChannelEventRunnable implements Runnable, EstimatableObjec
      */
     protected ChannelEventRunnable(ChannelHandlerContext ctx, ChannelEvent e, Executor executor) {
         this.ctx = ctx;
-        this.e = e;
+        // The event is handled after the caller returns.
+        this.e = ChannelEventRecycler.retain(e);
         this.executor = executor;
     }
 
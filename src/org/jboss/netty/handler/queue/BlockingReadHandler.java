@@ -18,6 +18,7 @@ package org.jboss.netty.handler.queue;
 import org.jboss.netty.buffer.ChannelBuffer;
 import org.jboss.netty.channel.Channel;
 import org.jboss.netty.channel.ChannelEvent;
+import org.jboss.netty.channel.ChannelEventRecycler;
 import org.jboss.netty.channel.ChannelHandlerContext;
 import org.jboss.netty.channel.ChannelPipeline;
 import org.jboss.netty.channel.ChannelStateEvent;
@@ -251,7 +252,7 @@ public class BlockingReadHandler<E> extends SimpleChannelUpstreamHandler {
     @Override
     public void messageReceived(ChannelHandlerContext ctx, MessageEvent e)
             throws Exception {
-        getQueue().put(e);
+        getQueue().put(ChannelEventRecycler.retain(e));
     }
 
     @Override
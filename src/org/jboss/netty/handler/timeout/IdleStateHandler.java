@@ -112,6 +112,12 @@ import org.jboss.netty.util.TimerTask;
  * The {@link Timer} which was specified when the {@link IdleStateHandler} is
  * created should be stopped manually by calling {@link #releaseExternalResources()}
  * or {@link Timer#stop()} when your application shuts down.
+ * <p>
+ * For NIO channels, the same {@link IdleStateEvent}s can be triggered by the
+ * I/O thread itself without a {@link Timer} by setting the
+ * {@code "readerIdleTimeMillis"}, {@code "writerIdleTimeMillis"} and
+ * {@code "allIdleTimeMillis"} options of the
+ * {@link org.jboss.netty.channel.socket.nio.NioChannelConfig}.
  * @see ReadTimeoutHandler
  * @see WriteTimeoutHandler
  *
@@ -0,0 +1,576 @@
+/*
+ * Copyright 2014 The Netty Project
+ *
+ * The Netty Project licenses this file to you under the Apache License,
+ * version 2.0 (the "License"); you may not use this file except in compliance
+ * with the License. You may obtain a copy of the License at:
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS, WITHOUT
+ * WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied. See the
+ * License for the specific language governing permissions and limitations
+ * under the License.
+ */
+package org.jboss.netty.util;
+
+import org.jboss.netty.channel.ChannelPipelineFactory;
+import org.jboss.netty.logging.InternalLogger;
+import org.jboss.netty.logging.InternalLoggerFactory;
+import org.jboss.netty.util.internal.SharedResourceMisuseDetector;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Set;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicIntegerFieldUpdater;
+import java.util.concurrent.locks.Condition;
+import java.util.concurrent.locks.ReentrantLock;
+
+/**
+ * A tick-less {@link Timer} which keeps its pending timeouts in 4-ary
+ * min-heaps ordered by deadline.
+ *
+ * <h3>Differences from {@link HashedWheelTimer}</h3>
+ *
+ * <ul>
+ * <li>There is no tick.  A worker thread sleeps until the deadline of its
+ *     earliest pending timeout (or until an earlier one is scheduled), so an
+ *     idle timer does not wake up at all and timeouts are not rounded up to
+ *     the next tick.</li>
+ * <li>{@link Timeout#cancel()} removes the timeout from the heap immediately,
+ *     so a workload which schedules and cancels most of its timeouts (e.g.
+ *     read timeouts) does not leave garbage behind until the deadline.</li>
+ * <li>More than one worker thread can be used.  Every worker owns its own
+ *     heap and lock, and a timeout is always assigned to the worker picked by
+ *     the scheduling thread, so the I/O threads of a busy server do not
+ *     contend on a single lock.</li>
+ * <li>{@link #getPendingTimeouts()}, {@link #getExpiredTimeouts()},
+ *     {@link #getAverageLatenessNanos()} and {@link #getMaxLatenessNanos()}
+ *     expose how loaded the timer is and how late it runs its tasks.</li>
+ * </ul>
+ *
+ * Scheduling and cancellation cost {@code O(log n)} where {@code n} is the
+ * number of pending timeouts of a worker.
+ *
+ * <h3>Do not create many instances.</h3>
+ *
+ * Just like {@link HashedWheelTimer}, {@link HeapTimer} creates its worker
+ * threads whenever it is instantiated and started.  Create only one instance
+ * and share it across your application rather than creating one in your
+ * {@link ChannelPipelineFactory}.
+ */
+public class HeapTimer implements Timer {
+
+    static final InternalLogger logger =
+        InternalLoggerFactory.getInstance(HeapTimer.class);
+    private static final AtomicInteger id = new AtomicInteger();
+
+    private static final SharedResourceMisuseDetector misuseDetector =
+        new SharedResourceMisuseDetector(HeapTimer.class);
+
+    public static final int WORKER_STATE_INIT = 0;
+    public static final int WORKER_STATE_STARTED = 1;
+    public static final int WORKER_STATE_SHUTDOWN = 2;
+    final AtomicInteger workerState = new AtomicInteger(); // 0 - init, 1 - started, 2 - shut down
+
+    private final Worker[] workers;
+
+    /**
+     * Creates a new timer with the default thread factory
+     * ({@link Executors#defaultThreadFactory()}) and a single worker thread.
+     */
+    public HeapTimer() {
+        this(Executors.defaultThreadFactory());
+    }
+
+    /**
+     * Creates a new timer with a single worker thread.
+     *
+     * @param threadFactory  a {@link ThreadFactory} that creates a
+     *                       background {@link Thread} which is dedicated to
+     *                       {@link TimerTask} execution.
+     */
+    public HeapTimer(ThreadFactory threadFactory) {
+        this(threadFactory, 1);
+    }
+
+    /**
+     * Creates a new timer.
+     *
+     * @param threadFactory  a {@link ThreadFactory} that creates the
+     *                       background {@link Thread}s which are dedicated to
+     *                       {@link TimerTask} execution.
+     * @param workerCount    the number of worker threads
+     */
+    public HeapTimer(ThreadFactory threadFactory, int workerCount) {
+        this(threadFactory, null, workerCount);
+    }
+
+    /**
+     * Creates a new timer.
+     *
+     * @param threadFactory  a {@link ThreadFactory} that creates the
+     *                       background {@link Thread}s which are dedicated to
+     *                       {@link TimerTask} execution.
+     * @param determiner     thread name determiner to control thread name.
+     * @param workerCount    the number of worker threads
+     */
+    public HeapTimer(
+            ThreadFactory threadFactory, ThreadNameDeterminer determiner, int workerCount) {
+
+        if (threadFactory == null) {
+            throw new NullPointerException("threadFactory");
+        }
+        if (workerCount <= 0) {
+            throw new IllegalArgumentException(
+                    "workerCount must be greater than 0: " + workerCount);
+        }
+
+        int timerId = id.incrementAndGet();
+        workers = new Worker[workerCount];
+        for (int i = 0; i < workerCount; i ++) {
+            Worker worker = new Worker();
+            String name = "Heap timer #" + timerId;
+            if (workerCount > 1) {
+                name += '-' + String.valueOf(i);
+            }
+            worker.thread = threadFactory.newThread(
+                    new ThreadRenamingRunnable(worker, name, determiner));
+            workers[i] = worker;
+        }
+
+        // Misuse check
+        misuseDetector.increase();
+    }
+
+    /**
+     * Starts the background threads explicitly.  The background threads will
+     * start automatically on demand even if you did not call this method.
+     *
+     * @throws IllegalStateException if this timer has been
+     *                               {@linkplain #stop() stopped} already
+     */
+    public void start() {
+        switch (workerState.get()) {
+        case WORKER_STATE_INIT:
+            if (workerState.compareAndSet(WORKER_STATE_INIT, WORKER_STATE_STARTED)) {
+                for (Worker worker: workers) {
+                    worker.thread.start();
+                }
+            }
+            break;
+        case WORKER_STATE_STARTED:
+            break;
+        case WORKER_STATE_SHUTDOWN:
+            throw new IllegalStateException("cannot be started once stopped");
+        default:
+            throw new Error("Invalid WorkerState");
+        }
+    }
+
+    public Set<Timeout> stop() {
+        Thread currentThread = Thread.currentThread();
+        for (Worker worker: workers) {
+            if (currentThread == worker.thread) {
+                throw new IllegalStateException(
+                        HeapTimer.class.getSimpleName() +
+                        ".stop() cannot be called from " +
+                        TimerTask.class.getSimpleName());
+            }
+        }
+
+        if (!workerState.compareAndSet(WORKER_STATE_STARTED, WORKER_STATE_SHUTDOWN)) {
+            // workerState can be 0 or 2 at this moment - let it always be 2.
+            workerState.set(WORKER_STATE_SHUTDOWN);
+            return Collections.emptySet();
+        }
+
+        boolean interrupted = false;
+        for (Worker worker: workers) {
+            Thread thread = worker.thread;
+            while (thread.isAlive()) {
+                thread.interrupt();
+                try {
+                    thread.join(100);
+                } catch (InterruptedException e) {
+                    interrupted = true;
+                }
+            }
+        }
+
+        if (interrupted) {
+            Thread.currentThread().interrupt();
+        }
+
+        misuseDetector.decrease();
+
+        Set<Timeout> unprocessedTimeouts = new HashSet<Timeout>();
+        for (Worker worker: workers) {
+            worker.drainTo(unprocessedTimeouts);
+        }
+
+        return Collections.unmodifiableSet(unprocessedTimeouts);
+    }
+
+    public Timeout newTimeout(TimerTask task, long delay, TimeUnit unit) {
+        start();
+
+        if (task == null) {
+            throw new NullPointerException("task");
+        }
+        if (unit == null) {
+            throw new NullPointerException("unit");
+        }
+
+        long deadline = System.nanoTime() + unit.toNanos(delay);
+
+        // Keep the timeouts scheduled by the same thread on the same worker
+        // so that the scheduling threads spread over the workers' locks.
+        Worker worker = workers[workers.length == 1 ? 0 :
+                (int) (Thread.currentThread().getId() % workers.length)];
+        HeapTimeout timeout = new HeapTimeout(worker, task, deadline);
+        worker.add(timeout);
+        return timeout;
+    }
+
+    /**
+     * Returns the number of timeouts which were scheduled and have neither
+     * expired nor been cancelled yet.
+     */
+    public int getPendingTimeouts() {
+        int pending = 0;
+        for (Worker worker: workers) {
+            pending += worker.size;
+        }
+        return pending;
+    }
+
+    /**
+     * Returns the number of timeouts which have expired so far.
+     */
+    public long getExpiredTimeouts() {
+        long expired = 0;
+        for (Worker worker: workers) {
+            expired += worker.expiredTimeouts;
+        }
+        return expired;
+    }
+
+    /**
+     * Returns the average delay between the deadline of an expired timeout
+     * and the time its {@link TimerTask} was run, in nanoseconds.
+     */
+    public long getAverageLatenessNanos() {
+        long expired = 0;
+        long lateness = 0;
+        for (Worker worker: workers) {
+            expired += worker.expiredTimeouts;
+            lateness += worker.totalLatenessNanos;
+        }
+        return expired == 0 ? 0 : lateness / expired;
+    }
+
+    /**
+     * Returns the largest delay between the deadline of an expired timeout
+     * and the time its {@link TimerTask} was run, in nanoseconds.
+     */
+    public long getMaxLatenessNanos() {
+        long max = 0;
+        for (Worker worker: workers) {
+            max = Math.max(max, worker.maxLatenessNanos);
+        }
+        return max;
+    }
+
+    private final class Worker implements Runnable {
+
+        private final ReentrantLock lock = new ReentrantLock();
+        private final Condition headChanged = lock.newCondition();
+        private HeapTimeout[] heap = new HeapTimeout[64];
+        Thread thread;
+
+        // Written under the lock or by the worker thread only.
+        volatile int size;
+        volatile long expiredTimeouts;
+        volatile long totalLatenessNanos;
+        volatile long maxLatenessNanos;
+
+        void add(HeapTimeout timeout) {
+            lock.lock();
+            try {
+                if (workerState.get() == WORKER_STATE_SHUTDOWN) {
+                    throw new IllegalStateException("cannot be started once stopped");
+                }
+
+                int index = size;
+                if (index == heap.length) {
+                    HeapTimeout[] newHeap = new HeapTimeout[index << 1];
+                    System.arraycopy(heap, 0, newHeap, 0, index);
+                    heap = newHeap;
+                }
+                size = index + 1;
+                siftUp(index, timeout);
+
+                if (timeout.index == 0) {
+                    // The new timeout is the earliest one; wake up the worker
+                    // so that it sleeps for a shorter time.
+                    headChanged.signal();
+                }
+            } finally {
+                lock.unlock();
+            }
+        }
+
+        void remove(HeapTimeout timeout) {
+            lock.lock();
+            try {
+                int index = timeout.index;
+                if (index < 0) {
+                    // Polled by the worker already.
+                    return;
+                }
+                removeAt(index);
+            } finally {
+                lock.unlock();
+            }
+        }
+
+        void drainTo(Set<Timeout> timeouts) {
+            lock.lock();
+            try {
+                for (int i = 0; i < size; i ++) {
+                    HeapTimeout timeout = heap[i];
+                    timeout.index = -1;
+                    timeouts.add(timeout);
+                    heap[i] = null;
+                }
+                size = 0;
+            } finally {
+                lock.unlock();
+            }
+        }
+
+        public void run() {
+            List<HeapTimeout> expiredTimeouts = new ArrayList<HeapTimeout>();
+            while (workerState.get() == WORKER_STATE_STARTED) {
+                try {
+                    pollExpiredTimeouts(expiredTimeouts);
+                } catch (InterruptedException e) {
+                    continue;
+                }
+                notifyExpiredTimeouts(expiredTimeouts);
+            }
+        }
+
+        private void pollExpiredTimeouts(List<HeapTimeout> expiredTimeouts)
+                throws InterruptedException {
+            lock.lockInterruptibly();
+            try {
+                for (;;) {
+                    if (size == 0) {
+                        if (!expiredTimeouts.isEmpty()) {
+                            return;
+                        }
+                        headChanged.await();
+                        continue;
+                    }
+
+                    long currentTime = System.nanoTime();
+                    long sleepTime = heap[0].deadline - currentTime;
+                    if (sleepTime > 0) {
+                        if (!expiredTimeouts.isEmpty()) {
+                            return;
+                        }
+                        headChanged.awaitNanos(sleepTime);
+                        continue;
+                    }
+
+                    expiredTimeouts.add(heap[0]);
+                    removeAt(0);
+                }
+            } finally {
+                lock.unlock();
+            }
+        }
+
+        private void notifyExpiredTimeouts(List<HeapTimeout> expiredTimeouts) {
+            for (int i = 0; i < expiredTimeouts.size(); i ++) {
+                HeapTimeout timeout = expiredTimeouts.get(i);
+                long lateness = System.nanoTime() - timeout.deadline;
+                if (timeout.expire()) {
+                    if (lateness < 0) {
+                        lateness = 0;
+                    }
+                    this.expiredTimeouts ++;
+                    totalLatenessNanos += lateness;
+                    if (lateness > maxLatenessNanos) {
+                        maxLatenessNanos = lateness;
+                    }
+                }
+            }
+            expiredTimeouts.clear();
+        }
+
+        private void removeAt(int index) {
+            HeapTimeout[] heap = this.heap;
+            HeapTimeout removed = heap[index];
+            int last = size - 1;
+            HeapTimeout moved = heap[last];
+            heap[last] = null;
+            size = last;
+            removed.index = -1;
+
+            if (index != last) {
+                siftDown(index, moved);
+                if (moved.index == index) {
+                    siftUp(index, moved);
+                }
+            }
+        }
+
+        private void siftUp(int index, HeapTimeout timeout) {
+            HeapTimeout[] heap = this.heap;
+            while (index > 0) {
+                int parentIndex = index - 1 >>> 2;
+                HeapTimeout parent = heap[parentIndex];
+                if (timeout.deadline - parent.deadline >= 0) {
+                    break;
+                }
+                heap[index] = parent;
+                parent.index = index;
+                index = parentIndex;
+            }
+            heap[index] = timeout;
+            timeout.index = index;
+        }
+
+        private void siftDown(int index, HeapTimeout timeout) {
+            HeapTimeout[] heap = this.heap;
+            int size = this.size;
+            for (;;) {
+                int firstChild = (index << 2) + 1;
+                if (firstChild >= size) {
+                    break;
+                }
+
+                int minChild = firstChild;
+                int end = Math.min(firstChild + 4, size);
+                for (int i = firstChild + 1; i < end; i ++) {
+                    if (heap[i].deadline - heap[minChild].deadline < 0) {
+                        minChild = i;
+                    }
+                }
+
+                HeapTimeout child = heap[minChild];
+                if (timeout.deadline - child.deadline <= 0) {
+                    break;
+                }
+                heap[index] = child;
+                child.index = index;
+                index = minChild;
+            }
+            heap[index] = timeout;
+            timeout.index = index;
+        }
+    }
+
+    final class HeapTimeout implements Timeout {
+
+        private static final int ST_INIT = 0;
+        private static final int ST_CANCELLED = 1;
+        private static final int ST_EXPIRED = 2;
+
+        private final Worker worker;
+        private final TimerTask task;
+        final long deadline;
+        // Guarded by the worker's lock; -1 if not in the heap.
+        int index = -1;
+        volatile int state;
+
+        HeapTimeout(Worker worker, TimerTask task, long deadline) {
+            this.worker = worker;
+            this.task = task;
+            this.deadline = deadline;
+        }
+
+        public Timer getTimer() {
+            return HeapTimer.this;
+        }
+
+        public TimerTask getTask() {
+            return task;
+        }
+
+        public void cancel() {
+            if (!STATE_UPDATER.compareAndSet(this, ST_INIT, ST_CANCELLED)) {
+                return;
+            }
+
+            worker.remove(this);
+        }
+
+        public boolean isCancelled() {
+            return state == ST_CANCELLED;
+        }
+
+        public boolean isExpired() {
+            return state != ST_INIT;
+        }
+
+        boolean expire() {
+            if (!STATE_UPDATER.compareAndSet(this, ST_INIT, ST_EXPIRED)) {
+                return false;
+            }
+
+            try {
+                task.run(this);
+            } catch (Throwable t) {
+                if (logger.isWarnEnabled()) {
+                    logger.warn(
+                            "An exception was thrown by " +
+                            TimerTask.class.getSimpleName() + '.', t);
+                }
+            }
+            return true;
+        }
+
+        @Override
+        public String toString() {
+            long remaining = deadline - System.nanoTime();
+
+            StringBuilder buf = new StringBuilder(192);
+            buf.append(getClass().getSimpleName());
+            buf.append('(');
+
+            buf.append("deadline: ");
+            if (remaining > 0) {
+                buf.append(remaining);
+                buf.append(" ns later");
+            } else if (remaining < 0) {
+                buf.append(-remaining);
+                buf.append(" ns ago");
+            } else {
+                buf.append("now");
+            }
+
+            if (isCancelled()) {
+                buf.append(", cancelled");
+            }
+
+            buf.append(", task: ");
+            buf.append(getTask());
+
+            return buf.append(')').toString();
+        }
+    }
+
+    static final AtomicIntegerFieldUpdater<HeapTimeout> STATE_UPDATER =
+            AtomicIntegerFieldUpdater.newUpdater(HeapTimeout.class, "state");
+}
@@ -0,0 +1,106 @@
+/*
+ * Copyright 2014 The Netty Project
+ *
+ * The Netty Project licenses this file to you under the Apache License,
+ * version 2.0 (the "License"); you may not use this file except in compliance
+ * with the License. You may obtain a copy of the License at:
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS, WITHOUT
+ * WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied. See the
+ * License for the specific language governing permissions and limitations
+ * under the License.
+ */
+package org.jboss.netty.util.internal;
+
+/**
+ * A light-weight thread-local object pool.  {@link #get()} takes an object
+ * from the pool of the current thread, or creates a new one if the pool is
+ * empty, and {@link #recycle(Object)} puts an object back into the pool of
+ * the current thread, or discards it if the pool is full already.
+ * <p>
+ * The maximum number of objects kept per thread defaults to the value of the
+ * {@code org.jboss.netty.recycler.maxCapacity} system property (default: 256).
+ */
+public abstract class Recycler<T> {
+
+    private static final int DEFAULT_MAX_CAPACITY =
+            Math.max(0, SystemPropertyUtil.getInt("org.jboss.netty.recycler.maxCapacity", 256));
+
+    private final int maxCapacity;
+    private final ThreadLocal<Stack> stacks = new ThreadLocal<Stack>() {
+        @Override
+        protected Stack initialValue() {
+            return new Stack(maxCapacity);
+        }
+    };
+
+    /**
+     * Creates a new pool which keeps up to {@code org.jboss.netty.recycler.maxCapacity}
+     * objects per thread.
+     */
+    protected Recycler() {
+        this(DEFAULT_MAX_CAPACITY);
+    }
+
+    /**
+     * Creates a new pool which keeps up to {@code maxCapacity} objects per thread.
+     */
+    protected Recycler(int maxCapacity) {
+        if (maxCapacity < 0) {
+            throw new IllegalArgumentException("maxCapacity: " + maxCapacity + " (expected: >= 0)");
+        }
+        this.maxCapacity = maxCapacity;
+    }
+
+    /**
+     * Takes an object from the pool of the current thread, or creates a new
+     * one with {@link #newObject()} if the pool is empty.
+     */
+    @SuppressWarnings("unchecked")
+    public final T get() {
+        Stack stack = stacks.get();
+        if (stack.size == 0) {
+            return newObject();
+        }
+        int size = -- stack.size;
+        Object o = stack.elements[size];
+        stack.elements[size] = null;
+        return (T) o;
+    }
+
+    /**
+     * Puts the specified object into the pool of the current thread.  The
+     * caller must not access the object once it has been recycled.
+     *
+     * @return {@code true} if the object was pooled, or {@code false} if it
+     *         was discarded because the pool is full
+     */
+    public final boolean recycle(T o) {
+        if (o == null) {
+            throw new NullPointerException("o");
+        }
+        Stack stack = stacks.get();
+        if (stack.size == stack.elements.length) {
+            return false;
+        }
+        stack.elements[stack.size ++] = o;
+        return true;
+    }
+
+    /**
+     * Creates a new object when the pool of the current thread is empty.
+     */
+    protected abstract T newObject();
+
+    private static final class Stack {
+        final Object[] elements;
+        int size;
+
+        Stack(int maxCapacity) {
+            elements = new Object[maxCapacity];
+        }
+    }
+}
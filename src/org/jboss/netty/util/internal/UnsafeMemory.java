@@ -0,0 +1,192 @@
+/*
+ * Copyright 2014 The Netty Project
+ *
+ * The Netty Project licenses this file to you under the Apache License,
+ * version 2.0 (the "License"); you may not use this file except in compliance
+ * with the License. You may obtain a copy of the License at:
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS, WITHOUT
+ * WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied. See the
+ * License for the specific language governing permissions and limitations
+ * under the License.
+ */
+package org.jboss.netty.util.internal;
+
+import java.lang.reflect.Field;
+import java.lang.reflect.Method;
+import java.nio.Buffer;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+
+import org.jboss.netty.logging.InternalLogger;
+import org.jboss.netty.logging.InternalLoggerFactory;
+
+import sun.misc.Unsafe;
+
+/**
+ * Raw memory access via {@code sun.misc.Unsafe}.  None of the methods checks
+ * its arguments, so the caller must make sure that the accessed memory is
+ * valid.  Check {@link #isAvailable()} before calling any other method.
+ */
+public final class UnsafeMemory {
+
+    private static final InternalLogger logger =
+        InternalLoggerFactory.getInstance(UnsafeMemory.class);
+
+    private static final Unsafe UNSAFE;
+    private static final long ADDRESS_FIELD_OFFSET;
+    private static final long BYTE_ARRAY_BASE_OFFSET;
+
+    /**
+     * Limits the number of bytes copied per {@code Unsafe.copyMemory(...)}
+     * call so that a large copy does not delay safepoints for too long.
+     */
+    private static final long UNSAFE_COPY_THRESHOLD = 1024L * 1024L;
+
+    private static final boolean NATIVE_ORDER_BIG_ENDIAN =
+        ByteOrder.nativeOrder() == ByteOrder.BIG_ENDIAN;
+
+    static {
+        Unsafe unsafe = null;
+        long addressFieldOffset = -1;
+        long byteArrayBaseOffset = -1;
+        if (DetectionUtil.hasUnsafe() && isUnaligned()) {
+            try {
+                Field unsafeField = Unsafe.class.getDeclaredField("theUnsafe");
+                unsafeField.setAccessible(true);
+                unsafe = (Unsafe) unsafeField.get(null);
+
+                // Copying between arrays and raw memory requires Java 7.
+                Unsafe.class.getDeclaredMethod(
+                        "copyMemory", Object.class, long.class, Object.class, long.class, long.class);
+
+                addressFieldOffset = unsafe.objectFieldOffset(Buffer.class.getDeclaredField("address"));
+                byteArrayBaseOffset = unsafe.arrayBaseOffset(byte[].class);
+
+                // Make sure the address field really holds the address.
+                ByteBuffer direct = ByteBuffer.allocateDirect(1);
+                if (unsafe.getLong(direct, addressFieldOffset) == 0) {
+                    unsafe = null;
+                }
+            } catch (Throwable t) {
+                unsafe = null;
+            }
+        }
+
+        UNSAFE = unsafe;
+        ADDRESS_FIELD_OFFSET = addressFieldOffset;
+        BYTE_ARRAY_BASE_OFFSET = byteArrayBaseOffset;
+
+        if (logger.isDebugEnabled()) {
+            logger.debug("Raw memory access via sun.misc.Unsafe: " + (UNSAFE != null ? "available" : "unavailable"));
+        }
+    }
+
+    private static boolean isUnaligned() {
+        try {
+            Class<?> bitsClass = Class.forName("java.nio.Bits", false, ClassLoader.getSystemClassLoader());
+            Method unalignedMethod = bitsClass.getDeclaredMethod("unaligned");
+            unalignedMethod.setAccessible(true);
+            return Boolean.TRUE.equals(unalignedMethod.invoke(null));
+        } catch (Throwable t) {
+            // The JDK may not allow the access; guess from the architecture.
+            String arch = SystemPropertyUtil.get("os.arch", "");
+            return arch.matches("^(i[3-6]86|x86(_64)?|x64|amd64|aarch64)$");
+        }
+    }
+
+    /**
+     * Returns {@code true} if and only if raw memory access is available.
+     */
+    public static boolean isAvailable() {
+        return UNSAFE != null;
+    }
+
+    /**
+     * Returns {@code true} if and only if the native byte order is
+     * {@link ByteOrder#BIG_ENDIAN}.  Multi-byte values are read and written
+     * in the native byte order.
+     */
+    public static boolean isNativeOrderBigEndian() {
+        return NATIVE_ORDER_BIG_ENDIAN;
+    }
+
+    /**
+     * Returns the memory address of the first byte of the specified direct
+     * buffer, ignoring its position.
+     */
+    public static long directBufferAddress(ByteBuffer buffer) {
+        return UNSAFE.getLong(buffer, ADDRESS_FIELD_OFFSET);
+    }
+
+    public static byte getByte(long address) {
+        return UNSAFE.getByte(address);
+    }
+
+    public static short getShort(long address) {
+        return UNSAFE.getShort(address);
+    }
+
+    public static int getInt(long address) {
+        return UNSAFE.getInt(address);
+    }
+
+    public static long getLong(long address) {
+        return UNSAFE.getLong(address);
+    }
+
+    public static void putByte(long address, byte value) {
+        UNSAFE.putByte(address, value);
+    }
+
+    public static void putShort(long address, short value) {
+        UNSAFE.putShort(address, value);
+    }
+
+    public static void putInt(long address, int value) {
+        UNSAFE.putInt(address, value);
+    }
+
+    public static void putLong(long address, long value) {
+        UNSAFE.putLong(address, value);
+    }
+
+    public static void copyMemory(long srcAddr, long dstAddr, long length) {
+        while (length > 0) {
+            long size = Math.min(length, UNSAFE_COPY_THRESHOLD);
+            UNSAFE.copyMemory(srcAddr, dstAddr, size);
+            length -= size;
+            srcAddr += size;
+            dstAddr += size;
+        }
+    }
+
+    public static void copyMemory(byte[] src, int srcIndex, long dstAddr, long length) {
+        long srcOffset = BYTE_ARRAY_BASE_OFFSET + srcIndex;
+        while (length > 0) {
+            long size = Math.min(length, UNSAFE_COPY_THRESHOLD);
+            UNSAFE.copyMemory(src, srcOffset, null, dstAddr, size);
+            length -= size;
+            srcOffset += size;
+            dstAddr += size;
+        }
+    }
+
+    public static void copyMemory(long srcAddr, byte[] dst, int dstIndex, long length) {
+        long dstOffset = BYTE_ARRAY_BASE_OFFSET + dstIndex;
+        while (length > 0) {
+            long size = Math.min(length, UNSAFE_COPY_THRESHOLD);
+            UNSAFE.copyMemory(null, srcAddr, dst, dstOffset, size);
+            length -= size;
+            srcAddr += size;
+            dstOffset += size;
+        }
+    }
+
+    private UnsafeMemory() {
+        // Unused
+    }
+}